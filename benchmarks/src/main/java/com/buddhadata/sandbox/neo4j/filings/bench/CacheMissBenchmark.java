@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.bench;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import java.util.Optional;
+
+/**
+ * Compares the cost of a cache miss for a node that doesn't exist yet, the common case during a fresh load: a loader
+ * returning null, which Guava reports by throwing <code>InvalidCacheLoadException</code> for the caller to catch, against
+ * a loader returning an empty <code>Optional</code>.  Each lookup is for a new key followed by putting the created node,
+ * the same sequence as the loader's find-or-create methods, with the database query left out so that only the cache's
+ * own cost is measured.
+ *
+ * Usage: CacheMissBenchmark [misses per round, default 1000000] [rounds, default 5] [stack depth, default 40]
+ *
+ * The cost of an exception grows with the depth of the stack it's thrown on, so lookups are made from below the given
+ * number of frames, roughly the depth the loader calls from while processing a zip entry.
+ *
+ * @author Scott C Sosna
+ */
+public class CacheMissBenchmark {
+
+    /**
+     * Same maximum size as the loader's caches
+     */
+    static private final int CACHE_SIZE = 250;
+
+    /**
+     * Keys looked up, all distinct so that every lookup misses
+     */
+    private final String[] keys;
+
+    /**
+     * Depth of the stack lookups are made from
+     */
+    private final int depth;
+
+    /**
+     * Prevents the JIT from discarding the lookups
+     */
+    private long sink;
+
+    /**
+     * Constructor
+     * @param misses number of lookups per round
+     * @param depth depth of the stack lookups are made from
+     */
+    private CacheMissBenchmark (int misses,
+                                int depth) {
+        this.depth = depth;
+        this.keys = new String[misses];
+        for (int i = 0; i < misses; i++) {
+            keys[i] = "CLIENT " + i;
+        }
+    }
+
+    /**
+     * Miss on every key with a loader returning null, caught as the loader did originally.
+     * @return nanoseconds per miss
+     */
+    private double measureException () {
+
+        LoadingCache<String,Object> cache = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .build(
+                new CacheLoader<String,Object>() {
+                    public Object load (String key) {
+                        return null;
+                    }
+                }
+            );
+
+        return atDepth(depth, () -> {
+            long start = System.nanoTime();
+            for (String key : keys) {
+                Object found;
+                try {
+                    found = cache.get(key);
+                } catch (Exception e) {
+                    found = null;
+                }
+                if (found == null) {
+                    found = key;
+                    cache.put(key, found);
+                }
+                sink += found.hashCode();
+            }
+            return (System.nanoTime() - start) / (double) keys.length;
+        });
+    }
+
+    /**
+     * Miss on every key with a loader returning an empty optional, as the loader does now.
+     * @return nanoseconds per miss
+     */
+    private double measureOptional () {
+
+        LoadingCache<String,Optional<Object>> cache = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .build(
+                new CacheLoader<String,Optional<Object>>() {
+                    public Optional<Object> load (String key) {
+                        return Optional.empty();
+                    }
+                }
+            );
+
+        return atDepth(depth, () -> {
+            long start = System.nanoTime();
+            for (String key : keys) {
+                Object found = cache.getUnchecked(key).orElse(null);
+                if (found == null) {
+                    found = key;
+                    cache.put(key, Optional.of(found));
+                }
+                sink += found.hashCode();
+            }
+            return (System.nanoTime() - start) / (double) keys.length;
+        });
+    }
+
+    /**
+     * Run the measurement the given number of frames further down the stack
+     * @param frames frames still to add
+     * @param measurement the measurement to run
+     * @return the measurement's result
+     */
+    private double atDepth (int frames,
+                            Measurement measurement) {
+        return frames <= 0 ? measurement.run() : atDepth(frames - 1, measurement);
+    }
+
+    /**
+     * A single timed run
+     */
+    @FunctionalInterface
+    private interface Measurement {
+        double run ();
+    }
+
+    /**
+     * Benchmark main program
+     * @param args optional misses per round, number of rounds and stack depth
+     */
+    public static void main (String[] args) {
+
+        int misses = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 40;
+
+        CacheMissBenchmark benchmark = new CacheMissBenchmark(misses, depth);
+        for (int i = 0; i < rounds; i++) {
+            double exception = benchmark.measureException();
+            double optional = benchmark.measureOptional();
+            System.out.println (String.format("round %d: exception %,8.0f ns/miss, optional %,8.0f ns/miss, %.1fx",
+                i + 1, exception, optional, exception / optional));
+        }
+        System.out.println ("(" + benchmark.sink + ")");
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.bench;
+
+import com.buddhadata.sandbox.neo4j.filings.cache.LongLongHashMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Compares the heap retained by a dictionary of registrant ID to internal node id, and the cost of looking ids up,
+ * between the primitive <code>LongLongHashMap</code> and the boxed maps used elsewhere: a <code>HashMap</code>, the
+ * <code>ConcurrentHashMap</code> behind <code>NodeDictionary</code>, Guava's <code>ImmutableMap</code> and a Guava cache
+ * like those behind <code>EntityCache</code>.  The boxed keys and ids are counted, they're only created to go into the
+ * map.
+ *
+ * Usage: DictionaryFootprintBenchmark [entries, default 100000] [rounds, default 3]
+ *
+ * The retained heap is measured as the difference in used heap after garbage collecting, best run with
+ * <code>-XX:+UseSerialGC</code> so that a collection is complete and the numbers are stable.
+ *
+ * @author Scott C Sosna
+ */
+public class DictionaryFootprintBenchmark {
+
+    /**
+     * Lookups per measurement of lookup cost
+     */
+    static private final int LOOKUPS = 2000000;
+
+    /**
+     * Registrant IDs, spread out like the real ones rather than sequential
+     */
+    private final long[] keys;
+
+    /**
+     * Order in which keys are looked up
+     */
+    private final int[] order;
+
+    /**
+     * Prevents the JIT from discarding the lookups
+     */
+    private long sink;
+
+    /**
+     * Constructor
+     * @param entries number of entries in each dictionary
+     */
+    private DictionaryFootprintBenchmark (int entries) {
+
+        Random random = new Random(42);
+        keys = random.longs(entries, 1L, 1L << 40).toArray();
+        order = random.ints(LOOKUPS, 0, entries).toArray();
+    }
+
+    /**
+     * Measure a dictionary
+     * @param name name of the dictionary, for reporting
+     * @param build creates the dictionary filled with every key
+     * @param holder keeps the dictionary reachable while measured
+     * @param lookup looks up the id of a key in the dictionary last created
+     */
+    private <T> void measure (String name,
+                              Supplier<T> build,
+                              Holder<T> holder,
+                              LongUnaryOperator lookup) {
+
+        long before = usedHeap();
+        holder.value = build.get();
+        long retained = usedHeap() - before;
+
+        long start = System.nanoTime();
+        for (int i : order) {
+            sink += lookup.applyAsLong(keys[i]);
+        }
+        double perLookup = (System.nanoTime() - start) / (double) order.length;
+
+        System.out.println (String.format("  %-20s %,12d bytes %6.1f bytes/entry %6.1f ns/lookup",
+            name, retained, retained / (double) keys.length, perLookup));
+        holder.value = null;
+    }
+
+    /**
+     * Measure every dictionary once
+     */
+    private void round () {
+
+        Holder<LongLongHashMap> primitive = new Holder<>();
+        measure("LongLongHashMap", () -> {
+            LongLongHashMap map = new LongLongHashMap(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                map.put(keys[i], i);
+            }
+            return map;
+        }, primitive, key -> primitive.value.get(key, -1L));
+
+        Holder<Map<Long,Long>> hashMap = new Holder<>();
+        measure("HashMap", () -> fill(new HashMap<>(keys.length * 4 / 3 + 1)), hashMap, key -> hashMap.value.get(key));
+
+        Holder<Map<Long,Long>> concurrent = new Holder<>();
+        measure("ConcurrentHashMap", () -> fill(new ConcurrentHashMap<>(keys.length)), concurrent, key -> concurrent.value.get(key));
+
+        Holder<Map<Long,Long>> immutable = new Holder<>();
+        measure("Guava ImmutableMap", () -> ImmutableMap.copyOf(fill(new HashMap<>())), immutable, key -> immutable.value.get(key));
+
+        Holder<Cache<Long,Long>> cache = new Holder<>();
+        measure("Guava Cache", () -> {
+            //  Guava evicts per segment, so leave room for the segments filling unevenly.
+            Cache<Long,Long> built = CacheBuilder.newBuilder().maximumSize(keys.length * 2).recordStats().build();
+            built.putAll(fill(new HashMap<>()));
+            return built;
+        }, cache, key -> {
+            Long id = cache.value.getIfPresent(key);
+            return id != null ? id : -1L;
+        });
+    }
+
+    /**
+     * Fill a boxed map with every key
+     * @param map the map
+     * @return the map
+     */
+    private Map<Long,Long> fill (Map<Long,Long> map) {
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], (long) i);
+        }
+        return map;
+    }
+
+    /**
+     * Heap in use once garbage has been collected, as best as can be told
+     * @return bytes of heap used
+     */
+    static private long usedHeap () {
+
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * Keeps the dictionary being measured reachable
+     */
+    static private class Holder<T> {
+        T value;
+    }
+
+    /**
+     * Benchmark main program
+     * @param args optional number of entries and number of rounds
+     */
+    public static void main (String[] args) {
+
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        DictionaryFootprintBenchmark benchmark = new DictionaryFootprintBenchmark(entries);
+        for (int i = 0; i < rounds; i++) {
+            System.out.println (String.format("round %d, %,d entries:", i + 1, entries));
+            benchmark.round();
+        }
+        System.out.println ("(" + benchmark.sink + ")");
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.bench;
+
+import com.buddhadata.sandbox.neo4j.filings.node.NodeFactory;
+import com.buddhadata.sandbox.neo4j.filings.parse.FilingsScanner;
+import com.buddhadata.sandbox.neo4j.filings.parse.StreamingFilingsReader;
+import com.buddhadata.sandbox.neo4j.filings.source.ZipArchive;
+import generated.*;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+/**
+ * Verifies the attribute scanner against JAXB on real filings, then compares the MB/s of whole-document JAXB
+ * unmarshalling, the StAX streaming reader and the scanner.  Every entry of the zip files is first read into memory,
+ * so what's measured is decoding the UTF-16 XML into filings and not inflating the zips.
+ *
+ * Verification compares every attribute of every filing, not only those the loader uses, and stops the benchmark
+ * should any differ.  Received dates are compared as the loader converts them, the scanner doesn't keep their text.
+ *
+ * Usage: FilingsScannerBenchmark zip-files [rounds, default 5], where zip-files is a comma-separated list of paths or
+ * globs, e.g., "/data/lobbying/*.zip"
+ *
+ * @author Scott C Sosna
+ */
+public class FilingsScannerBenchmark {
+
+    /**
+     * Number of differences printed before giving up
+     */
+    static private final int MAXIMUM_DIFFERENCES = 10;
+
+    /**
+     * Uncompressed contents of every zip entry
+     */
+    private final List<byte[]> documents = new ArrayList<>();
+
+    /**
+     * Total size of the documents
+     */
+    private long totalBytes;
+
+    /**
+     * Whole-document unmarshaller
+     */
+    private final Unmarshaller unmarshaller;
+
+    /**
+     * StAX streaming reader
+     */
+    private final StreamingFilingsReader streamingReader;
+
+    /**
+     * The scanner being verified
+     */
+    private final FilingsScanner scanner = new FilingsScanner();
+
+    /**
+     * Filings read by the most recent round, keeps the JIT from discarding the work
+     */
+    private long filingCount;
+
+    /**
+     * Constructor
+     * @param zipFiles the zip files whose entries are read
+     * @throws Exception unable to create JAXB context or read the files
+     */
+    private FilingsScannerBenchmark (List<Path> zipFiles)
+        throws Exception {
+
+        JAXBContext context = JAXBContext.newInstance("generated");
+        this.unmarshaller = context.createUnmarshaller();
+        this.streamingReader = new StreamingFilingsReader(context);
+
+        for (Path path : zipFiles) {
+            try (ZipArchive archive = new ZipArchive(path)) {
+                for (ZipEntry ze : archive.getEntries()) {
+                    try (InputStream in = archive.open(ze)) {
+                        byte[] document = in.readAllBytes();
+                        documents.add(document);
+                        totalBytes += document.length;
+                    }
+                }
+            }
+        }
+
+        System.out.println (String.format("Read %d documents from %d zip files, %,d bytes uncompressed",
+            documents.size(), zipFiles.size(), totalBytes));
+    }
+
+    /**
+     * Compare every filing read by the scanner with what JAXB unmarshals from the same document
+     * @return number of filings that differ
+     * @throws Exception unable to read a document
+     */
+    private int verify ()
+        throws Exception {
+
+        int filings = 0;
+        int differences = 0;
+        for (byte[] document : documents) {
+            List<FilingType> expected = jaxb(document).getFiling();
+            List<FilingType> actual = new ArrayList<>();
+            scanner.read(new ByteArrayInputStream(document), actual::add);
+
+            if (expected.size() != actual.size()) {
+                System.out.println (String.format("JAXB read %d filings, the scanner %d", expected.size(), actual.size()));
+                differences++;
+            }
+            for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+                String jaxb = describe(expected.get(i));
+                String scanned = describe(actual.get(i));
+                if (!jaxb.equals(scanned)) {
+                    if (differences < MAXIMUM_DIFFERENCES) {
+                        System.out.println ("JAXB:    " + jaxb);
+                        System.out.println ("Scanner: " + scanned);
+                    }
+                    differences++;
+                }
+            }
+            filings += expected.size();
+        }
+
+        System.out.println (String.format("Verified %,d filings, %d differ", filings, differences));
+        return differences;
+    }
+
+    /**
+     * Unmarshal an entire document with JAXB
+     * @param document the document
+     * @return the filings
+     * @throws Exception unable to unmarshal
+     */
+    private PublicFilings jaxb (byte[] document)
+        throws Exception {
+        return (PublicFilings) unmarshaller.unmarshal(new InputStreamReader(new ByteArrayInputStream(document), StandardCharsets.UTF_16));
+    }
+
+    /**
+     * Read every document with one of the readers, printing its elapsed time and throughput
+     * @param name name of the reader
+     * @throws Exception unable to read a document
+     */
+    private void measure (String name)
+        throws Exception {
+
+        long[] count = new long[1];
+        long start = System.nanoTime();
+        for (byte[] document : documents) {
+            switch (name) {
+                case "jaxb":
+                    count[0] += jaxb(document).getFiling().size();
+                    break;
+                case "stax":
+                    streamingReader.read(new InputStreamReader(new ByteArrayInputStream(document), StandardCharsets.UTF_16), f -> count[0]++);
+                    break;
+                default:
+                    scanner.read(new ByteArrayInputStream(document), f -> count[0]++);
+                    break;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        filingCount = count[0];
+
+        System.out.println (String.format("%-5s %,8d filings in %,6d ms, %,8.1f MB/s, %,10.0f filings/sec",
+            name, filingCount, elapsed / 1000000, (totalBytes / (1024.0 * 1024.0)) / (elapsed / 1e9), filingCount / (elapsed / 1e9)));
+    }
+
+    /**
+     * Every attribute of a filing and the elements within it, in document order, the received date as loaded
+     * @param ft the filing
+     * @return single line description
+     */
+    static private String describe (FilingType ft) {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(ft.getID()).append('|').append(ft.getYear()).append('|')
+            .append(NodeFactory.receivedOn(ft)).append('|')
+            .append(ft.getAmount()).append('|').append(ft.getType()).append('|').append(ft.getPeriod());
+
+        RegistrantType r = ft.getRegistrant();
+        if (r != null) {
+            sb.append(" R[").append(r.getRegistrantID()).append('|').append(r.getRegistrantName()).append('|')
+                .append(r.getGeneralDescription()).append('|').append(r.getAddress()).append('|')
+                .append(r.getRegistrantCountry()).append('|').append(r.getRegistrantPPBCountry()).append(']');
+        }
+
+        ClientType c = ft.getClient();
+        if (c != null) {
+            sb.append(" C[").append(c.getClientName()).append('|').append(c.getGeneralDescription()).append('|')
+                .append(c.getClientID()).append('|').append(c.getSelfFiler()).append('|')
+                .append(c.getContactFullname()).append('|').append(c.getIsStateOrLocalGov()).append('|')
+                .append(c.getClientCountry()).append('|').append(c.getClientPPBCountry()).append('|')
+                .append(c.getClientState()).append('|').append(c.getClientPPBState()).append(']');
+        }
+
+        if (ft.getLobbyists() != null) {
+            sb.append(" L[");
+            for (LobbyistType l : ft.getLobbyists().getLobbyist()) {
+                sb.append('(').append(l.getLobbyistName()).append('|').append(l.getLobbyistCoveredGovPositionIndicator())
+                    .append('|').append(l.getOfficialPosition()).append('|').append(l.getActivityInformation()).append(')');
+            }
+            sb.append(']');
+        }
+
+        if (ft.getGovernmentEntities() != null) {
+            sb.append(" G[");
+            for (GovernmentEntityType g : ft.getGovernmentEntities().getGovernmentEntity()) {
+                sb.append('(').append(g.getGovEntityName()).append(')');
+            }
+            sb.append(']');
+        }
+
+        if (ft.getIssues() != null) {
+            sb.append(" I[");
+            for (IssueType i : ft.getIssues().getIssue()) {
+                sb.append('(').append(i.getCode()).append('|').append(i.getSpecificIssue()).append(')');
+            }
+            sb.append(']');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Benchmark main program
+     * @param args zip files and optional number of rounds
+     * @throws Exception anything bad
+     */
+    public static void main (String[] args)
+        throws Exception {
+
+        if (args.length == 0) {
+            System.out.println ("Usage: FilingsScannerBenchmark zip-files [rounds]");
+            return;
+        }
+
+        List<Path> zipFiles = ZipArchive.find(args[0]);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        FilingsScannerBenchmark benchmark = new FilingsScannerBenchmark(zipFiles);
+        if (benchmark.verify() > 0) {
+            throw new IllegalStateException("Scanner and JAXB read different filings");
+        }
+
+        for (int i = 0; i < rounds; i++) {
+            benchmark.measure("jaxb");
+            benchmark.measure("stax");
+            benchmark.measure("scan");
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.bench;
+
+import com.buddhadata.sandbox.neo4j.filings.harness.LiveHeapPeak;
+import com.buddhadata.sandbox.neo4j.filings.parse.StreamingFilingsReader;
+import generated.*;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Compares peak heap and filings/sec of whole-document JAXB unmarshalling against the StAX streaming reader, using a
+ * large generated file in the same UTF-16 zip layout as the Senate downloads.  Also verifies both produce the same
+ * filings, by comparing a digest of the fields the loader uses.
+ *
+ * Usage: StreamingReaderBenchmark [filing count, default 100000] [rounds, default 3]
+ *
+ * Peak heap is the most reachable memory observed after any garbage collection while the reader ran, so it reflects
+ * what the reader retains rather than how lazily the collector runs.
+ *
+ * @author Scott C Sosna
+ */
+public class StreamingReaderBenchmark {
+
+    /**
+     * Number of filings in the generated file
+     */
+    private final int filingCount;
+
+    /**
+     * JAXB context shared by both readers
+     */
+    private final JAXBContext context;
+
+    /**
+     * The generated zip file
+     */
+    private final Path zipFile;
+
+    /**
+     * Constructor
+     * @param filingCount number of filings to generate
+     * @throws Exception unable to create JAXB context or generate the file
+     */
+    private StreamingReaderBenchmark (int filingCount)
+        throws Exception {
+
+        this.filingCount = filingCount;
+        this.context = JAXBContext.newInstance("generated");
+        this.zipFile = Files.createTempFile("filings-bench", ".zip");
+        this.zipFile.toFile().deleteOnExit();
+        generate();
+    }
+
+    /**
+     * Write the synthetic filings to a single zip entry, streaming so the generation itself doesn't inflate the heap.
+     * @throws Exception unable to write file
+     */
+    private void generate ()
+        throws Exception {
+
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipFile))) {
+            zos.putNextEntry(new ZipEntry("bench.xml"));
+            Writer writer = new OutputStreamWriter(zos, StandardCharsets.UTF_16);
+            XMLStreamWriter xsw = XMLOutputFactory.newFactory().createXMLStreamWriter(writer);
+            xsw.writeStartDocument("UTF-16", "1.0");
+            xsw.writeStartElement("PublicFilings");
+            for (int i = 0; i < filingCount; i++) {
+                xsw.writeStartElement("Filing");
+                xsw.writeAttribute("ID", String.format("%08X-BENCH-%08d", i, i));
+                xsw.writeAttribute("Year", "2019");
+                xsw.writeAttribute("Received", String.format("2019-04-%02dT10:%02d:%02d.%03d", 1 + i % 28, i % 60, (i / 60) % 60, i % 1000));
+                xsw.writeAttribute("Amount", String.valueOf(10000 + (i % 500) * 1000));
+                xsw.writeAttribute("Type", "FIRST QUARTER REPORT");
+                xsw.writeAttribute("Period", "1st Quarter (Jan 1 - Mar 31)");
+
+                xsw.writeEmptyElement("Registrant");
+                xsw.writeAttribute("RegistrantID", String.valueOf(400000 + i % 3000));
+                xsw.writeAttribute("RegistrantName", "REGISTRANT " + (i % 3000));
+                xsw.writeAttribute("GeneralDescription", "Government relations consulting");
+                xsw.writeAttribute("Address", (i % 3000) + " K Street NW\r\nWashington, DC 20006");
+                xsw.writeAttribute("RegistrantCountry", "USA");
+                xsw.writeAttribute("RegistrantPPBCountry", "USA");
+
+                xsw.writeEmptyElement("Client");
+                xsw.writeAttribute("ClientName", "CLIENT " + (i % 20000));
+                xsw.writeAttribute("GeneralDescription", "Manufacturing");
+                xsw.writeAttribute("ClientID", String.valueOf(i % 20000));
+                xsw.writeAttribute("SelfFiler", "FALSE");
+                xsw.writeAttribute("ContactFullname", "CONTACT " + (i % 20000));
+                xsw.writeAttribute("IsStateOrLocalGov", "FALSE");
+                xsw.writeAttribute("ClientCountry", "USA");
+                xsw.writeAttribute("ClientPPBCountry", "USA");
+                xsw.writeAttribute("ClientState", "VA");
+                xsw.writeAttribute("ClientPPBState", "VA");
+
+                xsw.writeStartElement("Lobbyists");
+                for (int l = 0; l < 1 + i % 4; l++) {
+                    xsw.writeEmptyElement("Lobbyist");
+                    xsw.writeAttribute("LobbyistName", "SURNAME" + ((i + l) % 15000) + ", FIRST" + l);
+                    xsw.writeAttribute("LobbyistCoveredGovPositionIndicator", (l % 3 == 0) ? "COVERED" : "NOT COVERED");
+                    xsw.writeAttribute("OfficialPosition", (l % 3 == 0) ? "Legislative Assistant" : "");
+                    xsw.writeAttribute("ActivityInformation", "");
+                }
+                xsw.writeEndElement();
+
+                xsw.writeStartElement("GovernmentEntities");
+                for (int g = 0; g < 1 + i % 3; g++) {
+                    xsw.writeEmptyElement("GovernmentEntity");
+                    xsw.writeAttribute("GovEntityName", "ENTITY " + ((i + g) % 250));
+                }
+                xsw.writeEndElement();
+
+                xsw.writeStartElement("Issues");
+                for (int s = 0; s < 1 + i % 2; s++) {
+                    xsw.writeEmptyElement("Issue");
+                    xsw.writeAttribute("Code", "ISSUE " + ((i + s) % 80));
+                    xsw.writeAttribute("SpecificIssue", "Specific lobbying issue text for filing " + i);
+                }
+                xsw.writeEndElement();
+
+                xsw.writeEndElement();
+            }
+            xsw.writeEndElement();
+            xsw.writeEndDocument();
+            xsw.flush();
+            writer.flush();
+            zos.closeEntry();
+        }
+
+        System.out.println (String.format("Generated %d filings, %,d bytes compressed", filingCount, Files.size(zipFile)));
+    }
+
+    /**
+     * Read the zip file by unmarshalling the whole document, the same way the loader does when streaming is off.
+     * @param digest receives every filing read
+     * @throws Exception error reading file
+     */
+    private void readJaxb (Digest digest)
+        throws Exception {
+
+        Unmarshaller unmarshaller = context.createUnmarshaller();
+        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zipFile))) {
+            while (zis.getNextEntry() != null) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                zis.transferTo(baos);
+                byte[] bytes = baos.toByteArray();
+                PublicFilings filings = (PublicFilings) unmarshaller.unmarshal(
+                    new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_16));
+                for (FilingType one : filings.getFiling()) {
+                    digest.accept(one);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the zip file with the streaming reader
+     * @param digest receives every filing read
+     * @throws Exception error reading file
+     */
+    private void readStax (Digest digest)
+        throws Exception {
+
+        StreamingFilingsReader reader = new StreamingFilingsReader(context);
+        try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(zipFile))) {
+            while (zis.getNextEntry() != null) {
+                reader.read(new InputStreamReader(zis, StandardCharsets.UTF_16), digest);
+            }
+        }
+    }
+
+    /**
+     * Run one reader, printing its elapsed time, throughput and peak heap
+     * @param name name of the reader
+     * @param jaxb true for whole-document JAXB, false for streaming
+     * @return the digest of everything read
+     * @throws Exception error reading file
+     */
+    private Digest measure (String name,
+                            boolean jaxb)
+        throws Exception {
+
+        //  Start each reader from the same, collected, baseline.
+        System.gc();
+        Digest digest = new Digest();
+        long elapsed;
+        long peak;
+        try (LiveHeapPeak heap = new LiveHeapPeak()) {
+            long start = System.nanoTime();
+            if (jaxb) {
+                readJaxb(digest);
+            } else {
+                readStax(digest);
+            }
+            elapsed = System.nanoTime() - start;
+            peak = heap.stop();
+        }
+
+        System.out.println (String.format("%-5s %,8d filings in %,6d ms, %,10.0f filings/sec, peak live heap %,6d MB",
+            name, digest.count, elapsed / 1000000, digest.count / (elapsed / 1e9), peak / (1024 * 1024)));
+        return digest;
+    }
+
+    /**
+     * Benchmark main program
+     * @param args optional filing count and number of rounds
+     * @throws Exception anything bad
+     */
+    public static void main (String[] args)
+        throws Exception {
+
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        StreamingReaderBenchmark benchmark = new StreamingReaderBenchmark(count);
+        for (int i = 0; i < rounds; i++) {
+            Digest jaxb = benchmark.measure("jaxb", true);
+            Digest stax = benchmark.measure("stax", false);
+            if (!jaxb.equals(stax)) {
+                throw new IllegalStateException("Readers produced different filings: " + jaxb + " vs " + stax);
+            }
+        }
+    }
+
+    /**
+     * Order-sensitive digest of the filing fields used by the loader, for confirming both readers see the same data.
+     */
+    static private class Digest
+        implements java.util.function.Consumer<FilingType> {
+
+        private int count;
+        private long hash = 17;
+
+        @Override
+        public void accept (FilingType one) {
+            count++;
+            mix(one.getID());
+            mix(one.getYear());
+            mix(one.getReceived());
+            mix(one.getAmount());
+            mix(one.getType());
+            mix(one.getPeriod());
+            mix(one.getRegistrant().getRegistrantID());
+            mix(one.getRegistrant().getRegistrantName());
+            mix(one.getRegistrant().getAddress());
+            mix(one.getClient().getClientName());
+            mix(one.getClient().getClientID());
+            mix(one.getClient().getSelfFiler());
+            for (LobbyistType l : one.getLobbyists().getLobbyist()) {
+                mix(l.getLobbyistName());
+                mix(l.getLobbyistCoveredGovPositionIndicator());
+                mix(l.getOfficialPosition());
+            }
+            for (GovernmentEntityType g : one.getGovernmentEntities().getGovernmentEntity()) {
+                mix(g.getGovEntityName());
+            }
+            for (IssueType iss : one.getIssues().getIssue()) {
+                mix(iss.getCode());
+            }
+        }
+
+        private void mix (Object value) {
+            hash = 31 * hash + (value != null ? value.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals (Object o) {
+            return o instanceof Digest && ((Digest) o).count == count && ((Digest) o).hash == hash;
+        }
+
+        @Override
+        public int hashCode () {
+            return Long.hashCode(hash);
+        }
+
+        @Override
+        public String toString () {
+            return count + " filings, digest " + Long.toHexString(hash);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.harness;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Tracks the largest heap occupancy seen immediately after a garbage collection, i.e., what was actually reachable
+ * rather than garbage not yet collected.  Tracking starts when created and ends with <code>stop</code>, or when closed.
+ *
+ * @author Scott C Sosna
+ */
+public class LiveHeapPeak
+    implements NotificationListener, AutoCloseable {
+
+    /**
+     * Largest heap occupancy seen after a collection, in bytes
+     */
+    private volatile long max;
+
+    /**
+     * Has tracking stopped?
+     */
+    private boolean closed;
+
+    /**
+     * Constructor, starts tracking
+     */
+    public LiveHeapPeak () {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener(this, null, null);
+        }
+    }
+
+    @Override
+    public void handleNotification (Notification notification,
+                                    Object handback) {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long used = 0;
+            for (MemoryUsage usage : info.getGcInfo().getMemoryUsageAfterGc().values()) {
+                used += usage.getUsed();
+            }
+            max = Math.max(max, used);
+        }
+    }
+
+    /**
+     * Stop tracking
+     * @return peak live heap in bytes
+     */
+    public long stop () {
+
+        if (!closed) {
+            closed = true;
+
+            //  Force a final collection so a run that never triggered one is still measured.  Its notification may only
+            //  arrive once the listener's been removed, so what survived it is read directly.
+            System.gc();
+            max = Math.max(max, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                try {
+                    ((NotificationEmitter) gc).removeNotificationListener(this);
+                } catch (Exception e) {
+                    //  Never registered, nothing to remove.
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Stop tracking, if not already stopped
+     */
+    @Override
+    public void close () {
+        stop();
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.harness;
+
+import com.buddhadata.sandbox.neo4j.filings.PublicFilingLoader;
+import com.buddhadata.sandbox.neo4j.filings.generate.FilingsGenerator;
+import org.neo4j.graphdb.DependencyResolver;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.harness.ServerControls;
+import org.neo4j.harness.TestServerBuilders;
+import org.neo4j.kernel.impl.transaction.stats.TransactionCounters;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * End-to-end throughput regression check: loads generated filings with <code>PublicFilingLoader</code> into an
+ * in-process Neo4J, then compares filings/sec against a stored baseline and fails when throughput has dropped by more
+ * than the threshold, or when the graph loaded isn't the same size as the baseline's.  Records filings/sec,
+ * commits/sec, peak live heap and the final node and relationship counts of each label and type.
+ *
+ * Usage: java -cp target/benchmarks.jar com.buddhadata.sandbox.neo4j.filings.harness.ThroughputRegressionHarness
+ *
+ * Configured by system properties:
+ * <pre>
+ *   harness.data       directory of zip files to load, generated when it doesn't exist, default target/harness-data
+ *   harness.filings    filings per zip file when generating, default 2000
+ *   harness.baseline   baseline to compare against, default baseline.properties
+ *   harness.threshold  fraction filings/sec may drop before failing, default 0.2
+ *   harness.record     write this run's results as the new baseline, default false
+ * </pre>
+ * Anything else is passed along, e.g. <code>-Dfilings.writer=ogm</code> or <code>-Dfilings.mode=pipeline</code> to
+ * check a particular loader configuration, as are the <code>filings.generate.*</code> properties when generating.
+ *
+ * The database runs in the same JVM, so the peak heap includes its page cache and transaction state; it's comparable
+ * between runs, not an absolute measure of the loader.  Baselines are only comparable on the same machine.
+ *
+ * Exits with status 1 on a regression, 0 otherwise.
+ *
+ * @author Scott C Sosna
+ */
+public class ThroughputRegressionHarness {
+
+    //  Configuration, see above
+    static private final String DATA_DIRECTORY = System.getProperty("harness.data", "target/harness-data");
+    static private final int FILINGS_PER_ZIP = Integer.getInteger("harness.filings", 2000);
+    static private final String BASELINE_FILE = System.getProperty("harness.baseline", "baseline.properties");
+    static private final double THRESHOLD = Double.parseDouble(System.getProperty("harness.threshold", "0.2"));
+    static private final boolean RECORD = Boolean.getBoolean("harness.record");
+
+    //  Result keys, both in the report and the baseline
+    static private final String FILINGS_PER_SECOND = "filingsPerSecond";
+    static private final String COMMITS_PER_SECOND = "commitsPerSecond";
+    static private final String ELAPSED_MILLIS = "elapsedMillis";
+    static private final String PEAK_HEAP_MB = "peakLiveHeapMB";
+    static private final String NODES_PREFIX = "nodes.";
+    static private final String RELATIONSHIPS_PREFIX = "relationships.";
+
+    //  Counting what was loaded
+    static private final String NODE_COUNTS = "MATCH (n) UNWIND labels(n) AS label RETURN label AS name, count(*) AS count";
+    static private final String RELATIONSHIP_COUNTS = "MATCH ()-[r]->() RETURN type(r) AS name, count(*) AS count";
+
+    /**
+     * Generate the filings to load, unless already generated
+     * @param directory where zip files are written
+     * @throws Exception unable to generate
+     */
+    static private void generate (Path directory)
+        throws Exception {
+
+        if (Files.isDirectory(directory)) {
+            System.out.println ("Loading filings already in " + directory.toAbsolutePath());
+            return;
+        }
+
+        setDefault("filings.generate.dir", directory.toString());
+        setDefault("filings.generate.filings", String.valueOf(FILINGS_PER_ZIP));
+        FilingsGenerator.main(new String[0]);
+    }
+
+    /**
+     * Load the filings into a fresh in-process database
+     * @param directory zip files to load
+     * @return results of the run
+     */
+    static private Properties load (Path directory) {
+
+        try (ServerControls server = TestServerBuilders.newInProcessBuilder()
+                .withConfig("dbms.connector.bolt.listen_address", "127.0.0.1:0")
+                .withConfig("dbms.connector.http.enabled", "false")
+                .withConfig("dbms.security.auth_enabled", "false")
+                .newServer()) {
+
+            //  The loader's configuration is read once, when it's first used.
+            System.setProperty("filings.uri", server.boltURI().toString());
+            System.setProperty("filings.dir", directory.toAbsolutePath().toString());
+            setDefault("com.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize", "true");
+
+            GraphDatabaseService db = server.graph();
+            TransactionCounters transactions = ((GraphDatabaseAPI) db).getDependencyResolver()
+                .resolveDependency(TransactionCounters.class, DependencyResolver.SelectionStrategy.FIRST);
+            long commitsBefore = transactions.getNumberOfCommittedTransactions();
+
+            System.gc();
+            long start = System.nanoTime();
+            long peak;
+            try (LiveHeapPeak heap = new LiveHeapPeak()) {
+                PublicFilingLoader.main(new String[0]);
+                peak = heap.stop();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long commits = transactions.getNumberOfCommittedTransactions() - commitsBefore;
+            Map<String,Long> nodes = count(db, NODE_COUNTS);
+            Map<String,Long> relationships = count(db, RELATIONSHIP_COUNTS);
+
+            Properties results = new Properties();
+            double seconds = elapsed / 1e9;
+            results.setProperty(ELAPSED_MILLIS, String.valueOf(elapsed / 1000000));
+            results.setProperty(FILINGS_PER_SECOND, String.format(Locale.ROOT, "%.1f", nodes.getOrDefault("Filing", 0L) / seconds));
+            results.setProperty(COMMITS_PER_SECOND, String.format(Locale.ROOT, "%.1f", commits / seconds));
+            results.setProperty(PEAK_HEAP_MB, String.valueOf(peak / (1024 * 1024)));
+            nodes.forEach((label, n) -> results.setProperty(NODES_PREFIX + label, String.valueOf(n)));
+            relationships.forEach((type, n) -> results.setProperty(RELATIONSHIPS_PREFIX + type, String.valueOf(n)));
+            return results;
+        }
+    }
+
+    /**
+     * Compare the results against the baseline
+     * @param results this run's results
+     * @param baseline the baseline's results
+     * @return descriptions of each regression, empty when there are none
+     */
+    static private List<String> compare (Properties results,
+                                         Properties baseline) {
+
+        List<String> regressions = new ArrayList<>();
+
+        double current = Double.parseDouble(results.getProperty(FILINGS_PER_SECOND));
+        double expected = Double.parseDouble(baseline.getProperty(FILINGS_PER_SECOND, "0"));
+        if (current < expected * (1 - THRESHOLD)) {
+            regressions.add(String.format("%.1f filings/sec is %.0f%% below the baseline's %.1f, more than the %.0f%% allowed",
+                current, 100 * (1 - current / expected), expected, 100 * THRESHOLD));
+        }
+
+        //  Faster doesn't count if it's not loading the same graph.
+        Set<String> keys = new TreeSet<>(results.stringPropertyNames());
+        keys.addAll(baseline.stringPropertyNames());
+        for (String key : keys) {
+            if ((key.startsWith(NODES_PREFIX) || key.startsWith(RELATIONSHIPS_PREFIX)) &&
+                !Objects.equals(results.getProperty(key), baseline.getProperty(key))) {
+                regressions.add(String.format("%s is %s, the baseline's is %s", key, results.getProperty(key, "0"), baseline.getProperty(key, "0")));
+            }
+        }
+
+        return regressions;
+    }
+
+    /**
+     * Run a query returning names and counts
+     * @param db the database
+     * @param cypher query returning <code>name</code> and <code>count</code> columns
+     * @return count by name, ordered by name
+     */
+    static private Map<String,Long> count (GraphDatabaseService db,
+                                           String cypher) {
+
+        Map<String,Long> counts = new TreeMap<>();
+        try (Transaction tx = db.beginTx(); Result result = db.execute(cypher)) {
+            while (result.hasNext()) {
+                Map<String,Object> row = result.next();
+                counts.put((String) row.get("name"), ((Number) row.get("count")).longValue());
+            }
+            tx.success();
+        }
+        return counts;
+    }
+
+    /**
+     * Set a system property unless it's already been set, e.g. on the command line
+     * @param key the property
+     * @param value its default value
+     */
+    static private void setDefault (String key,
+                                    String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Read a properties file
+     * @param file the file
+     * @return its properties, null when it doesn't exist
+     * @throws IOException unable to read
+     */
+    static private Properties read (Path file)
+        throws IOException {
+
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    /**
+     * Harness main program
+     * @param args none, configured by system properties
+     * @throws Exception unable to generate, load or read and write the baseline
+     */
+    public static void main (String[] args)
+        throws Exception {
+
+        Path directory = Paths.get(DATA_DIRECTORY);
+        generate(directory);
+
+        Properties results = load(directory);
+        System.out.println ("Results:");
+        new TreeSet<>(results.stringPropertyNames()).forEach(key -> System.out.println ("  " + key + " = " + results.getProperty(key)));
+
+        Path baselineFile = Paths.get(BASELINE_FILE);
+        Properties baseline = read(baselineFile);
+        List<String> regressions = new ArrayList<>();
+        if (baseline == null) {
+            System.out.println ("No baseline " + baselineFile.toAbsolutePath() + ", record one with -Dharness.record=true");
+        } else {
+            regressions = compare(results, baseline);
+            regressions.forEach(regression -> System.out.println ("REGRESSION: " + regression));
+            if (regressions.isEmpty()) {
+                System.out.println (String.format("No regression against %s (%s filings/sec)", baselineFile, baseline.getProperty(FILINGS_PER_SECOND)));
+            }
+        }
+
+        if (RECORD) {
+            try (Writer writer = Files.newBufferedWriter(baselineFile, StandardCharsets.UTF_8)) {
+                results.store(writer, "Throughput baseline, " + System.getProperty("os.name") + " " +
+                    Runtime.getRuntime().availableProcessors() + " cpus, " + Runtime.getRuntime().maxMemory() / (1024 * 1024) + " MB heap");
+            }
+            System.out.println ("Recorded baseline " + baselineFile.toAbsolutePath());
+        }
+
+        System.exit(regressions.isEmpty() ? 0 : 1);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.harness;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Compares the loader's write paths on the same input: runs <code>ThroughputRegressionHarness</code> once per writer,
+ * each in its own JVM since the loader reads its configuration only once, then tabulates filings/sec, commits/sec,
+ * elapsed time and peak live heap, and checks every writer loaded the same graph.
+ *
+ * Usage: java -cp target/benchmarks.jar com.buddhadata.sandbox.neo4j.filings.harness.WriterComparison
+ *
+ * Configured by system properties:
+ * <pre>
+ *   harness.writers    writers to compare, in order, default batch,bolt (ogm is much slower)
+ *   harness.jvmArgs    extra arguments for each JVM, space-separated, e.g. -Xmx4g
+ * </pre>
+ * The <code>harness.*</code>, <code>filings.*</code> and JAXB properties are passed along to each run, so all runs
+ * load the same <code>harness.data</code>, generated by the first run when it doesn't exist.
+ *
+ * Exits with status 1 if a run failed or the writers loaded different graphs, 0 otherwise.
+ *
+ * @author Scott C Sosna
+ */
+public class WriterComparison {
+
+    //  Configuration, see above
+    static private final List<String> WRITERS = Arrays.asList(System.getProperty("harness.writers", "batch,bolt").split(","));
+    static private final String JVM_ARGS = System.getProperty("harness.jvmArgs", "");
+
+    //  Properties passed along to each run
+    static private final List<String> PASSED_PREFIXES = Arrays.asList("harness.", "filings.", "com.sun.xml.bind.");
+
+    //  Results compared, as recorded by the harness
+    static private final List<String> COLUMNS = Arrays.asList("filingsPerSecond", "commitsPerSecond", "elapsedMillis", "peakLiveHeapMB");
+    static private final String NODES_PREFIX = "nodes.";
+    static private final String RELATIONSHIPS_PREFIX = "relationships.";
+
+    /**
+     * Run the harness for a single writer
+     * @param writer the writer, as for -Dfilings.writer
+     * @param results file to which the harness records its results
+     * @return the results, null if the run failed
+     * @throws Exception unable to run the harness
+     */
+    static private Properties run (String writer,
+                                   Path results)
+        throws Exception {
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String arg : JVM_ARGS.trim().split("\\s+")) {
+            if (!arg.isEmpty()) {
+                command.add(arg);
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (PASSED_PREFIXES.stream().anyMatch(name::startsWith) && !name.equals("filings.writer") && !name.startsWith("harness.baseline") && !name.equals("harness.record")) {
+                command.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+        command.add("-Dfilings.writer=" + writer);
+        command.add("-Dharness.baseline=" + results);
+        command.add("-Dharness.record=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ThroughputRegressionHarness.class.getName());
+
+        //  Never compared against anything, only recorded, so the harness exits with 0 unless the run failed.
+        Files.deleteIfExists(results);
+        System.out.println ("Running the " + writer + " writer");
+        int status = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (status != 0 || !Files.exists(results)) {
+            System.out.println ("The " + writer + " writer's run failed with status " + status);
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(results, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    /**
+     * Comparison main program
+     * @param args none, configured by system properties
+     * @throws Exception unable to run the harness
+     */
+    public static void main (String[] args)
+        throws Exception {
+
+        Path directory = Files.createTempDirectory("writer-comparison");
+        Map<String,Properties> runs = new LinkedHashMap<>();
+        boolean failed = false;
+        for (String writer : WRITERS) {
+            Properties results = run(writer.trim(), directory.resolve(writer.trim() + ".properties"));
+            if (results == null) {
+                failed = true;
+            } else {
+                runs.put(writer.trim(), results);
+            }
+        }
+
+        //  Throughput side by side, relative to the first writer.
+        StringBuilder sb = new StringBuilder(String.format("%n%-10s", "writer"));
+        COLUMNS.forEach(column -> sb.append(String.format("%18s", column)));
+        sb.append(String.format("%12s", "speedup"));
+        Double first = null;
+        for (Map.Entry<String,Properties> run : runs.entrySet()) {
+            sb.append(String.format("%n%-10s", run.getKey()));
+            COLUMNS.forEach(column -> sb.append(String.format("%18s", run.getValue().getProperty(column, "-"))));
+            double filingsPerSecond = Double.parseDouble(run.getValue().getProperty(COLUMNS.get(0), "0"));
+            first = (first == null) ? filingsPerSecond : first;
+            sb.append(String.format(Locale.ROOT, "%11.2fx", (first > 0) ? filingsPerSecond / first : 0));
+        }
+        System.out.println (sb);
+
+        //  Faster doesn't count if it's not loading the same graph.
+        Set<String> keys = new TreeSet<>();
+        runs.values().forEach(results -> keys.addAll(results.stringPropertyNames()));
+        for (String key : keys) {
+            if (key.startsWith(NODES_PREFIX) || key.startsWith(RELATIONSHIPS_PREFIX)) {
+                Set<String> values = new TreeSet<>();
+                runs.values().forEach(results -> values.add(results.getProperty(key, "0")));
+                if (values.size() > 1) {
+                    StringBuilder differences = new StringBuilder();
+                    runs.forEach((writer, results) -> differences.append(' ').append(writer).append('=').append(results.getProperty(key, "0")));
+                    System.out.println ("DIFFERENT GRAPHS: " + key + differences);
+                    failed = true;
+                }
+            }
+        }
+        if (!failed) {
+            System.out.println ("All writers loaded the same graph");
+        }
+
+        for (File file : Objects.requireNonNull(directory.toFile().listFiles())) {
+            file.delete();
+        }
+        Files.deleteIfExists(directory);
+        System.exit(failed ? 1 : 0);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.jmh;
+
+import com.buddhadata.sandbox.neo4j.filings.cache.EntityCache;
+import com.buddhadata.sandbox.neo4j.filings.cache.LongNodeDictionary;
+import com.buddhadata.sandbox.neo4j.filings.cache.NodeDictionary;
+import com.buddhadata.sandbox.neo4j.filings.node.LobbyistKey;
+import com.google.common.cache.CacheLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up nodes the way the loader does, with the database left out: hits and misses in the entity caches, keyed by
+ * name and by lobbyist key, and lookups in the node dictionaries the caches load from once warmed up.  Misses load an
+ * empty value, as they do for a node that doesn't exist yet.
+ *
+ * @author Scott C Sosna
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheLookupBenchmark {
+
+    /**
+     * Number of distinct keys, all of which fit in the caches
+     */
+    static private final int KEYS = 4096;
+
+    /**
+     * Keys of client-like nodes, cached and in the dictionary
+     */
+    private String[] names;
+
+    /**
+     * Keys cycled through a cache far smaller than their number, so every lookup misses
+     */
+    private String[] absentNames;
+
+    /**
+     * Keys of lobbyists, cached
+     */
+    private LobbyistKey[] lobbyistKeys;
+
+    /**
+     * Keys of registrants, in the dictionary
+     */
+    private long[] registrantIds;
+
+    private EntityCache<String,Object> nameCache;
+    private EntityCache<LobbyistKey,Object> lobbyistCache;
+    private EntityCache<String,Object> missCache;
+    private NodeDictionary<String> nameDictionary;
+    private LongNodeDictionary registrantDictionary;
+
+    /**
+     * Next key to use
+     */
+    private int next;
+
+    /**
+     * Fill the caches and dictionaries
+     */
+    @Setup
+    public void setUp () {
+
+        names = new String[KEYS];
+        absentNames = new String[KEYS];
+        lobbyistKeys = new LobbyistKey[KEYS];
+        registrantIds = new long[KEYS];
+
+        //  Same sizes as the loader's client, lobbyist and government entity caches, only the last smaller than the keys.
+        nameCache = new EntityCache<>("Client", 20000, 1, new EmptyLoader<>());
+        lobbyistCache = new EntityCache<>("Lobbyist", 20000, 1, new EmptyLoader<>());
+        missCache = new EntityCache<>("GovernmentEntity", 250, 1, new EmptyLoader<>());
+        nameDictionary = new NodeDictionary<>("Client");
+        registrantDictionary = new LongNodeDictionary("Registrant", KEYS);
+
+        for (int i = 0; i < KEYS; i++) {
+            names[i] = "CLIENT " + i;
+            absentNames[i] = "ABSENT CLIENT " + i;
+            lobbyistKeys[i] = new LobbyistKey("FIRST" + (i % 4), "SURNAME" + i);
+            registrantIds[i] = 400000L + i * 7;
+
+            nameCache.put(names[i], i);
+            lobbyistCache.put(lobbyistKeys[i], i);
+            nameDictionary.put(names[i], (long) i);
+            registrantDictionary.put(registrantIds[i], (long) i);
+        }
+    }
+
+    /**
+     * Find a cached node by name
+     * @return the node
+     */
+    @Benchmark
+    public Object cacheHitByName () {
+        return nameCache.find(names[advance()]);
+    }
+
+    /**
+     * Find a cached lobbyist, which hashes the key
+     * @return the node
+     */
+    @Benchmark
+    public Object cacheHitByLobbyistKey () {
+        return lobbyistCache.find(lobbyistKeys[advance()]);
+    }
+
+    /**
+     * Miss for a node that doesn't exist, then cache it as created, the find-or-create sequence.  The key has been
+     * evicted by the time it comes round again.
+     * @return the node
+     */
+    @Benchmark
+    public Object cacheMissThenPut () {
+        String key = absentNames[advance()];
+        Object found = missCache.find(key);
+        if (found == null) {
+            found = key;
+            missCache.put(key, found);
+        }
+        return found;
+    }
+
+    /**
+     * Find a node's id by name in the dictionary
+     * @return the id
+     */
+    @Benchmark
+    public Long dictionaryByName () {
+        return nameDictionary.get(names[advance()]);
+    }
+
+    /**
+     * Find a registrant's node id in the primitive dictionary
+     * @return the id
+     */
+    @Benchmark
+    public long dictionaryByRegistrantId () {
+        return registrantDictionary.get(registrantIds[advance()]);
+    }
+
+    /**
+     * Move on to the next key
+     * @return index of the key to use
+     */
+    private int advance () {
+        int current = next;
+        next = (next + 1) & (KEYS - 1);
+        return current;
+    }
+
+    /**
+     * Loads every key as a node that doesn't exist
+     */
+    static private class EmptyLoader<K> extends CacheLoader<K,Optional<Object>> {
+        public Optional<Object> load (K key) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.jmh;
+
+import com.buddhadata.sandbox.neo4j.filings.node.*;
+import generated.FilingType;
+import generated.LobbyistType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning filings read from the source data into nodes, one filing's worth per operation and cycling through many
+ * filings so the work isn't the same string every time: the client's and registrant's string normalization, splitting
+ * lobbyist names into their key, hashing the lobbyist keys as each cache lookup does, and constructing the filing along
+ * with its sets of related nodes.
+ *
+ * @author Scott C Sosna
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NodeCreationBenchmark {
+
+    /**
+     * Number of distinct filings cycled through
+     */
+    static private final int FILINGS = 4096;
+
+    /**
+     * The filings
+     */
+    private List<FilingType> filings;
+
+    /**
+     * Key of every filing's lobbyists, for hashing
+     */
+    private LobbyistKey[][] lobbyistKeys;
+
+    /**
+     * Client of every filing, for constructing filings
+     */
+    private Client[] clients;
+
+    /**
+     * Next filing to use
+     */
+    private int next;
+
+    /**
+     * Create the filings
+     */
+    @Setup
+    public void setUp () {
+
+        filings = SampleFilings.create(FILINGS).getFiling();
+        lobbyistKeys = new LobbyistKey[FILINGS][];
+        clients = new Client[FILINGS];
+        for (int i = 0; i < FILINGS; i++) {
+            FilingType ft = filings.get(i);
+            List<LobbyistType> lobbyists = ft.getLobbyists().getLobbyist();
+            lobbyistKeys[i] = new LobbyistKey[lobbyists.size()];
+            for (int l = 0; l < lobbyists.size(); l++) {
+                lobbyistKeys[i][l] = NodeFactory.lobbyistKey(lobbyists.get(l));
+            }
+            clients[i] = NodeFactory.client(ft.getClient());
+        }
+    }
+
+    /**
+     * Create a client, normalizing its strings
+     * @return the client
+     */
+    @Benchmark
+    public Client normalizeClient () {
+        return NodeFactory.client(filings.get(advance()).getClient());
+    }
+
+    /**
+     * Create a registrant, normalizing its strings (the address has embedded line breaks)
+     * @return the registrant
+     */
+    @Benchmark
+    public Registrant normalizeRegistrant () {
+        return NodeFactory.registrant(filings.get(advance()).getRegistrant());
+    }
+
+    /**
+     * Split each of a filing's lobbyist names into its key
+     * @param blackhole receives each key
+     */
+    @Benchmark
+    public void splitLobbyistNames (Blackhole blackhole) {
+        for (LobbyistType lobbyist : filings.get(advance()).getLobbyists().getLobbyist()) {
+            blackhole.consume(NodeFactory.lobbyistKey(lobbyist));
+        }
+    }
+
+    /**
+     * Hash each of a filing's lobbyist keys, which isn't cached so happens on every lookup
+     * @return combined hash
+     */
+    @Benchmark
+    public int hashLobbyistKeys () {
+        int hash = 0;
+        for (LobbyistKey key : lobbyistKeys[advance()]) {
+            hash += key.hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * Construct a filing, including its sets of government entities, issues and lobbyists
+     * @return the filing
+     */
+    @Benchmark
+    public Filing constructFiling () {
+        int i = advance();
+        return NodeFactory.filing(filings.get(i), clients[i]);
+    }
+
+    /**
+     * Move on to the next filing
+     * @return index of the filing to use
+     */
+    private int advance () {
+        int current = next;
+        next = (next + 1) & (FILINGS - 1);
+        return current;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.jmh;
+
+import com.buddhadata.sandbox.neo4j.filings.parse.IsoDateTime;
+import org.openjdk.jmh.annotations.*;
+
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting a filing's received date, from the attribute's characters to what's stored on the <code>Filing</code>:
+ * through JAXB's <code>XMLGregorianCalendar</code> and a <code>GregorianCalendar</code> to a <code>Date</code> as the
+ * loader once did, from the calendar's fields to a <code>LocalDateTime</code>, and parsed straight from the characters
+ * as the scanner does.  Run with <code>-prof gc</code> to see what each allocates.
+ *
+ * @author Scott C Sosna
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReceivedDateBenchmark {
+
+    /**
+     * Number of distinct dates, a power of two
+     */
+    static private final int DATES = 1024;
+
+    /**
+     * The dates' characters, as found in the attribute
+     */
+    private char[][] dates;
+
+    /**
+     * Creates calendars as JAXB does
+     */
+    private DatatypeFactory datatypes;
+
+    /**
+     * Next date to use
+     */
+    private int next;
+
+    /**
+     * Create the dates, formatted as the Senate's are
+     * @throws Exception no XML datatype factory
+     */
+    @Setup
+    public void setUp ()
+        throws Exception {
+
+        datatypes = DatatypeFactory.newInstance();
+        dates = new char[DATES][];
+        for (int i = 0; i < DATES; i++) {
+            dates[i] = String.format("2019-04-%02dT10:%02d:%02d.%03d", 1 + i % 28, i % 60, (i / 60) % 60, i % 1000).toCharArray();
+        }
+    }
+
+    /**
+     * Unmarshal the date as JAXB does and convert it to a <code>Date</code>
+     * @return the date
+     */
+    @Benchmark
+    public Date calendarToDate () {
+        return datatypes.newXMLGregorianCalendar(new String(dates[advance()])).toGregorianCalendar().getTime();
+    }
+
+    /**
+     * Unmarshal the date as JAXB does and convert its fields to a <code>LocalDateTime</code>, the path filings read by
+     * JAXB or StAX take
+     * @return the date
+     */
+    @Benchmark
+    public LocalDateTime calendarFieldsToLocalDateTime () {
+        XMLGregorianCalendar received = datatypes.newXMLGregorianCalendar(new String(dates[advance()]));
+        return IsoDateTime.toLocalDateTime(IsoDateTime.toLocalMillis(received));
+    }
+
+    /**
+     * Parse the characters in place, the path filings read by the scanner take
+     * @return milliseconds on the local timeline
+     */
+    @Benchmark
+    public long parseCharacters () {
+        char[] date = dates[advance()];
+        return IsoDateTime.parse(date, 0, date.length);
+    }
+
+    /**
+     * Parse the characters in place and create the <code>LocalDateTime</code> stored on the filing
+     * @return the date
+     */
+    @Benchmark
+    public LocalDateTime parseCharactersToLocalDateTime () {
+        char[] date = dates[advance()];
+        return IsoDateTime.toLocalDateTime(IsoDateTime.parse(date, 0, date.length));
+    }
+
+    /**
+     * Move on to the next date
+     * @return index of the date to use
+     */
+    private int advance () {
+        int current = next;
+        next = (next + 1) & (DATES - 1);
+        return current;
+    }
+}
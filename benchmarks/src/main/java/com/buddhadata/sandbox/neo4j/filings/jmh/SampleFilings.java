@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.jmh;
+
+import generated.*;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generated filings shaped like the Senate downloads, both as objects and as the UTF-16 XML document they'd be read
+ * from, so the benchmarks have realistic input without needing the real files.  The same count always produces the
+ * same filings.
+ *
+ * @author Scott C Sosna
+ */
+public final class SampleFilings {
+
+    /**
+     * Constructor, static methods only
+     */
+    private SampleFilings () {
+        return;
+    }
+
+    /**
+     * Create filings
+     * @param count number of filings
+     * @return the filings
+     */
+    public static PublicFilings create (int count) {
+
+        DatatypeFactory datatypes;
+        try {
+            datatypes = DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException("No XML datatype factory", e);
+        }
+
+        PublicFilings filings = new PublicFilings();
+        for (int i = 0; i < count; i++) {
+            FilingType ft = new FilingType();
+            ft.setID(String.format("%08X-BENCH-%08d", i, i));
+            ft.setYear((short) 2019);
+            ft.setReceived(datatypes.newXMLGregorianCalendar(String.format("2019-04-%02dT10:%02d:%02d.%03d", 1 + i % 28, i % 60, (i / 60) % 60, i % 1000)));
+            ft.setAmount(String.valueOf(10000 + (i % 500) * 1000));
+            ft.setType("FIRST QUARTER REPORT");
+            ft.setPeriod("1st Quarter (Jan 1 - Mar 31)");
+
+            RegistrantType registrant = new RegistrantType();
+            registrant.setRegistrantID(400000L + i % 3000);
+            registrant.setRegistrantName("REGISTRANT " + (i % 3000));
+            registrant.setGeneralDescription("Government relations consulting");
+            registrant.setAddress((i % 3000) + " K Street NW\r\nWashington, DC 20006");
+            registrant.setRegistrantCountry("USA");
+            registrant.setRegistrantPPBCountry("USA");
+            ft.setRegistrant(registrant);
+
+            ClientType client = new ClientType();
+            client.setClientName("CLIENT " + (i % 20000) + " ");
+            client.setGeneralDescription("Manufacturing\nand distribution");
+            client.setClientID((long) (i % 20000));
+            client.setSelfFiler("FALSE");
+            client.setContactFullname("CONTACT " + (i % 20000));
+            client.setIsStateOrLocalGov("FALSE");
+            client.setClientCountry("USA");
+            client.setClientPPBCountry("USA");
+            client.setClientState("VA");
+            client.setClientPPBState("VA");
+            ft.setClient(client);
+
+            LobbyistsType lobbyists = new LobbyistsType();
+            for (int l = 0; l < 1 + i % 4; l++) {
+                LobbyistType lobbyist = new LobbyistType();
+                lobbyist.setLobbyistName("Surname" + ((i + l) % 15000) + ", First" + l);
+                lobbyist.setLobbyistCoveredGovPositionIndicator((l % 3 == 0) ? CoveredEnum.COVERED : CoveredEnum.NOT_COVERED);
+                lobbyist.setOfficialPosition((l % 3 == 0) ? "Legislative Assistant" : "");
+                lobbyist.setActivityInformation("");
+                lobbyists.getLobbyist().add(lobbyist);
+            }
+            ft.setLobbyists(lobbyists);
+
+            GovernmentEntitiesType entities = new GovernmentEntitiesType();
+            for (int g = 0; g < 1 + i % 3; g++) {
+                GovernmentEntityType entity = new GovernmentEntityType();
+                entity.setGovEntityName("ENTITY " + ((i + g) % 250));
+                entities.getGovernmentEntity().add(entity);
+            }
+            ft.setGovernmentEntities(entities);
+
+            IssuesType issues = new IssuesType();
+            for (int s = 0; s < 1 + i % 2; s++) {
+                IssueType issue = new IssueType();
+                issue.setCode("ISSUE " + ((i + s) % 80));
+                issue.setSpecificIssue("Specific lobbying issue text for filing " + i);
+                issues.getIssue().add(issue);
+            }
+            ft.setIssues(issues);
+
+            filings.getFiling().add(ft);
+        }
+
+        return filings;
+    }
+
+    /**
+     * Create filings as the UTF-16 XML document they're read from
+     * @param context JAXB context for the generated filing classes
+     * @param count number of filings
+     * @return the document's bytes
+     * @throws JAXBException unable to marshal the filings
+     */
+    public static byte[] document (JAXBContext context,
+                                   int count)
+        throws JAXBException {
+
+        Marshaller marshaller = context.createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-16");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_16)) {
+            marshaller.marshal(create(count), writer);
+        } catch (IOException e) {
+            throw new JAXBException("Unable to write document", e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.jmh;
+
+import com.buddhadata.sandbox.neo4j.filings.parse.FilingsScanner;
+import com.buddhadata.sandbox.neo4j.filings.parse.StreamingFilingsReader;
+import generated.PublicFilings;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a UTF-16 filings document from bytes already in memory, i.e., everything the loader does before it has
+ * filings to turn into nodes: whole-document JAXB unmarshalling of <code>PublicFilings</code>, the StAX streaming
+ * reader unmarshalling each filing on its own, and the attribute scanner.  Reported per document.
+ *
+ * @author Scott C Sosna
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dcom.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize=true")
+@State(Scope.Thread)
+public class UnmarshalBenchmark {
+
+    /**
+     * Filings in the document, the Senate's files have up to a few thousand
+     */
+    @Param({"1000"})
+    private int filings;
+
+    /**
+     * The document
+     */
+    private byte[] document;
+
+    /**
+     * Whole-document unmarshaller, as the loader uses when not streaming
+     */
+    private Unmarshaller unmarshaller;
+
+    /**
+     * Streaming reader, as the loader uses by default
+     */
+    private StreamingFilingsReader streamingReader;
+
+    /**
+     * Attribute scanner, as the loader uses with -Dfilings.reader=scan
+     */
+    private FilingsScanner scanner;
+
+    /**
+     * Create the document and readers
+     * @throws Exception unable to create either
+     */
+    @Setup
+    public void setUp ()
+        throws Exception {
+
+        JAXBContext context = JAXBContext.newInstance("generated");
+        document = SampleFilings.document(context, filings);
+        unmarshaller = context.createUnmarshaller();
+        streamingReader = new StreamingFilingsReader(context);
+        scanner = new FilingsScanner();
+    }
+
+    /**
+     * Unmarshal the entire document at once
+     * @return the filings
+     * @throws Exception unable to unmarshal
+     */
+    @Benchmark
+    public PublicFilings jaxbDocument ()
+        throws Exception {
+        try (Reader reader = utf16()) {
+            return (PublicFilings) unmarshaller.unmarshal(reader);
+        }
+    }
+
+    /**
+     * Unmarshal each filing as it's read
+     * @param blackhole receives each filing
+     * @return number of filings read
+     * @throws Exception unable to unmarshal
+     */
+    @Benchmark
+    public int staxStreaming (Blackhole blackhole)
+        throws Exception {
+        try (Reader reader = utf16()) {
+            return streamingReader.read(reader, blackhole::consume);
+        }
+    }
+
+    /**
+     * Scan each filing's attributes straight from the UTF-16 bytes
+     * @param blackhole receives each filing
+     * @return number of filings read
+     * @throws Exception unable to scan
+     */
+    @Benchmark
+    public int attributeScanner (Blackhole blackhole)
+        throws Exception {
+        return scanner.read(new ByteArrayInputStream(document), blackhole::consume);
+    }
+
+    /**
+     * Decode the document, the same way the loader does
+     * @return character stream of the document
+     */
+    private Reader utf16 () {
+        return new InputStreamReader(new ByteArrayInputStream(document), StandardCharsets.UTF_16);
+    }
+}
@@ -4,29 +4,63 @@
 
 package com.buddhadata.sandbox.neo4j.filings;
 
+import com.buddhadata.sandbox.neo4j.filings.cache.EntityCache;
+import com.buddhadata.sandbox.neo4j.filings.cache.LongNodeDictionary;
+import com.buddhadata.sandbox.neo4j.filings.cache.NodeDictionary;
+import com.buddhadata.sandbox.neo4j.filings.export.ImportCsvWriter;
+import com.buddhadata.sandbox.neo4j.filings.jfr.CacheLoadEvent;
+import com.buddhadata.sandbox.neo4j.filings.jfr.FilingProcessedEvent;
+import com.buddhadata.sandbox.neo4j.filings.jfr.ZipEntryParsedEvent;
+import com.buddhadata.sandbox.neo4j.filings.manifest.LoadManifest;
+import com.buddhadata.sandbox.neo4j.filings.metrics.Counter;
+import com.buddhadata.sandbox.neo4j.filings.metrics.MetricsRegistry;
+import com.buddhadata.sandbox.neo4j.filings.metrics.MetricsReporter;
+import com.buddhadata.sandbox.neo4j.filings.metrics.Timer;
 import com.buddhadata.sandbox.neo4j.filings.node.*;
-import com.google.common.cache.CacheBuilder;
+import com.buddhadata.sandbox.neo4j.filings.parse.FilingsScanner;
+import com.buddhadata.sandbox.neo4j.filings.parse.StreamingFilingsReader;
+import com.buddhadata.sandbox.neo4j.filings.pipeline.Pipeline;
+import com.buddhadata.sandbox.neo4j.filings.session.MappingContextMonitor;
+import com.buddhadata.sandbox.neo4j.filings.sink.*;
+import com.buddhadata.sandbox.neo4j.filings.source.EntryBufferPool;
+import com.buddhadata.sandbox.neo4j.filings.source.EntryContents;
+import com.buddhadata.sandbox.neo4j.filings.source.ZipArchive;
+import com.buddhadata.sandbox.neo4j.filings.write.BatchFilingWriter;
+import com.buddhadata.sandbox.neo4j.filings.write.BoltFilingWriter;
+import com.buddhadata.sandbox.neo4j.filings.write.TimeTree;
 import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.Striped;
 import generated.*;
+import org.neo4j.driver.v1.AuthTokens;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
 import org.neo4j.ogm.config.Configuration;
-import org.neo4j.ogm.context.MappedRelationship;
-import org.neo4j.ogm.context.MappingContext;
-import org.neo4j.ogm.session.Neo4jSession;
 import org.neo4j.ogm.session.Session;
 import org.neo4j.ogm.session.SessionFactory;
-import org.neo4j.ogm.transaction.Transaction;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import java.io.*;
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 /**
  * @author Scott C Sosna
@@ -36,48 +70,336 @@ public class PublicFilingLoader {
     /**
      * Cache for tracking what clients and retrieving from database only when necessary.
      */
-    private LoadingCache<String,Client> clientCache;
+    private EntityCache<String,Client> clientCache;
 
     /**
      * Cache for tracking what government entities already exist and retrieving from database only when necessary.
      */
-    private LoadingCache<String,GovernmentEntity> gentCache;
+    private EntityCache<String,GovernmentEntity> gentCache;
 
     /**
      * Cache for tracking what issues already exist and retrieving from database only when necessary.
      */
-    private LoadingCache<String, Issue> issueCache;
+    private EntityCache<String,Issue> issueCache;
 
     /**
      * Cache for tracking what lobbyists already exist and retrieving from database only when necessary.
      */
-    private LoadingCache<LobbyistKey, Lobbyist> lobbyistCache;
+    private EntityCache<LobbyistKey,Lobbyist> lobbyistCache;
 
     /**
-     * Cacghe for tracking what registrants already exist and retrieving from database only when necessary.
+     * Cache for tracking what registrants already exist and retrieving from database only when necessary.  Only when
+     * saving through the OGM, the batch writer finds registrants' ids in the registrant dictionary.
      */
-    private LoadingCache<Long, Registrant> registrantCache;
+    private EntityCache<Long,Registrant> registrantCache;
+
+    //  Every existing node's internal id by its identifying key, once warmed up the caches load from these instead of
+    //  querying the database per key.  Registrants are keyed by their numeric ID, so held without boxing; clients are
+    //  keyed by name since the client ID isn't unique.
+    private final NodeDictionary<String> clientIds = new NodeDictionary<>("Client");
+    private final NodeDictionary<String> gentIds = new NodeDictionary<>("GovernmentEntity");
+    private final NodeDictionary<String> issueIds = new NodeDictionary<>("Issue");
+    private final NodeDictionary<LobbyistKey> lobbyistIds = new NodeDictionary<>("Lobbyist");
+    private final LongNodeDictionary registrantIds = new LongNodeDictionary("Registrant", (int) Math.min(REGISTRANT_CACHE_SIZE, 1 << 20));
+
+    //  Where the time goes and what's created, reported periodically while loading.  Finding or creating a node
+    //  includes the time spent saving it when created.
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final Timer zipFileTimer = metrics.timer("zip_file");
+    private final Timer zipReadTimer = metrics.timer("zip_read");
+    private final Timer entryTimer = metrics.timer("entry");
+    private final Timer unmarshalTimer = metrics.timer("unmarshal");
+    private final Timer findClientTimer = metrics.timer("find_or_create", "label", "Client");
+    private final Timer findEntityTimer = metrics.timer("find_or_create", "label", "GovernmentEntity");
+    private final Timer findIssueTimer = metrics.timer("find_or_create", "label", "Issue");
+    private final Timer findLobbyistTimer = metrics.timer("find_or_create", "label", "Lobbyist");
+    private final Timer findRegistrantTimer = metrics.timer("find_or_create", "label", "Registrant");
+    private final Timer saveTimer = metrics.timer("session_save");
+    private final Counter filingsRead = metrics.counter("filings_read");
+    private final Counter filingsSkipped = metrics.counter("filings_skipped");
+    private final Counter clientsCreated = metrics.counter("nodes_created", "label", "Client");
+    private final Counter entitiesCreated = metrics.counter("nodes_created", "label", "GovernmentEntity");
+    private final Counter filingsCreated = metrics.counter("nodes_created", "label", "Filing");
+    private final Counter issuesCreated = metrics.counter("nodes_created", "label", "Issue");
+    private final Counter lobbyistsCreated = metrics.counter("nodes_created", "label", "Lobbyist");
+    private final Counter registrantsCreated = metrics.counter("nodes_created", "label", "Registrant");
 
     /**
-     * Neo4J session for the entire processing.  It's a member variable to allow easy access to it from whereever, in
-     * particular when using the Guava caching to retrieve values.
+     * Factory from which each processing thread opens its own session.
      */
-    private final Session session;
+    private final SessionFactory sessionFactory;
 
     /**
-     * Unmarshaller to use.  Unmarshallers are not thread-safe but we are single-threaded here
+     * Buckets shared by every thread's writer, null without a time tree.
      */
-    private Unmarshaller unmarshaller;
+    private final TimeTree timeTree;
 
     /**
-     * Level of concurrency, how many threads in executor are running at once
+     * Neo4J session for each processing thread, sessions are not thread-safe.  It's a member variable to allow easy
+     * access to it from whereever, in particular when using the Guava caching to retrieve values.
      */
-    static private final int CONCURRENCY_THREAD_COUNT = 1;
+    private final ThreadLocal<Session> sessions;
 
-    //  Configuration info for connecting to the Neo4J database
-    static private final String SERVER_URI = "bolt://127.0.0.1";
-    static private final String SERVER_USERNAME = "neo4j";
-    static private final String SERVER_PASSWORD = "password";
+    /**
+     * Unmarshaller for each processing thread, unmarshallers are not thread-safe.
+     */
+    private final ThreadLocal<Unmarshaller> unmarshallers;
+
+    /**
+     * Streaming reader for each processing thread, used for zip entries when not unmarshalling entire documents.
+     */
+    private final ThreadLocal<StreamingFilingsReader> streamingReaders;
+
+    /**
+     * Attribute scanner for each processing thread, used for zip entries instead of the streaming reader when enabled.
+     */
+    private final ThreadLocal<FilingsScanner> scanners = ThreadLocal.withInitial(() -> new FilingsScanner(unmarshalTimer));
+
+    /**
+     * Writes each processing thread's filings in batches, empty when each filing is saved and committed individually
+     * through the OGM.
+     */
+    private final ThreadLocal<BatchFilingWriter> batchWriters;
+
+    /**
+     * Driver used when writing filings without the OGM, null otherwise.
+     */
+    private final Driver driver;
+
+    /**
+     * Writes each processing thread's filings straight from the source data, empty unless writing without the OGM.
+     */
+    private final ThreadLocal<BoltFilingWriter> boltWriters;
+
+    /**
+     * Keeps each processing thread's session from tracking ever more nodes and relationships.
+     */
+    private final ThreadLocal<MappingContextMonitor> sessionMonitors;
+
+    /**
+     * Buffers for the zip entries handed from the pipeline's read stage to its decode stage, enough for every entry
+     * being read, queued or decoded at once
+     */
+    private final EntryBufferPool entryBuffers = new EntryBufferPool(READ_THREADS + DECODE_QUEUE + DECODE_THREADS, BUFFER_SPILL_BYTES,
+        (BUFFER_DIRECTORY != null) ? Paths.get(BUFFER_DIRECTORY) : null, metrics);
+
+    /**
+     * Receives the resolved filings, per-thread since the Neo4J sink writes with the thread's session
+     */
+    private final ThreadLocal<FilingSink> sinks;
+
+    //  Sinks shared by all threads, null unless configured
+    private final InMemoryGraphSink memorySink;
+    private final NullFilingSink nullSink;
+
+    /**
+     * Zip entries already loaded, null unless loading incrementally.
+     */
+    private final LoadManifest manifest;
+
+    /**
+     * Serializes creating a node for the same key on multiple threads, otherwise two threads missing in the cache at
+     * the same time would each create the node.
+     */
+    private final Striped<Lock> creationLocks;
+
+    /**
+     * Level of concurrency, how many threads in executor are running at once.  Each thread processes an entire zip file
+     * with its own session, override with -Dfilings.threads=n
+     */
+    static private final int CONCURRENCY_THREAD_COUNT = Math.max(1, Integer.getInteger("filings.threads", 1));
+
+    /**
+     * Is ingestion split into stages (read, decode, resolve, write) each with its own threads and connected by bounded
+     * queues, rather than each thread processing entire zip files?  Enable with -Dfilings.mode=pipeline
+     */
+    static private final boolean PIPELINE = "pipeline".equalsIgnoreCase(System.getProperty("filings.mode"));
+
+    /**
+     * Instead of loading the database, are the files read and written as CSV files for an offline
+     * <code>neo4j-admin import</code>?  Enable with -Dfilings.mode=csv
+     */
+    static private final boolean CSV_EXPORT = "csv".equalsIgnoreCase(System.getProperty("filings.mode"));
+
+    /**
+     * Directory the CSV files are written to, override with -Dfilings.csv.dir=path
+     */
+    static private final String CSV_DIRECTORY = System.getProperty("filings.csv.dir", "import");
+
+    //  Threads for each pipeline stage, override with -Dfilings.<stage>.threads=n
+    static private final int READ_THREADS = Integer.getInteger("filings.read.threads", 1);
+    static private final int DECODE_THREADS = Integer.getInteger("filings.decode.threads", 1);
+    static private final int RESOLVE_THREADS = Integer.getInteger("filings.resolve.threads", 1);
+    static private final int WRITE_THREADS = Integer.getInteger("filings.write.threads", 1);
+
+    //  Depth of each pipeline stage's input queue, override with -Dfilings.<stage>.queue=n.  The decode queue holds
+    //  entire zip entries, the resolve and write queues individual filings.
+    static private final int DECODE_QUEUE = Integer.getInteger("filings.decode.queue", 2);
+    static private final int RESOLVE_QUEUE = Integer.getInteger("filings.resolve.queue", 1000);
+    static private final int WRITE_QUEUE = Integer.getInteger("filings.write.queue", 1000);
+
+    /**
+     * Zip entries larger than this many bytes are handed between pipeline stages in a temporary file rather than in
+     * memory, so the heap used is bounded whatever the size of the entries; override with -Dfilings.buffer.spill=bytes
+     * and the temporary files' directory with -Dfilings.buffer.dir=path
+     */
+    static private final long BUFFER_SPILL_BYTES = Long.getLong("filings.buffer.spill", 64L << 20);
+    static private final String BUFFER_DIRECTORY = System.getProperty("filings.buffer.dir");
+
+    /**
+     * How often the pipeline's statistics are reported while running, override with -Dfilings.pipeline.report=seconds
+     */
+    static private final long PIPELINE_REPORT_SECONDS = Long.getLong("filings.pipeline.report", 10);
+
+    /**
+     * How often the metrics are reported while loading, override with -Dfilings.metrics.report=seconds (0 to only
+     * report once loaded)
+     */
+    static private final long METRICS_REPORT_SECONDS = Long.getLong("filings.metrics.report", 30);
+
+    /**
+     * File to which the metrics are written with every report, none by default, override with
+     * -Dfilings.metrics.file=path.  JSON when the name ends .json, otherwise Prometheus text format.
+     */
+    static private final String METRICS_FILE = System.getProperty("filings.metrics.file");
+
+    /**
+     * When processing on multiple threads, the nodes found in the caches are shared between threads, so any node
+     * created must be committed before it's visible to other threads.  Always the case for the pipeline, filings are
+     * resolved and written on different threads.
+     */
+    static private final boolean SHARED_NODES = CONCURRENCY_THREAD_COUNT > 1 || PIPELINE;
+
+    /**
+     * Number of threads finding and creating nodes through the caches at the same time.
+     */
+    static private final int CACHE_CONCURRENCY = Math.max(1, PIPELINE ? RESOLVE_THREADS : CONCURRENCY_THREAD_COUNT);
+
+    /**
+     * Directory holding the quarterly files, e.g. generated by <code>FilingsGenerator</code>, override with
+     * -Dfilings.dir=path; by default they're classpath resources.
+     */
+    static private final String ZIP_DIRECTORY = System.getProperty("filings.dir");
+
+    /**
+     * The quarterly files as paths or globs, comma-separated, e.g., -Dfilings.files=/data/lobbying/*.zip; otherwise
+     * the files of interest below.
+     */
+    static private final String ZIP_PATHS = System.getProperty("filings.files");
+
+    /**
+     * The quarterly files of interest, found as classpath resources unless there's a zip directory.
+     */
+    static private final String[] ZIP_FILES = {
+        "2015_1.zip", "2015_2.zip", "2015_3.zip", "2015_4.zip",
+        "2016_1.zip", "2016_2.zip", "2016_3.zip", "2016_4.zip",
+        "2017_1.zip", "2017_2.zip", "2017_3.zip", "2017_4.zip",
+        "2018_1.zip", "2018_2.zip", "2018_3.zip", "2018_4.zip",
+        "2019_1.zip", "2019_2.zip", "2019_3.zip"
+    };
+
+    /**
+     * Are zip entries streamed one filing at a time (StAX) or unmarshalled as entire documents (JAXB)?  Streaming
+     * keeps heap use flat regardless of file size, override with -Dfilings.reader=jaxb
+     */
+    static private final boolean STREAMING = !"jaxb".equalsIgnoreCase(System.getProperty("filings.reader", "stax"));
+
+    /**
+     * When streaming, are filings read by scanning their attributes straight from the UTF-16 bytes rather than with
+     * StAX and JAXB?  Faster, but understands only what filings.xsd needs; enable with -Dfilings.reader=scan
+     */
+    static private final boolean SCANNING = "scan".equalsIgnoreCase(System.getProperty("filings.reader", "stax"));
+
+    /**
+     * Are filings written straight from the source data with the Neo4J driver, bypassing the OGM and the node caches
+     * entirely?  Single-threaded only, enable with -Dfilings.writer=bolt
+     */
+    static private final boolean BOLT_WRITES = "bolt".equalsIgnoreCase(System.getProperty("filings.writer", "batch"));
+
+    /**
+     * Are filings written in batches of UNWIND statements or saved/committed one at a time through the OGM?  Batches
+     * are far fewer round trips, override with -Dfilings.writer=ogm
+     */
+    static private final boolean BATCH_WRITES = !BOLT_WRITES && !"ogm".equalsIgnoreCase(System.getProperty("filings.writer", "batch"));
+
+    /**
+     * Where the resolved filings go, comma-separated: neo4j (default), memory to keep the graph in memory or null to
+     * throw them away and measure nothing but reading and resolving.  With more than one, e.g., neo4j,memory, each
+     * filing goes to all of them in turn.  Without neo4j there's no database, the nodes are resolved in memory.
+     */
+    static private final List<String> SINKS = Arrays.asList(System.getProperty("filings.sink", "neo4j").trim().toLowerCase().split("\\s*,\\s*"));
+    static private final List<String> KNOWN_SINKS = Arrays.asList("neo4j", "memory", "null");
+    static private final boolean DATABASE = SINKS.contains("neo4j");
+
+    /**
+     * Number of filings written per transaction when batching, override with -Dfilings.batchSize=n
+     */
+    static private final int BATCH_SIZE = Integer.getInteger("filings.batchSize", 1000);
+
+    /**
+     * Is the session cleared before every filing, rather than replaced once its MappingContext has grown too large?
+     * Override with -Dfilings.session.clear=filing|threshold, threshold by default.
+     */
+    static private final boolean CLEAR_EVERY_FILING = "filing".equalsIgnoreCase(System.getProperty("filings.session.clear", "threshold"));
+
+    /**
+     * Limits on the MappingContext, sampled every so many filings, beyond which the session is replaced.  Override with
+     * -Dfilings.session.maxNodes=count, -Dfilings.session.maxRelationships=count, -Dfilings.session.maxHeap=fraction
+     * and -Dfilings.session.sample=filings.
+     */
+    static private final long SESSION_MAX_NODES = Long.getLong("filings.session.maxNodes", 250);
+    static private final long SESSION_MAX_RELATIONSHIPS = Long.getLong("filings.session.maxRelationships", 1000);
+    static private final double SESSION_MAX_HEAP = Double.parseDouble(System.getProperty("filings.session.maxHeap", "0.75"));
+    static private final int SESSION_SAMPLE = Integer.getInteger("filings.session.sample", 10);
+
+    /**
+     * Is the database loaded incrementally, keeping what's already there and skipping the zip entries already loaded
+     * rather than purging and loading everything?  Enable with -Dfilings.incremental=true, single-threaded only.
+     */
+    static private final boolean INCREMENTAL = Boolean.getBoolean("filings.incremental");
+
+    /**
+     * Manifest of the zip entries loaded when loading incrementally, override with -Dfilings.manifest=path
+     */
+    static private final String MANIFEST_FILE = System.getProperty("filings.manifest", "filings-manifest.tsv");
+
+    /**
+     * Are filings related to the Year, Quarter, Month and Day nodes of a time tree as they're written, so that windows
+     * of time are found by traversing from a few days rather than scanning filings?  Enable with
+     * -Dfilings.timeTree=true
+     */
+    static private final boolean TIME_TREE = Boolean.getBoolean("filings.timeTree");
+
+    /**
+     * Are the identifying keys of all existing nodes scanned up front, so that nodes are never queried one key at a
+     * time?  Disable with -Dfilings.warmup=false
+     */
+    static private final boolean WARM_UP = Boolean.parseBoolean(System.getProperty("filings.warmup", "true"));
+
+    //  Maximum number of nodes cached for each type, override with -Dfilings.cache.<type>.size=n.  Across the quarterly
+    //  files there are tens of thousands of distinct clients and lobbyists but only a few hundred issues and entities.
+    static private final long CLIENT_CACHE_SIZE = Long.getLong("filings.cache.client.size", 20000);
+    static private final long ENTITY_CACHE_SIZE = Long.getLong("filings.cache.entity.size", 500);
+    static private final long ISSUE_CACHE_SIZE = Long.getLong("filings.cache.issue.size", 250);
+    static private final long LOBBYIST_CACHE_SIZE = Long.getLong("filings.cache.lobbyist.size", 20000);
+    static private final long REGISTRANT_CACHE_SIZE = Long.getLong("filings.cache.registrant.size", 5000);
+
+    /**
+     * Are the caches grown to fit the number of distinct nodes seen so far?  Checked after each file is processed,
+     * enable with -Dfilings.cache.auto=true
+     */
+    static private final boolean CACHE_AUTO_SIZE = Boolean.getBoolean("filings.cache.auto");
+
+    /**
+     * Largest size any cache is grown to, override with -Dfilings.cache.maxSize=n
+     */
+    static private final long CACHE_MAX_SIZE = Long.getLong("filings.cache.maxSize", 1000000);
+
+    //  Configuration info for connecting to the Neo4J database, override with -Dfilings.uri=bolt://host:port,
+    //  -Dfilings.username=user and -Dfilings.password=password
+    static private final String SERVER_URI = System.getProperty("filings.uri", "bolt://127.0.0.1");
+    static private final String SERVER_USERNAME = System.getProperty("filings.username", "neo4j");
+    static private final String SERVER_PASSWORD = System.getProperty("filings.password", "password");
 
     //  Client query
     static private final String CLIENT_INDEX = "CREATE INDEX ON :Client (name)";
@@ -98,29 +420,116 @@ public class PublicFilingLoader {
     static private final String ENTITY_QUERY = "MATCH (ge:GovernmentEntity {name:$name}) RETURN ge";
     static private final String ENTITY_PARAM_NAME = "name";
 
+    //  Filing index, for upserting filings by id
+    static private final String FILING_INDEX = "CREATE INDEX ON :Filing (filingId)";
+
+    //  Filing date indices: ranges of the received date and time are index seeks, as are filings received in a year or
+    //  month and those covering a quarter, without parsing every filing's date.  Each is on a single property, a
+    //  composite index only being used when every one of its properties is compared for equality.
+    static private final String FILING_RECEIVED_INDEX = "CREATE INDEX ON :Filing (receivedOn)";
+    static private final String FILING_RECEIVED_YEAR_INDEX = "CREATE INDEX ON :Filing (receivedYear)";
+    static private final String FILING_RECEIVED_MONTH_INDEX = "CREATE INDEX ON :Filing (receivedMonth)";
+    static private final String FILING_QUARTER_INDEX = "CREATE INDEX ON :Filing (quarter)";
+
+    //  Filings loaded before received dates were stored as local date-times hold them as strings, the UTC instant
+    //  written by the OGM's date converter for a date in the loader's time zone, and have no received year, month or
+    //  day, which have always been written along with local date-times.  Setting the received year is what marks a
+    //  filing migrated.  Converted a limited number at a time, each in its own transaction.
+    static private final String FILING_RECEIVED_MIGRATE =
+        "MATCH (f:Filing) WHERE f.receivedYear IS NULL AND f.receivedOn IS NOT NULL WITH f LIMIT $limit " +
+        "WITH f, localdatetime({datetime: datetime({datetime: datetime(f.receivedOn), timezone: $zone})}) AS received " +
+        "SET f.receivedOn = received, f.receivedYear = received.year, f.receivedMonth = received.month, f.receivedDay = received.day " +
+        "RETURN count(f) AS migrated";
+    static private final int FILING_RECEIVED_MIGRATE_LIMIT = 10000;
+
     //  Registrant node query
     static private final String REGISTRANT_INDEX = "CREATE INDEX ON :Registrant (registrantId)";
     static private final String REGISTRANT_QUERY = "MATCH (reg:Registrant {registrantId:$id}) RETURN reg";
+    static private final String REGISTRANT_ID_QUERY = "MATCH (reg:Registrant {registrantId:$id}) RETURN id(reg) AS id ORDER BY id LIMIT 1";
     static private final String REGISTRANT_PARAM_NAME = "id";
 
+    //  Warm-up scans, the identifying key(s) and internal id of every node with the label
+    static private final String CLIENT_SCAN = "MATCH (c:Client) RETURN c.name AS key, id(c) AS id";
+    static private final String ENTITY_SCAN = "MATCH (ge:GovernmentEntity) RETURN ge.name AS key, id(ge) AS id";
+    static private final String ISSUE_SCAN = "MATCH (i:Issue) RETURN i.code AS key, id(i) AS id";
+    static private final String LOBBYIST_SCAN = "MATCH (l:Lobbyist) RETURN l.surname AS surname, l.firstName AS firstName, id(l) AS id";
+    static private final String REGISTRANT_SCAN = "MATCH (reg:Registrant) RETURN reg.registrantId AS key, id(reg) AS id";
+    static private final String SCAN_KEY = "key";
+
     /**
      * Constructor
      */
     public PublicFilingLoader() {
 
-        //  Only need one JAXBContext for all the files read.
+        if (!KNOWN_SINKS.containsAll(SINKS)) {
+            throw new IllegalStateException("Unknown sink in " + SINKS + ", expecting " + KNOWN_SINKS);
+        }
+
+        //  The driver writes straight from the source data, there are no resolved filings to hand to other sinks.
+        if (BOLT_WRITES && !SINKS.equals(Collections.singletonList("neo4j"))) {
+            throw new IllegalStateException("The bolt writer can only write to the neo4j sink");
+        }
+
+        //  Parallel processing relies on the batch writer never saving the (shared) nodes a second time.
+        if (SHARED_NODES && DATABASE && !BATCH_WRITES) {
+            throw new IllegalStateException("Processing on multiple threads or in a pipeline requires the batch writer");
+        }
+
+        //  Filings are upserted by the batch writer, and entries are only recorded in the manifest once all their
+        //  filings have been written, which the pipeline doesn't track.  Filings are merged on a filing ID that's only
+        //  indexed, not constrained (earlier loads may have left duplicates), so two threads merging the same filing at
+        //  once would both create it.
+        if (INCREMENTAL && (!BATCH_WRITES || !DATABASE || SHARED_NODES)) {
+            throw new IllegalStateException("Loading incrementally requires the batch writer and the neo4j sink, and can't use multiple threads or the pipeline");
+        }
         try {
-            JAXBContext context = JAXBContext.newInstance("generated");
-            unmarshaller = context.createUnmarshaller();
+            manifest = INCREMENTAL ? new LoadManifest(Paths.get(MANIFEST_FILE)) : null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Exception reading manifest " + MANIFEST_FILE, e);
+        }
+
+        //  Only need one JAXBContext for all the files read, the unmarshallers created from it are per-thread.
+        JAXBContext context = null;
+        try {
+            context = JAXBContext.newInstance("generated");
         } catch (JAXBException e) {
             System.out.println ("Exception creating JAXB Context: " + e);
         }
+        final JAXBContext jaxbContext = context;
+        unmarshallers = ThreadLocal.withInitial(() -> {
+            try {
+                return jaxbContext.createUnmarshaller();
+            } catch (JAXBException e) {
+                throw new IllegalStateException("Exception creating unmarshaller", e);
+            }
+        });
+        streamingReaders = ThreadLocal.withInitial(() -> {
+            try {
+                return new StreamingFilingsReader(jaxbContext, unmarshalTimer);
+            } catch (JAXBException e) {
+                throw new IllegalStateException("Exception creating streaming reader", e);
+            }
+        });
 
-        //  Create a session factory and immediately open a session to Neo4J.  We're using a member variable for the session so
-        //  we can access it whereever without having to pass it around, which makes using a Guava caching solution possible.
+        //  Create a session factory, sessions are opened by each thread on first use.  We're using a member variable for the
+        //  sessions so we can access it whereever without having to pass it around, which makes using a Guava caching solution possible.
+        //  No database, no session factory.
         Configuration configuration = new Configuration.Builder().uri(SERVER_URI).credentials(SERVER_USERNAME, SERVER_PASSWORD).build();
-        session = new SessionFactory(configuration, "com.buddhadata.sandbox.neo4j.filings.node", "com.buddhadata.sandbox.neo4j.filings.relationship")
-                        .openSession();
+        sessionFactory = DATABASE ? new SessionFactory(configuration, "com.buddhadata.sandbox.neo4j.filings.node", "com.buddhadata.sandbox.neo4j.filings.relationship") : null;
+        sessions = ThreadLocal.withInitial(() -> sessionFactory.openSession());
+        sessionMonitors = ThreadLocal.withInitial(() ->
+            new MappingContextMonitor(SESSION_MAX_NODES, SESSION_MAX_RELATIONSHIPS, SESSION_MAX_HEAP, SESSION_SAMPLE, metrics));
+        timeTree = (TIME_TREE && DATABASE) ? new TimeTree(sessionFactory.openSession()) : null;
+        batchWriters = ThreadLocal.withInitial(() -> (BATCH_WRITES && DATABASE) ? new BatchFilingWriter(this::session, BATCH_SIZE, INCREMENTAL, metrics, timeTree) : null);
+        creationLocks = Striped.lock(CACHE_CONCURRENCY * 16);
+
+        //  The OGM is still used for purging, indexing and reading, the driver only for writing filings.
+        driver = BOLT_WRITES ? GraphDatabase.driver(SERVER_URI, AuthTokens.basic(SERVER_USERNAME, SERVER_PASSWORD)) : null;
+        boltWriters = ThreadLocal.withInitial(() -> BOLT_WRITES ? new BoltFilingWriter(driver, BATCH_SIZE, metrics, timeTree) : null);
+
+        memorySink = SINKS.contains("memory") ? new InMemoryGraphSink() : null;
+        nullSink = SINKS.contains("null") ? new NullFilingSink() : null;
+        sinks = ThreadLocal.withInitial(this::createSink);
 
         //  Get all the caches defined with the appropriate loaders to use during processing
         createCaches();
@@ -130,54 +539,77 @@ public class PublicFilingLoader {
     }
 
     /**
-     * Define the caches to minimize database accesses on reused Neo4J objects.
+     * Define the caches to minimize database accesses on reused Neo4J objects.  Nodes not (yet) in the database are
+     * cached as empty rather than the loader returning null, which Guava reports by throwing: a fresh load misses on
+     * nearly every first sighting and would otherwise pay for an exception and its stack trace each time.  The empty
+     * value is replaced once the node's created.
      */
     private void createCaches () {
 
         //  Create the client cache using Guava.
-        clientCache = CacheBuilder.newBuilder()
-                .maximumSize(250)
-                .concurrencyLevel(CONCURRENCY_THREAD_COUNT)
-                .build(
-                    new CacheLoader<String,Client>() {
-                        public Client load (String key) {
-                            return session.queryForObject (Client.class, CLIENT_QUERY,
-                                    Collections.singletonMap(CLIENT_PARAM_NAME, key));
+        clientCache = new EntityCache<>("Client", cacheSize(CLIENT_CACHE_SIZE), CACHE_CONCURRENCY,
+                    loader(new CacheLoader<String,Optional<Client>>() {
+                        public Optional<Client> load (String key) {
+                            if (clientIds.isWarm()) {
+                                return existing(Client.class, clientIds.get(key), id -> {
+                                    Client ref = new Client();
+                                    ref.setId(id);
+                                    ref.setName(key);
+                                    return ref;
+                                });
+                            }
+                            return Optional.ofNullable(session().queryForObject (Client.class, CLIENT_QUERY,
+                                    Collections.singletonMap(CLIENT_PARAM_NAME, key)));
                         }
-                    }
+                    })
                 );
 
-        gentCache = CacheBuilder.newBuilder()
-                .maximumSize(250)
-                .concurrencyLevel(CONCURRENCY_THREAD_COUNT)
-                .build(
-                        new CacheLoader<String,GovernmentEntity>() {
-                            public GovernmentEntity load (String key) {
-                                return session.queryForObject (GovernmentEntity.class, ENTITY_QUERY,
-                                        Collections.singletonMap(ENTITY_PARAM_NAME, key));
+        gentCache = new EntityCache<>("GovernmentEntity", cacheSize(ENTITY_CACHE_SIZE), CACHE_CONCURRENCY,
+                        loader(new CacheLoader<String,Optional<GovernmentEntity>>() {
+                            public Optional<GovernmentEntity> load (String key) {
+                                if (gentIds.isWarm()) {
+                                    return existing(GovernmentEntity.class, gentIds.get(key), id -> {
+                                        GovernmentEntity ref = new GovernmentEntity(key);
+                                        ref.setId(id);
+                                        return ref;
+                                    });
+                                }
+                                return Optional.ofNullable(session().queryForObject (GovernmentEntity.class, ENTITY_QUERY,
+                                        Collections.singletonMap(ENTITY_PARAM_NAME, key)));
 
                             }
-                        }
+                        })
                 );
 
-        issueCache = CacheBuilder.newBuilder()
-                .maximumSize(250)
-                .concurrencyLevel(CONCURRENCY_THREAD_COUNT)
-                .build(
-                        new CacheLoader<String, Issue>() {
-                            public Issue load (String key) {
-                                return session.queryForObject (Issue.class, ISSUE_QUERY,
-                                        Collections.singletonMap(ISSUE_PARAM_CODE, key));
+        issueCache = new EntityCache<>("Issue", cacheSize(ISSUE_CACHE_SIZE), CACHE_CONCURRENCY,
+                        loader(new CacheLoader<String,Optional<Issue>>() {
+                            public Optional<Issue> load (String key) {
+                                if (issueIds.isWarm()) {
+                                    return existing(Issue.class, issueIds.get(key), id -> {
+                                        Issue ref = new Issue(key);
+                                        ref.setId(id);
+                                        return ref;
+                                    });
+                                }
+                                return Optional.ofNullable(session().queryForObject (Issue.class, ISSUE_QUERY,
+                                        Collections.singletonMap(ISSUE_PARAM_CODE, key)));
                             }
-                        }
+                        })
                 );
 
-        lobbyistCache = CacheBuilder.newBuilder()
-                .maximumSize(250)
-                .concurrencyLevel(CONCURRENCY_THREAD_COUNT)
-                .build(
-                        new CacheLoader<LobbyistKey, Lobbyist>() {
-                            public Lobbyist load (LobbyistKey key) {
+        lobbyistCache = new EntityCache<>("Lobbyist", cacheSize(LOBBYIST_CACHE_SIZE), CACHE_CONCURRENCY,
+                        loader(new CacheLoader<LobbyistKey,Optional<Lobbyist>>() {
+                            public Optional<Lobbyist> load (LobbyistKey key) {
+                                if (lobbyistIds.isWarm()) {
+                                    return existing(Lobbyist.class, lobbyistIds.get(key), id -> {
+                                        Lobbyist ref = new Lobbyist();
+                                        ref.setId(id);
+                                        ref.setFirstName(key.getFirstName());
+                                        ref.setSurname(key.getSurname());
+                                        return ref;
+                                    });
+                                }
+
                                 //  Create map to hold parameters, there are always two parts of the key and, if there
                                 //  aren't two, all sorts of nastyness will occur.
                                 Map<String,Object> params = new HashMap<>(2);
@@ -185,181 +617,812 @@ public class PublicFilingLoader {
                                 params.put (LOBBYIST_PARAM_FIRSTNAME, key.getFirstName());
 
                                 //  Execute query and hope for the best
-                                return session.queryForObject (Lobbyist.class, LOBBYIST_QUERY, params);
+                                return Optional.ofNullable(session().queryForObject (Lobbyist.class, LOBBYIST_QUERY, params));
                             }
-                        }
+                        })
                 );
 
-        registrantCache = CacheBuilder.newBuilder()
-                .maximumSize(250)
-                .concurrencyLevel(CONCURRENCY_THREAD_COUNT)
-                .build(
-                  new CacheLoader<Long,Registrant>() {
-                      public Registrant load (Long key) {
-                          return session.queryForObject (Registrant.class, REGISTRANT_QUERY,
-                                  Collections.singletonMap(REGISTRANT_PARAM_NAME, key));
+        registrantCache = new EntityCache<>("Registrant", cacheSize(REGISTRANT_CACHE_SIZE), CACHE_CONCURRENCY,
+                  loader(new CacheLoader<Long,Optional<Registrant>>() {
+                      public Optional<Registrant> load (Long key) {
+                          if (registrantIds.isWarm()) {
+                              long found = registrantIds.get(key);
+                              return existing(Registrant.class, found == LongNodeDictionary.NO_NODE ? null : found, id -> {
+                                  Registrant ref = new Registrant();
+                                  ref.setId(id);
+                                  ref.setRegistrantId(key);
+                                  return ref;
+                              });
+                          }
+                          return Optional.ofNullable(session().queryForObject (Registrant.class, REGISTRANT_QUERY,
+                                  Collections.singletonMap(REGISTRANT_PARAM_NAME, key)));
                       }
-                  }
+                  })
                 );
     }
 
+    /**
+     * The loader for a cache, unless there's no database: then a node not in the cache hasn't been created yet.
+     * @param fromDatabase loads nodes from the database
+     * @return the loader
+     */
+    static private <K,V> CacheLoader<K,Optional<V>> loader (CacheLoader<K,Optional<V>> fromDatabase) {
+        return DATABASE ? fromDatabase : CacheLoader.from(key -> Optional.empty());
+    }
+
+    /**
+     * Maximum number of nodes in a cache.  Without a database the caches are all there is, a node evicted would be
+     * created again, so they hold every node.
+     * @param configured the size configured for the cache
+     * @return the size
+     */
+    static private long cacheSize (long configured) {
+        return DATABASE ? configured : Long.MAX_VALUE;
+    }
+
+    /**
+     * Load a node known to exist from its internal id.  The batch writer only needs the id, so there's no need to go to
+     * the database; when saving through the OGM the node must be loaded, the OGM would otherwise overwrite the node's
+     * properties with those of an empty object.
+     * @param type the node's class
+     * @param id the node's internal id, null when the node doesn't exist
+     * @param reference creates an object carrying just the id and identifying key
+     * @return the node, empty when it doesn't exist
+     */
+    private <T> Optional<T> existing (Class<T> type,
+                                      Long id,
+                                      Function<Long,T> reference) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(BATCH_WRITES ? reference.apply(id) : session().load(type, id, 0));
+    }
+
+    /**
+     * Fill the node dictionaries from the database, a single scan per label.  From then on the caches never query the
+     * database to find out whether a node exists.
+     */
+    private void warmUp () {
+
+        //  Nothing is looked up when writing straight from the source data.
+        if (WARM_UP && !BOLT_WRITES && DATABASE) {
+            long start = System.currentTimeMillis();
+            clientIds.warm(session(), CLIENT_SCAN, row -> (String) row.get(SCAN_KEY));
+            gentIds.warm(session(), ENTITY_SCAN, row -> (String) row.get(SCAN_KEY));
+            issueIds.warm(session(), ISSUE_SCAN, row -> (String) row.get(SCAN_KEY));
+            lobbyistIds.warm(session(), LOBBYIST_SCAN, row -> {
+                String surname = (String) row.get(LOBBYIST_PARAM_SURNAME);
+                String firstName = (String) row.get(LOBBYIST_PARAM_FIRSTNAME);
+                return (surname != null && firstName != null) ? new LobbyistKey(firstName, surname) : null;
+            });
+            registrantIds.warm(session(), REGISTRANT_SCAN, SCAN_KEY);
+
+            System.out.println (String.format("Warmed up %d clients, %d government entities, %d issues, %d lobbyists and %d registrants in %d ms",
+                clientIds.size(), gentIds.size(), issueIds.size(), lobbyistIds.size(), registrantIds.size(), (System.currentTimeMillis() - start)));
+        }
+    }
+
     /**
      * Create indices useful for querying commonly-accessed nodes while loading data
      */
     private void createIndices () {
+        if (!DATABASE) {
+            return;
+        }
         try {
-            session.query(CLIENT_INDEX, Collections.EMPTY_MAP);
-            session.query(LOBBYIST_INDEX, Collections.EMPTY_MAP);
-            session.query(REGISTRANT_INDEX, Collections.EMPTY_MAP);
+            session().query(CLIENT_INDEX, Collections.EMPTY_MAP);
+            session().query(LOBBYIST_INDEX, Collections.EMPTY_MAP);
+            session().query(REGISTRANT_INDEX, Collections.EMPTY_MAP);
+            session().query(FILING_INDEX, Collections.EMPTY_MAP);
+            session().query(FILING_RECEIVED_INDEX, Collections.EMPTY_MAP);
+            session().query(FILING_RECEIVED_YEAR_INDEX, Collections.EMPTY_MAP);
+            session().query(FILING_RECEIVED_MONTH_INDEX, Collections.EMPTY_MAP);
+            session().query(FILING_QUARTER_INDEX, Collections.EMPTY_MAP);
+            if (TIME_TREE) {
+                session().query(TimeTree.YEAR_INDEX, Collections.EMPTY_MAP);
+                session().query(TimeTree.DAY_INDEX, Collections.EMPTY_MAP);
+            }
         } catch (Exception e) {
             System.out.println ("Error creating indicies: " + e);
         }
     }
 
+    /**
+     * Convert the received dates of filings loaded before they were stored as local date-times, so that the filings
+     * already loaded can be queried along with those added.  Idempotent: a filing converted has its received year set
+     * and is never matched again, so running it again, or after a run that failed partway, converts only the filings
+     * left and, once all are converted, does nothing.
+     */
+    private void migrateReceivedDates () {
+
+        long start = System.currentTimeMillis();
+        Map<String,Object> params = new HashMap<>();
+        params.put("limit", FILING_RECEIVED_MIGRATE_LIMIT);
+        params.put("zone", ZoneId.systemDefault().getId());
+
+        long total = 0;
+        long migrated;
+        do {
+            migrated = 0;
+            for (Map<String,Object> row : session().query(FILING_RECEIVED_MIGRATE, params)) {
+                migrated = ((Number) row.get("migrated")).longValue();
+            }
+            total += migrated;
+        } while (migrated > 0);
+
+        if (total > 0) {
+            System.out.println (String.format("Converted the received dates of %d filings to local date-times in %d ms", total, (System.currentTimeMillis() - start)));
+        }
+    }
+
     /**
      * Main method for processing a public filings XML file.  Files available at https://www.senate.gov/legislative/Public_Disclosure/database_download.htm
      */
     private void process () {
 
-        //  Always clean up by purging the database.
-        session.purgeDatabase();
+        //  Always clean up by purging the database, unless adding to what's already been loaded.
+        if (!DATABASE) {
+            System.out.println ("Loading into " + SINKS + ", without a database");
+        } else if (INCREMENTAL) {
+            System.out.println (String.format("Loading incrementally, %d entries already loaded according to %s", manifest.size(), MANIFEST_FILE));
+            migrateReceivedDates();
+        } else {
+            session().purgeDatabase();
+        }
         createIndices();
+        warmUp();
 
         //  If you want to process individual files, do this.
         //  processFilings (getPublicFilings (new File("/Users/scsosna/data/src/github/opendata-neo4j/filings/src/main/resources/data/2018_3_7_16.xml")), "2018_2_4_8.xml");
         //  processFilings (getPublicFilings (new File("/Users/scsosna/data/src/github/opendata-neo4j/filings/src/main/resources/data/2018_2_4_8.xml")), "2018_2_4_8.xml");
 
-        //  Process the files of interest
-        processZipFile("2015_1.zip");
-        processZipFile("2015_2.zip");
-        processZipFile("2015_3.zip");
-        processZipFile("2015_4.zip");
-        processZipFile("2016_1.zip");
-        processZipFile("2016_2.zip");
-        processZipFile("2016_3.zip");
-        processZipFile("2016_4.zip");
-        processZipFile("2017_1.zip");
-        processZipFile("2017_2.zip");
-        processZipFile("2017_3.zip");
-        processZipFile("2017_4.zip");
-        processZipFile("2018_1.zip");
-        processZipFile("2018_2.zip");
-        processZipFile("2018_3.zip");
-        processZipFile("2018_4.zip");
-        processZipFile("2019_1.zip");
-        processZipFile("2019_2.zip");
-        processZipFile("2019_3.zip");
+        //  Process the files of interest, either through the staged pipeline, one after the other or their entries
+        //  spread across threads, reporting the metrics as we go and once done.
+        List<Path> zipFiles = findZipFiles();
+        MetricsReporter reporter = new MetricsReporter(metrics, METRICS_REPORT_SECONDS, (METRICS_FILE != null) ? Paths.get(METRICS_FILE) : null);
+        try {
+            if (PIPELINE) {
+                processPipeline(zipFiles);
+            } else if (CONCURRENCY_THREAD_COUNT == 1) {
+                for (Path zipFile : zipFiles) {
+                    processZipFile(zipFile);
+                }
+            } else {
+                processInParallel(zipFiles);
+            }
+        } finally {
+            reporter.close();
+        }
+
+        //  What's in memory is all there is to show for the load.
+        if (memorySink != null) {
+            System.out.println ("In-memory graph: " + memorySink.summary());
+        }
+        if (nullSink != null) {
+            System.out.println ("Null sink: " + nullSink.summary());
+        }
     }
 
     /**
-     * Process the individual filings loaded from a single XML file (either real file or zip entry).
-     * @param filings the filings to be processed
+     * Process the entries of the files of interest on multiple threads, largest first so that no thread is left with a
+     * large entry once the others are done.
+     * @param zipFiles the quarterly files
      */
-    private void processFilings (PublicFilings filings,
-                                 String sourceName) {
-
-        if (filings != null) {
-            try {
-                //  Uncomment this if you want to see logging information on internal MappingContext collection
-                //queryClearMappingContext(false, false);
+    private void processInParallel (List<Path> zipFiles) {
 
-                System.out.print("Processing " + sourceName + ": ");
-                long start = System.currentTimeMillis();
+        List<ZipArchive> archives = openZipFiles(zipFiles);
+        List<ArchiveEntry> entries = entriesOf(archives);
+        entries.sort(Comparator.comparingLong((ArchiveEntry one) -> one.entry.getSize()).reversed());
 
-                for (FilingType one : filings.getFiling()) {
-
-                    //  Clearing out the session between filings dramatically improves performance, removing unnecessary
-                    //  classes from an internal map that just makes life miserable!
-                    session.clear();
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY_THREAD_COUNT);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (ArchiveEntry one : entries) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        processEntry(one.archive, one.entry);
+                    } catch (Throwable e) {
+                        System.out.println ("Exception while processing public filings: " + e);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println ("Exception while processing zip files: " + e.getCause());
+        } finally {
+            executor.shutdownNow();
+            closeZipFiles(archives);
+        }
+    }
 
-                    //  Filings with no amount specified are those filed indicating no lobbying activty
-                    //  by the registrant in the current quarter
-                    if (one.getAmount() != null && !one.getAmount().isEmpty()) {
+    /**
+     * Process the files of interest through a pipeline of stages: reading zip entries, decoding filings, resolving the
+     * nodes referenced (the find-or-create logic) and writing filings in batches.  Each stage's input queue is bounded,
+     * so the slowest stage throttles the ones before it and memory use is limited by the queue depths.  Entries are
+     * read individually, so multiple read threads inflate the entries of a zip file in parallel.
+     * @param zipFiles the quarterly files
+     */
+    private void processPipeline (List<Path> zipFiles) {
+
+        List<ZipArchive> archives = openZipFiles(zipFiles);
+        List<ArchiveEntry> entries = entriesOf(archives);
+        Pipeline<ArchiveEntry> pipeline = Pipeline.<ArchiveEntry,EntryContents>builder("Pipeline", "read", READ_THREADS, Math.max(1, entries.size()),
+                (one, downstream) -> downstream.accept(readEntry(one.archive, one.entry)))
+            .<FilingType>then("decode", DECODE_THREADS, DECODE_QUEUE,
+                (entry, downstream) -> decodeEntry(entry, downstream))
+            .<Filing>then("resolve", RESOLVE_THREADS, RESOLVE_QUEUE,
+                (one, downstream) -> {
+                    //  Resolving on this thread, writing on another: just a carrier between sessions.
+                    FilingProcessedEvent event = new FilingProcessedEvent();
+                    event.begin();
+                    manageSession();
+                    filingsRead.increment();
+                    if (NodeFactory.hasAmount(one)) {
+                        downstream.accept(resolveFiling(one));
+                    } else {
+                        filingsSkipped.increment();
+                    }
+                    commit(event, one);
+                })
+            .<Void>then("write", WRITE_THREADS, WRITE_QUEUE,
+                (filing, downstream) -> sink().add(filing),
+                this::flushFilings)
+            .build();
 
-                        //  One transaction per filing
-                        Transaction txn = session.beginTransaction();
+        try {
+            pipeline.run(entries, PIPELINE_REPORT_SECONDS);
+            reportCaches();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeZipFiles(archives);
+        }
+    }
 
-                        //  Get/create the client
-                        Client client = findOrCreateClient(one.getClient());
+    /**
+     * Decode the filings from a zip entry's contents, the second pipeline stage.  The contents are released once
+     * decoded.
+     * @param entry the zip entry's contents
+     * @param downstream receives each filing in document order
+     * @throws Exception unable to decode the entry
+     */
+    private void decodeEntry (EntryContents entry,
+                              Consumer<FilingType> downstream)
+        throws Exception {
+
+        ZipEntryParsedEvent event = new ZipEntryParsedEvent();
+        event.begin();
+        try (EntryContents contents = entry;
+             InputStream in = contents.open()) {
+            commit(event, contents.getName(), contents.getLength(), readFilings(in, downstream));
+        }
+    }
 
-                        //  Create the filing
-                        Filing filing = createFiling(one, client);
+    /**
+     * Read the filings from a zip entry one at a time, with the scanner or the streaming reader.  The stream is not
+     * closed, it's the caller's responsibility.
+     * @param in stream of the entry's contents, UTF-16 encoded
+     * @param consumer receives each filing in document order
+     * @return number of filings read
+     * @throws Exception unable to read the entry
+     */
+    private int readFilings (InputStream in,
+                             Consumer<FilingType> consumer)
+        throws Exception {
 
-                        //  Get the registrant and assign to the filing
-                        Registrant registrant = findOrCreateRegistrant(one.getRegistrant(), client);
-                        filing.setRegistrant(registrant);
+        if (SCANNING) {
+            return scanners.get().read(in, consumer);
+        }
+        return streamingReaders.get().read(new InputStreamReader(in, Charset.forName("UTF-16")), consumer);
+    }
 
+    /**
+     * Read the files of interest and write them as the node and relationship CSV files used by
+     * <code>neo4j-admin import</code>, for rebuilding the database offline.  Nodes are resolved in memory using the
+     * same rules as when loading, and entries are read with the reader chosen by <code>filings.reader</code>.
+     */
+    static private void exportCsv () {
 
-                        //  Make sure a lobbyist node exists for all lobbyists associated with filing.
-                        if (one.getLobbyists() != null && one.getLobbyists().getLobbyist() != null) {
-                            for (LobbyistType l : one.getLobbyists().getLobbyist()) {
-                                Lobbyist lobbyist = findOrCreateLobbyist(l, registrant);
-                                if (lobbyist != null) {
-                                    filing.getLobbyists().add(lobbyist);
-                                }
+        long start = System.currentTimeMillis();
+        try (ImportCsvWriter writer = new ImportCsvWriter(Paths.get(CSV_DIRECTORY), TIME_TREE)) {
+            JAXBContext context = JAXBContext.newInstance("generated");
+            FilingsScanner scanner = SCANNING ? new FilingsScanner() : null;
+            StreamingFilingsReader reader = STREAMING && !SCANNING ? new StreamingFilingsReader(context) : null;
+            Unmarshaller unmarshaller = STREAMING ? null : context.createUnmarshaller();
+            for (Path zipFile : findZipFiles()) {
+                try (ZipArchive archive = new ZipArchive(zipFile)) {
+                    for (ZipEntry ze : archive.getEntries()) {
+                        long entryStart = System.currentTimeMillis();
+                        int count = 0;
+                        try (InputStream in = archive.open(ze)) {
+                            if (scanner != null) {
+                                count = scanner.read(in, writer::add);
+                            } else if (reader != null) {
+                                count = reader.read(new InputStreamReader(in, Charset.forName("UTF-16")), writer::add);
+                            } else {
+                                PublicFilings filings = (PublicFilings) unmarshaller.unmarshal(new InputStreamReader(in, Charset.forName("UTF-16")));
+                                filings.getFiling().forEach(writer::add);
+                                count = filings.getFiling().size();
                             }
                         }
+                        System.out.println (String.format("Exporting %s: %d filings in %d ms", ze.getName(), count, (System.currentTimeMillis() - entryStart)));
+                    }
+                }
+            }
 
-                        //  Get the government entities referenced in the file.
-                        if (one.getGovernmentEntities() != null) {
-                            for (GovernmentEntityType entity : one.getGovernmentEntities().getGovernmentEntity()) {
-                                filing.getEntities().add(findOrCreateEntity(entity));
-                            }
-                        }
+            System.out.println (String.format("Exported %s to %s in %d ms", writer.summary(), CSV_DIRECTORY, (System.currentTimeMillis() - start)));
+            System.out.println ("Import from " + CSV_DIRECTORY + " with: " + writer.importCommand("graph.db"));
+        } catch (Exception e) {
+            System.out.println ("Exception while exporting public filings: " + e);
+            e.printStackTrace();
+        }
+    }
 
-                        //  Are there issues associated with the filing?
+    /**
+     * Release the connections to Neo4J and delete any temporary files left, the loader is unusable afterwards.
+     */
+    private void close () {
 
-                        if (one.getIssues() != null && one.getIssues().getIssue() != null) {
-                            for (IssueType iss : one.getIssues().getIssue()) {
+        //  Entries a pipeline stopped part way never closed.
+        int deleted = entryBuffers.deleteSpilled();
+        if (deleted > 0) {
+            System.out.println (String.format("Deleted %d temporary files of entries never decoded", deleted));
+        }
+        if (driver != null) {
+            driver.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
 
-                                //  Create relationship between filing/issue for the specific description of issue.
-                                filing.getIssues().add(findOrCreateIssue(iss.getCode()));
-                            }
-                        }
+    /**
+     * getter
+     * @return the Neo4J session belonging to the current thread
+     */
+    private Session session () {
+        return sessions.get();
+    }
 
+    /**
+     * getter
+     * @return the batch writer belonging to the current thread, null when not writing in batches
+     */
+    private BatchFilingWriter batchWriter () {
+        return batchWriters.get();
+    }
 
-                        //  Upon completion of the filing, resave with the updated info.
-                        session.save(filing);
-                        txn.commit();
-                    }
+    /**
+     * getter
+     * @return the sink receiving the filings resolved on the current thread
+     */
+    private FilingSink sink () {
+        return sinks.get();
+    }
+
+    /**
+     * Are filings saved through the OGM, along with the relationships between the nodes they reference?
+     * @return true when writing to Neo4J without the batch writer
+     */
+    private boolean savedThroughOgm () {
+        return DATABASE && batchWriter() == null;
+    }
+
+    /**
+     * Create the sink for the current thread, handing each filing to the configured sinks in turn
+     * @return the sink
+     */
+    private FilingSink createSink () {
+
+        List<FilingSink> configured = new ArrayList<>();
+        for (String name : SINKS) {
+            if ("neo4j".equals(name)) {
+                configured.add(new Neo4jFilingSink(this::session, batchWriter(), metrics, timeTree));
+            } else if ("memory".equals(name)) {
+                configured.add(memorySink);
+            } else {
+                configured.add(nullSink);
+            }
+        }
+
+        return (configured.size() == 1) ? configured.get(0) : new TeeFilingSink(configured);
+    }
+
+    /**
+     * Process the individual filings loaded from a single XML file (either real file or zip entry).
+     * @param filings the filings to be processed
+     * @return true if all filings were processed and written
+     */
+    private boolean processFilings (PublicFilings filings,
+                                    String sourceName) {
+
+        if (filings != null) {
+            try {
+                long start = System.nanoTime();
+
+                for (FilingType one : filings.getFiling()) {
+                    processFiling(one);
                 }
+                flushFilings();
 
-                System.out.println (String.format("%d filings in %d ms", filings.getFiling().size(),
-                        (System.currentTimeMillis() - start)));
+                entryTimer.stop(start);
+                reportCaches();
+                return true;
             } catch (Exception e) {
                 System.out.println ("Exception processing " + sourceName + ": " + e);
                 e.printStackTrace();
+                discardFilings();
             }
         } else {
             System.out.println ("null filings provided");
         }
+
+        return false;
     }
 
     /**
-     * Processes a single zip file found as classpath resource.
-     * @param fileName the zip file to process
+     * Process the individual filings streamed from a single zip entry, each filing is written as soon as it's been
+     * read rather than waiting for the entire document to be unmarshalled.
+     * @param in the stream from which the entry is read, positioned at the start of the entry
+     * @param sourceName name of the zip entry being processed
+     * @return true if all filings were processed and written
      */
-    private void processZipFile(String fileName) {
-        try (ZipInputStream zis = openZipResource(fileName)) {
+    private boolean processFilings (InputStream in,
+                                    String sourceName) {
 
-            if (zis != null) {
+        try {
+            long start = System.nanoTime();
+            ZipEntryParsedEvent event = new ZipEntryParsedEvent();
+            event.begin();
+
+            //  Stream is intentionally not closed, it belongs to the caller.
+            CountingInputStream counting = new CountingInputStream(in);
+            int count = readFilings(counting, this::processFiling);
+            commit(event, sourceName, counting.getCount(), count);
+            flushFilings();
+
+            entryTimer.stop(start);
+            reportCaches();
+            return true;
+        } catch (Exception e) {
+            System.out.println ("Exception processing " + sourceName + ": " + e);
+            e.printStackTrace();
+            discardFilings();
+            return false;
+        }
+    }
 
-                //  Process all the files (zip entries) within the zip file (zip input stream)
-                ZipEntry ze = null;
-                while ((ze = zis.getNextEntry()) != null) {
-                    long start = System.currentTimeMillis();
+    /**
+     * Process a zip entry unless the manifest shows it's already been loaded, recording it in the manifest once all
+     * its filings have been written.  The entry's size and checksum come from the zip's central directory, so an entry
+     * already loaded is never inflated.
+     * @param archive the zip file
+     * @param ze the zip entry
+     * @throws IOException unable to read the entry
+     */
+    private void processEntryIncrementally (ZipArchive archive,
+                                            ZipEntry ze)
+        throws IOException {
 
-                    //  Unmarshall the XML document into objects that are easier to work with.
-                    PublicFilings filings = getPublicFilings(zis, ze);
+        if (manifest.isLoaded(archive.getName(), ze.getName(), ze.getSize(), ze.getCrc())) {
+            System.out.println (String.format("Skipping %s: already loaded from %s", ze.getName(), archive.getName()));
+            return;
+        }
 
-                    //  Process
-                    processFilings(filings, ze.getName());
+        boolean loaded = false;
+        try (InputStream in = archive.open(ze)) {
+            loaded = processFilings(in, ze.getName());
+        }
+        if (loaded) {
+            manifest.markLoaded(archive.getName(), ze.getName(), ze.getSize(), ze.getCrc());
+        }
+    }
+
+    /**
+     * Process a single filing, creating the filing node and finding or creating all the nodes it references.
+     * @param one the filing read from the source data
+     */
+    private void processFiling (FilingType one) {
+
+        FilingProcessedEvent event = new FilingProcessedEvent();
+        event.begin();
+
+        //  Clearing out the session dramatically improves performance, removing unnecessary classes from an internal
+        //  map that just makes life miserable!  But not so often that everything is saved all over again.
+        manageSession();
+        filingsRead.increment();
+
+        if (BOLT_WRITES && NodeFactory.hasAmount(one)) {
+
+            //  Written straight from the source data, there's nothing to resolve.
+            boltWriters.get().add(one);
+        } else if (NodeFactory.hasAmount(one)) {
+
+            //  Nodes created for the filing are written along with it, one transaction per filing or everything
+            //  committed with the batch.  When the nodes are shared between threads they're committed as they're
+            //  created, not with the batch.
+            FilingSink sink = sink();
+            if (!SHARED_NODES) {
+                sink.begin();
+            }
+
+            sink.add(resolveFiling(one));
+        } else {
+            filingsSkipped.increment();
+        }
+
+        commit(event, one);
+    }
+
+    /**
+     * Commit the flight recorder event for a filing, if recording
+     * @param event the event, begun before the filing was processed
+     * @param one the filing read from the source data
+     */
+    private void commit (FilingProcessedEvent event,
+                         FilingType one) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.setFilingId(one.getID());
+            event.setSkipped(!NodeFactory.hasAmount(one));
+            event.setLobbyists((one.getLobbyists() != null && one.getLobbyists().getLobbyist() != null) ? one.getLobbyists().getLobbyist().size() : 0);
+            event.setEntities(one.getGovernmentEntities() != null ? one.getGovernmentEntities().getGovernmentEntity().size() : 0);
+            event.setIssues((one.getIssues() != null && one.getIssues().getIssue() != null) ? one.getIssues().getIssue().size() : 0);
+            event.commit();
+        }
+    }
+
+    /**
+     * Commit the flight recorder event for a zip entry, if recording
+     * @param event the event, begun before the entry was parsed
+     * @param entry name of the zip entry
+     * @param bytes uncompressed size of the entry
+     * @param filings number of filings in the entry
+     */
+    private void commit (ZipEntryParsedEvent event,
+                         String entry,
+                         long bytes,
+                         int filings) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.setEntry(entry);
+            event.setBytes(bytes);
+            event.setFilings(filings);
+            event.commit();
+        }
+    }
+
+    /**
+     * Create the filing node, finding or creating all the nodes it references.  Nothing is written for the filing
+     * itself unless saving through the OGM.
+     * @param one the filing read from the source data
+     * @return the filing, referencing nodes that have all been saved
+     */
+    private Filing resolveFiling (FilingType one) {
+
+        //  Get/create the client
+        long start = System.nanoTime();
+        Client client = findOrCreateClient(one.getClient());
+        findClientTimer.stop(start);
+
+        //  Create the filing.  Should never have to search for an existing because it's expected that each filing is new
+        //  and doesn't already exist.  However, would need to process a whole bunch more data to prove.
+        Filing filing = NodeFactory.filing(one, client);
+        if (batchWriter() == null) {
+            save(filing);
+            filingsCreated.increment();
+        }
+
+        //  Get the registrant and assign to the filing
+        start = System.nanoTime();
+        Registrant registrant = findOrCreateRegistrant(one.getRegistrant(), client);
+        findRegistrantTimer.stop(start);
+        filing.setRegistrant(registrant);
+
+
+        //  Make sure a lobbyist node exists for all lobbyists associated with filing.
+        if (one.getLobbyists() != null && one.getLobbyists().getLobbyist() != null) {
+            for (LobbyistType l : one.getLobbyists().getLobbyist()) {
+                start = System.nanoTime();
+                Lobbyist lobbyist = findOrCreateLobbyist(l, registrant);
+                findLobbyistTimer.stop(start);
+                if (lobbyist != null) {
+                    filing.getLobbyists().add(lobbyist);
                 }
-            } else {
-                System.out.println ("No files unmarshalled.");
+            }
+        }
+
+        //  Get the government entities referenced in the file.
+        if (one.getGovernmentEntities() != null) {
+            for (GovernmentEntityType entity : one.getGovernmentEntities().getGovernmentEntity()) {
+                start = System.nanoTime();
+                filing.getEntities().add(findOrCreateEntity(entity));
+                findEntityTimer.stop(start);
+            }
+        }
+
+        //  Are there issues associated with the filing?
+
+        if (one.getIssues() != null && one.getIssues().getIssue() != null) {
+            for (IssueType iss : one.getIssues().getIssue()) {
+
+                //  Create relationship between filing/issue for the specific description of issue.
+                start = System.nanoTime();
+                filing.getIssues().add(findOrCreateIssue(NodeFactory.issueKey(iss)));
+                findIssueTimer.stop(start);
+            }
+        }
+
+        return filing;
+    }
+
+    /**
+     * Keep the session's MappingContext in check before processing a filing, clearing the session before every
+     * filing or replacing it only once the MappingContext has grown too large.
+     */
+    private void manageSession () {
+        if (!DATABASE) {
+            return;
+        } else if (CLEAR_EVERY_FILING) {
+            session().clear();
+        } else if (sessionMonitors.get().check(session())) {
+            recycleSession();
+        }
+    }
+
+    /**
+     * Replace the current thread's session with a new one, its MappingContext empty.  A session with a transaction
+     * still open, e.g., the batch writer's for the whole batch, is only cleared: the transaction belongs to it.
+     */
+    private void recycleSession () {
+        if (session().getTransaction() == null) {
+            sessions.set(sessionFactory.openSession());
+        } else {
+            session().clear();
+        }
+    }
+
+    /**
+     * Write any filings still waiting for their batch to fill.
+     */
+    private void flushFilings () {
+        if (BOLT_WRITES) {
+            boltWriters.get().flush();
+        } else {
+            sink().flush();
+        }
+    }
+
+    /**
+     * Throw away the current batch after a failure.  Nodes created for the batch were rolled back with it, so the
+     * caches and dictionaries may now refer to nodes that don't exist and are cleared as well.
+     */
+    private void discardFilings () {
+
+        //  The session may be tracking nodes that were never committed.
+        if (DATABASE) {
+            session().clear();
+        }
+        if (BOLT_WRITES) {
+            boltWriters.get().discard();
+        } else {
+            sink().discard();
+        }
+
+        //  Whichever writer saved them, nodes created since the last commit are gone.
+        clientCache.invalidateAll();
+        gentCache.invalidateAll();
+        issueCache.invalidateAll();
+        lobbyistCache.invalidateAll();
+        registrantCache.invalidateAll();
+
+        //  Shared nodes are committed as they're created, nothing was rolled back.  Registrants are found through
+        //  their dictionary even when it's not warm, so it mustn't keep any that were.
+        if (!SHARED_NODES) {
+            registrantIds.clear();
+            warmUp();
+        }
+    }
+
+    /**
+     * Print each cache's statistics since the last report, then grow any cache that's smaller than the number of
+     * distinct nodes of its type when auto-sizing.  Reports from multiple threads may interleave, the statistics cover
+     * all threads.
+     */
+    private void reportCaches () {
+
+        //  The caches are never used when writing straight from the source data.
+        if (BOLT_WRITES) {
+            return;
+        }
+
+        //  The batch writer finds registrants without their cache.
+        boolean registrants = !(BATCH_WRITES && DATABASE);
+        StringBuilder sb = new StringBuilder("Caches:");
+        for (EntityCache<?,?> cache : Arrays.asList(clientCache, gentCache, issueCache, lobbyistCache, registrantCache)) {
+            if (cache != registrantCache || registrants) {
+                sb.append(System.lineSeparator()).append("  ").append(cache.report());
+            }
+        }
+
+        if (CACHE_AUTO_SIZE) {
+            growCache(clientCache, clientIds.isWarm(), clientIds.size(), sb);
+            growCache(gentCache, gentIds.isWarm(), gentIds.size(), sb);
+            growCache(issueCache, issueIds.isWarm(), issueIds.size(), sb);
+            growCache(lobbyistCache, lobbyistIds.isWarm(), lobbyistIds.size(), sb);
+            if (registrants) {
+                growCache(registrantCache, registrantIds.isWarm(), registrantIds.size(), sb);
+            }
+        }
+
+        System.out.println (sb);
+    }
+
+    /**
+     * Grow a cache to fit the number of distinct nodes of its type, known exactly when the dictionary is warm and
+     * otherwise estimated from the cache itself.
+     * @param cache the cache to grow
+     * @param warm is the dictionary for the same node type warm?
+     * @param nodes number of nodes in the dictionary for the same node type
+     * @param sb report to which any growth is added
+     */
+    private void growCache (EntityCache<?,?> cache,
+                            boolean warm,
+                            int nodes,
+                            StringBuilder sb) {
+        long cardinality = warm ? nodes : cache.estimateCardinality();
+        if (cache.grow(cardinality, CACHE_MAX_SIZE)) {
+            sb.append(System.lineSeparator()).append(String.format("  grew %s cache to %,d for %,d nodes", cache.getName(), cache.getMaximumSize(), cardinality));
+        }
+    }
+
+    /**
+     * Processes a single zip file, one entry after the other.
+     * @param zipFile the zip file to process
+     */
+    private void processZipFile (Path zipFile) {
+        long start = System.nanoTime();
+        try (ZipArchive archive = new ZipArchive(zipFile)) {
+
+            //  Process all the files (zip entries) within the zip file
+            for (ZipEntry ze : archive.getEntries()) {
+                processEntry(archive, ze);
             }
         } catch (Throwable e) {
             System.out.println ("Exception while processing public filings: " + e);
+        } finally {
+            zipFileTimer.stop(start);
+        }
+    }
+
+    /**
+     * Processes a single zip entry
+     * @param archive the zip file
+     * @param ze the zip entry
+     * @throws IOException unable to read the entry
+     */
+    private void processEntry (ZipArchive archive,
+                               ZipEntry ze)
+        throws IOException {
+
+        if (INCREMENTAL) {
+            //  Only what hasn't already been loaded.
+            processEntryIncrementally(archive, ze);
+        } else if (STREAMING) {
+            //  Hand each filing off as it's read, never holding the whole document in memory.
+            try (InputStream in = archive.open(ze)) {
+                processFilings(in, ze.getName());
+            }
+        } else {
+            //  Unmarshall the XML document into objects that are easier to work with.
+            PublicFilings filings = getPublicFilings(archive, ze);
+
+            //  Process
+            processFilings(filings, ze.getName());
         }
     }
 
@@ -372,7 +1435,7 @@ public class PublicFilingLoader {
 
         PublicFilings toReturn = null;
         try (Reader rdr = new InputStreamReader (new FileInputStream(xmlFile), Charset.forName("UTF-16"))) {
-            toReturn = (PublicFilings) unmarshaller.unmarshal(rdr);
+            toReturn = (PublicFilings) unmarshallers.get().unmarshal(rdr);
         } catch (IOException ioe) {
             System.out.println ("IOException reading file: " + ioe);
         } catch (JAXBException je) {
@@ -385,26 +1448,26 @@ public class PublicFilingLoader {
 
     /**
      * Unmarshall the filings data from the original XML
-     * @param zis the stream from which each entry is read
+     * @param archive the zip file
      * @param ze the zip file entry containing important information about the zip'ed file
      * @return PublicFilings object with 1 or more filings
      */
-    private PublicFilings getPublicFilings (ZipInputStream zis,
+    private PublicFilings getPublicFilings (ZipArchive archive,
                                             ZipEntry ze) {
 
         PublicFilings toReturn = null;
         try {
-            //  First, read the bytes for this zip entry.
-            byte[] bytes = new byte[(int) ze.getSize() + 2048];
-            int offset = 0;
-            int read = 0;
-            while ((read = zis.read(bytes, offset, 2048)) >= 0) {
-                offset += read;
-            }
-
-            //  Create a reader to stream the bytes and deserialize the XML.
-            try (Reader rdr = new InputStreamReader (new ByteArrayInputStream(bytes, 0, offset), Charset.forName("UTF-16"))) {
-                toReturn = (PublicFilings) unmarshaller.unmarshal(rdr);
+            //  Create a reader to stream the entry as it's inflated and deserialize the XML, nothing's buffered.
+            //  Timed per document rather than per filing, including inflating.
+            long start = System.nanoTime();
+            ZipEntryParsedEvent event = new ZipEntryParsedEvent();
+            event.begin();
+            try (CountingInputStream in = new CountingInputStream(archive.open(ze));
+                 Reader rdr = new InputStreamReader (in, Charset.forName("UTF-16"))) {
+                toReturn = (PublicFilings) unmarshallers.get().unmarshal(rdr);
+                commit(event, ze.getName(), in.getCount(), toReturn.getFiling().size());
+            } finally {
+                unmarshalTimer.stop(start);
             }
         } catch (Exception e) {
             System.out.println ("Exception while unmarshalling: " + e);
@@ -414,6 +1477,25 @@ public class PublicFilingLoader {
         return toReturn;
     }
 
+    /**
+     * Read the bytes of a zip entry, the first pipeline stage, into a pooled buffer or a temporary file when large
+     * @param archive the zip file
+     * @param ze the zip file entry being read
+     * @return the entry's contents, which must be closed once decoded
+     * @throws IOException unable to read the entry
+     */
+    private EntryContents readEntry (ZipArchive archive,
+                                     ZipEntry ze)
+        throws IOException {
+
+        long start = System.nanoTime();
+        try (InputStream in = archive.open(ze)) {
+            return entryBuffers.read(ze.getName(), in, ze.getSize());
+        } finally {
+            zipReadTimer.stop(start);
+        }
+    }
+
     /**
      * Find the files in the given folder, which should be nothing but XML used for loading Neo4J
      * @param resourceFolder the name of the folder where the filing data files are found
@@ -433,34 +1515,98 @@ public class PublicFilingLoader {
 
 
     /**
-     * Open the zip file as a resource which we can return as a stream for processing
-     * @param zipFileName the zip file to process
-     * @return a ZipEntryStream
+     * Find the quarterly files: those matching the paths or globs when given, otherwise the files of interest in the
+     * zip directory or on the classpath.  Resources packaged in a jar are copied to a temporary file first, a zip file
+     * can only be read randomly from the file system.  Files that can't be found are reported and left out.
+     * @return the quarterly files, in the order loaded
      */
-    private ZipInputStream openZipResource (String zipFileName) {
+    static private List<Path> findZipFiles () {
 
+        List<Path> toReturn = new ArrayList<>();
         try {
-            return new ZipInputStream(ClassLoader.getSystemResourceAsStream(zipFileName));
-        } catch (Exception e) {
-            System.out.println ("Exception while retrieving zip file: " + e);
-            return null;
+            if (ZIP_PATHS != null) {
+                toReturn.addAll(ZipArchive.find(ZIP_PATHS));
+                if (toReturn.isEmpty()) {
+                    System.out.println ("No zip files found at " + ZIP_PATHS);
+                }
+                return toReturn;
+            }
+
+            for (String zipFileName : ZIP_FILES) {
+                Path found = null;
+                if (ZIP_DIRECTORY != null) {
+                    found = Paths.get(ZIP_DIRECTORY, zipFileName);
+                } else {
+                    URL resource = ClassLoader.getSystemResource(zipFileName);
+                    if (resource != null && "file".equals(resource.getProtocol())) {
+                        found = Paths.get(resource.toURI());
+                    } else if (resource != null) {
+                        found = Files.createTempFile("filings-", "-" + zipFileName);
+                        found.toFile().deleteOnExit();
+                        try (InputStream in = resource.openStream()) {
+                            Files.copy(in, found, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                }
+
+                if (found != null && Files.isRegularFile(found)) {
+                    toReturn.add(found);
+                } else {
+                    System.out.println ("Zip file not found: " + zipFileName);
+                }
+            }
+        } catch (IOException | URISyntaxException e) {
+            System.out.println ("Exception while finding zip files: " + e);
+        }
+
+        return toReturn;
+    }
+
+    /**
+     * Open the quarterly files for reading their entries in any order.  Files that can't be opened are reported and
+     * left out.
+     * @param zipFiles the quarterly files
+     * @return the open files, which must be closed
+     */
+    static private List<ZipArchive> openZipFiles (List<Path> zipFiles) {
+
+        List<ZipArchive> toReturn = new ArrayList<>(zipFiles.size());
+        for (Path zipFile : zipFiles) {
+            try {
+                toReturn.add(new ZipArchive(zipFile));
+            } catch (IOException e) {
+                System.out.println ("Exception while opening " + zipFile + ": " + e);
+            }
         }
+        return toReturn;
     }
 
     /**
-     * Create a new filing.  Should never have to search for an existing because it's expected that each filing is
-     * new and doesn't already exist.  However, would need to process a whole bunch more data to prove.
-     * @param ft a Filing from the intial source data
-     * @param client for whom the filing was made
-     * @return newly-created <code>Filing</code>
+     * Close the quarterly files, reporting rather than failing on any that can't be closed.
+     * @param archives the open files
      */
-    private Filing createFiling (FilingType ft,
-                                 Client client) {
+    static private void closeZipFiles (List<ZipArchive> archives) {
+        for (ZipArchive archive : archives) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                System.out.println ("Exception while closing " + archive.getPath() + ": " + e);
+            }
+        }
+    }
 
-        String amount = ft.getAmount();
-        Filing toReturn = new Filing (ft.getID(), ft.getYear(), ft.getReceived().toGregorianCalendar().getTime(),
-                Integer.valueOf(amount), ft.getType(), ft.getPeriod(), client);
-        session.save(toReturn);
+    /**
+     * List every entry of the quarterly files
+     * @param archives the open files
+     * @return every entry, in the order of the files and then the order stored
+     */
+    static private List<ArchiveEntry> entriesOf (List<ZipArchive> archives) {
+        List<ArchiveEntry> toReturn = new ArrayList<>();
+        for (ZipArchive archive : archives) {
+            for (ZipEntry ze : archive.getEntries()) {
+                toReturn.add(new ArchiveEntry(archive, ze));
+            }
+        }
         return toReturn;
     }
 
@@ -472,23 +1618,25 @@ public class PublicFilingLoader {
     private Client findOrCreateClient (ClientType client) {
 
         //  Clients are unique by ID, attempt to find in cache or database
-        Client toReturn;
-        String clientName = client.getClientName().trim();
-        try {
-            toReturn = clientCache.get(clientName);
-        } catch (Exception e) {
-            //  Exception is thrown when the client doesn't exist in either the cache or the database, which
-            //  just means that the client needs to be created.
-            toReturn = null;
-        }
+        String clientName = NodeFactory.clientKey(client);
+        Client toReturn = find(clientCache, clientName);
 
         //  If client doesn't already exist, create a new one.
         if (toReturn == null) {
-            toReturn = new Client (client.getClientID(), clientName, client.getGeneralDescription(), client.getContactFullname(),
-                client.getClientCountry(), client.getClientPPBCountry(), client.getClientState(), client.getClientPPBState(),
-                Boolean.valueOf(client.getSelfFiler()), Boolean.valueOf(client.getIsStateOrLocalGov()));
-            session.save (toReturn);
-            clientCache.put(clientName, toReturn);
+            Lock lock = creationLocks.get(clientName);
+            lock.lock();
+            try {
+                toReturn = SHARED_NODES ? clientCache.find(clientName) : null;
+                if (toReturn == null) {
+                    toReturn = NodeFactory.client(client);
+                    save(toReturn);
+                    clientsCreated.increment();
+                    clientIds.put(clientName, toReturn.getId());
+                    clientCache.put(clientName, toReturn);
+                }
+            } finally {
+                lock.unlock();
+            }
         }
 
 
@@ -504,37 +1652,38 @@ public class PublicFilingLoader {
                                            Registrant registrant) {
 
         Lobbyist toReturn = null;
-        String name = lobbyist.getLobbyistName().toUpperCase();
+        LobbyistKey key = NodeFactory.lobbyistKey(lobbyist);
 
         //  Possible that no lobbyist name provided, in which case there's no work to do.
-        if (!name.isEmpty()) {
-
-            //  Lobbyist names are "surname,first" so break them apart by finding ','
-            int comma = name.indexOf(',');
-            String firstName = name.substring(comma + 1).trim();
-            String surname = name.substring(0, comma).trim();
-            LobbyistKey key = new LobbyistKey(firstName, surname);
+        if (key != null) {
 
             //  Look in the cache and see if the client already exists
-            try {
-                toReturn = lobbyistCache.get(key);
-            } catch (Exception e) {
-                //  Exception most likely thrown because the lobbyist wasn't found in cache or database, which just
-                //  means it'll need to be created.
-                toReturn = null;
-            }
+            toReturn = find(lobbyistCache, key);
 
             //  If lobbyist doesn't already exist, create a new one.
             if (toReturn == null) {
-                toReturn = new Lobbyist(firstName, surname, lobbyist.getLobbyistCoveredGovPositionIndicator(),
-                        lobbyist.getOfficialPosition(), lobbyist.getActivityInformation());
-                session.save(toReturn);
-                lobbyistCache.put(key, toReturn);
+                Lock lock = creationLocks.get(key);
+                lock.lock();
+                try {
+                    toReturn = SHARED_NODES ? lobbyistCache.find(key) : null;
+                    if (toReturn == null) {
+                        toReturn = NodeFactory.lobbyist(lobbyist, key);
+                        save(toReturn);
+                        lobbyistsCreated.increment();
+                        lobbyistIds.put(key, toReturn.getId());
+                        lobbyistCache.put(key, toReturn);
+                    }
+                } finally {
+                    lock.unlock();
+                }
             }
 
             //  Add the registrant to the set of all registrants who employ the lobbyist.  As a set, can just do a put
-            //  and don't need to check whether it's already there.  Then save the lobbyist
-            toReturn.getEmployers().add(registrant);
+            //  and don't need to check whether it's already there.  Then save the lobbyist.  The batch writer relates
+            //  them itself.
+            if (savedThroughOgm()) {
+                toReturn.getEmployers().add(registrant);
+            }
         }
 
         return toReturn;
@@ -548,20 +1697,25 @@ public class PublicFilingLoader {
     private GovernmentEntity findOrCreateEntity (GovernmentEntityType governmentEntity) {
 
         //  Get from cache or database, using Guava cache to do  work.
-        GovernmentEntity toReturn;
-        try {
-            toReturn = gentCache.get(governmentEntity.getGovEntityName());
-        } catch (Exception e) {
-            //  An exception is thrown when a null is returned, indicating the entity doesn't exist, which is fine
-            //  because we'll just create it.
-            toReturn = null;
-        }
+        String entityName = NodeFactory.entityKey(governmentEntity);
+        GovernmentEntity toReturn = find(gentCache, entityName);
 
         //  If government entity node doesn't exist, create a new one.
         if (toReturn == null) {
-            toReturn = new GovernmentEntity(governmentEntity.getGovEntityName());
-            session.save(toReturn);
-            gentCache.put(governmentEntity.getGovEntityName(), toReturn);
+            Lock lock = creationLocks.get(entityName);
+            lock.lock();
+            try {
+                toReturn = SHARED_NODES ? gentCache.find(entityName) : null;
+                if (toReturn == null) {
+                    toReturn = NodeFactory.entity(governmentEntity);
+                    save(toReturn);
+                    entitiesCreated.increment();
+                    gentIds.put(entityName, toReturn.getId());
+                    gentCache.put(entityName, toReturn);
+                }
+            } finally {
+                lock.unlock();
+            }
         }
 
 
@@ -576,20 +1730,24 @@ public class PublicFilingLoader {
     private Issue findOrCreateIssue (String issueCode) {
 
         //  Execute query and hope for the best
-        Issue toReturn;
-        try {
-            toReturn = issueCache.get(issueCode);
-        } catch (Exception e) {
-            //  When the issue isn't found in either the cache or the database, an exception is thrown, which just means
-            //  it needs to be created.
-            toReturn = null;
-        }
+        Issue toReturn = find(issueCache, issueCode);
 
         //  If issue does not already exist, create
         if (toReturn == null) {
-            toReturn = new Issue (issueCode);
-            session.save (toReturn);
-            issueCache.put(issueCode, toReturn);
+            Lock lock = creationLocks.get(issueCode);
+            lock.lock();
+            try {
+                toReturn = SHARED_NODES ? issueCache.find(issueCode) : null;
+                if (toReturn == null) {
+                    toReturn = NodeFactory.issue(issueCode);
+                    save(toReturn);
+                    issuesCreated.increment();
+                    issueIds.put(issueCode, toReturn.getId());
+                    issueCache.put(issueCode, toReturn);
+                }
+            } finally {
+                lock.unlock();
+            }
         }
 
 
@@ -605,62 +1763,143 @@ public class PublicFilingLoader {
     private Registrant findOrCreateRegistrant (RegistrantType registrant,
                                                Client client) {
 
-        //  Hopefully the registrant already exists in the cache or database.
-        Registrant toReturn;
-        try {
-            toReturn = registrantCache.get(registrant.getRegistrantID());
-        } catch (Exception e) {
-            //  An exeption is thrown when the registrant isn't found in either the cache or the database, which is fine
-            //  because just means we need top create.
-            toReturn = null;
+        //  The batch writer only needs the registrant's id, there's no need for the cache.
+        if (batchWriter() != null) {
+            return findOrCreateRegistrantId(registrant);
         }
 
+        //  Hopefully the registrant already exists in the cache or database.
+        Long registrantId = NodeFactory.registrantKey(registrant);
+        Registrant toReturn = find(registrantCache, registrantId);
+
         //  If registrant node doesn't exist, create a new one.
         if (toReturn == null) {
-            toReturn = new Registrant(registrant.getRegistrantID(), registrant.getRegistrantName(), registrant.getGeneralDescription(),
-                    registrant.getAddress(), registrant.getRegistrantCountry(), registrant.getRegistrantPPBCountry());
-            toReturn.getClients().add(client);
-            registrantCache.put(registrant.getRegistrantID(), toReturn);
-            session.save(toReturn);
+            Lock lock = creationLocks.get(registrantId);
+            lock.lock();
+            try {
+                toReturn = SHARED_NODES ? registrantCache.find(registrantId) : null;
+                if (toReturn == null) {
+                    toReturn = NodeFactory.registrant(registrant);
+                    if (savedThroughOgm()) {
+                        toReturn.getClients().add(client);
+                    }
+                    save(toReturn);
+                    registrantsCreated.increment();
+                    registrantIds.put(registrantId, toReturn.getId());
+                    registrantCache.put(registrantId, toReturn);
+                }
+            } finally {
+                lock.unlock();
+            }
         }
 
         //  Add the client to the set who employ the registrant.  Because it's a set, no need to check for existance,
-        //  just put and then save.
-        toReturn.getClients().add(client);
+        //  just put and then save.  The batch writer relates them itself.
+        if (savedThroughOgm()) {
+            toReturn.getClients().add(client);
+        }
 
 
         return toReturn;
     }
+
+    /**
+     * Either find an existing or create a new registrant when writing in batches.  Found by registrant ID in the
+     * registrant dictionary, neither boxing the key nor holding the whole registrant, and returned as a reference
+     * carrying just its id and registrant ID.
+     * @param registrant the registrant from the data file
+     * @return <code>Registrant</code>, newly-created or a reference to the existing node
+     */
+    private Registrant findOrCreateRegistrantId (RegistrantType registrant) {
+
+        long registrantId = NodeFactory.registrantKey(registrant);
+        long id = findRegistrantId(registrantId);
+
+        //  If registrant node doesn't exist, create a new one.
+        if (id == LongNodeDictionary.NO_NODE) {
+            Lock lock = creationLocks.get(registrantId);
+            lock.lock();
+            try {
+                id = SHARED_NODES ? findRegistrantId(registrantId) : LongNodeDictionary.NO_NODE;
+                if (id == LongNodeDictionary.NO_NODE) {
+                    Registrant toReturn = NodeFactory.registrant(registrant);
+                    save(toReturn);
+                    registrantsCreated.increment();
+                    registrantIds.put(registrantId, toReturn.getId());
+                    return toReturn;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Registrant ref = new Registrant();
+        ref.setId(id);
+        ref.setRegistrantId(registrantId);
+        return ref;
+    }
+
     /**
-     * Dump statistics of interest
+     * Find the internal id of a registrant.  Unless the registrant dictionary is warm, a registrant not in it is
+     * looked for in the database and added when found.
+     * @param registrantId the registrant's registrant ID
+     * @return the internal id, <code>LongNodeDictionary.NO_NODE</code> when it doesn't exist and needs to be created
      */
-    private void queryClearMappingContext (boolean clearNodes,
-                                           boolean clearRelationships) {
+    private long findRegistrantId (long registrantId) {
+
+        long id = registrantIds.get(registrantId);
+        if (id == LongNodeDictionary.NO_NODE && !registrantIds.isWarm()) {
+            for (Map<String,Object> row : session().query(REGISTRANT_ID_QUERY, Collections.singletonMap(REGISTRANT_PARAM_NAME, registrantId))) {
+                id = ((Number) row.get(NodeDictionary.ID_COLUMN)).longValue();
+                registrantIds.put(registrantId, id);
+            }
+        }
+        return id;
+    }
 
-        //  Get the session implementation
-        Neo4jSession nsession = (Neo4jSession) session;
+    /**
+     * Find a node in a cache, loading when not already cached.  Only when recording a flight recorder event is the
+     * cache checked for whether the node was a hit beforehand.
+     * @param cache the cache
+     * @param key the node's identifying key
+     * @return the node, null when it doesn't exist and needs to be created
+     */
+    private <K,V> V find (EntityCache<K,V> cache,
+                          K key) {
+
+        CacheLoadEvent event = new CacheLoadEvent();
+        if (!event.isEnabled()) {
+            return cache.find(key);
+        }
+
+        event.begin();
+        boolean hit = cache.isCached(key);
+        V toReturn = cache.find(key);
+        event.end();
+        if (event.shouldCommit()) {
+            event.setCache(cache.getName());
+            event.setHit(hit);
+            event.setFound(toReturn != null);
+            event.commit();
+        }
+        return toReturn;
+    }
 
-        //  The MappingContext stored within the session contains maps of nodes and relationships.
-        MappingContext context = nsession.context();
+    /**
+     * Save a node through the OGM
+     * @param entity the node to save
+     */
+    private void save (Object entity) {
 
+        //  Without a database nodes only exist in memory, held by the caches.
+        if (!DATABASE) {
+            return;
+        }
+        long start = System.nanoTime();
         try {
-            //  Make the internal maps of the sessions MappingContext are acccessible
-            Field field = MappingContext.class.getDeclaredField("nodeEntityRegister");
-            field.setAccessible(true);
-            Map<Long, Object> nodeEntityRegister = (Map<Long, Object>) field.get(context);
-            field = MappingContext.class.getDeclaredField("relationshipRegister");
-            field.setAccessible(true);
-            Set<MappedRelationship> relationshipEntityRegister = (Set<MappedRelationship>) field.get(context);
-
-            //  Print the sizes of the node and relationship maps.
-            System.out.println ("MappingContext size: nodes=" + nodeEntityRegister.size() + ", relationships=" + relationshipEntityRegister.size());
-
-            //  Clear internal structures if requested.
-            if (clearNodes) nodeEntityRegister.clear();
-            if (clearRelationships) relationshipEntityRegister.clear();
-        } catch (Exception e) {
-            //  We're trying to go through the backdoor but something bad happened.
-            System.out.println ("Reflection Exception: " + e);
+            session().save(entity);
+        } finally {
+            saveTimer.stop(start);
         }
     }
 
@@ -669,6 +1908,45 @@ public class PublicFilingLoader {
      * @param args command line arguments
      */
     public static void main (String[] args) {
-        new PublicFilingLoader().process();
+
+        //  Writing the files for an offline import never touches the database.
+        if (CSV_EXPORT) {
+            exportCsv();
+            return;
+        }
+
+        PublicFilingLoader loader = new PublicFilingLoader();
+        try {
+            loader.process();
+        } finally {
+            loader.close();
+        }
+    }
+
+    /**
+     * A single entry of an open zip file, the unit of work when entries are processed in parallel.
+     */
+    static private final class ArchiveEntry {
+
+        /**
+         * The zip file
+         */
+        private final ZipArchive archive;
+
+        /**
+         * The zip entry
+         */
+        private final ZipEntry entry;
+
+        /**
+         * Constructor
+         * @param archive the zip file
+         * @param entry the zip entry
+         */
+        private ArchiveEntry (ZipArchive archive,
+                              ZipEntry entry) {
+            this.archive = archive;
+            this.entry = entry;
+        }
     }
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.cache;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size-bounded cache of the nodes of a single type, by identifying key.  Nodes that don't exist are cached as empty,
+ * see the loader's <code>createCaches</code>.  Statistics are recorded so the cache's size can be tuned, and the cache
+ * can be rebuilt larger when it proves too small for the data being loaded.
+ *
+ * Thread-safe, provided the loader is.
+ *
+ * @param <K> type of the identifying key
+ * @param <V> type of the node
+ * @author Scott C Sosna
+ */
+public class EntityCache<K,V> {
+
+    /**
+     * Name of the cached node type, for reporting
+     */
+    private final String name;
+
+    /**
+     * Expected number of threads using the cache at once
+     */
+    private final int concurrency;
+
+    /**
+     * Loads nodes not found in the cache
+     */
+    private final CacheLoader<K,Optional<V>> loader;
+
+    /**
+     * The current cache, replaced when resized
+     */
+    private volatile LoadingCache<K,Optional<V>> cache;
+
+    /**
+     * Maximum number of nodes in the current cache
+     */
+    private volatile long maximumSize;
+
+    /**
+     * Statistics of caches replaced when resizing
+     */
+    private CacheStats retired = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    /**
+     * Statistics at the last report, so each report covers what happened since
+     */
+    private CacheStats reported = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    /**
+     * Constructor
+     * @param name name of the cached node type, for reporting
+     * @param maximumSize maximum number of nodes cached
+     * @param concurrency expected number of threads using the cache at once
+     * @param loader loads nodes not found in the cache, empty when the node doesn't exist
+     */
+    public EntityCache (String name,
+                        long maximumSize,
+                        int concurrency,
+                        CacheLoader<K,Optional<V>> loader) {
+        this.name = name;
+        this.concurrency = Math.max(1, concurrency);
+        this.loader = loader;
+        this.maximumSize = Math.max(1, maximumSize);
+        this.cache = build(this.maximumSize);
+    }
+
+    /**
+     * Find a node in the cache, loading when not already cached.
+     * @param key the node's identifying key
+     * @return the node, null when it doesn't exist and needs to be created
+     */
+    public V find (K key) {
+        //  Absence is an empty value, anything thrown is a real failure loading the node.
+        return cache.getUnchecked(key).orElse(null);
+    }
+
+    /**
+     * Is the node, or its absence, already cached?  Unlike finding the node, neither loads it nor counts as a hit or
+     * miss.
+     * @param key the node's identifying key
+     * @return true if cached
+     */
+    public boolean isCached (K key) {
+        return cache.asMap().containsKey(key);
+    }
+
+    /**
+     * Cache a newly created node
+     * @param key the node's identifying key
+     * @param node the node
+     */
+    public void put (K key,
+                     V node) {
+        cache.put(key, Optional.of(node));
+    }
+
+    /**
+     * Discard all cached nodes
+     */
+    public void invalidateAll () {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Estimate how many distinct nodes have been looked up, for when there's no better source.  Evicted nodes may be
+     * counted more than once, so the more the cache thrashes the higher the estimate.
+     * @return estimated number of distinct nodes
+     */
+    public long estimateCardinality () {
+        return cache.size() + stats().evictionCount();
+    }
+
+    /**
+     * Grow the cache to fit the number of distinct nodes.  The cache at least doubles when grown, so it's rebuilt a
+     * handful of times at most, and never shrinks.
+     * @param cardinality number of distinct nodes
+     * @param limit maximum size the cache may grow to
+     * @return true if the cache was grown
+     */
+    public synchronized boolean grow (long cardinality,
+                                      long limit) {
+
+        if (cardinality <= maximumSize || maximumSize >= limit) {
+            return false;
+        }
+
+        //  Nodes put into the old cache while it's being copied may be lost, they'll just be loaded again.
+        long size = Math.min(limit, Math.max(cardinality, maximumSize * 2));
+        LoadingCache<K,Optional<V>> grown = build(size);
+        grown.putAll(cache.asMap());
+        retired = retired.plus(cache.stats());
+        cache = grown;
+        maximumSize = size;
+        return true;
+    }
+
+    /**
+     * Format the statistics recorded since the previous report
+     * @return single line of statistics
+     */
+    public synchronized String report () {
+
+        CacheStats total = stats();
+        CacheStats since = total.minus(reported);
+        reported = total;
+
+        return String.format("%-16s size %,d/%,d hits %,d (%.1f%%) misses %,d evictions %,d loads %,d in %,d ms",
+            name, cache.size(), maximumSize, since.hitCount(), 100.0 * since.hitRate(), since.missCount(),
+            since.evictionCount(), since.loadCount(), TimeUnit.NANOSECONDS.toMillis(since.totalLoadTime()));
+    }
+
+    /**
+     * getter
+     * @return name of the cached node type
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * getter
+     * @return maximum number of nodes cached
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Statistics since the cache was created, including any caches replaced when resizing
+     * @return cumulative statistics
+     */
+    private synchronized CacheStats stats () {
+        return retired.plus(cache.stats());
+    }
+
+    /**
+     * Build an empty cache
+     * @param size maximum number of nodes cached
+     * @return the cache
+     */
+    private LoadingCache<K,Optional<V>> build (long size) {
+        return CacheBuilder.newBuilder()
+            .maximumSize(size)
+            .concurrencyLevel(concurrency)
+            .recordStats()
+            .build(loader);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.cache;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive <code>long</code> to primitive <code>long</code>, open addressing with linear probing over
+ * two parallel arrays.  Nothing is boxed and there are no entry objects, so 100k entries cost at most 4MB rather
+ * than the 9MB a <code>HashMap&lt;Long,Long&gt;</code> needs, and lookups don't allocate.
+ *
+ * Only what the node dictionaries need: entries are added and replaced, never individually removed.  Not thread-safe.
+ *
+ * @author Scott C Sosna
+ */
+public class LongLongHashMap {
+
+    /**
+     * Marks an empty slot.  A key equal to it is kept outside the arrays.
+     */
+    static private final long FREE_KEY = 0L;
+
+    /**
+     * Grow once more than this fraction of the slots are used
+     */
+    static private final double LOAD_FACTOR = 0.6;
+
+    //  Parallel arrays of keys and values, slot i is empty when keys[i] is FREE_KEY.
+    private long[] keys;
+    private long[] values;
+
+    /**
+     * Number of slots less one, always a power of two less one
+     */
+    private int mask;
+
+    /**
+     * Number of entries, including one for the free key
+     */
+    private int size;
+
+    /**
+     * Number of entries at which the arrays are grown
+     */
+    private int threshold;
+
+    //  The entry for FREE_KEY, if any
+    private boolean hasFreeKey;
+    private long freeValue;
+
+    /**
+     * Constructor
+     */
+    public LongLongHashMap () {
+        this(16);
+    }
+
+    /**
+     * Constructor
+     * @param expected number of entries expected, to avoid growing
+     */
+    public LongLongHashMap (int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    /**
+     * Find the value for a key
+     * @param key the key
+     * @param missing returned when there's no entry for the key
+     * @return the value, or missing
+     */
+    public long get (long key,
+                     long missing) {
+
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeValue : missing;
+        }
+
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long found = keys[slot];
+            if (found == key) {
+                return values[slot];
+            } else if (found == FREE_KEY) {
+                return missing;
+            }
+        }
+    }
+
+    /**
+     * Is there an entry for the key?
+     * @param key the key
+     * @return true if there's an entry
+     */
+    public boolean containsKey (long key) {
+
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long found = keys[slot];
+            if (found == key) {
+                return true;
+            } else if (found == FREE_KEY) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Add or replace the entry for a key
+     * @param key the key
+     * @param value the value
+     */
+    public void put (long key,
+                     long value) {
+
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeValue = value;
+            return;
+        }
+
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long found = keys[slot];
+            if (found == key) {
+                values[slot] = value;
+                return;
+            } else if (found == FREE_KEY) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > threshold) {
+                    rehash(keys.length * 2);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove all entries, keeping the current capacity
+     */
+    public void clear () {
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    /**
+     * getter
+     * @return number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Home slot of a key, the key's bits mixed (the finalizer of MurmurHash3) since sequential ids would otherwise
+     * cluster into long probe runs.
+     * @param key the key
+     * @return slot index
+     */
+    private int slot (long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    /**
+     * Move all entries into arrays of a new capacity
+     * @param capacity the new number of slots, a power of two
+     */
+    private void rehash (int capacity) {
+
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != FREE_KEY) {
+                int slot = slot(key);
+                while (keys[slot] != FREE_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Allocate empty arrays
+     * @param capacity number of slots, a power of two
+     */
+    private void allocate (int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Number of slots needed to hold the expected number of entries without growing
+     * @param expected number of entries
+     * @return number of slots, a power of two
+     */
+    static private int capacityFor (int expected) {
+        long needed = (long) Math.ceil(Math.max(expected, 1) / LOAD_FACTOR) + 1;
+        return (int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.cache;
+
+import org.neo4j.ogm.session.Session;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <code>NodeDictionary</code> for nodes identified by a numeric key, e.g., registrants by registrant ID, held in a
+ * primitive <code>LongLongHashMap</code> so that neither keys nor ids are boxed: at most about 40 bytes per node rather
+ * than the 90 or so of a map of <code>Long</code> to <code>Long</code>, and lookups don't allocate.
+ *
+ * Thread-safe, nodes may be created on multiple threads.
+ *
+ * @author Scott C Sosna
+ */
+public class LongNodeDictionary {
+
+    /**
+     * Returned by <code>get</code> when there's no such node, Neo4J internal ids are never negative
+     */
+    static public final long NO_NODE = -1L;
+
+    /**
+     * Label of the nodes, for reporting
+     */
+    private final String label;
+
+    /**
+     * Internal node id by identifying key, guarded by the lock
+     */
+    private final LongLongHashMap ids;
+
+    /**
+     * Lookups vastly outnumber nodes created, so they shouldn't serialize behind each other
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Has the dictionary been filled, i.e., is it authoritative?
+     */
+    private volatile boolean warm;
+
+    /**
+     * Constructor
+     * @param label label of the nodes, for reporting
+     * @param expected number of nodes expected, to avoid growing
+     */
+    public LongNodeDictionary (String label,
+                               int expected) {
+        this.label = label;
+        this.ids = new LongLongHashMap(expected);
+    }
+
+    /**
+     * Replace the contents with every node currently in the database.
+     * @param session session used for scanning
+     * @param cypher statement returning the key and the internal id (as <code>id</code>) of every node
+     * @param keyColumn column holding the key in the scan results
+     * @return number of nodes in the dictionary
+     */
+    public int warm (Session session,
+                     String cypher,
+                     String keyColumn) {
+
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            for (Map<String,Object> row : session.query(cypher, Collections.emptyMap())) {
+                Object key = row.get(keyColumn);
+                Object id = row.get(NodeDictionary.ID_COLUMN);
+                if (key != null && id != null) {
+                    //  Duplicates left by an earlier load, consistently pick the oldest.
+                    long existing = ids.get(((Number) key).longValue(), NO_NODE);
+                    long candidate = ((Number) id).longValue();
+                    if (existing == NO_NODE || candidate < existing) {
+                        ids.put(((Number) key).longValue(), candidate);
+                    }
+                }
+            }
+
+            warm = true;
+            return ids.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * getter
+     * @return true when filled, so that a missing key is a node that doesn't exist
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * Find the internal id of the node with the key
+     * @param key the node's identifying key
+     * @return the internal id, <code>NO_NODE</code> when there's no such node
+     */
+    public long get (long key) {
+        lock.readLock().lock();
+        try {
+            return ids.get(key, NO_NODE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record a newly created node
+     * @param key the node's identifying key
+     * @param id the node's internal id
+     */
+    public void put (long key,
+                     Long id) {
+        if (id != null) {
+            lock.writeLock().lock();
+            try {
+                ids.put(key, id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Forget every node, e.g., when nodes recorded may have been rolled back.  No longer warm until warmed again.
+     */
+    public void clear () {
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            warm = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * getter
+     * @return label of the nodes
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * getter
+     * @return number of nodes in the dictionary
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
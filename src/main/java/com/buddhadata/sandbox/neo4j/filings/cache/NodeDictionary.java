@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.cache;
+
+import org.neo4j.ogm.session.Session;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * In-memory dictionary of every node of a single label, from the node's identifying key to its internal Neo4J id.
+ * Filled by a single scan of the label before loading starts and kept current as nodes are created, after which it's
+ * authoritative: a key missing from the dictionary is a node that doesn't exist, so nothing needs to be queried per key
+ * to find out.
+ *
+ * Thread-safe, nodes may be created on multiple threads.
+ *
+ * @param <K> type of the identifying key
+ * @author Scott C Sosna
+ */
+public class NodeDictionary<K> {
+
+    /**
+     * Column holding the node's internal id in the scan results
+     */
+    static public final String ID_COLUMN = "id";
+
+    /**
+     * Label of the nodes, for reporting
+     */
+    private final String label;
+
+    /**
+     * Internal node id by identifying key
+     */
+    private final Map<K,Long> ids = new ConcurrentHashMap<>();
+
+    /**
+     * Has the dictionary been filled, i.e., is it authoritative?
+     */
+    private volatile boolean warm;
+
+    /**
+     * Constructor
+     * @param label label of the nodes, for reporting
+     */
+    public NodeDictionary (String label) {
+        this.label = label;
+    }
+
+    /**
+     * Replace the contents with every node currently in the database.
+     * @param session session used for scanning
+     * @param cypher statement returning the key properties and the internal id (as <code>id</code>) of every node
+     * @param keyOf creates the key from a result row, null when the row has no usable key
+     * @return number of nodes in the dictionary
+     */
+    public int warm (Session session,
+                     String cypher,
+                     Function<Map<String,Object>,K> keyOf) {
+
+        ids.clear();
+        for (Map<String,Object> row : session.query(cypher, Collections.emptyMap())) {
+            K key = keyOf.apply(row);
+            Object id = row.get(ID_COLUMN);
+            if (key != null && id != null) {
+                //  Duplicates left by an earlier load, consistently pick the oldest.
+                ids.merge(key, ((Number) id).longValue(), Math::min);
+            }
+        }
+
+        warm = true;
+        return ids.size();
+    }
+
+    /**
+     * getter
+     * @return true when filled, so that a missing key is a node that doesn't exist
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * Find the internal id of the node with the key
+     * @param key the node's identifying key
+     * @return the internal id, null when there's no such node
+     */
+    public Long get (K key) {
+        return ids.get(key);
+    }
+
+    /**
+     * Record a newly created node
+     * @param key the node's identifying key
+     * @param id the node's internal id
+     */
+    public void put (K key,
+                     Long id) {
+        if (id != null) {
+            ids.put(key, id);
+        }
+    }
+
+    /**
+     * getter
+     * @return label of the nodes
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * getter
+     * @return number of nodes in the dictionary
+     */
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,557 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.export;
+
+import com.buddhadata.sandbox.neo4j.filings.node.*;
+import com.buddhadata.sandbox.neo4j.filings.write.TimeTree;
+import generated.*;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Writes filings as the node and relationship CSV files read by <code>neo4j-admin import</code>, for rebuilding the
+ * database offline rather than loading it through Bolt.  Nodes are resolved in memory using the same identity rules as
+ * the loader (see <code>NodeFactory</code>) and the files produce the same graph: the same labels, properties and
+ * relationships as saving through the OGM or the batch writer.  The LOBBIED relationships' running totals are kept in
+ * memory and only written once all filings have been, when closed.  Optionally the filings are bucketed into a time
+ * tree as <code>TimeTree</code> does, each year's buckets written the first time a filing needs them.
+ *
+ * Each file has a separate header file, e.g., <code>Client-header.csv</code> and <code>Client.csv</code>.  Node ids
+ * are only used to relate nodes during the import, they're not stored as properties.  Not thread-safe.
+ *
+ * @author Scott C Sosna
+ */
+public class ImportCsvWriter
+    implements Closeable {
+
+    /**
+     * Offset of the first of January's node id from its year's, after the year, four quarters and twelve months
+     */
+    static private final int FIRST_DAY = 17;
+
+    //  Node files, the first column is always the node's id within the id space of its label.
+    private final CsvFile clients;
+    private final CsvFile entities;
+    private final CsvFile filings;
+    private final CsvFile issues;
+    private final CsvFile lobbyists;
+    private final CsvFile registrants;
+
+    //  Relationship files
+    private final CsvFile about;
+    private final CsvFile employs;
+    private final CsvFile engages;
+    private final CsvFile filed;
+    private final CsvFile lobbied;
+    private final CsvFile lobbyingFor;
+    private final CsvFile onBehalfOf;
+    private final CsvFile targetedAt;
+
+    //  Time tree files, null without a time tree.  The buckets of all labels share an id space, a filing's period may
+    //  be a quarter or a year.
+    private final CsvFile years;
+    private final CsvFile quarters;
+    private final CsvFile months;
+    private final CsvFile days;
+    private final CsvFile hasQuarter;
+    private final CsvFile hasMonth;
+    private final CsvFile hasDay;
+    private final CsvFile next;
+    private final CsvFile receivedOn;
+    private final CsvFile forPeriod;
+
+    /**
+     * Every file written, in the order the import should read them
+     */
+    private final List<CsvFile> files = new ArrayList<>();
+
+    //  Node ids by identifying key, for the nodes written so far.
+    private final Map<String,Long> clientIds = new HashMap<>();
+    private final Map<String,Long> entityIds = new HashMap<>();
+    private final Map<String,Long> issueIds = new HashMap<>();
+    private final Map<LobbyistKey,Long> lobbyistIds = new HashMap<>();
+    private final Map<Long,Long> registrantIds = new HashMap<>();
+
+    //  Relationships between clients/registrants and registrants/lobbyists are written once however many filings
+    //  they share, the pair of node ids packed into a single long.
+    private final Set<Long> engaged = new HashSet<>();
+    private final Set<Long> employed = new HashSet<>();
+
+    //  Number and total amount of the filings by each registrant targeting each entity, keyed by the node ids of the
+    //  registrant and entity and the filings' year and period.
+    private final Map<List<Object>,long[]> lobbiedTotals = new LinkedHashMap<>();
+
+    //  Node id of each year written to the time tree.  A year's buckets have consecutive ids: the year, its quarters,
+    //  its months and then its days.
+    private final Map<Integer,Long> yearIds = new HashMap<>();
+
+    /**
+     * Next node id
+     */
+    private long nextId;
+
+    /**
+     * Number of filings skipped because they have no amount
+     */
+    private long skipped;
+
+    /**
+     * Constructor, creates the directory and the header files
+     * @param directory where the files are written
+     * @throws IOException unable to create the directory or files
+     */
+    public ImportCsvWriter (Path directory)
+        throws IOException {
+        this(directory, false);
+    }
+
+    /**
+     * Constructor, creates the directory and the header files
+     * @param directory where the files are written
+     * @param timeTree true to bucket the filings into a time tree
+     * @throws IOException unable to create the directory or files
+     */
+    public ImportCsvWriter (Path directory,
+                            boolean timeTree)
+        throws IOException {
+
+        Files.createDirectories(directory);
+
+        //  Property names and types as the OGM names them, from the fields of the node classes.
+        clients = open(directory, "Client", true, ":ID(Client)", "name", "clientId:long", "desc", "contactName", "country",
+            "countryPPB", "state", "statePBB", "selfFilerInd:boolean", "stateLocalGovtInd:boolean");
+        entities = open(directory, "GovernmentEntity", true, ":ID(GovernmentEntity)", "name");
+        filings = open(directory, "Filing", true, ":ID(Filing)", "filingId", "year:int", "receivedOn:localdatetime",
+            "receivedYear:int", "receivedMonth:int", "receivedDay:int", "quarter:int", "amount:int", "type", "period");
+        issues = open(directory, "Issue", true, ":ID(Issue)", "code");
+        lobbyists = open(directory, "Lobbyist", true, ":ID(Lobbyist)", "firstName", "surname", "govtPositionInd:boolean",
+            "govtPositionDesc", "activityInfo");
+        registrants = open(directory, "Registrant", true, ":ID(Registrant)", "registrantId:long", "name", "description", "address",
+            "country", "countryPBB");
+
+        about = open(directory, "ABOUT", false, ":START_ID(Filing)", ":END_ID(Issue)");
+        employs = open(directory, "EMPLOYS", false, ":START_ID(Registrant)", ":END_ID(Lobbyist)");
+        engages = open(directory, "ENGAGES", false, ":START_ID(Client)", ":END_ID(Registrant)");
+        filed = open(directory, "FILED", false, ":START_ID(Registrant)", ":END_ID(Filing)");
+        lobbied = open(directory, "LOBBIED", false, ":START_ID(Registrant)", ":END_ID(GovernmentEntity)", "year:int", "period",
+            "filingCnt:long", "filingAmt:long");
+        lobbyingFor = open(directory, "LOBBYING_FOR", false, ":START_ID(Lobbyist)", ":END_ID(Filing)");
+        onBehalfOf = open(directory, "ON_BEHALF_OF", false, ":START_ID(Filing)", ":END_ID(Client)");
+        targetedAt = open(directory, "TARGETED_AT", false, ":START_ID(Filing)", ":END_ID(GovernmentEntity)");
+
+        years = timeTree ? open(directory, "Year", true, ":ID(TimeTree)", "year:int") : null;
+        quarters = timeTree ? open(directory, "Quarter", true, ":ID(TimeTree)", "year:int", "quarter:int") : null;
+        months = timeTree ? open(directory, "Month", true, ":ID(TimeTree)", "year:int", "month:int") : null;
+        days = timeTree ? open(directory, "Day", true, ":ID(TimeTree)", "year:int", "month:int", "day:int") : null;
+        hasQuarter = timeTree ? open(directory, "HAS_QUARTER", false, ":START_ID(TimeTree)", ":END_ID(TimeTree)") : null;
+        hasMonth = timeTree ? open(directory, "HAS_MONTH", false, ":START_ID(TimeTree)", ":END_ID(TimeTree)") : null;
+        hasDay = timeTree ? open(directory, "HAS_DAY", false, ":START_ID(TimeTree)", ":END_ID(TimeTree)") : null;
+        next = timeTree ? open(directory, "NEXT", false, ":START_ID(TimeTree)", ":END_ID(TimeTree)") : null;
+        receivedOn = timeTree ? open(directory, "RECEIVED_ON", false, ":START_ID(Filing)", ":END_ID(TimeTree)") : null;
+        forPeriod = timeTree ? open(directory, "FOR_PERIOD", false, ":START_ID(Filing)", ":END_ID(TimeTree)") : null;
+    }
+
+    /**
+     * Write a filing, along with any node it references that hasn't been written yet and its relationships.
+     * @param one the filing read from the source data
+     */
+    public void add (FilingType one) {
+
+        if (!NodeFactory.hasAmount(one)) {
+            skipped++;
+            return;
+        }
+
+        //  Client and the filing itself
+        long clientId = client(one.getClient());
+        Filing filing = NodeFactory.filing(one, null);
+        long filingId = nextId++;
+        filings.write(filingId, filing.getFilingId(), filing.getYear(),
+            filing.getReceivedOn() != null ? filing.getReceivedOn().toString() : null,
+            filing.getReceivedYear(), filing.getReceivedMonth(), filing.getReceivedDay(), filing.getQuarter(),
+            filing.getAmount(), filing.getType(), filing.getPeriod());
+        onBehalfOf.write(filingId, clientId);
+
+        //  The filing's buckets, the day it was received and the quarter, or year, it covers
+        if (years != null) {
+            if (filing.getReceivedYear() != null) {
+                receivedOn.write(filingId, year(filing.getReceivedYear()) + FIRST_DAY +
+                    TimeTree.dayOfYear(filing.getReceivedYear(), filing.getReceivedMonth(), filing.getReceivedDay()));
+            }
+            if (filing.getYear() >= 1) {
+                forPeriod.write(filingId, year(filing.getYear()) + ((filing.getQuarter() != null) ? filing.getQuarter() : 0));
+            }
+        }
+
+        //  Registrant, engaged by the client
+        long registrantId = registrant(one.getRegistrant());
+        filed.write(registrantId, filingId);
+        if (engaged.add(pack(clientId, registrantId))) {
+            engages.write(clientId, registrantId);
+        }
+
+        //  A filing relates to each lobbyist, entity and issue once, however often they're repeated in the filing.
+        if (one.getLobbyists() != null && one.getLobbyists().getLobbyist() != null) {
+            Set<Long> related = new HashSet<>();
+            for (LobbyistType l : one.getLobbyists().getLobbyist()) {
+                LobbyistKey key = NodeFactory.lobbyistKey(l);
+                if (key != null) {
+                    long lobbyistId = lobbyist(l, key);
+                    if (related.add(lobbyistId)) {
+                        lobbyingFor.write(lobbyistId, filingId);
+                    }
+                    if (employed.add(pack(registrantId, lobbyistId))) {
+                        employs.write(registrantId, lobbyistId);
+                    }
+                }
+            }
+        }
+
+        if (one.getGovernmentEntities() != null) {
+            Set<Long> related = new HashSet<>();
+            for (GovernmentEntityType entity : one.getGovernmentEntities().getGovernmentEntity()) {
+                long entityId = entity(entity);
+                if (related.add(entityId)) {
+                    targetedAt.write(filingId, entityId);
+                    if (filing.getPeriod() != null) {
+                        long[] totals = lobbiedTotals.computeIfAbsent(Arrays.asList(registrantId, entityId, filing.getYear(), filing.getPeriod()), k -> new long[2]);
+                        totals[0]++;
+                        totals[1] += filing.getAmount();
+                    }
+                }
+            }
+        }
+
+        if (one.getIssues() != null && one.getIssues().getIssue() != null) {
+            Set<Long> related = new HashSet<>();
+            for (IssueType iss : one.getIssues().getIssue()) {
+                long issueId = issue(NodeFactory.issueKey(iss));
+                if (related.add(issueId)) {
+                    about.write(filingId, issueId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the LOBBIED relationships and close all files
+     * @throws IOException unable to close a file
+     */
+    @Override
+    public void close ()
+        throws IOException {
+
+        for (Map.Entry<List<Object>,long[]> one : lobbiedTotals.entrySet()) {
+            List<Object> key = one.getKey();
+            lobbied.write(key.get(0), key.get(1), key.get(2), key.get(3), one.getValue()[0], one.getValue()[1]);
+        }
+        lobbiedTotals.clear();
+
+        IOException failure = null;
+        for (CsvFile file : files) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                failure = (failure == null) ? e : failure;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The command importing the files into a new database, to be run from the directory the files were written to.
+     * @param database name of the database to create
+     * @return the <code>neo4j-admin import</code> command line
+     */
+    public String importCommand (String database) {
+
+        //  Quoted values may contain line breaks, e.g., the registrants' addresses.
+        StringBuilder sb = new StringBuilder("neo4j-admin import --database=").append(database).append(" --id-type=INTEGER --multiline-fields=true");
+        for (CsvFile file : files) {
+            sb.append(file.node ? " --nodes:" : " --relationships:").append(file.name).append('=')
+                .append(file.header.getFileName()).append(',').append(file.data.getFileName());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Summarize what's been written
+     * @return single line summary
+     */
+    public String summary () {
+        return String.format("%,d filings (%,d skipped), %,d clients, %,d registrants, %,d lobbyists, %,d government entities, %,d issues",
+            filings.rows, skipped, clients.rows, registrants.rows, lobbyists.rows, entities.rows, issues.rows);
+    }
+
+    /**
+     * Find or write the client
+     * @param client client read from the source data
+     * @return the client's node id
+     */
+    private long client (ClientType client) {
+
+        String key = NodeFactory.clientKey(client);
+        Long id = clientIds.get(key);
+        if (id == null) {
+            Client node = NodeFactory.client(client);
+            id = nextId++;
+            clientIds.put(key, id);
+            clients.write(id, node.getName(), node.getClientId(), node.getDesc(), node.getContactName(), node.getCountry(),
+                node.getCountryPPB(), node.getState(), node.getStatePBB(), node.isSelfFilerInd(), node.isStateLocalGovtInd());
+        }
+        return id;
+    }
+
+    /**
+     * Find or write the registrant
+     * @param registrant registrant read from the source data
+     * @return the registrant's node id
+     */
+    private long registrant (RegistrantType registrant) {
+
+        Long key = NodeFactory.registrantKey(registrant);
+        Long id = registrantIds.get(key);
+        if (id == null) {
+            Registrant node = NodeFactory.registrant(registrant);
+            id = nextId++;
+            registrantIds.put(key, id);
+            registrants.write(id, node.getRegistrantId(), node.getName(), node.getDescription(), node.getAddress(),
+                node.getCountry(), node.getCountryPBB());
+        }
+        return id;
+    }
+
+    /**
+     * Find or write the lobbyist
+     * @param lobbyist lobbyist read from the source data
+     * @param key the lobbyist's identifying key
+     * @return the lobbyist's node id
+     */
+    private long lobbyist (LobbyistType lobbyist,
+                           LobbyistKey key) {
+
+        Long id = lobbyistIds.get(key);
+        if (id == null) {
+            Lobbyist node = NodeFactory.lobbyist(lobbyist, key);
+            id = nextId++;
+            lobbyistIds.put(key, id);
+            lobbyists.write(id, node.getFirstName(), node.getSurname(), node.isGovtPositionInd(), node.getGovtPositionDesc(),
+                node.getActivityInfo());
+        }
+        return id;
+    }
+
+    /**
+     * Find or write the government entity
+     * @param entity government entity read from the source data
+     * @return the entity's node id
+     */
+    private long entity (GovernmentEntityType entity) {
+
+        String key = NodeFactory.entityKey(entity);
+        Long id = entityIds.get(key);
+        if (id == null) {
+            id = nextId++;
+            entityIds.put(key, id);
+            entities.write(id, NodeFactory.entity(entity).getName());
+        }
+        return id;
+    }
+
+    /**
+     * Find or write a year's buckets, chaining its days to those of the years before and after when already written
+     * @param year year
+     * @return the year's node id, its quarters, months and days follow
+     */
+    private long year (int year) {
+
+        Long id = yearIds.get(year);
+        if (id != null) {
+            return id;
+        }
+
+        id = nextId;
+        yearIds.put(year, id);
+        years.write(id, year);
+        long day = id + FIRST_DAY;
+        int[] lengths = TimeTree.lengthOfMonths(year);
+        for (int quarter = 1; quarter <= 4; quarter++) {
+            quarters.write(id + quarter, year, quarter);
+            hasQuarter.write(id, id + quarter);
+            for (int month = quarter * 3 - 2; month <= quarter * 3; month++) {
+                months.write(id + 4 + month, year, month);
+                hasMonth.write(id + quarter, id + 4 + month);
+                for (int d = 1; d <= lengths[month - 1]; d++, day++) {
+                    days.write(day, year, month, d);
+                    hasDay.write(id + 4 + month, day);
+                    if (d > 1 || month > 1) {
+                        next.write(day - 1, day);
+                    }
+                }
+            }
+        }
+        nextId = day;
+
+        //  Last day of the year before to the first of this year, and the last of this year to the first of the next.
+        if (yearIds.containsKey(year - 1)) {
+            next.write(yearIds.get(year - 1) + FIRST_DAY + TimeTree.dayOfYear(year - 1, 12, 31), id + FIRST_DAY);
+        }
+        if (yearIds.containsKey(year + 1)) {
+            next.write(day - 1, yearIds.get(year + 1) + FIRST_DAY);
+        }
+        return id;
+    }
+
+    /**
+     * Find or write the issue
+     * @param issueCode the issue's code
+     * @return the issue's node id
+     */
+    private long issue (String issueCode) {
+
+        Long id = issueIds.get(issueCode);
+        if (id == null) {
+            id = nextId++;
+            issueIds.put(issueCode, id);
+            issues.write(id, NodeFactory.issue(issueCode).getCode());
+        }
+        return id;
+    }
+
+    /**
+     * Create one of the files, writing its header file
+     * @param directory where the files are written
+     * @param name label or relationship type
+     * @param node true for a node file, false for relationships
+     * @param columns the header's columns
+     * @return the file, ready for writing rows
+     * @throws IOException unable to create the files
+     */
+    private CsvFile open (Path directory,
+                          String name,
+                          boolean node,
+                          String... columns)
+        throws IOException {
+
+        CsvFile file = new CsvFile(directory, name, node, columns);
+        files.add(file);
+        return file;
+    }
+
+    /**
+     * Pack the node ids of two related nodes into a single value, node ids are far less than 2^32.
+     * @param from node id of the start node
+     * @param to node id of the end node
+     * @return the packed pair
+     */
+    private long pack (long from,
+                       long to) {
+        return (from << 32) | to;
+    }
+
+    /**
+     * A single data file and its header file.
+     */
+    static private class CsvFile
+        implements Closeable {
+
+        /**
+         * Label or relationship type
+         */
+        private final String name;
+
+        /**
+         * Node or relationship file?
+         */
+        private final boolean node;
+
+        /**
+         * The header file
+         */
+        private final Path header;
+
+        /**
+         * The data file
+         */
+        private final Path data;
+
+        /**
+         * Writes the data file
+         */
+        private final Writer writer;
+
+        /**
+         * Number of rows written
+         */
+        private long rows;
+
+        /**
+         * Constructor, writes the header file and opens the data file
+         * @param directory where the files are written
+         * @param name label or relationship type
+         * @param node true for a node file, false for relationships
+         * @param columns the header's columns
+         * @throws IOException unable to create the files
+         */
+        CsvFile (Path directory,
+                 String name,
+                 boolean node,
+                 String... columns)
+            throws IOException {
+
+            this.name = name;
+            this.node = node;
+            this.header = directory.resolve(name + "-header.csv");
+            this.data = directory.resolve(name + ".csv");
+
+            Files.write(header, Collections.singletonList(String.join(",", columns)), StandardCharsets.UTF_8);
+            writer = new BufferedWriter(Files.newBufferedWriter(data, StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        /**
+         * Write a single row.  Strings are always quoted so that commas, quotes and line breaks survive, a null is an
+         * empty unquoted field which the import leaves out rather than storing an empty string.
+         * @param values the row's values, in header order
+         */
+        void write (Object... values) {
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    Object value = values[i];
+                    if (value instanceof String) {
+                        writer.write('"');
+                        writer.write(((String) value).replace("\"", "\"\""));
+                        writer.write('"');
+                    } else if (value != null) {
+                        writer.write(value.toString());
+                    }
+                }
+                writer.write('\n');
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to write " + data, e);
+            }
+        }
+
+        @Override
+        public void close ()
+            throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.generate;
+
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.IntSupplier;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes synthetic lobbying filings in the same layout as the Senate's downloads: one zip file per quarter, named
+ * <code>2015_1.zip</code> onwards as the loader expects, each holding UTF-16 XML documents valid against
+ * <code>filings.xsd</code>.  Put the output directory on the loader's classpath to load it.
+ *
+ * How many filings there are and how many distinct clients, registrants, lobbyists, government entities and issues
+ * they're spread across are all controlled, as is how skewed the reuse is: clients, registrants and lobbyists are drawn
+ * Zipf-distributed so that a few appear in many filings, as do government entities and issues with their own skew.
+ * Each client mostly files through the same registrant, and each registrant's lobbyists come from its own roster, so
+ * the relationships between them look like the real data's rather than every filing relating strangers.  The same
+ * settings always generate the same files.
+ *
+ * Configured by system properties, defaults roughly the size of the real data:
+ * <pre>
+ *   filings.generate.dir         output directory, default generated-filings
+ *   filings.generate.zips        number of quarterly zip files, default 19
+ *   filings.generate.filings     filings per zip file, default 20000
+ *   filings.generate.entrySize   filings per XML document within a zip file, default 5000
+ *   filings.generate.clients     distinct clients, default 20000
+ *   filings.generate.registrants distinct registrants, default 3000
+ *   filings.generate.lobbyists   distinct lobbyists, default 15000
+ *   filings.generate.entities    distinct government entities, default 250
+ *   filings.generate.issues      distinct issues, default 78 (the real issue codes)
+ *   filings.generate.scale       multiplies the filings, clients, registrants and lobbyists, default 1
+ *   filings.generate.skew        Zipf exponent for clients, registrants and lobbyists, default 1.0
+ *   filings.generate.topicSkew   Zipf exponent for government entities and issues, default 1.2
+ *   filings.generate.noActivity  fraction of filings with no amount, which the loader skips, default 0.15
+ *   filings.generate.seed        random seed, default 2019
+ *   filings.generate.validate    validate the first zip file against the schema, default true
+ *   filings.generate.schema      the schema, default src/main/xsd/filings.xsd
+ * </pre>
+ *
+ * @author Scott C Sosna
+ */
+public class FilingsGenerator {
+
+    /**
+     * Multiplies the counts of filings, clients, registrants and lobbyists, for testing at multiples of real volume
+     */
+    static private final int SCALE = Integer.getInteger("filings.generate.scale", 1);
+
+    /**
+     * Directory to which zip files are written
+     */
+    static private final String OUTPUT_DIRECTORY = System.getProperty("filings.generate.dir", "generated-filings");
+
+    /**
+     * Number of quarterly zip files
+     */
+    static private final int ZIP_COUNT = Integer.getInteger("filings.generate.zips", 19);
+
+    /**
+     * Filings in each zip file
+     */
+    static private final int FILINGS_PER_ZIP = Integer.getInteger("filings.generate.filings", 20000) * SCALE;
+
+    /**
+     * Filings in each XML document within a zip file
+     */
+    static private final int FILINGS_PER_ENTRY = Integer.getInteger("filings.generate.entrySize", 5000);
+
+    //  Number of distinct nodes of each type
+    static private final int CLIENTS = Integer.getInteger("filings.generate.clients", 20000) * SCALE;
+    static private final int REGISTRANTS = Integer.getInteger("filings.generate.registrants", 3000) * SCALE;
+    static private final int LOBBYISTS = Integer.getInteger("filings.generate.lobbyists", 15000) * SCALE;
+    static private final int ENTITIES = Integer.getInteger("filings.generate.entities", 250);
+    static private final int ISSUES = Integer.getInteger("filings.generate.issues", 78);
+
+    /**
+     * Zipf exponent for drawing clients, registrants and lobbyists
+     */
+    static private final double SKEW = Double.parseDouble(System.getProperty("filings.generate.skew", "1.0"));
+
+    /**
+     * Zipf exponent for drawing government entities and issues
+     */
+    static private final double TOPIC_SKEW = Double.parseDouble(System.getProperty("filings.generate.topicSkew", "1.2"));
+
+    /**
+     * Fraction of filings reporting no lobbying activity, i.e., with no amount
+     */
+    static private final double NO_ACTIVITY = Double.parseDouble(System.getProperty("filings.generate.noActivity", "0.15"));
+
+    /**
+     * Random seed, the same seed generates the same files
+     */
+    static private final long SEED = Long.getLong("filings.generate.seed", 2019);
+
+    /**
+     * Validate the first zip file against the schema?
+     */
+    static private final boolean VALIDATE = Boolean.parseBoolean(System.getProperty("filings.generate.validate", "true"));
+
+    /**
+     * The schema validated against
+     */
+    static private final String SCHEMA = System.getProperty("filings.generate.schema", "src/main/xsd/filings.xsd");
+
+    //  Most lobbyists, government entities and issues on a single filing, each filing has at least one.
+    static private final int MAX_LOBBYISTS = 6;
+    static private final int MAX_ENTITIES = 4;
+    static private final int MAX_ISSUES = 3;
+
+    /**
+     * How often a client files through its usual registrant
+     */
+    static private final double USUAL_REGISTRANT = 0.9;
+
+    /**
+     * First year of filings, the loader's first zip file
+     */
+    static private final int FIRST_YEAR = 2015;
+
+    /**
+     * The Senate's general issue area codes, used for as many issues as there are codes
+     */
+    static private final String[] ISSUE_CODES = {
+        "ACC", "ADV", "AER", "AGR", "ALC", "ANI", "APP", "ART", "AUT", "AVI", "BAN", "BEV", "BNK", "BUD", "CAW", "CDT",
+        "CHM", "CIV", "COM", "CON", "CPI", "CPT", "CSP", "DEF", "DIS", "DOC", "ECN", "EDU", "ENG", "ENV", "FAM", "FIN",
+        "FIR", "FOO", "FOR", "FUE", "GAM", "GOV", "HCR", "HOM", "HOU", "IMM", "IND", "INS", "INT", "LAW", "LBR", "MAN",
+        "MAR", "MED", "MIA", "MMM", "MON", "NAT", "PHA", "POS", "REL", "RES", "RET", "ROD", "RRR", "SCI", "SMB", "SPO",
+        "TAR", "TAX", "TEC", "TOB", "TOR", "TRA", "TRD", "TRU", "UNM", "URB", "UTI", "VET", "WAS", "WEL"
+    };
+
+    //  Words from which names are made, the index of the node keeps each name distinct.
+    static private final String[] NAME_WORDS = {
+        "AMERICAN", "NATIONAL", "UNITED", "FIRST", "GLOBAL", "ATLANTIC", "PACIFIC", "CAPITOL", "FEDERAL", "WESTERN",
+        "SOUTHERN", "NORTHERN", "ALLIED", "GENERAL", "PIONEER", "SUMMIT", "LIBERTY", "HERITAGE", "FRONTIER", "MERIDIAN"
+    };
+    static private final String[] CLIENT_KINDS = {
+        "ASSOCIATION", "INDUSTRIES", "HEALTH SYSTEM", "UNIVERSITY", "COALITION", "ENERGY", "PHARMACEUTICALS", "BANCORP",
+        "TECHNOLOGIES", "MANUFACTURING", "COUNTY", "FOUNDATION", "TELECOM", "INSURANCE", "AIRLINES", "FARM BUREAU"
+    };
+    static private final String[] REGISTRANT_KINDS = {
+        "STRATEGIES", "GOVERNMENT RELATIONS", "PUBLIC AFFAIRS", "LLP", "ADVOCACY GROUP", "CONSULTING", "PARTNERS"
+    };
+    static private final String[] SURNAMES = {
+        "SMITH", "JOHNSON", "WILLIAMS", "BROWN", "JONES", "MILLER", "DAVIS", "GARCIA", "RODRIGUEZ", "WILSON",
+        "MARTINEZ", "ANDERSON", "TAYLOR", "THOMAS", "HERNANDEZ", "MOORE", "MARTIN", "JACKSON", "THOMPSON", "WHITE"
+    };
+    static private final String[] FIRST_NAMES = {
+        "JAMES", "MARY", "ROBERT", "PATRICIA", "JOHN", "JENNIFER", "MICHAEL", "LINDA", "DAVID", "ELIZABETH",
+        "WILLIAM", "BARBARA", "RICHARD", "SUSAN", "JOSEPH", "JESSICA", "THOMAS", "SARAH", "CHRISTOPHER", "KAREN"
+    };
+    static private final String[] ENTITY_NAMES = {
+        "SENATE", "HOUSE OF REPRESENTATIVES", "White House Office", "Treasury, Dept of", "Defense, Dept of (DOD)",
+        "Health & Human Services, Dept of  (HHS)", "Commerce, Dept of (DOC)", "Energy, Dept of",
+        "Environmental Protection Agency (EPA)", "Agriculture, Dept of (USDA)", "Transportation, Dept of (DOT)",
+        "Centers For Medicare and Medicaid Services (CMS)", "Office of Management & Budget (OMB)",
+        "Federal Communications Commission (FCC)", "Food & Drug Administration (FDA)", "State, Dept of (DOS)"
+    };
+    static private final String[] STATES = { "DC", "VA", "MD", "NY", "CA", "TX", "IL", "FL", "PA", "OH" };
+
+    /**
+     * Period of each quarter, as reported in the filings
+     */
+    static private final String[] PERIODS = {
+        "1st Quarter (Jan 1 - Mar 31)", "2nd Quarter (Apr 1 - June 30)", "3rd Quarter (July 1 - Sep 30)", "4th Quarter (Oct 1 - Dec 31)"
+    };
+
+    /**
+     * Type of each quarter's filing
+     */
+    static private final String[] TYPES = {
+        "FIRST QUARTER REPORT", "SECOND QUARTER REPORT", "THIRD QUARTER REPORT", "FOURTH QUARTER REPORT"
+    };
+
+    /**
+     * Drawn from for everything, so the same seed generates the same files
+     */
+    private final Random random = new Random(SEED);
+
+    //  Draw the ranks of each node type, rank 0 the most frequently drawn.
+    private final ZipfSampler clients = new ZipfSampler(CLIENTS, SKEW);
+    private final ZipfSampler registrants = new ZipfSampler(REGISTRANTS, SKEW);
+    private final ZipfSampler roster;
+    private final ZipfSampler entities = new ZipfSampler(ENTITIES, TOPIC_SKEW);
+    private final ZipfSampler issues = new ZipfSampler(ISSUES, TOPIC_SKEW);
+
+    /**
+     * Registrant each client usually files through
+     */
+    private final int[] usualRegistrant = new int[CLIENTS];
+
+    /**
+     * Lobbyists employed by each registrant start at the registrant's offset into all lobbyists
+     */
+    private final int rosterSpacing;
+
+    //  Distinct nodes appearing in loadable filings, for reporting.
+    private final BitSet clientsUsed = new BitSet();
+    private final BitSet registrantsUsed = new BitSet();
+    private final BitSet lobbyistsUsed = new BitSet();
+    private final BitSet entitiesUsed = new BitSet();
+    private final BitSet issuesUsed = new BitSet();
+
+    /**
+     * Number of filings written, across all zip files
+     */
+    private long written;
+
+    /**
+     * Number of filings written that the loader loads, i.e., with an amount
+     */
+    private long loadable;
+
+    /**
+     * Constructor
+     */
+    private FilingsGenerator () {
+
+        for (int i = 0; i < CLIENTS; i++) {
+            usualRegistrant[i] = registrants.sample(random);
+        }
+
+        //  Rosters overlap their neighbours', lobbyists do move between firms.
+        rosterSpacing = Math.max(1, LOBBYISTS / REGISTRANTS);
+        roster = new ZipfSampler(Math.min(LOBBYISTS, Math.max(MAX_LOBBYISTS * 2, rosterSpacing * 2)), SKEW);
+    }
+
+    /**
+     * Write all the zip files
+     * @throws IOException unable to write
+     * @throws XMLStreamException unable to write
+     */
+    private void generate ()
+        throws IOException, XMLStreamException {
+
+        Path directory = Paths.get(OUTPUT_DIRECTORY);
+        Files.createDirectories(directory);
+
+        for (int z = 0; z < ZIP_COUNT; z++) {
+            int year = FIRST_YEAR + z / 4;
+            int quarter = z % 4;
+            Path zipFile = directory.resolve(year + "_" + (quarter + 1) + ".zip");
+
+            long start = System.currentTimeMillis();
+            try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(zipFile)))) {
+                //  Compressing is most of the time spent, UTF-16 XML compresses well enough regardless.
+                zos.setLevel(Deflater.BEST_SPEED);
+                for (int entry = 0, remaining = FILINGS_PER_ZIP; remaining > 0; entry++, remaining -= FILINGS_PER_ENTRY) {
+                    zos.putNextEntry(new ZipEntry(year + "_" + (quarter + 1) + "_" + (entry + 1) + ".xml"));
+                    writeDocument(zos, year, quarter, Math.min(remaining, FILINGS_PER_ENTRY));
+                    zos.closeEntry();
+                }
+            }
+
+            System.out.println (String.format("Wrote %s, %,d filings, %,d bytes in %d ms", zipFile, FILINGS_PER_ZIP,
+                Files.size(zipFile), (System.currentTimeMillis() - start)));
+        }
+
+        System.out.println (String.format("%,d filings, %,d with an amount, across %,d clients, %,d registrants, %,d lobbyists, %,d government entities and %,d issues",
+            written, loadable, clientsUsed.cardinality(), registrantsUsed.cardinality(), lobbyistsUsed.cardinality(),
+            entitiesUsed.cardinality(), issuesUsed.cardinality()));
+    }
+
+    /**
+     * Write a single XML document of filings to the current zip entry
+     * @param out the zip entry, left open
+     * @param year year of the filings
+     * @param quarter quarter of the filings, 0 for the first
+     * @param count number of filings
+     * @throws IOException unable to write
+     * @throws XMLStreamException unable to write
+     */
+    private void writeDocument (OutputStream out,
+                                int year,
+                                int quarter,
+                                int count)
+        throws IOException, XMLStreamException {
+
+        //  The zip stream mustn't be closed, only flushed, more entries follow.  FilterOutputStream would otherwise
+        //  write arrays a byte at a time.
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                return;
+            }
+        }, StandardCharsets.UTF_16));
+        XMLStreamWriter xsw = XMLOutputFactory.newFactory().createXMLStreamWriter(writer);
+
+        xsw.writeStartDocument("UTF-16", "1.0");
+        xsw.writeStartElement("PublicFilings");
+        for (int i = 0; i < count; i++) {
+            writeFiling(xsw, year, quarter);
+        }
+        xsw.writeEndElement();
+        xsw.writeEndDocument();
+        xsw.close();
+        writer.flush();
+    }
+
+    /**
+     * Write a single filing
+     * @param xsw XML being written
+     * @param year year of the filing
+     * @param quarter quarter of the filing, 0 for the first
+     * @throws XMLStreamException unable to write
+     */
+    private void writeFiling (XMLStreamWriter xsw,
+                              int year,
+                              int quarter)
+        throws XMLStreamException {
+
+        int client = clients.sample(random);
+        int registrant = random.nextDouble() < USUAL_REGISTRANT ? usualRegistrant[client] : registrants.sample(random);
+        boolean active = random.nextDouble() >= NO_ACTIVITY;
+
+        written++;
+        if (active) {
+            loadable++;
+            clientsUsed.set(client);
+            registrantsUsed.set(registrant);
+        }
+
+        xsw.writeStartElement("Filing");
+        xsw.writeAttribute("ID", new UUID(random.nextLong(), random.nextLong()).toString().toUpperCase());
+        xsw.writeAttribute("Year", String.valueOf(year));
+        xsw.writeAttribute("Received", received(year, quarter));
+        xsw.writeAttribute("Amount", active ? String.valueOf(amount()) : "");
+        xsw.writeAttribute("Type", TYPES[quarter]);
+        xsw.writeAttribute("Period", PERIODS[quarter]);
+
+        xsw.writeEmptyElement("Registrant");
+        xsw.writeAttribute("RegistrantID", String.valueOf(300000L + registrant * 7L));
+        xsw.writeAttribute("RegistrantName", pick(NAME_WORDS, registrant) + " " + pick(REGISTRANT_KINDS, registrant / NAME_WORDS.length) + " " + registrant);
+        xsw.writeAttribute("GeneralDescription", "Government relations");
+        xsw.writeAttribute("Address", (100 + registrant % 900) + " K Street NW\r\nSuite " + (registrant % 1200) + "\r\nWashington, DC 20006");
+        xsw.writeAttribute("RegistrantCountry", "USA");
+        xsw.writeAttribute("RegistrantPPBCountry", "USA");
+
+        //  Client IDs are assigned by each registrant, so they're not unique: clients are identified by name.
+        xsw.writeEmptyElement("Client");
+        xsw.writeAttribute("ClientName", pick(NAME_WORDS, client) + " " + pick(CLIENT_KINDS, client / NAME_WORDS.length) + " " + client);
+        xsw.writeAttribute("GeneralDescription", pick(CLIENT_KINDS, client));
+        xsw.writeAttribute("ClientID", String.valueOf(1 + client % Math.max(1, CLIENTS / 4)));
+        xsw.writeAttribute("SelfFiler", client % 50 == 0 ? "TRUE" : "FALSE");
+        xsw.writeAttribute("ContactFullname", pick(FIRST_NAMES, client) + " " + pick(SURNAMES, client / FIRST_NAMES.length));
+        xsw.writeAttribute("IsStateOrLocalGov", client % 40 == 0 ? "TRUE" : "FALSE");
+        xsw.writeAttribute("ClientCountry", "USA");
+        xsw.writeAttribute("ClientPPBCountry", "USA");
+        xsw.writeAttribute("ClientState", pick(STATES, client));
+        xsw.writeAttribute("ClientPPBState", pick(STATES, client));
+
+        xsw.writeStartElement("Lobbyists");
+        for (int lobbyist : distinct(MAX_LOBBYISTS, () -> (registrant * rosterSpacing + roster.sample(random)) % LOBBYISTS)) {
+            boolean covered = random.nextDouble() < 0.1;
+            if (active) {
+                lobbyistsUsed.set(lobbyist);
+            }
+            xsw.writeEmptyElement("Lobbyist");
+            xsw.writeAttribute("LobbyistName", pick(SURNAMES, lobbyist) + lobbyist + ", " + pick(FIRST_NAMES, lobbyist / SURNAMES.length));
+            xsw.writeAttribute("LobbyistCoveredGovPositionIndicator", covered ? "COVERED" : "NOT COVERED");
+            xsw.writeAttribute("OfficialPosition", covered ? "Legislative Director, Rep. " + pick(SURNAMES, lobbyist / 7) : "");
+            xsw.writeAttribute("ActivityInformation", "");
+        }
+        xsw.writeEndElement();
+
+        xsw.writeStartElement("GovernmentEntities");
+        for (int entity : distinct(MAX_ENTITIES, () -> entities.sample(random))) {
+            if (active) {
+                entitiesUsed.set(entity);
+            }
+            xsw.writeEmptyElement("GovernmentEntity");
+            xsw.writeAttribute("GovEntityName", entity < ENTITY_NAMES.length ? ENTITY_NAMES[entity] : "Government Entity " + entity);
+        }
+        xsw.writeEndElement();
+
+        xsw.writeStartElement("Issues");
+        for (int issue : distinct(MAX_ISSUES, () -> issues.sample(random))) {
+            if (active) {
+                issuesUsed.set(issue);
+            }
+            xsw.writeEmptyElement("Issue");
+            xsw.writeAttribute("Code", issue < ISSUE_CODES.length ? ISSUE_CODES[issue] : "X" + issue);
+            xsw.writeAttribute("SpecificIssue", "Issues relating to " + pick(CLIENT_KINDS, issue).toLowerCase() + ", H.R. " + (1000 + random.nextInt(5000)));
+        }
+        xsw.writeEndElement();
+
+        xsw.writeEndElement();
+    }
+
+    /**
+     * Draw between one and the maximum distinct values
+     * @param max maximum number of values
+     * @param draw draws a single value
+     * @return the values
+     */
+    private int[] distinct (int max,
+                            IntSupplier draw) {
+
+        int[] values = new int[1 + random.nextInt(max)];
+        int count = 0;
+        for (int attempts = 0; count < values.length && attempts < values.length * 4; attempts++) {
+            int value = draw.getAsInt();
+            boolean duplicate = false;
+            for (int i = 0; i < count && !duplicate; i++) {
+                duplicate = values[i] == value;
+            }
+            if (!duplicate) {
+                values[count++] = value;
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * When the filing was received, within three weeks after the end of its quarter
+     * @param year year of the filing
+     * @param quarter quarter of the filing, 0 for the first
+     * @return formatted date and time
+     */
+    private String received (int year,
+                             int quarter) {
+        int month = (quarter + 1) * 3 + 1;
+        return String.format("%04d-%02d-%02dT%02d:%02d:%02d.%03d", month > 12 ? year + 1 : year, month > 12 ? 1 : month,
+            1 + random.nextInt(21), random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000));
+    }
+
+    /**
+     * Amount of a filing, most in the tens of thousands and a few in the millions, rounded as filed
+     * @return the amount
+     */
+    private int amount () {
+        double amount = Math.exp(10.5 + 1.3 * random.nextGaussian());
+        return (int) Math.max(5000, Math.min(50000000, Math.round(amount / 10000) * 10000));
+    }
+
+    /**
+     * Choose a word by index
+     * @param words words to choose from
+     * @param index any non-negative number
+     * @return the word
+     */
+    static private String pick (String[] words,
+                                int index) {
+        return words[index % words.length];
+    }
+
+    /**
+     * Validate every document in a zip file against the schema
+     * @param zipFile the zip file
+     * @param schema the schema
+     * @throws IOException unable to read
+     * @throws SAXException a document isn't valid
+     */
+    static private void validate (Path zipFile,
+                                  Path schema)
+        throws IOException, SAXException {
+
+        Validator validator = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(schema.toFile()).newValidator();
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                try (Reader reader = new InputStreamReader(zip.getInputStream(entry), StandardCharsets.UTF_16)) {
+                    validator.validate(new StreamSource(reader));
+                }
+            }
+        }
+        System.out.println ("Validated " + zipFile + " against " + schema);
+    }
+
+    /**
+     * Generator main program
+     * @param args none, configured by system properties
+     * @throws Exception unable to generate or the files generated aren't valid
+     */
+    public static void main (String[] args)
+        throws Exception {
+
+        long start = System.currentTimeMillis();
+        new FilingsGenerator().generate();
+
+        Path schema = Paths.get(SCHEMA);
+        if (VALIDATE && ZIP_COUNT > 0) {
+            if (Files.exists(schema)) {
+                validate(Paths.get(OUTPUT_DIRECTORY).resolve(FIRST_YEAR + "_1.zip"), schema);
+            } else {
+                System.out.println ("Schema " + schema + " not found, not validated");
+            }
+        }
+
+        System.out.println (String.format("Generated in %d ms, load with the loader's classpath including %s",
+            (System.currentTimeMillis() - start), Paths.get(OUTPUT_DIRECTORY).toAbsolutePath()));
+    }
+}
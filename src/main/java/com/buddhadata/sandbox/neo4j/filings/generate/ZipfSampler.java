@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.generate;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws ranks 0 to n-1 with Zipf-distributed probabilities: rank k is drawn in proportion to 1/(k+1)^s, so a few ranks
+ * are drawn over and over and most rarely, the way a handful of clients and registrants account for much of the
+ * filings.  An exponent of 0 is uniform, the larger the exponent the more skewed.
+ *
+ * Precomputes the cumulative distribution, eight bytes per rank, each draw is a binary search.
+ *
+ * @author Scott C Sosna
+ */
+public class ZipfSampler {
+
+    /**
+     * Cumulative probability of each rank and all those before it
+     */
+    private final double[] cumulative;
+
+    /**
+     * Constructor
+     * @param n number of ranks
+     * @param exponent skew, 0 for uniform
+     */
+    public ZipfSampler (int n,
+                        double exponent) {
+
+        if (n < 1 || exponent < 0) {
+            throw new IllegalArgumentException("Need at least one rank and a non-negative exponent, not " + n + " and " + exponent);
+        }
+
+        cumulative = new double[n];
+        double total = 0;
+        for (int k = 0; k < n; k++) {
+            total += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = total;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= total;
+        }
+    }
+
+    /**
+     * Draw a rank
+     * @param random source of randomness
+     * @return rank, 0 the most likely
+     */
+    public int sample (Random random) {
+        int found = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(found >= 0 ? found : -found - 1, cumulative.length - 1);
+    }
+
+    /**
+     * getter
+     * @return number of ranks
+     */
+    public int size() {
+        return cumulative.length;
+    }
+}
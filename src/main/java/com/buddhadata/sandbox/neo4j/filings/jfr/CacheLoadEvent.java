@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for finding a node in one of the entity caches, the event's duration including loading the
+ * node on a miss.  By far the most frequent event, a threshold in the recording's settings keeps only the slow ones.
+ *
+ * @author Scott C Sosna
+ */
+@Name("com.buddhadata.filings.CacheLoad")
+@Label("Cache Load")
+@Category("Filings")
+@Description("A node was looked up in an entity cache, loading it on a miss")
+@StackTrace(false)
+public class CacheLoadEvent
+    extends Event {
+
+    @Label("Cache")
+    private String cache;
+
+    @Label("Hit")
+    private boolean hit;
+
+    @Label("Found")
+    @Description("The node exists, otherwise it's about to be created")
+    private boolean found;
+
+    /**
+     * setter
+     * @param cache name of the cache's node type
+     */
+    public void setCache(String cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * setter
+     * @param hit was the node, or its absence, already cached?
+     */
+    public void setHit(boolean hit) {
+        this.hit = hit;
+    }
+
+    /**
+     * setter
+     * @param found does the node exist?
+     */
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+}
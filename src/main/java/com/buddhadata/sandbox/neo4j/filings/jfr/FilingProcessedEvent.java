@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a single filing, from reading its element to having handed it off for writing: finding or
+ * creating every node it references and, when saving through the OGM, saving and committing it.
+ *
+ * @author Scott C Sosna
+ */
+@Name("com.buddhadata.filings.FilingProcessed")
+@Label("Filing Processed")
+@Category("Filings")
+@Description("A filing was resolved and written or queued for writing, or skipped for having no amount")
+@StackTrace(false)
+public class FilingProcessedEvent
+    extends Event {
+
+    @Label("Filing Id")
+    private String filingId;
+
+    @Label("Lobbyists")
+    private int lobbyists;
+
+    @Label("Issues")
+    private int issues;
+
+    @Label("Government Entities")
+    private int entities;
+
+    @Label("Skipped")
+    @Description("No amount, so nothing was written")
+    private boolean skipped;
+
+    /**
+     * setter
+     * @param filingId government-issued identifier for the filing
+     */
+    public void setFilingId(String filingId) {
+        this.filingId = filingId;
+    }
+
+    /**
+     * setter
+     * @param lobbyists number of lobbyists on the filing
+     */
+    public void setLobbyists(int lobbyists) {
+        this.lobbyists = lobbyists;
+    }
+
+    /**
+     * setter
+     * @param issues number of issues the filing is about
+     */
+    public void setIssues(int issues) {
+        this.issues = issues;
+    }
+
+    /**
+     * setter
+     * @param entities number of government entities the filing targets
+     */
+    public void setEntities(int entities) {
+        this.entities = entities;
+    }
+
+    /**
+     * setter
+     * @param skipped was the filing skipped for having no amount?
+     */
+    public void setSkipped(boolean skipped) {
+        this.skipped = skipped;
+    }
+}
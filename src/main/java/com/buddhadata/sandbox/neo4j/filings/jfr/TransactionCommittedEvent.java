@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for committing a transaction, the event's duration is the time the commit took.
+ *
+ * @author Scott C Sosna
+ */
+@Name("com.buddhadata.filings.TransactionCommitted")
+@Label("Transaction Committed")
+@Category("Filings")
+@Description("A transaction writing filings, or the nodes they reference, was committed")
+@StackTrace(false)
+public class TransactionCommittedEvent
+    extends Event {
+
+    @Label("Filings")
+    @Description("Number of filings written by the transaction, 0 when it only created referenced nodes")
+    private int filings;
+
+    @Label("Batched")
+    @Description("Written by the batch writer rather than saved through the OGM")
+    private boolean batched;
+
+    /**
+     * setter
+     * @param filings number of filings written by the transaction
+     */
+    public void setFilings(int filings) {
+        this.filings = filings;
+    }
+
+    /**
+     * setter
+     * @param batched written by the batch writer rather than saved through the OGM?
+     */
+    public void setBatched(boolean batched) {
+        this.batched = batched;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for parsing the filings in a zip entry.  When streaming, each filing is processed as soon as
+ * it's parsed, so the event's duration also includes processing the entry's filings.
+ *
+ * @author Scott C Sosna
+ */
+@Name("com.buddhadata.filings.ZipEntryParsed")
+@Label("Zip Entry Parsed")
+@Category("Filings")
+@Description("The filings in a zip entry were parsed")
+@StackTrace(false)
+public class ZipEntryParsedEvent
+    extends Event {
+
+    @Label("Entry")
+    private String entry;
+
+    @Label("Bytes")
+    @Description("Uncompressed size of the entry")
+    @DataAmount
+    private long bytes;
+
+    @Label("Filings")
+    private int filings;
+
+    /**
+     * setter
+     * @param entry name of the zip entry
+     */
+    public void setEntry(String entry) {
+        this.entry = entry;
+    }
+
+    /**
+     * setter
+     * @param bytes uncompressed size of the entry
+     */
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * setter
+     * @param filings number of filings in the entry
+     */
+    public void setFilings(int filings) {
+        this.filings = filings;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.manifest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Local record of the zip entries already loaded, so an incremental load skips them.  Each entry is identified by the
+ * zip file's name, the entry's name and the size and CRC-32 of its contents, so an entry that's been replaced by a
+ * different version is loaded again.
+ *
+ * The manifest is a text file with one tab-separated line per entry, appended and forced to disk only once the entry's
+ * filings have been committed: a crash loses at most the entries that weren't finished, which are loaded again by the
+ * next run.
+ *
+ * Thread-safe.
+ *
+ * @author Scott C Sosna
+ */
+public class LoadManifest {
+
+    /**
+     * Separates the fields of a line
+     */
+    static private final String SEPARATOR = "\t";
+
+    /**
+     * Lines starting with this are comments
+     */
+    static private final String COMMENT = "#";
+
+    /**
+     * The manifest file
+     */
+    private final Path file;
+
+    /**
+     * Keys of the entries loaded
+     */
+    private final Set<String> loaded = new HashSet<>();
+
+    /**
+     * Constructor, reads the manifest if it exists.
+     * @param file the manifest file, created when the first entry is loaded
+     * @throws IOException unable to read the manifest
+     */
+    public LoadManifest (Path file)
+        throws IOException {
+
+        this.file = file;
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(SEPARATOR);
+                if (!line.startsWith(COMMENT) && fields.length >= 4) {
+                    loaded.add(key(fields[0], fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+                }
+            }
+        }
+    }
+
+    /**
+     * Has the entry already been loaded?
+     * @param zipName name of the zip file
+     * @param entryName name of the entry within the zip file
+     * @param size size of the entry's uncompressed contents
+     * @param crc CRC-32 of the entry's uncompressed contents
+     * @return true if loaded
+     */
+    public synchronized boolean isLoaded (String zipName,
+                                          String entryName,
+                                          long size,
+                                          long crc) {
+        return loaded.contains(key(zipName, entryName, size, crc));
+    }
+
+    /**
+     * Record that the entry's been loaded, call only once all its filings have been committed.
+     * @param zipName name of the zip file
+     * @param entryName name of the entry within the zip file
+     * @param size size of the entry's uncompressed contents
+     * @param crc CRC-32 of the entry's uncompressed contents
+     */
+    public synchronized void markLoaded (String zipName,
+                                         String entryName,
+                                         long size,
+                                         long crc) {
+
+        String line = String.join(SEPARATOR, zipName, entryName, String.valueOf(size), String.valueOf(crc), Instant.now().toString()) + "\n";
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (channel.size() == 0) {
+                channel.write(StandardCharsets.UTF_8.encode(COMMENT + " zip" + SEPARATOR + "entry" + SEPARATOR + "size" + SEPARATOR + "crc32" + SEPARATOR + "loaded\n"));
+            }
+            channel.write(StandardCharsets.UTF_8.encode(line));
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to update manifest " + file, e);
+        }
+
+        loaded.add(key(zipName, entryName, size, crc));
+    }
+
+    /**
+     * getter
+     * @return number of entries loaded
+     */
+    public synchronized int size() {
+        return loaded.size();
+    }
+
+    /**
+     * Create the key identifying an entry
+     * @param zipName name of the zip file
+     * @param entryName name of the entry within the zip file
+     * @param size size of the entry's uncompressed contents
+     * @param crc CRC-32 of the entry's uncompressed contents
+     * @return the key
+     */
+    private String key (String zipName,
+                        String entryName,
+                        long size,
+                        long crc) {
+        return String.join(SEPARATOR, zipName, entryName, String.valueOf(size), String.valueOf(crc));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts something that only ever increases, e.g., nodes created.
+ *
+ * Thread-safe.
+ *
+ * @author Scott C Sosna
+ */
+public class Counter {
+
+    /**
+     * The count
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Constructor, created by the registry
+     */
+    Counter () {
+        return;
+    }
+
+    /**
+     * Count one more
+     */
+    public void increment () {
+        count.increment();
+    }
+
+    /**
+     * Count more
+     * @param n how many more
+     */
+    public void add (long n) {
+        count.add(n);
+    }
+
+    /**
+     * getter
+     * @return the count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The most recently sampled value of something that goes up and down, e.g., the size of a map.
+ *
+ * Thread-safe, the last value set wins.
+ *
+ * @author Scott C Sosna
+ */
+public class Gauge {
+
+    /**
+     * The value
+     */
+    private final AtomicLong value = new AtomicLong();
+
+    /**
+     * Constructor, created by the registry
+     */
+    Gauge () {
+        return;
+    }
+
+    /**
+     * setter
+     * @param value the sampled value
+     */
+    public void set (long value) {
+        this.value.set(value);
+    }
+
+    /**
+     * getter
+     * @return the most recently sampled value
+     */
+    public long getValue() {
+        return value.get();
+    }
+}
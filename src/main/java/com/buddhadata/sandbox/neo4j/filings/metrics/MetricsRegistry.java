@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timers, counters and gauges recording where a load spends its time and what it creates, each identified by a
+ * name and optionally a single tag, e.g. the timer <code>find_or_create</code> tagged <code>label=Client</code>.
+ * Metrics are created the first time they're asked for, callers keep them rather than asking again for every
+ * operation.
+ *
+ * Formats every metric as a single log line, as JSON, or in the Prometheus text exposition format with each metric
+ * prefixed <code>loader_</code>.  Timers are reported in seconds in Prometheus as a count, sum and max, and in
+ * milliseconds elsewhere.
+ *
+ * Thread-safe.
+ *
+ * @author Scott C Sosna
+ */
+public class MetricsRegistry {
+
+    /**
+     * Prefix of every metric exported to Prometheus
+     */
+    static private final String PROMETHEUS_PREFIX = "loader_";
+
+    /**
+     * Timers by key, ordered so output is stable
+     */
+    private final ConcurrentMap<String,Timer> timers = new ConcurrentSkipListMap<>();
+
+    /**
+     * Counters by key, ordered so output is stable
+     */
+    private final ConcurrentMap<String,Counter> counters = new ConcurrentSkipListMap<>();
+
+    /**
+     * Gauges by key, ordered so output is stable
+     */
+    private final ConcurrentMap<String,Gauge> gauges = new ConcurrentSkipListMap<>();
+
+    /**
+     * Find or create an untagged timer
+     * @param name name of the timer, lowercase letters and underscores
+     * @return the timer
+     */
+    public Timer timer (String name) {
+        return timers.computeIfAbsent(key(name, null, null), k -> new Timer());
+    }
+
+    /**
+     * Find or create a tagged timer
+     * @param name name of the timer, lowercase letters and underscores
+     * @param tag name of the tag, lowercase letters and underscores
+     * @param value the tag's value
+     * @return the timer
+     */
+    public Timer timer (String name,
+                        String tag,
+                        String value) {
+        return timers.computeIfAbsent(key(name, tag, value), k -> new Timer());
+    }
+
+    /**
+     * Find or create an untagged counter
+     * @param name name of the counter, lowercase letters and underscores
+     * @return the counter
+     */
+    public Counter counter (String name) {
+        return counters.computeIfAbsent(key(name, null, null), k -> new Counter());
+    }
+
+    /**
+     * Find or create a tagged counter
+     * @param name name of the counter, lowercase letters and underscores
+     * @param tag name of the tag, lowercase letters and underscores
+     * @param value the tag's value
+     * @return the counter
+     */
+    public Counter counter (String name,
+                            String tag,
+                            String value) {
+        return counters.computeIfAbsent(key(name, tag, value), k -> new Counter());
+    }
+
+    /**
+     * Find or create a tagged gauge
+     * @param name name of the gauge, lowercase letters and underscores
+     * @param tag name of the tag, lowercase letters and underscores
+     * @param value the tag's value
+     * @return the gauge
+     */
+    public Gauge gauge (String name,
+                        String tag,
+                        String value) {
+        return gauges.computeIfAbsent(key(name, tag, value), k -> new Gauge());
+    }
+
+    /**
+     * Format every metric that's recorded anything as a single line: counters and gauges as their value, timers as
+     * count x mean (max) milliseconds.
+     * @return the line
+     */
+    public String formatLine () {
+
+        StringBuilder sb = new StringBuilder("Metrics:");
+        for (Map.Entry<String,Counter> entry : counters.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue().getCount());
+            }
+        }
+        for (Map.Entry<String,Gauge> entry : gauges.entrySet()) {
+            sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue().getValue());
+        }
+        for (Map.Entry<String,Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            long count = timer.getCount();
+            if (count > 0) {
+                sb.append(' ').append(entry.getKey()).append('=').append(count).append('x')
+                    .append(String.format(Locale.ROOT, "%.3f(%.1f)ms", millis(timer.getTotalNanos()) / count, millis(timer.getMaxNanos())));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Format every metric as JSON
+     * @return JSON object of counters, gauges and timers, each by key
+     */
+    public String toJson () {
+
+        StringBuilder sb = new StringBuilder("{\n  \"counters\": {");
+        String separator = "\n";
+        for (Map.Entry<String,Counter> entry : counters.entrySet()) {
+            sb.append(separator).append("    ").append(quote(entry.getKey())).append(": ").append(entry.getValue().getCount());
+            separator = ",\n";
+        }
+
+        sb.append("\n  },\n  \"gauges\": {");
+        separator = "\n";
+        for (Map.Entry<String,Gauge> entry : gauges.entrySet()) {
+            sb.append(separator).append("    ").append(quote(entry.getKey())).append(": ").append(entry.getValue().getValue());
+            separator = ",\n";
+        }
+
+        sb.append("\n  },\n  \"timers\": {");
+        separator = "\n";
+        for (Map.Entry<String,Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            sb.append(separator).append("    ").append(quote(entry.getKey())).append(": ")
+                .append(String.format(Locale.ROOT, "{\"count\": %d, \"totalMillis\": %.3f, \"maxMillis\": %.3f}",
+                    timer.getCount(), millis(timer.getTotalNanos()), millis(timer.getMaxNanos())));
+            separator = ",\n";
+        }
+        return sb.append("\n  }\n}\n").toString();
+    }
+
+    /**
+     * Format every metric in the Prometheus text exposition format: counters as counters, gauges as gauges, timers as
+     * summaries (count and sum) plus a gauge of the maximum.
+     * @return the metrics, one sample per line
+     */
+    public String toPrometheus () {
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String,Map<String,Counter>> family : families(counters).entrySet()) {
+            String name = PROMETHEUS_PREFIX + family.getKey() + "_total";
+            sb.append("# TYPE ").append(name).append(" counter\n");
+            for (Map.Entry<String,Counter> entry : family.getValue().entrySet()) {
+                sb.append(name).append(entry.getKey()).append(' ').append(entry.getValue().getCount()).append('\n');
+            }
+        }
+
+        for (Map.Entry<String,Map<String,Gauge>> family : families(gauges).entrySet()) {
+            String name = PROMETHEUS_PREFIX + family.getKey();
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            for (Map.Entry<String,Gauge> entry : family.getValue().entrySet()) {
+                sb.append(name).append(entry.getKey()).append(' ').append(entry.getValue().getValue()).append('\n');
+            }
+        }
+
+        for (Map.Entry<String,Map<String,Timer>> family : families(timers).entrySet()) {
+            String name = PROMETHEUS_PREFIX + family.getKey() + "_seconds";
+            sb.append("# TYPE ").append(name).append(" summary\n");
+            for (Map.Entry<String,Timer> entry : family.getValue().entrySet()) {
+                sb.append(name).append("_count").append(entry.getKey()).append(' ').append(entry.getValue().getCount()).append('\n');
+                sb.append(name).append("_sum").append(entry.getKey()).append(' ').append(seconds(entry.getValue().getTotalNanos())).append('\n');
+            }
+            sb.append("# TYPE ").append(name).append("_max gauge\n");
+            for (Map.Entry<String,Timer> entry : family.getValue().entrySet()) {
+                sb.append(name).append("_max").append(entry.getKey()).append(' ').append(seconds(entry.getValue().getMaxNanos())).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Group metrics by name, as Prometheus requires all samples of a metric to be together
+     * @param metrics metrics by key
+     * @return metrics by name, then by tag as Prometheus formats it (empty if untagged)
+     */
+    static private <M> Map<String,Map<String,M>> families (Map<String,M> metrics) {
+        Map<String,Map<String,M>> toReturn = new TreeMap<>();
+        for (Map.Entry<String,M> entry : metrics.entrySet()) {
+            String key = entry.getKey();
+            int brace = key.indexOf('{');
+            toReturn.computeIfAbsent((brace < 0) ? key : key.substring(0, brace), k -> new TreeMap<>())
+                .put((brace < 0) ? "" : key.substring(brace), entry.getValue());
+        }
+        return toReturn;
+    }
+
+    /**
+     * Create the key identifying a metric, in the form Prometheus uses: <code>name</code> or
+     * <code>name{tag="value"}</code>
+     * @param name name of the metric
+     * @param tag name of the tag, null if untagged
+     * @param value the tag's value
+     * @return the key
+     */
+    static private String key (String name,
+                               String tag,
+                               String value) {
+
+        if (!name.matches("[a-z_]+") || (tag != null && !tag.matches("[a-z_]+"))) {
+            throw new IllegalArgumentException("Metric and tag names are lowercase letters and underscores: " + name + ", " + tag);
+        }
+        return (tag == null) ? name : name + "{" + tag + "=\"" + String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+    }
+
+    /**
+     * Quote a string for JSON
+     * @param s the string
+     * @return the quoted string
+     */
+    static private String quote (String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    static private double millis (long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    static private String seconds (long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports a registry's metrics periodically while loading and once more when closed: a single log line, and optionally
+ * a file rewritten with every report, JSON when the file's name ends <code>.json</code> and otherwise the Prometheus
+ * text format (e.g. for the node exporter's textfile collector).  The file is replaced atomically so that it's never
+ * read half-written.
+ *
+ * @author Scott C Sosna
+ */
+public class MetricsReporter
+    implements Closeable {
+
+    /**
+     * The metrics reported
+     */
+    private final MetricsRegistry registry;
+
+    /**
+     * File written with every report, null for none
+     */
+    private final Path file;
+
+    /**
+     * Runs the periodic reports, null when only reporting on close
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor, starts reporting
+     * @param registry the metrics reported
+     * @param periodSeconds seconds between reports, 0 or less to only report when closed
+     * @param file file written with every report, null for none
+     */
+    public MetricsReporter (MetricsRegistry registry,
+                            long periodSeconds,
+                            Path file) {
+
+        this.registry = registry;
+        this.file = file;
+
+        if (periodSeconds > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "metrics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(this::report, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Report the metrics now
+     */
+    public synchronized void report () {
+
+        System.out.println (registry.formatLine());
+
+        if (file != null) {
+            try {
+                String contents = file.getFileName().toString().endsWith(".json") ? registry.toJson() : registry.toPrometheus();
+                Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.write(temporary, contents.getBytes(StandardCharsets.UTF_8));
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.out.println ("Exception writing metrics to " + file + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Stop reporting periodically and report the final metrics
+     */
+    @Override
+    public void close () {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        report();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times an operation: how many times it's happened, the total and the longest time taken.  Timing is explicit, the
+ * caller notes <code>System.nanoTime()</code> before and calls <code>stop</code> after, so nothing's allocated per
+ * operation:
+ * <pre>
+ *   long start = System.nanoTime();
+ *   try {
+ *       ...
+ *   } finally {
+ *       timer.stop(start);
+ *   }
+ * </pre>
+ *
+ * Thread-safe.
+ *
+ * @author Scott C Sosna
+ */
+public class Timer {
+
+    /**
+     * Number of operations timed
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Total time of all operations, in nanoseconds
+     */
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Longest time of any operation, in nanoseconds
+     */
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Constructor, created by the registry
+     */
+    Timer () {
+        return;
+    }
+
+    /**
+     * Record an operation that's just finished
+     * @param startNanos <code>System.nanoTime()</code> when the operation started
+     */
+    public void stop (long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Record an operation
+     * @param nanos time taken, in nanoseconds
+     */
+    public void record (long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * getter
+     * @return number of operations timed
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * getter
+     * @return total time of all operations, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * getter
+     * @return longest time of any operation, in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+}
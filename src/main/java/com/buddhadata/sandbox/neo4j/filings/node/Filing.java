@@ -6,6 +6,7 @@ package com.buddhadata.sandbox.neo4j.filings.node;
 
 import org.neo4j.ogm.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.*;
 
 /**
@@ -24,10 +25,30 @@ public class Filing {
     private Long id;
 
     /**
-     * Date on which the filing was received.
+     * Date and time at which the filing was received, local to where it was received.  Stored as a native Neo4J
+     * local date-time, which the OGM can't write without its native types support, so it's written by whatever
+     * saves the filing rather than mapped.
+     */
+    @Transient
+    private LocalDateTime receivedOn;
+
+    /**
+     * Year, month (1-12) and day of the month on which the filing was received, split from the received date so each
+     * can be indexed and matched directly; null when the received date is unknown.
+     */
+    @Property
+    private Integer receivedYear;
+    @Property
+    private Integer receivedMonth;
+    @Property
+    private Integer receivedDay;
+
+    /**
+     * Quarter of the year (1-4) covered by the filing, from its period; null when the period isn't a single quarter,
+     * e.g., mid-year and year-end reports.
      */
     @Property
-    private Date receivedOn;
+    private Integer quarter;
 
     /**
      * The dollar amount of the filing.
@@ -87,7 +108,7 @@ public class Filing {
      * Constructopr
      * @param filingId government-issued identifier for the filing
      * @param year the year of the filing
-     * @param receivedOn date on which the filing was received
+     * @param receivedOn date and time at which the filing was received
      * @param amount the dollar amount of the filing
      * @param type type of filing
      * @param period the period represented by the filing
@@ -95,7 +116,7 @@ public class Filing {
      */
     public Filing (final String filingId,
                    final int year,
-                   final Date receivedOn,
+                   final LocalDateTime receivedOn,
                    final int amount,
                    final String type,
                    final String period,
@@ -105,10 +126,10 @@ public class Filing {
 
         this.filingId = normalizeString (filingId);
         this.year = year;
-        this.receivedOn = receivedOn;
+        setReceivedOn (receivedOn);
         this.amount = amount;
         this.type = normalizeString (type);
-        this.period = normalizeString (period);
+        setPeriod (normalizeString (period));
         this.client = client;
     }
 
@@ -139,18 +160,53 @@ public class Filing {
 
     /**
      * getter
-     * @return date on which the filing was received
+     * @return date and time at which the filing was received
      */
-    public Date getReceivedOn() {
+    public LocalDateTime getReceivedOn() {
         return receivedOn;
     }
 
     /**
      * setter
-     * @param receivedOn date on which the filing was received
+     * @param receivedOn date and time at which the filing was received
      */
-    public void setReceivedOn(Date receivedOn) {
+    public void setReceivedOn(LocalDateTime receivedOn) {
         this.receivedOn = receivedOn;
+        this.receivedYear = (receivedOn != null) ? receivedOn.getYear() : null;
+        this.receivedMonth = (receivedOn != null) ? receivedOn.getMonthValue() : null;
+        this.receivedDay = (receivedOn != null) ? receivedOn.getDayOfMonth() : null;
+    }
+
+    /**
+     * getter
+     * @return year in which the filing was received, null when unknown
+     */
+    public Integer getReceivedYear() {
+        return receivedYear;
+    }
+
+    /**
+     * getter
+     * @return month (1-12) in which the filing was received, null when unknown
+     */
+    public Integer getReceivedMonth() {
+        return receivedMonth;
+    }
+
+    /**
+     * getter
+     * @return day of the month on which the filing was received, null when unknown
+     */
+    public Integer getReceivedDay() {
+        return receivedDay;
+    }
+
+    /**
+     * getter
+     * @return quarter of the year (1-4) covered by the filing, null when the period isn't a single quarter
+     */
+    public Integer getQuarter() {
+        return quarter;
     }
 
     /**
@@ -215,6 +271,7 @@ public class Filing {
      */
     public void setPeriod(String period) {
         this.period = period;
+        this.quarter = quarterOf (period);
     }
 
     /**
@@ -291,6 +348,19 @@ public class Filing {
         return filingId != null ? filingId.hashCode() : 0;
     }
 
+    /**
+     * The quarter covered by a period, which the Senate names e.g. <code>1st Quarter (Jan 1 - Mar 31)</code>
+     * @param period period represented by the filing
+     * @return quarter of the year (1-4), null when the period isn't a single quarter
+     */
+    static private Integer quarterOf (String period) {
+        if (period != null && period.length() > 1 && period.charAt(0) >= '1' && period.charAt(0) <= '4' &&
+            Character.isLetter(period.charAt(1)) && period.contains("Quarter")) {
+            return period.charAt(0) - '0';
+        }
+        return null;
+    }
+
     /**
      * Normalize the string data provided in the source data file
      * @param original original string to normalize
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.node;
+
+import com.buddhadata.sandbox.neo4j.filings.parse.IsoDateTime;
+import com.buddhadata.sandbox.neo4j.filings.parse.ScannedFiling;
+import generated.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * The rules for identifying and creating nodes from the source data, shared by everything that loads filings so that
+ * each produces the same nodes: which filings are loaded, the key identifying each client, registrant, lobbyist,
+ * government entity and issue, and the node created for each.
+ *
+ * @author Scott C Sosna
+ */
+public final class NodeFactory {
+
+    /**
+     * Constructor, static methods only
+     */
+    private NodeFactory () {
+        return;
+    }
+
+    /**
+     * Filings with no amount specified are those filed indicating no lobbying activty by the registrant in the
+     * current quarter, and are skipped.
+     * @param ft the filing read from the source data
+     * @return true if the filing has an amount and is loaded
+     */
+    public static boolean hasAmount (FilingType ft) {
+        return ft.getAmount() != null && !ft.getAmount().isEmpty();
+    }
+
+    /**
+     * Create a new filing, not yet related to anything other than its client.
+     * @param ft the filing read from the source data
+     * @param client for whom the filing was made
+     * @return newly-created <code>Filing</code>
+     */
+    public static Filing filing (FilingType ft,
+                                 Client client) {
+        return new Filing (ft.getID(), ft.getYear(), receivedOn(ft),
+                Integer.valueOf(ft.getAmount()), ft.getType(), ft.getPeriod(), client);
+    }
+
+    /**
+     * The local date and time a filing was received, already parsed when scanned, otherwise read from the fields of
+     * the date JAXB unmarshalled.
+     * @param ft the filing read from the source data
+     * @return date and time the filing was received, null when missing
+     */
+    public static LocalDateTime receivedOn (FilingType ft) {
+        if (ft instanceof ScannedFiling) {
+            return ((ScannedFiling) ft).getReceivedOn();
+        }
+        return (ft.getReceived() != null) ? IsoDateTime.toLocalDateTime(IsoDateTime.toLocalMillis(ft.getReceived())) : null;
+    }
+
+    /**
+     * Clients are unique by name, the client ID isn't unique across filings.
+     * @param client client read from the source data
+     * @return identifying key
+     */
+    public static String clientKey (ClientType client) {
+        return client.getClientName().trim();
+    }
+
+    /**
+     * Create a new client
+     * @param client client read from the source data
+     * @return newly-created <code>Client</code>
+     */
+    public static Client client (ClientType client) {
+        return new Client (client.getClientID(), clientKey(client), client.getGeneralDescription(), client.getContactFullname(),
+            client.getClientCountry(), client.getClientPPBCountry(), client.getClientState(), client.getClientPPBState(),
+            Boolean.valueOf(client.getSelfFiler()), Boolean.valueOf(client.getIsStateOrLocalGov()));
+    }
+
+    /**
+     * Registrants are unique by registrant ID.
+     * @param registrant registrant read from the source data
+     * @return identifying key
+     */
+    public static long registrantKey (RegistrantType registrant) {
+        return registrant.getRegistrantID();
+    }
+
+    /**
+     * Create a new registrant, not yet related to any client.
+     * @param registrant registrant read from the source data
+     * @return newly-created <code>Registrant</code>
+     */
+    public static Registrant registrant (RegistrantType registrant) {
+        return new Registrant(registrant.getRegistrantID(), registrant.getRegistrantName(), registrant.getGeneralDescription(),
+            registrant.getAddress(), registrant.getRegistrantCountry(), registrant.getRegistrantPPBCountry());
+    }
+
+    /**
+     * Lobbyists are unique by first name and surname, from names formatted "SURNAME, FIRST" and ignoring case.
+     * @param lobbyist lobbyist read from the source data
+     * @return identifying key, null when no name was provided and there's no lobbyist
+     */
+    public static LobbyistKey lobbyistKey (LobbyistType lobbyist) {
+
+        String name = lobbyist.getLobbyistName().toUpperCase();
+        if (name.isEmpty()) {
+            return null;
+        }
+
+        //  Lobbyist names are "surname,first" so break them apart by finding ','
+        int comma = name.indexOf(',');
+        return new LobbyistKey(name.substring(comma + 1).trim(), name.substring(0, comma).trim());
+    }
+
+    /**
+     * Create a new lobbyist, not yet related to any registrant.
+     * @param lobbyist lobbyist read from the source data
+     * @param key the lobbyist's identifying key
+     * @return newly-created <code>Lobbyist</code>
+     */
+    public static Lobbyist lobbyist (LobbyistType lobbyist,
+                                     LobbyistKey key) {
+        return new Lobbyist(key.getFirstName(), key.getSurname(), lobbyist.getLobbyistCoveredGovPositionIndicator(),
+            lobbyist.getOfficialPosition(), lobbyist.getActivityInformation());
+    }
+
+    /**
+     * Government entities are unique by name.
+     * @param entity government entity read from the source data
+     * @return identifying key
+     */
+    public static String entityKey (GovernmentEntityType entity) {
+        return entity.getGovEntityName();
+    }
+
+    /**
+     * Create a new government entity
+     * @param entity government entity read from the source data
+     * @return newly-created <code>GovernmentEntity</code>
+     */
+    public static GovernmentEntity entity (GovernmentEntityType entity) {
+        return new GovernmentEntity(entityKey(entity));
+    }
+
+    /**
+     * Issues are unique by the government-defined issue code.
+     * @param issue issue read from the source data
+     * @return identifying key
+     */
+    public static String issueKey (IssueType issue) {
+        return issue.getCode();
+    }
+
+    /**
+     * Create a new issue
+     * @param issueCode the issue's code
+     * @return newly-created <code>Issue</code>
+     */
+    public static Issue issue (String issueCode) {
+        return new Issue (issueCode);
+    }
+}
@@ -0,0 +1,947 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.parse;
+
+import com.buddhadata.sandbox.neo4j.filings.metrics.Timer;
+import generated.*;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Reads a public filings XML document without a general purpose XML parser.  Every value in filings.xsd is an
+ * attribute of one of a handful of elements nested no more than three deep, so the document is scanned a tag at a
+ * time straight from its UTF-16 bytes into a single reusable character buffer, and each filing's attributes are set
+ * on the generated classes directly rather than through JAXB's reflection.  The received date is parsed from the
+ * buffer without creating an <code>XMLGregorianCalendar</code>, each filing is a <code>ScannedFiling</code> holding
+ * it as milliseconds.  Like the StAX reader, each filing is handed to the consumer as soon as its end tag is read.
+ *
+ * Only what filings.xsd needs is understood: elements, attributes, the predefined and numeric character references,
+ * and attribute value normalization.  Text, comments, processing instructions and any DOCTYPE are skipped, elements
+ * the schema doesn't define and attributes not where the schema puts them are ignored, and namespaces aren't
+ * recognized.  Typed values are converted as JAXB converts them: a date or enumeration that can't be is left null,
+ * while an integer that can't be fails the document.
+ *
+ * Not thread-safe, a scanner reuses its buffers from one document to the next.
+ *
+ * @author Scott C Sosna
+ */
+public class FilingsScanner {
+
+    /**
+     * Size of the buffer into which the document's bytes are read
+     */
+    static private final int BYTE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Initial size of the character buffer, grown only should a single tag not fit
+     */
+    static private final int CHAR_BUFFER_SIZE = 1 << 15;
+
+    //  Elements
+    static private final String FILING = "Filing";
+    static private final String REGISTRANT = "Registrant";
+    static private final String CLIENT = "Client";
+    static private final String LOBBYISTS = "Lobbyists";
+    static private final String LOBBYIST = "Lobbyist";
+    static private final String GOVERNMENT_ENTITIES = "GovernmentEntities";
+    static private final String GOVERNMENT_ENTITY = "GovernmentEntity";
+    static private final String ISSUES = "Issues";
+    static private final String ISSUE = "Issue";
+
+    /**
+     * Bytes read from the document, not yet decoded
+     */
+    private final byte[] bytes = new byte[BYTE_BUFFER_SIZE];
+
+    /**
+     * Characters decoded from the document, the tag being scanned always starts at <code>position</code>
+     */
+    private char[] chars = new char[CHAR_BUFFER_SIZE];
+
+    /**
+     * Index of the next character to scan
+     */
+    private int position;
+
+    /**
+     * Index after the last character decoded
+     */
+    private int limit;
+
+    /**
+     * Document being read, null when not reading
+     */
+    private InputStream in;
+
+    /**
+     * Are the document's bytes big-endian, the default without a byte order mark?
+     */
+    private boolean bigEndian;
+
+    /**
+     * Byte left over when a read ends partway through a character, -1 when none
+     */
+    private int leftover;
+
+    /**
+     * Has the end of the document been read?
+     */
+    private boolean exhausted;
+
+    /**
+     * Characters decoded from the document before the start of the buffer, for reporting where errors occur
+     */
+    private long offset;
+
+    //  The attribute being scanned, indexes into the character buffer.
+    private int nameStart;
+    private int nameLength;
+    private int valueStart;
+    private int valueLength;
+
+    /**
+     * Attribute values needing references replaced or whitespace normalized are built here
+     */
+    private final StringBuilder value = new StringBuilder();
+
+    /**
+     * Time spent scanning each filing, null when not timed
+     */
+    private final Timer scanTimer;
+
+    /**
+     * Constructor
+     */
+    public FilingsScanner () {
+        this(null);
+    }
+
+    /**
+     * Constructor
+     * @param scanTimer times scanning each filing, from its start tag through its end tag, null for none
+     */
+    public FilingsScanner (Timer scanTimer) {
+        this.scanTimer = scanTimer;
+    }
+
+    /**
+     * Read the filings document, handing each filing to the consumer as soon as its end tag has been read.  The
+     * stream is not closed, it's the caller's responsibility.
+     * @param in byte stream of the XML document, UTF-16 with or without a byte order mark
+     * @param consumer receives each filing in document order
+     * @return number of filings read
+     * @throws IOException unable to read the stream
+     * @throws XMLStreamException malformed XML
+     */
+    public int read (InputStream in,
+                     Consumer<FilingType> consumer)
+        throws IOException, XMLStreamException {
+
+        this.in = in;
+        position = 0;
+        limit = 0;
+        offset = 0;
+        leftover = -1;
+        exhausted = false;
+        bigEndian = true;
+
+        int count = 0;
+        try {
+            readByteOrderMark();
+
+            ScannedFiling filing = null;
+            long start = 0;
+            while (findTag()) {
+                int tagEnd = endOfTag();
+                char first = chars[position + 1];
+                if (first == '/') {
+                    //  Only the end of a filing matters, every other element is complete once started.
+                    if (filing != null && isElement(position + 2, tagEnd, FILING)) {
+                        count = emit(filing, start, consumer, count);
+                        filing = null;
+                    }
+                } else if (first != '?' && first != '!') {
+                    int nameEnd = endOfName(position + 1, tagEnd);
+                    boolean empty = chars[tagEnd - 1] == '/';
+                    if (is(position + 1, nameEnd, FILING)) {
+                        start = (scanTimer != null) ? System.nanoTime() : 0;
+                        filing = new ScannedFiling();
+                        scanFiling(filing, nameEnd, tagEnd);
+                        if (empty) {
+                            count = emit(filing, start, consumer, count);
+                            filing = null;
+                        }
+                    } else if (filing != null) {
+                        scanChild(filing, position + 1, nameEnd, tagEnd);
+                    }
+                }
+                position = tagEnd + 1;
+            }
+
+            if (filing != null) {
+                throw error("Document ends within a filing");
+            }
+        } finally {
+            this.in = null;
+        }
+
+        return count;
+    }
+
+    /**
+     * Hand a completed filing to the consumer
+     * @param filing the filing
+     * @param start when scanning the filing started, if timed
+     * @param consumer receives the filing
+     * @param count number of filings handed off so far
+     * @return number of filings handed off, including this one
+     */
+    private int emit (FilingType filing,
+                      long start,
+                      Consumer<FilingType> consumer,
+                      int count) {
+        if (scanTimer != null) {
+            scanTimer.stop(start);
+        }
+        consumer.accept(filing);
+        return count + 1;
+    }
+
+    /**
+     * Set the attributes of the filing element
+     * @param filing the filing
+     * @param from index after the element name
+     * @param tagEnd index of the tag's closing bracket
+     * @throws XMLStreamException malformed attribute
+     */
+    private void scanFiling (ScannedFiling filing,
+                             int from,
+                             int tagEnd)
+        throws XMLStreamException {
+
+        int next = from;
+        while ((next = nextAttribute(next, tagEnd)) >= 0) {
+            if (isName("ID")) {
+                filing.setID(text());
+            } else if (isName("Year")) {
+                //  Truncated when out of range, as JAXB does.
+                filing.setYear((short) integer());
+            } else if (isName("Received")) {
+                filing.setReceivedMillis(dateTime());
+            } else if (isName("Amount")) {
+                filing.setAmount(text());
+            } else if (isName("Type")) {
+                filing.setType(text());
+            } else if (isName("Period")) {
+                filing.setPeriod(text());
+            }
+        }
+    }
+
+    /**
+     * Create the element nested within a filing and set its attributes
+     * @param filing the filing
+     * @param nameStart index of the element name
+     * @param nameEnd index after the element name
+     * @param tagEnd index of the tag's closing bracket
+     * @throws XMLStreamException malformed attribute
+     */
+    private void scanChild (FilingType filing,
+                            int nameStart,
+                            int nameEnd,
+                            int tagEnd)
+        throws XMLStreamException {
+
+        if (is(nameStart, nameEnd, LOBBYIST)) {
+            if (filing.getLobbyists() != null) {
+                filing.getLobbyists().getLobbyist().add(scanLobbyist(nameEnd, tagEnd));
+            }
+        } else if (is(nameStart, nameEnd, GOVERNMENT_ENTITY)) {
+            if (filing.getGovernmentEntities() != null) {
+                filing.getGovernmentEntities().getGovernmentEntity().add(scanGovernmentEntity(nameEnd, tagEnd));
+            }
+        } else if (is(nameStart, nameEnd, ISSUE)) {
+            if (filing.getIssues() != null) {
+                filing.getIssues().getIssue().add(scanIssue(nameEnd, tagEnd));
+            }
+        } else if (is(nameStart, nameEnd, REGISTRANT)) {
+            filing.setRegistrant(scanRegistrant(nameEnd, tagEnd));
+        } else if (is(nameStart, nameEnd, CLIENT)) {
+            filing.setClient(scanClient(nameEnd, tagEnd));
+        } else if (is(nameStart, nameEnd, LOBBYISTS)) {
+            filing.setLobbyists(new LobbyistsType());
+        } else if (is(nameStart, nameEnd, GOVERNMENT_ENTITIES)) {
+            filing.setGovernmentEntities(new GovernmentEntitiesType());
+        } else if (is(nameStart, nameEnd, ISSUES)) {
+            filing.setIssues(new IssuesType());
+        }
+    }
+
+    /**
+     * Create a registrant from the attributes of its element
+     * @param from index after the element name
+     * @param tagEnd index of the tag's closing bracket
+     * @return the registrant
+     * @throws XMLStreamException malformed attribute
+     */
+    private RegistrantType scanRegistrant (int from,
+                                           int tagEnd)
+        throws XMLStreamException {
+
+        RegistrantType registrant = new RegistrantType();
+        int next = from;
+        while ((next = nextAttribute(next, tagEnd)) >= 0) {
+            if (isName("RegistrantID")) {
+                registrant.setRegistrantID(integer());
+            } else if (isName("RegistrantName")) {
+                registrant.setRegistrantName(text());
+            } else if (isName("GeneralDescription")) {
+                registrant.setGeneralDescription(text());
+            } else if (isName("Address")) {
+                registrant.setAddress(text());
+            } else if (isName("RegistrantCountry")) {
+                registrant.setRegistrantCountry(text());
+            } else if (isName("RegistrantPPBCountry")) {
+                registrant.setRegistrantPPBCountry(text());
+            }
+        }
+        return registrant;
+    }
+
+    /**
+     * Create a client from the attributes of its element
+     * @param from index after the element name
+     * @param tagEnd index of the tag's closing bracket
+     * @return the client
+     * @throws XMLStreamException malformed attribute
+     */
+    private ClientType scanClient (int from,
+                                   int tagEnd)
+        throws XMLStreamException {
+
+        ClientType client = new ClientType();
+        int next = from;
+        while ((next = nextAttribute(next, tagEnd)) >= 0) {
+            if (isName("ClientName")) {
+                client.setClientName(text());
+            } else if (isName("GeneralDescription")) {
+                client.setGeneralDescription(text());
+            } else if (isName("ClientID")) {
+                client.setClientID(integer());
+            } else if (isName("SelfFiler")) {
+                client.setSelfFiler(text());
+            } else if (isName("ContactFullname")) {
+                client.setContactFullname(text());
+            } else if (isName("IsStateOrLocalGov")) {
+                client.setIsStateOrLocalGov(text());
+            } else if (isName("ClientCountry")) {
+                client.setClientCountry(text());
+            } else if (isName("ClientPPBCountry")) {
+                client.setClientPPBCountry(text());
+            } else if (isName("ClientState")) {
+                client.setClientState(text());
+            } else if (isName("ClientPPBState")) {
+                client.setClientPPBState(text());
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Create a lobbyist from the attributes of its element
+     * @param from index after the element name
+     * @param tagEnd index of the tag's closing bracket
+     * @return the lobbyist
+     * @throws XMLStreamException malformed attribute
+     */
+    private LobbyistType scanLobbyist (int from,
+                                       int tagEnd)
+        throws XMLStreamException {
+
+        LobbyistType lobbyist = new LobbyistType();
+        int next = from;
+        while ((next = nextAttribute(next, tagEnd)) >= 0) {
+            if (isName("LobbyistName")) {
+                lobbyist.setLobbyistName(text());
+            } else if (isName("LobbyistCoveredGovPositionIndicator")) {
+                lobbyist.setLobbyistCoveredGovPositionIndicator(covered());
+            } else if (isName("OfficialPosition")) {
+                lobbyist.setOfficialPosition(text());
+            } else if (isName("ActivityInformation")) {
+                lobbyist.setActivityInformation(text());
+            }
+        }
+        return lobbyist;
+    }
+
+    /**
+     * Create a government entity from the attributes of its element
+     * @param from index after the element name
+     * @param tagEnd index of the tag's closing bracket
+     * @return the government entity
+     * @throws XMLStreamException malformed attribute
+     */
+    private GovernmentEntityType scanGovernmentEntity (int from,
+                                                       int tagEnd)
+        throws XMLStreamException {
+
+        GovernmentEntityType entity = new GovernmentEntityType();
+        int next = from;
+        while ((next = nextAttribute(next, tagEnd)) >= 0) {
+            if (isName("GovEntityName")) {
+                entity.setGovEntityName(text());
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Create an issue from the attributes of its element
+     * @param from index after the element name
+     * @param tagEnd index of the tag's closing bracket
+     * @return the issue
+     * @throws XMLStreamException malformed attribute
+     */
+    private IssueType scanIssue (int from,
+                                 int tagEnd)
+        throws XMLStreamException {
+
+        IssueType issue = new IssueType();
+        int next = from;
+        while ((next = nextAttribute(next, tagEnd)) >= 0) {
+            if (isName("Code")) {
+                issue.setCode(text());
+            } else if (isName("SpecificIssue")) {
+                issue.setSpecificIssue(text());
+            }
+        }
+        return issue;
+    }
+
+    /**
+     * Find the next attribute within a start tag, recording where its name and value are
+     * @param from index from which to look
+     * @param tagEnd index of the tag's closing bracket
+     * @return index after the attribute's closing quote, -1 when there are no more attributes
+     * @throws XMLStreamException malformed attribute
+     */
+    private int nextAttribute (int from,
+                               int tagEnd)
+        throws XMLStreamException {
+
+        int i = skipWhitespace(from, tagEnd);
+        if (i >= tagEnd || chars[i] == '/') {
+            return -1;
+        }
+
+        nameStart = i;
+        while (i < tagEnd && chars[i] != '=' && !isWhitespace(chars[i])) {
+            i++;
+        }
+        nameLength = i - nameStart;
+
+        i = skipWhitespace(i, tagEnd);
+        if (i >= tagEnd || chars[i] != '=') {
+            throw error("Attribute without a value");
+        }
+        i = skipWhitespace(i + 1, tagEnd);
+        char quote = (i < tagEnd) ? chars[i] : 0;
+        if (quote != '"' && quote != '\'') {
+            throw error("Attribute value not quoted");
+        }
+
+        valueStart = ++i;
+        while (i < tagEnd && chars[i] != quote) {
+            i++;
+        }
+        if (i >= tagEnd) {
+            throw error("Attribute value not terminated");
+        }
+        valueLength = i - valueStart;
+        return i + 1;
+    }
+
+    /**
+     * Is the current attribute the one named?
+     * @param name attribute name
+     * @return true if it is
+     */
+    private boolean isName (String name) {
+        return is(nameStart, nameStart + nameLength, name);
+    }
+
+    /**
+     * The current attribute's value, after normalization, as a string
+     * @return the value
+     * @throws XMLStreamException malformed character reference
+     */
+    private String text ()
+        throws XMLStreamException {
+
+        //  Almost every value is taken as is, only build one when there's something to replace.
+        int end = valueStart + valueLength;
+        for (int i = valueStart; i < end; i++) {
+            char c = chars[i];
+            if (c == '&' || c == '\r' || c == '\n' || c == '\t') {
+                return normalize(i, end);
+            }
+        }
+        return new String(chars, valueStart, valueLength);
+    }
+
+    /**
+     * Normalize an attribute value as XML requires: every literal line break or tab is a single space and character
+     * references are replaced by the characters they refer to.
+     * @param from index of the first character needing replaced, those before it are copied as is
+     * @param end index after the value
+     * @return the value
+     * @throws XMLStreamException malformed character reference
+     */
+    private String normalize (int from,
+                              int end)
+        throws XMLStreamException {
+
+        value.setLength(0);
+        value.append(chars, valueStart, from - valueStart);
+        for (int i = from; i < end; i++) {
+            char c = chars[i];
+            if (c == '\r') {
+                //  A carriage return and line feed are a single line break.
+                value.append(' ');
+                if (i + 1 < end && chars[i + 1] == '\n') {
+                    i++;
+                }
+            } else if (c == '\n' || c == '\t') {
+                value.append(' ');
+            } else if (c == '&') {
+                int semicolon = i + 1;
+                while (semicolon < end && chars[semicolon] != ';') {
+                    semicolon++;
+                }
+                if (semicolon >= end) {
+                    throw error("Character reference not terminated");
+                }
+                value.appendCodePoint(reference(i + 1, semicolon));
+                i = semicolon;
+            } else {
+                value.append(c);
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * Resolve a character reference
+     * @param start index after the ampersand
+     * @param end index of the semicolon
+     * @return the code point referred to
+     * @throws XMLStreamException reference unknown or malformed
+     */
+    private int reference (int start,
+                           int end)
+        throws XMLStreamException {
+
+        if (end - start > 1 && chars[start] == '#') {
+            boolean hex = chars[start + 1] == 'x';
+            int radix = hex ? 16 : 10;
+            int codePoint = 0;
+            int i = start + (hex ? 2 : 1);
+            if (i >= end) {
+                throw error("Empty character reference");
+            }
+            for (; i < end; i++) {
+                int digit = Character.digit(chars[i], radix);
+                if (digit < 0 || codePoint > (Character.MAX_CODE_POINT - digit) / radix) {
+                    throw error("Malformed character reference");
+                }
+                codePoint = codePoint * radix + digit;
+            }
+            return codePoint;
+        }
+
+        if (is(start, end, "amp")) {
+            return '&';
+        } else if (is(start, end, "lt")) {
+            return '<';
+        } else if (is(start, end, "gt")) {
+            return '>';
+        } else if (is(start, end, "quot")) {
+            return '"';
+        } else if (is(start, end, "apos")) {
+            return '\'';
+        }
+        throw error("Unknown entity " + new String(chars, start, end - start));
+    }
+
+    /**
+     * The current attribute's value as an integer, surrounding whitespace ignored
+     * @return the value
+     * @throws XMLStreamException not an integer, out of range or a malformed character reference
+     */
+    private long integer ()
+        throws XMLStreamException {
+
+        int i = valueStart;
+        int end = valueStart + valueLength;
+        while (i < end && isWhitespace(chars[i])) {
+            i++;
+        }
+        while (end > i && isWhitespace(chars[end - 1])) {
+            end--;
+        }
+
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i++] == '-';
+        }
+        if (i >= end) {
+            throw notInteger(text());
+        }
+
+        //  Accumulated negative, so that the minimum value doesn't overflow.
+        long result = 0;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                if (c == '&') {
+                    return parseLong(text());
+                }
+                throw notInteger(text());
+            }
+            if (result < (Long.MIN_VALUE + (c - '0')) / 10) {
+                throw notInteger(text());
+            }
+            result = result * 10 - (c - '0');
+        }
+        if (!negative && result == Long.MIN_VALUE) {
+            throw notInteger(text());
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parse an integer the slow way, when its value contains a character reference
+     * @param text the value
+     * @return the value
+     * @throws XMLStreamException not an integer
+     */
+    private long parseLong (String text)
+        throws XMLStreamException {
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            throw notInteger(text);
+        }
+    }
+
+    /**
+     * Create an exception for a value that isn't an integer, which fails the document just as it does JAXB's
+     * @param text the value
+     * @return the exception
+     */
+    private XMLStreamException notInteger (String text) {
+        return error("Not an integer: \"" + text + "\"");
+    }
+
+    /**
+     * The current attribute's value as a date and time, parsed in place unless it has character references
+     * @return milliseconds since 1970-01-01T00:00 on the local timeline, <code>IsoDateTime.INVALID</code> when not an
+     * ISO 8601 date and time
+     * @throws XMLStreamException malformed character reference
+     */
+    private long dateTime ()
+        throws XMLStreamException {
+
+        int end = valueStart + valueLength;
+        for (int i = valueStart; i < end; i++) {
+            if (chars[i] == '&') {
+                return IsoDateTime.parse(text());
+            }
+        }
+        return IsoDateTime.parse(chars, valueStart, end);
+    }
+
+    /**
+     * The current attribute's value as whether a lobbyist held a covered position
+     * @return the value, null when not one of the enumerated values
+     * @throws XMLStreamException malformed character reference
+     */
+    private CoveredEnum covered ()
+        throws XMLStreamException {
+        if (is(valueStart, valueStart + valueLength, CoveredEnum.COVERED.value())) {
+            return CoveredEnum.COVERED;
+        } else if (is(valueStart, valueStart + valueLength, CoveredEnum.NOT_COVERED.value())) {
+            return CoveredEnum.NOT_COVERED;
+        }
+        try {
+            return CoveredEnum.fromValue(text());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Are the characters the string given?
+     * @param start index of the first character
+     * @param end index after the last character
+     * @param s the string
+     * @return true if they are
+     */
+    private boolean is (int start,
+                        int end,
+                        String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (chars[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Does an end tag close the element named?
+     * @param start index of the end tag's name
+     * @param tagEnd index of the tag's closing bracket
+     * @param name element name
+     * @return true if it does
+     */
+    private boolean isElement (int start,
+                               int tagEnd,
+                               String name) {
+        return is(start, endOfName(start, tagEnd), name);
+    }
+
+    /**
+     * Find the end of an element name
+     * @param start index of the name
+     * @param tagEnd index of the tag's closing bracket
+     * @return index after the name
+     */
+    private int endOfName (int start,
+                           int tagEnd) {
+        int i = start;
+        while (i < tagEnd && chars[i] != '/' && !isWhitespace(chars[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Skip whitespace
+     * @param from index from which to skip
+     * @param end index at which to stop
+     * @return index of the first character that isn't whitespace, end if none
+     */
+    private int skipWhitespace (int from,
+                                int end) {
+        int i = from;
+        while (i < end && isWhitespace(chars[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Is the character XML whitespace?
+     * @param c the character
+     * @return true if it is
+     */
+    static private boolean isWhitespace (char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    /**
+     * Advance to the start of the next tag, skipping any text
+     * @return true if positioned at a tag, false at the end of the document
+     * @throws IOException unable to read the stream
+     * @throws XMLStreamException the document ends with the tag's opening bracket
+     */
+    private boolean findTag ()
+        throws IOException, XMLStreamException {
+
+        while (true) {
+            for (int i = position; i < limit; i++) {
+                if (chars[i] == '<') {
+                    //  The character after the bracket identifies the kind of tag, so must be read too.
+                    position = i;
+                    if (i + 1 == limit && !fill()) {
+                        throw error("Document ends within a tag");
+                    }
+                    return true;
+                }
+            }
+            position = limit;
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Find the end of the tag at the current position, reading more of the document until the entire tag is in the
+     * buffer.  Comments, processing instructions and DOCTYPEs are found by their own terminators.
+     * @return index of the tag's closing bracket
+     * @throws IOException unable to read the stream
+     * @throws XMLStreamException the document ends within the tag
+     */
+    private int endOfTag ()
+        throws IOException, XMLStreamException {
+
+        int kind = 0;
+        int depth = 0;
+        char quote = 0;
+        int i = position + 1;
+        while (true) {
+            for (; i < limit; i++) {
+                char c = chars[i];
+
+                //  What kind of tag is decided on its first characters, which may take more than one read to see.
+                if (kind == 0) {
+                    if (c == '!') {
+                        if (i + 3 >= limit) {
+                            break;
+                        }
+                        kind = (chars[i + 1] == '-' && chars[i + 2] == '-') ? '-' : (chars[i + 1] == '[' ? '[' : 'D');
+                    } else {
+                        kind = (c == '?') ? '?' : 'E';
+                    }
+                }
+
+                if (kind == '-') {
+                    if (c == '>' && i - position >= 6 && chars[i - 1] == '-' && chars[i - 2] == '-') {
+                        return i;
+                    }
+                } else if (kind == '[') {
+                    if (c == '>' && chars[i - 1] == ']' && chars[i - 2] == ']') {
+                        return i;
+                    }
+                } else if (kind == '?') {
+                    if (c == '>' && chars[i - 1] == '?' && i - position >= 3) {
+                        return i;
+                    }
+                } else if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (kind == 'D' && c == '[') {
+                    depth++;
+                } else if (kind == 'D' && c == ']') {
+                    depth--;
+                } else if (c == '>' && depth == 0) {
+                    return i;
+                } else if (c == '<' && kind == 'E') {
+                    throw error("Tag not terminated");
+                }
+            }
+
+            int scanned = i - position;
+            if (!fill()) {
+                throw error("Document ends within a tag");
+            }
+            i = position + scanned;
+        }
+    }
+
+    /**
+     * Read more of the document, keeping everything from the current position on.  The buffer only grows when the
+     * current position is already its start, i.e., a single tag is larger than the buffer.
+     * @return false at the end of the document
+     * @throws IOException unable to read the stream
+     */
+    private boolean fill ()
+        throws IOException {
+
+        if (exhausted) {
+            return false;
+        }
+
+        if (position > 0) {
+            System.arraycopy(chars, position, chars, 0, limit - position);
+            offset += position;
+            limit -= position;
+            position = 0;
+        } else if (limit == chars.length) {
+            char[] grown = new char[chars.length * 2];
+            System.arraycopy(chars, 0, grown, 0, limit);
+            chars = grown;
+        }
+
+        //  Decode as many whole characters as were read, a byte left over is the first half of the next.
+        int before = limit;
+        while (limit == before && !exhausted) {
+            int start = 0;
+            if (leftover >= 0) {
+                bytes[start++] = (byte) leftover;
+                leftover = -1;
+            }
+            int room = Math.min(bytes.length, (chars.length - limit) * 2);
+            int read = in.read(bytes, start, room - start);
+            if (read < 0) {
+                exhausted = true;
+                if (start > 0) {
+                    throw new IOException("Document ends within a character at character " + (offset + limit));
+                }
+                break;
+            }
+
+            int available = start + read;
+            int end = available & ~1;
+            if (bigEndian) {
+                for (int b = 0; b < end; b += 2) {
+                    chars[limit++] = (char) (((bytes[b] & 0xFF) << 8) | (bytes[b + 1] & 0xFF));
+                }
+            } else {
+                for (int b = 0; b < end; b += 2) {
+                    chars[limit++] = (char) (((bytes[b + 1] & 0xFF) << 8) | (bytes[b] & 0xFF));
+                }
+            }
+            if (end < available) {
+                leftover = bytes[end] & 0xFF;
+            }
+        }
+
+        return limit > before;
+    }
+
+    /**
+     * Read the byte order mark, if any, which decides the order of the bytes in each character.  Without one the
+     * document is big-endian, as with Java's UTF-16 charset.
+     * @throws IOException unable to read the stream
+     */
+    private void readByteOrderMark ()
+        throws IOException {
+
+        if (!fill()) {
+            return;
+        }
+        if (chars[0] == '\uFEFF') {
+            position = 1;
+        } else if (chars[0] == '\uFFFE') {
+            //  Little-endian, everything decoded so far has its bytes swapped.
+            bigEndian = false;
+            for (int i = 1; i < limit; i++) {
+                chars[i] = Character.reverseBytes(chars[i]);
+            }
+            position = 1;
+        }
+    }
+
+    /**
+     * Create an exception for malformed XML, noting where it was found
+     * @param message what's wrong
+     * @return the exception
+     */
+    private XMLStreamException error (String message) {
+        return new XMLStreamException(message + " at character " + (offset + position));
+    }
+}
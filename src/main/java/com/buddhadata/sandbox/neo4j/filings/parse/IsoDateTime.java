@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.parse;
+
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Converts a filing's received date, an <code>xsd:dateTime</code> such as <code>2019-04-15T12:34:56.789</code>, to the
+ * local date and time at which the filing was received.  Parsing the characters yields milliseconds since
+ * 1970-01-01T00:00 on the local timeline, a primitive, so nothing is allocated per filing until the
+ * <code>LocalDateTime</code> stored on the <code>Filing</code> is created; unlike
+ * <code>XMLGregorianCalendar.toGregorianCalendar().getTime()</code>, which allocates a calendar, its fields and a
+ * <code>Date</code> on top of the <code>XMLGregorianCalendar</code> itself.
+ *
+ * The Senate's dates have no time zone, they're the local time in Washington and are kept as is.  A date with an
+ * explicit offset is converted to the same instant in this JVM's time zone, the zone in which dates without one were
+ * interpreted before they were stored as local dates.  Precision is milliseconds, any further fractional digits are
+ * truncated as <code>GregorianCalendar</code> truncates them.
+ *
+ * @author Scott C Sosna
+ */
+public final class IsoDateTime {
+
+    /**
+     * Returned when the characters aren't an ISO 8601 date and time
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    //  Milliseconds per unit
+    static private final long MILLIS_PER_SECOND = 1000L;
+    static private final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    static private final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    static private final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    /**
+     * Time zone to which dates with an explicit offset are converted
+     */
+    static private final ZoneRules RULES = ZoneId.systemDefault().getRules();
+
+    /**
+     * Constructor, static methods only
+     */
+    private IsoDateTime () {
+        return;
+    }
+
+    /**
+     * Parse the characters of an ISO 8601 date and time, <code>yyyy-MM-ddTHH:mm:ss[.S*][Z|+HH:mm|-HH:mm]</code>.
+     * Surrounding whitespace is ignored.
+     * @param chars buffer holding the characters
+     * @param start index of the first character
+     * @param end index after the last character
+     * @return milliseconds since 1970-01-01T00:00 on the local timeline, <code>INVALID</code> when not a date and time
+     */
+    public static long parse (char[] chars,
+                              int start,
+                              int end) {
+
+        int i = start;
+        int last = end;
+        while (i < last && isWhitespace(chars[i])) {
+            i++;
+        }
+        while (last > i && isWhitespace(chars[last - 1])) {
+            last--;
+        }
+
+        //  Years may have more than four digits, everything else has exactly two.
+        int yearStart = i;
+        int year = 0;
+        while (i < last && isDigit(chars[i]) && i - yearStart < 9) {
+            year = year * 10 + (chars[i++] - '0');
+        }
+        if (i - yearStart < 4 || i + 15 > last || chars[i] != '-' || chars[i + 3] != '-' || chars[i + 6] != 'T' ||
+            chars[i + 9] != ':' || chars[i + 12] != ':') {
+            return INVALID;
+        }
+        int month = twoDigits(chars, i + 1);
+        int day = twoDigits(chars, i + 4);
+        int hour = twoDigits(chars, i + 7);
+        int minute = twoDigits(chars, i + 10);
+        int second = twoDigits(chars, i + 13);
+        i += 15;
+
+        //  Only the first three fractional digits count, the rest must still be digits.
+        int millisecond = 0;
+        if (i < last && chars[i] == '.') {
+            int fractionStart = ++i;
+            while (i < last && isDigit(chars[i])) {
+                if (i - fractionStart < 3) {
+                    millisecond = millisecond * 10 + (chars[i] - '0');
+                }
+                i++;
+            }
+            if (i == fractionStart) {
+                return INVALID;
+            }
+            for (int scale = i - fractionStart; scale < 3; scale++) {
+                millisecond *= 10;
+            }
+        }
+
+        int offsetMinutes = 0;
+        boolean zoned = i < last;
+        if (zoned) {
+            if (chars[i] == 'Z' && i + 1 == last) {
+                offsetMinutes = 0;
+            } else if ((chars[i] == '+' || chars[i] == '-') && i + 6 == last && chars[i + 3] == ':') {
+                int offsetHours = twoDigits(chars, i + 1);
+                int offsetMinute = twoDigits(chars, i + 4);
+                offsetMinutes = offsetHours * 60 + offsetMinute;
+                if (offsetHours < 0 || offsetMinute < 0 || offsetMinute > 59 || offsetMinutes > 14 * 60) {
+                    return INVALID;
+                }
+                offsetMinutes *= (chars[i] == '-') ? -1 : 1;
+            } else {
+                return INVALID;
+            }
+        }
+
+        long local = localMillis(year, month, day, hour, minute, second, millisecond);
+        return (zoned && local != INVALID) ? toDefaultZone(local - offsetMinutes * MILLIS_PER_MINUTE) : local;
+    }
+
+    /**
+     * Parse an ISO 8601 date and time that isn't already in a character buffer, e.g., one with character references
+     * that had to be replaced.
+     * @param text the date and time
+     * @return milliseconds since 1970-01-01T00:00 on the local timeline, <code>INVALID</code> when not a date and time
+     */
+    public static long parse (String text) {
+        return parse(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * The local date and time of a date already unmarshalled by JAXB, read from its fields rather than converted
+     * through a <code>GregorianCalendar</code>
+     * @param received the date and time
+     * @return milliseconds since 1970-01-01T00:00 on the local timeline, <code>INVALID</code> when any field is missing
+     */
+    public static long toLocalMillis (XMLGregorianCalendar received) {
+
+        int millisecond = received.getMillisecond();
+        long local = localMillis(received.getYear(), received.getMonth(), received.getDay(), received.getHour(),
+            received.getMinute(), received.getSecond(), millisecond == DatatypeConstants.FIELD_UNDEFINED ? 0 : millisecond);
+
+        int offsetMinutes = received.getTimezone();
+        return (offsetMinutes != DatatypeConstants.FIELD_UNDEFINED && local != INVALID) ?
+            toDefaultZone(local - offsetMinutes * MILLIS_PER_MINUTE) : local;
+    }
+
+    /**
+     * Create the local date and time from its milliseconds
+     * @param localMillis milliseconds since 1970-01-01T00:00 on the local timeline
+     * @return the local date and time, null when <code>INVALID</code>
+     */
+    public static LocalDateTime toLocalDateTime (long localMillis) {
+        if (localMillis == INVALID) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(localMillis, MILLIS_PER_SECOND),
+            (int) Math.floorMod(localMillis, MILLIS_PER_SECOND) * 1000000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Combine the fields of a date and time, checking each is in range.  Midnight at the end of a day may be written
+     * as hour 24, as XML Schema allows; like <code>XMLGregorianCalendar</code>, any day through the 31st is then
+     * accepted and midnight at the end of the month's last day or later is the first of the next month.
+     * @param year year
+     * @param month month, 1-12
+     * @param day day of the month
+     * @param hour hour, 0-24
+     * @param minute minute
+     * @param second second
+     * @param millisecond millisecond
+     * @return milliseconds since 1970-01-01T00:00 on the local timeline, <code>INVALID</code> when a field is out of range
+     */
+    static private long localMillis (int year,
+                                     int month,
+                                     int day,
+                                     int hour,
+                                     int minute,
+                                     int second,
+                                     int millisecond) {
+
+        boolean endOfDay = hour == 24;
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > (endOfDay ? 31 : lengthOfMonth(year, month)) ||
+            minute < 0 || minute > 59 || second < 0 || second > 59 || millisecond < 0 || millisecond > 999 ||
+            hour < 0 || hour > 24 || (endOfDay && (minute != 0 || second != 0))) {
+            return INVALID;
+        }
+        if (endOfDay) {
+            day = Math.min(day, lengthOfMonth(year, month));
+        }
+
+        return epochDay(year, month, day) * MILLIS_PER_DAY + hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE +
+            second * MILLIS_PER_SECOND + millisecond;
+    }
+
+    /**
+     * Days since 1970-01-01 in the proleptic Gregorian calendar, counted in 400-year eras starting each March so the
+     * leap day is always the last day of the year
+     * @param year year
+     * @param month month, 1-12
+     * @param day day of the month
+     * @return days since 1970-01-01
+     */
+    static private long epochDay (int year,
+                                  int month,
+                                  int day) {
+        long y = (month <= 2) ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Number of days in a month
+     * @param year year
+     * @param month month, 1-12
+     * @return number of days
+     */
+    static private int lengthOfMonth (int year,
+                                      int month) {
+        if (month == 2) {
+            return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+    /**
+     * Convert an instant to this JVM's time zone
+     * @param utcMillis milliseconds since the epoch
+     * @return milliseconds since 1970-01-01T00:00 on the local timeline
+     */
+    static private long toDefaultZone (long utcMillis) {
+        ZoneOffset offset = RULES.isFixedOffset() ? RULES.getOffset(Instant.EPOCH) : RULES.getOffset(Instant.ofEpochMilli(utcMillis));
+        return utcMillis + offset.getTotalSeconds() * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * Two decimal digits as a number
+     * @param chars buffer holding the digits
+     * @param i index of the first digit
+     * @return the number, -1 when either isn't a digit
+     */
+    static private int twoDigits (char[] chars,
+                                  int i) {
+        return (isDigit(chars[i]) && isDigit(chars[i + 1])) ? (chars[i] - '0') * 10 + (chars[i + 1] - '0') : -1;
+    }
+
+    /**
+     * Is the character a decimal digit?
+     * @param c the character
+     * @return true if it is
+     */
+    static private boolean isDigit (char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Is the character XML whitespace?
+     * @param c the character
+     * @return true if it is
+     */
+    static private boolean isWhitespace (char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
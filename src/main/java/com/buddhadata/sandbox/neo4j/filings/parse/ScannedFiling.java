@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.parse;
+
+import generated.FilingType;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.time.LocalDateTime;
+
+/**
+ * A filing read by the <code>FilingsScanner</code>, whose received date was parsed straight from the document's
+ * characters into milliseconds rather than into an <code>XMLGregorianCalendar</code>.  The calendar is only created
+ * should anything still ask for it.
+ *
+ * @author Scott C Sosna
+ */
+public class ScannedFiling
+    extends FilingType {
+
+    /**
+     * Creates the received date's calendar when asked for
+     */
+    static private final DatatypeFactory DATATYPES;
+    static {
+        try {
+            DATATYPES = DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException("No XML datatype factory", e);
+        }
+    }
+
+    /**
+     * Date and time the filing was received, milliseconds since 1970-01-01T00:00 on the local timeline;
+     * <code>IsoDateTime.INVALID</code> when missing or not a date and time
+     */
+    private long receivedMillis = IsoDateTime.INVALID;
+
+    /**
+     * getter
+     * @return date and time the filing was received, milliseconds since 1970-01-01T00:00 on the local timeline;
+     * <code>IsoDateTime.INVALID</code> when missing or not a date and time
+     */
+    public long getReceivedMillis() {
+        return receivedMillis;
+    }
+
+    /**
+     * setter
+     * @param receivedMillis date and time the filing was received, milliseconds since 1970-01-01T00:00 on the local
+     *                       timeline
+     */
+    public void setReceivedMillis(long receivedMillis) {
+        this.receivedMillis = receivedMillis;
+        this.received = null;
+    }
+
+    /**
+     * getter
+     * @return date and time the filing was received, null when missing or not a date and time
+     */
+    public LocalDateTime getReceivedOn() {
+        return IsoDateTime.toLocalDateTime(receivedMillis);
+    }
+
+    /**
+     * The received date as JAXB would have unmarshalled it, created on first use.
+     * @return date and time the filing was received, without a time zone; null when missing or not a date and time
+     */
+    @Override
+    public XMLGregorianCalendar getReceived() {
+        if (received == null && receivedMillis != IsoDateTime.INVALID) {
+            LocalDateTime on = getReceivedOn();
+            received = DATATYPES.newXMLGregorianCalendar(on.getYear(), on.getMonthValue(), on.getDayOfMonth(),
+                on.getHour(), on.getMinute(), on.getSecond(), on.getNano() / 1000000, DatatypeConstants.FIELD_UNDEFINED);
+        }
+        return received;
+    }
+
+    /**
+     * setter
+     * @param value date and time the filing was received
+     */
+    @Override
+    public void setReceived(XMLGregorianCalendar value) {
+        this.received = value;
+        this.receivedMillis = (value != null) ? IsoDateTime.toLocalMillis(value) : IsoDateTime.INVALID;
+    }
+}
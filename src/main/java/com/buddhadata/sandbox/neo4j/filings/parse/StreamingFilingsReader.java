@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.parse;
+
+import com.buddhadata.sandbox.neo4j.filings.metrics.Timer;
+import generated.FilingType;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.FilterReader;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Walks a public filings XML document with StAX, unmarshalling one <code>Filing</code> element at a time rather than
+ * building the entire <code>PublicFilings</code> tree.  Only the filing currently being handed to the consumer is
+ * alive, so heap use doesn't depend on the size of the file being read.
+ *
+ * Like the unmarshaller it wraps, a reader is not thread-safe.
+ *
+ * @author Scott C Sosna
+ */
+public class StreamingFilingsReader {
+
+    /**
+     * Element name of each individual filing within the document
+     */
+    static private final String FILING_ELEMENT = "Filing";
+
+    /**
+     * Factory for the StAX readers, one created per document read.
+     */
+    private final XMLInputFactory factory;
+
+    /**
+     * Unmarshaller used for each individual filing element.
+     */
+    private final Unmarshaller unmarshaller;
+
+    /**
+     * Time spent unmarshalling each filing, null when not timed
+     */
+    private final Timer unmarshalTimer;
+
+    /**
+     * Constructor
+     * @param context JAXB context for the generated filing classes
+     * @throws JAXBException unable to create the unmarshaller
+     */
+    public StreamingFilingsReader (JAXBContext context)
+        throws JAXBException {
+        this(context, null);
+    }
+
+    /**
+     * Constructor
+     * @param context JAXB context for the generated filing classes
+     * @param unmarshalTimer times unmarshalling each filing, which includes reading and decoding its part of the
+     *                       document, null for none
+     * @throws JAXBException unable to create the unmarshaller
+     */
+    public StreamingFilingsReader (JAXBContext context,
+                                   Timer unmarshalTimer)
+        throws JAXBException {
+
+        this.unmarshalTimer = unmarshalTimer;
+        this.unmarshaller = context.createUnmarshaller();
+        this.factory = XMLInputFactory.newFactory();
+
+        //  The filings are self-contained, nothing external should ever be resolved.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Read the filings document, handing each filing to the consumer as soon as it's been unmarshalled.  The reader
+     * is not closed, it's the caller's responsibility (important when reading zip entries, where closing the reader
+     * closes the entire zip stream).
+     * @param reader character stream of the XML document, already decoded (the source files are UTF-16)
+     * @param consumer receives each filing in document order
+     * @return number of filings read
+     * @throws XMLStreamException malformed XML
+     * @throws JAXBException unable to unmarshal an individual filing
+     */
+    public int read (Reader reader,
+                     Consumer<FilingType> consumer)
+        throws XMLStreamException, JAXBException {
+
+        //  The JDK's StAX implementation closes its input on reaching the end of the document, shield the caller's reader.
+        int count = 0;
+        XMLStreamReader xsr = factory.createXMLStreamReader(new FilterReader(reader) {
+            @Override
+            public void close() {
+                return;
+            }
+        });
+        try {
+            while (xsr.hasNext()) {
+                //  Unmarshalling a filing consumes its end element and leaves the reader positioned on whatever
+                //  follows, so only advance when not sitting at the start of a filing.
+                if (xsr.getEventType() == XMLStreamConstants.START_ELEMENT && FILING_ELEMENT.equals(xsr.getLocalName())) {
+                    consumer.accept(unmarshal(xsr));
+                    count++;
+                } else {
+                    xsr.next();
+                }
+            }
+        } finally {
+            xsr.close();
+        }
+
+        return count;
+    }
+
+    /**
+     * Unmarshal the filing at which the reader is positioned
+     * @param xsr the StAX reader, positioned at the filing's start element
+     * @return the filing
+     * @throws JAXBException unable to unmarshal the filing
+     */
+    private FilingType unmarshal (XMLStreamReader xsr)
+        throws JAXBException {
+
+        if (unmarshalTimer == null) {
+            return unmarshaller.unmarshal(xsr, FilingType.class).getValue();
+        }
+
+        long start = System.nanoTime();
+        try {
+            return unmarshaller.unmarshal(xsr, FilingType.class).getValue();
+        } finally {
+            unmarshalTimer.stop(start);
+        }
+    }
+}
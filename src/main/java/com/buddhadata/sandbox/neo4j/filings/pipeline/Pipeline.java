@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A chain of stages connected by bounded queues, each stage with its own threads.  Inputs are fed to the first stage
+ * by the thread running the pipeline, which blocks whenever the first stage is full.  While running each stage's queue
+ * occupancy is sampled and the statistics of every stage are reported periodically and once the pipeline completes.
+ *
+ * @param <I> type of the items fed to the first stage
+ * @author Scott C Sosna
+ */
+public class Pipeline<I> {
+
+    /**
+     * How often queue occupancy is sampled
+     */
+    static private final long SAMPLE_INTERVAL_MS = 100;
+
+    /**
+     * Name of the pipeline, for reporting
+     */
+    private final String name;
+
+    /**
+     * The first stage, receiving the inputs
+     */
+    private final Stage<I,?> first;
+
+    /**
+     * All stages, in order
+     */
+    private final List<Stage<?,?>> stages;
+
+    /**
+     * Constructor
+     * @param name name of the pipeline, for reporting
+     * @param first the first stage
+     * @param stages all stages, in order
+     */
+    private Pipeline (String name,
+                      Stage<I,?> first,
+                      List<Stage<?,?>> stages) {
+        this.name = name;
+        this.first = first;
+        this.stages = Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Begin building a pipeline
+     * @param name name of the pipeline, for reporting
+     * @param stageName name of the first stage
+     * @param threads number of threads for the first stage
+     * @param queueDepth maximum number of inputs waiting for the first stage
+     * @param processor work done by the first stage for each input
+     * @param <I> type of the items fed to the first stage
+     * @param <O> type of the items produced by the first stage
+     * @return builder for adding further stages
+     */
+    public static <I,O> Builder<I,O> builder (String name,
+                                              String stageName,
+                                              int threads,
+                                              int queueDepth,
+                                              Stage.Processor<I,O> processor) {
+        return new Builder<>(name, new Stage<>(stageName, threads, queueDepth, processor, null));
+    }
+
+    /**
+     * Run the pipeline to completion: start every stage, feed the inputs to the first stage and wait until the last
+     * stage's threads have finished.
+     * @param inputs items fed to the first stage
+     * @param reportSeconds how often the statistics are reported while running, zero for only at completion
+     * @throws InterruptedException interrupted while waiting for the pipeline to complete
+     */
+    public void run (Iterable<I> inputs,
+                     long reportSeconds)
+        throws InterruptedException {
+
+        long start = System.nanoTime();
+        ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        monitor.scheduleAtFixedRate(() -> stages.forEach(Stage::sample), SAMPLE_INTERVAL_MS, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (reportSeconds > 0) {
+            monitor.scheduleAtFixedRate(() -> report(start), reportSeconds, reportSeconds, TimeUnit.SECONDS);
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        try {
+            for (Stage<?,?> stage : stages) {
+                Collections.addAll(threads, stage.start());
+            }
+
+            //  Each stage ends the next once all its threads are done, so only the first needs ending here.
+            for (I input : inputs) {
+                first.put(input);
+            }
+            first.end();
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            monitor.shutdownNow();
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+
+        report(start);
+    }
+
+    /**
+     * Print the statistics of every stage
+     * @param start when the pipeline started running, from <code>System.nanoTime()</code>
+     */
+    private void report (long start) {
+        long elapsed = System.nanoTime() - start;
+        StringBuilder sb = new StringBuilder(String.format("%s after %d ms:", name, TimeUnit.NANOSECONDS.toMillis(elapsed)));
+        for (Stage<?,?> stage : stages) {
+            sb.append(System.lineSeparator()).append("  ").append(stage.report(elapsed));
+        }
+        System.out.println (sb);
+    }
+
+    /**
+     * Builds a pipeline one stage at a time.
+     * @param <I> type of the items fed to the first stage
+     * @param <O> type of the items produced by the last stage added so far
+     */
+    public static class Builder<I,O> {
+
+        /**
+         * Name of the pipeline
+         */
+        private final String name;
+
+        /**
+         * The first stage
+         */
+        private final Stage<I,?> first;
+
+        /**
+         * The last stage added so far
+         */
+        private final Stage<?,O> last;
+
+        /**
+         * All stages added so far, in order
+         */
+        private final List<Stage<?,?>> stages;
+
+        /**
+         * Constructor, for the first stage
+         * @param name name of the pipeline
+         * @param first the first stage
+         */
+        private Builder (String name,
+                         Stage<I,O> first) {
+            this.name = name;
+            this.first = first;
+            this.last = first;
+            this.stages = new ArrayList<>();
+            this.stages.add(first);
+        }
+
+        /**
+         * Constructor, for each subsequent stage
+         * @param previous builder of the previous stages
+         * @param last the stage added
+         */
+        private Builder (Builder<I,?> previous,
+                         Stage<?,O> last) {
+            this.name = previous.name;
+            this.first = previous.first;
+            this.last = last;
+            this.stages = previous.stages;
+            this.stages.add(last);
+        }
+
+        /**
+         * Add a stage receiving what the previous stage produces
+         * @param stageName name of the stage
+         * @param threads number of threads processing items
+         * @param queueDepth maximum number of items waiting to be processed
+         * @param processor work done for each item
+         * @param <N> type of the items produced by the stage
+         * @return builder for adding further stages
+         */
+        public <N> Builder<I,N> then (String stageName,
+                                      int threads,
+                                      int queueDepth,
+                                      Stage.Processor<O,N> processor) {
+            return then(stageName, threads, queueDepth, processor, null);
+        }
+
+        /**
+         * Add a stage receiving what the previous stage produces
+         * @param stageName name of the stage
+         * @param threads number of threads processing items
+         * @param queueDepth maximum number of items waiting to be processed
+         * @param processor work done for each item
+         * @param finisher run by each of the stage's threads once there's no more input, may be null
+         * @param <N> type of the items produced by the stage
+         * @return builder for adding further stages
+         */
+        public <N> Builder<I,N> then (String stageName,
+                                      int threads,
+                                      int queueDepth,
+                                      Stage.Processor<O,N> processor,
+                                      Runnable finisher) {
+            Stage<O,N> stage = new Stage<>(stageName, threads, queueDepth, processor, finisher);
+            last.setNext(stage);
+            return new Builder<>(this, stage);
+        }
+
+        /**
+         * Finish building
+         * @return the pipeline
+         */
+        public Pipeline<I> build () {
+            return new Pipeline<>(name, first, stages);
+        }
+    }
+}
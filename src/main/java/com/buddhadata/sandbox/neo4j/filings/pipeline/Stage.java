@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * One stage of a pipeline: a fixed number of threads taking items from the stage's bounded queue and handing whatever
+ * they produce to the next stage's queue.  When the next stage falls behind its queue fills and this stage's threads
+ * block, so a slow stage slows everything upstream of it rather than letting work pile up in the heap.
+ *
+ * @param <I> type of item processed by the stage
+ * @param <O> type of item produced for the next stage
+ * @author Scott C Sosna
+ */
+public class Stage<I,O> {
+
+    /**
+     * The work done by a stage for each item.
+     * @param <I> type of item processed by the stage
+     * @param <O> type of item produced for the next stage
+     */
+    @FunctionalInterface
+    public interface Processor<I,O> {
+
+        /**
+         * Process a single item
+         * @param item the item to process
+         * @param downstream receives each item produced, blocking while the next stage's queue is full
+         * @throws Exception processing failed, the item is counted as a failure and the stage carries on
+         */
+        void process (I item, Consumer<O> downstream) throws Exception;
+    }
+
+    /**
+     * Marks the end of a stage's input, one per thread.
+     */
+    static private final Object END = new Object();
+
+    /**
+     * Name of the stage, for reporting
+     */
+    private final String name;
+
+    /**
+     * Number of threads processing items
+     */
+    private final int threads;
+
+    /**
+     * Items waiting to be processed
+     */
+    private final BlockingQueue<Object> queue;
+
+    /**
+     * Maximum number of items waiting to be processed
+     */
+    private final int queueDepth;
+
+    /**
+     * The work done for each item
+     */
+    private final Processor<I,O> processor;
+
+    /**
+     * Run by each thread once there's no more input, e.g., to flush what the thread still has buffered.  May be null.
+     */
+    private final Runnable finisher;
+
+    /**
+     * The stage receiving what's produced, null for the last stage.
+     */
+    private Stage<O,?> next;
+
+    /**
+     * Threads still running, the last one to finish ends the next stage's input.
+     */
+    private final AtomicInteger running;
+
+    //  Statistics
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder produced = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final AtomicLong occupancySamples = new AtomicLong();
+    private final AtomicLong occupancyTotal = new AtomicLong();
+    private final AtomicInteger occupancyMax = new AtomicInteger();
+
+    /**
+     * Constructor
+     * @param name name of the stage, for reporting
+     * @param threads number of threads processing items
+     * @param queueDepth maximum number of items waiting to be processed
+     * @param processor the work done for each item
+     * @param finisher run by each thread once there's no more input, may be null
+     */
+    Stage (String name,
+           int threads,
+           int queueDepth,
+           Processor<I,O> processor,
+           Runnable finisher) {
+
+        this.name = name;
+        this.threads = Math.max(1, threads);
+        this.queueDepth = Math.max(1, queueDepth);
+        this.queue = new ArrayBlockingQueue<>(this.queueDepth);
+        this.processor = processor;
+        this.finisher = finisher;
+        this.running = new AtomicInteger(this.threads);
+    }
+
+    /**
+     * Start the stage's threads
+     * @return the started threads
+     */
+    Thread[] start () {
+        Thread[] started = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            started[i] = new Thread(this::work, name + "-" + i);
+            started[i].start();
+        }
+        return started;
+    }
+
+    /**
+     * Hand an item to this stage, blocking while the queue is full.
+     * @param item item to process
+     */
+    void put (I item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing for " + name, e);
+        }
+    }
+
+    /**
+     * No more input, each thread finishes once everything queued ahead of its end marker has been processed.
+     */
+    @SuppressWarnings("unchecked")
+    void end () {
+        for (int i = 0; i < threads; i++) {
+            put((I) END);
+        }
+    }
+
+    /**
+     * Connect the stage receiving what this stage produces.
+     * @param next the next stage
+     */
+    void setNext (Stage<O,?> next) {
+        this.next = next;
+    }
+
+    /**
+     * Record the current queue occupancy, called periodically while the pipeline runs.
+     */
+    void sample () {
+        int size = queue.size();
+        occupancySamples.incrementAndGet();
+        occupancyTotal.addAndGet(size);
+        occupancyMax.accumulateAndGet(size, Math::max);
+    }
+
+    /**
+     * Format the stage's statistics
+     * @param elapsedNanos how long the pipeline has been running
+     * @return single line of statistics
+     */
+    String report (long elapsedNanos) {
+        long samples = occupancySamples.get();
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        double available = threads * (double) Math.max(elapsedNanos, 1);
+        long blocked = blockedNanos.sum();
+        return String.format("%-8s threads=%d processed=%,d (%,.0f/s) produced=%,d failed=%,d busy=%.0f%% blocked=%.0f%% queue avg=%.1f max=%d/%d",
+            name, threads, processed.sum(), processed.sum() / seconds, produced.sum(), failures.sum(),
+            100.0 * (busyNanos.sum() - blocked) / available, 100.0 * blocked / available,
+            samples > 0 ? (double) occupancyTotal.get() / samples : 0.0, occupancyMax.get(), queueDepth);
+    }
+
+    /**
+     * Body of each of the stage's threads
+     */
+    @SuppressWarnings("unchecked")
+    private void work () {
+        try {
+            Object item;
+            while ((item = queue.take()) != END) {
+                long start = System.nanoTime();
+                try {
+                    processor.process((I) item, this::emit);
+                } catch (Exception e) {
+                    failures.increment();
+                    System.out.println ("Exception in " + name + " stage: " + e);
+                } finally {
+                    processed.increment();
+                    busyNanos.add(System.nanoTime() - start);
+                }
+            }
+
+            if (finisher != null) {
+                finisher.run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.out.println ("Exception finishing " + name + " stage: " + e);
+        } finally {
+            if (running.decrementAndGet() == 0 && next != null) {
+                next.end();
+            }
+        }
+    }
+
+    /**
+     * Hand a produced item to the next stage.  Time spent waiting for room in the next stage's queue is tracked
+     * separately from time spent working, it's the next stage that's the bottleneck.
+     * @param item item produced
+     */
+    private void emit (O item) {
+        produced.increment();
+        if (next != null) {
+            long start = System.nanoTime();
+            next.put(item);
+            blockedNanos.add(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.session;
+
+import com.buddhadata.sandbox.neo4j.filings.metrics.Counter;
+import com.buddhadata.sandbox.neo4j.filings.metrics.Gauge;
+import com.buddhadata.sandbox.neo4j.filings.metrics.MetricsRegistry;
+import org.neo4j.ogm.context.MappingContext;
+import org.neo4j.ogm.session.Neo4jSession;
+import org.neo4j.ogm.session.Session;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Keeps a session's <code>MappingContext</code> from growing without bound, saying when the session should be
+ * replaced because the context or the heap has grown too large, rather than clearing it before every filing.  Left
+ * alone the OGM tracks every node and relationship it has ever saved or loaded; replaced, it forgets what's already
+ * been written and saves it all again.
+ *
+ * The context's node and relationship registers aren't exposed by the OGM, their sizes are sampled through reflection
+ * every so many filings.  Should the registers not be found, e.g. with a different version of the OGM, the sizes are
+ * unknown and the session is replaced at every sample.  Memory is measured as heap in use, garbage included, so close
+ * to the limit the session may be replaced at every sample until the garbage is collected.
+ *
+ * Not thread-safe, each monitor is confined to the thread owning its session.
+ *
+ * @author Scott C Sosna
+ */
+public class MappingContextMonitor {
+
+    /**
+     * The context's registers of nodes by id and of relationships, null when not found
+     */
+    static private final Field NODE_REGISTER = register("nodeEntityRegister");
+    static private final Field RELATIONSHIP_REGISTER = register("relationshipRegister");
+
+    /**
+     * Size of a register that couldn't be read
+     */
+    static private final int UNKNOWN = -1;
+
+    /**
+     * Replace the session once the context tracks more than this many nodes or relationships
+     */
+    private final long maxNodes;
+    private final long maxRelationships;
+
+    /**
+     * Replace the session once more than this fraction of the maximum heap is in use
+     */
+    private final double maxHeapFraction;
+
+    /**
+     * Number of filings between samples
+     */
+    private final int sampleInterval;
+
+    /**
+     * Sizes of the registers when last sampled, on any thread
+     */
+    private final Gauge nodes;
+    private final Gauge relationships;
+
+    /**
+     * Sessions replaced, by which limit was exceeded
+     */
+    private final Counter nodeRecycles;
+    private final Counter relationshipRecycles;
+    private final Counter memoryRecycles;
+
+    /**
+     * Filings since the last sample
+     */
+    private int sinceSample;
+
+    /**
+     * Constructor
+     * @param maxNodes replace the session once the context tracks more than this many nodes
+     * @param maxRelationships replace the session once the context tracks more than this many relationships
+     * @param maxHeapFraction replace the session once more than this fraction of the maximum heap is in use
+     * @param sampleInterval number of filings between samples
+     * @param metrics registry recording the sizes sampled and the sessions replaced
+     */
+    public MappingContextMonitor (long maxNodes,
+                                  long maxRelationships,
+                                  double maxHeapFraction,
+                                  int sampleInterval,
+                                  MetricsRegistry metrics) {
+        this.maxNodes = maxNodes;
+        this.maxRelationships = maxRelationships;
+        this.maxHeapFraction = maxHeapFraction;
+        this.sampleInterval = Math.max(1, sampleInterval);
+        this.nodes = metrics.gauge("mapping_context_size", "register", "nodes");
+        this.relationships = metrics.gauge("mapping_context_size", "register", "relationships");
+        this.nodeRecycles = metrics.counter("session_recycles", "reason", "nodes");
+        this.relationshipRecycles = metrics.counter("session_recycles", "reason", "relationships");
+        this.memoryRecycles = metrics.counter("session_recycles", "reason", "memory");
+    }
+
+    /**
+     * Called before each filing, samples the context every so many filings.  The caller replaces the session when
+     * over a limit.
+     * @param session the session owned by the calling thread
+     * @return true if the session should be replaced
+     */
+    public boolean check (Session session) {
+
+        if (++sinceSample < sampleInterval) {
+            return false;
+        }
+        sinceSample = 0;
+
+        MappingContext context = ((Neo4jSession) session).context();
+        int nodeCount = size(NODE_REGISTER, context);
+        int relationshipCount = size(RELATIONSHIP_REGISTER, context);
+        nodes.set(nodeCount);
+        relationships.set(relationshipCount);
+
+        //  Unknown sizes are treated as over the limit.
+        Counter reason = null;
+        if (nodeCount == UNKNOWN || nodeCount > maxNodes) {
+            reason = nodeRecycles;
+        } else if (relationshipCount == UNKNOWN || relationshipCount > maxRelationships) {
+            reason = relationshipRecycles;
+        } else {
+            Runtime runtime = Runtime.getRuntime();
+            if (runtime.totalMemory() - runtime.freeMemory() > maxHeapFraction * runtime.maxMemory()) {
+                reason = memoryRecycles;
+            }
+        }
+
+        if (reason == null) {
+            return false;
+        }
+        reason.increment();
+        return true;
+    }
+
+    /**
+     * Read the size of one of the context's registers
+     * @param register the register's field
+     * @param context the session's mapping context
+     * @return number of entries in the register, UNKNOWN if it can't be read
+     */
+    static private int size (Field register,
+                             MappingContext context) {
+        if (register != null) {
+            try {
+                Object value = register.get(context);
+                if (value instanceof Map) {
+                    return ((Map<?,?>) value).size();
+                } else if (value instanceof Collection) {
+                    return ((Collection<?>) value).size();
+                }
+            } catch (IllegalAccessException e) {
+                return UNKNOWN;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Find one of the context's registers, reflection being the only way in
+     * @param name name of the register's field
+     * @return the field, null if it can't be found or made accessible
+     */
+    static private Field register (String name) {
+        try {
+            Field field = MappingContext.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            System.out.println ("Unable to monitor the MappingContext's " + name + ": " + e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.sink;
+
+import com.buddhadata.sandbox.neo4j.filings.node.Filing;
+
+/**
+ * Receives the loader's resolved filings, each referencing the client, registrant, lobbyist, government entity and
+ * issue nodes found or created for it.  What's done with them is up to the sink: written to Neo4J, kept in memory,
+ * thrown away, or handed to several sinks at once.
+ *
+ * Filings are added until the loader flushes, at the end of each zip entry or when a pipeline's write stage finishes,
+ * or discards them after a failure.  The loader may add filings on multiple threads, see each implementation for
+ * whether a sink can be shared between threads.
+ *
+ * @author Scott C Sosna
+ */
+public interface FilingSink {
+
+    /**
+     * Called before a filing's nodes are resolved, so that a sink writing the nodes as they're created can include
+     * them with the filing.  Not called when the nodes are shared between threads.
+     */
+    default void begin () {
+        return;
+    }
+
+    /**
+     * Does a flush commit the filings somewhere they outlive the load, such that a failure afterwards can't undo them?
+     * Such sinks are flushed before any other when filings go to several sinks at once.
+     * @return true if it does
+     */
+    default boolean isDurable () {
+        return false;
+    }
+
+    /**
+     * Receive a filing
+     * @param filing the resolved filing
+     */
+    void add (Filing filing);
+
+    /**
+     * Complete all filings added since the last flush.
+     */
+    void flush ();
+
+    /**
+     * Abandon all filings added since the last flush, after a failure.
+     */
+    void discard ();
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.sink;
+
+import com.buddhadata.sandbox.neo4j.filings.node.*;
+
+import java.util.*;
+
+/**
+ * Keeps the graph the filings make in memory rather than writing it anywhere, for tests and analytics that don't
+ * want a database, or for comparing against what's written to Neo4J.  The graph has the same shape as the one
+ * written: one node per client, registrant, lobbyist, government entity and issue, by the same identifying keys (see
+ * <code>NodeFactory</code>), the filings and the relationships between them.
+ *
+ * A node's properties are those of the first instance received, the filings reference the nodes as they were
+ * resolved.  When the loader resolves against the database the instances may be references carrying nothing but the
+ * node's id and identifying key.
+ *
+ * Filings are added to the graph when flushed.  Thread-safe, a single sink may be shared by all threads; the graph
+ * should only be read once the load has finished.
+ *
+ * @author Scott C Sosna
+ */
+public class InMemoryGraphSink
+    implements FilingSink {
+
+    //  Nodes by identifying key
+    private final Map<String,Client> clients = new HashMap<>();
+    private final Map<String,GovernmentEntity> entities = new HashMap<>();
+    private final Map<String,Issue> issues = new HashMap<>();
+    private final Map<LobbyistKey,Lobbyist> lobbyists = new HashMap<>();
+    private final Map<Long,Registrant> registrants = new HashMap<>();
+
+    /**
+     * Every filing, in the order flushed
+     */
+    private final List<Filing> filings = new ArrayList<>();
+
+    //  Relationships between clients/registrants and registrants/lobbyists exist once however many filings they share.
+    private final Map<String,Set<Long>> engages = new HashMap<>();
+    private final Map<Long,Set<LobbyistKey>> employs = new HashMap<>();
+
+    //  Number of each relationship a filing has to the nodes of a type, one per distinct node.
+    private long lobbyingFor;
+    private long targetedAt;
+    private long about;
+
+    /**
+     * Filings received on each thread since the last flush
+     */
+    private final ThreadLocal<List<Filing>> pending = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * Receive a filing, added to the graph when flushed
+     * @param filing the resolved filing
+     */
+    @Override
+    public void add (Filing filing) {
+        pending.get().add(filing);
+    }
+
+    /**
+     * Add the filings received on this thread to the graph.
+     */
+    @Override
+    public void flush () {
+
+        List<Filing> received = pending.get();
+        synchronized (this) {
+            for (Filing filing : received) {
+                merge(filing);
+            }
+        }
+        received.clear();
+    }
+
+    /**
+     * Forget the filings received on this thread since the last flush.
+     */
+    @Override
+    public void discard () {
+        pending.get().clear();
+    }
+
+    /**
+     * Add a filing and the nodes it references to the graph
+     * @param filing the resolved filing
+     */
+    private void merge (Filing filing) {
+
+        filings.add(filing);
+
+        Client client = filing.getClient();
+        Registrant registrant = filing.getRegistrant();
+        clients.putIfAbsent(client.getName(), client);
+        registrants.putIfAbsent(registrant.getRegistrantId(), registrant);
+        engages.computeIfAbsent(client.getName(), k -> new HashSet<>()).add(registrant.getRegistrantId());
+
+        //  Sets of distinct nodes, so each one is related to the filing only once.
+        Set<LobbyistKey> employed = employs.computeIfAbsent(registrant.getRegistrantId(), k -> new HashSet<>());
+        for (Lobbyist lobbyist : filing.getLobbyists()) {
+            LobbyistKey key = new LobbyistKey(lobbyist.getFirstName(), lobbyist.getSurname());
+            lobbyists.putIfAbsent(key, lobbyist);
+            employed.add(key);
+        }
+        for (GovernmentEntity entity : filing.getEntities()) {
+            entities.putIfAbsent(entity.getName(), entity);
+        }
+        for (Issue issue : filing.getIssues()) {
+            issues.putIfAbsent(issue.getCode(), issue);
+        }
+
+        lobbyingFor += filing.getLobbyists().size();
+        targetedAt += filing.getEntities().size();
+        about += filing.getIssues().size();
+    }
+
+    /**
+     * getter
+     * @return every filing, in the order flushed
+     */
+    public synchronized List<Filing> getFilings() {
+        return Collections.unmodifiableList(filings);
+    }
+
+    /**
+     * getter
+     * @return clients by name
+     */
+    public synchronized Map<String,Client> getClients() {
+        return Collections.unmodifiableMap(clients);
+    }
+
+    /**
+     * getter
+     * @return government entities by name
+     */
+    public synchronized Map<String,GovernmentEntity> getEntities() {
+        return Collections.unmodifiableMap(entities);
+    }
+
+    /**
+     * getter
+     * @return issues by code
+     */
+    public synchronized Map<String,Issue> getIssues() {
+        return Collections.unmodifiableMap(issues);
+    }
+
+    /**
+     * getter
+     * @return lobbyists by first name and surname
+     */
+    public synchronized Map<LobbyistKey,Lobbyist> getLobbyists() {
+        return Collections.unmodifiableMap(lobbyists);
+    }
+
+    /**
+     * getter
+     * @return registrants by registrant ID
+     */
+    public synchronized Map<Long,Registrant> getRegistrants() {
+        return Collections.unmodifiableMap(registrants);
+    }
+
+    /**
+     * getter
+     * @return the registrant IDs of the registrants engaged by each client, by client name
+     */
+    public synchronized Map<String,Set<Long>> getEngagements() {
+        return Collections.unmodifiableMap(engages);
+    }
+
+    /**
+     * getter
+     * @return the lobbyists employed by each registrant, by registrant ID
+     */
+    public synchronized Map<Long,Set<LobbyistKey>> getEmployments() {
+        return Collections.unmodifiableMap(employs);
+    }
+
+    /**
+     * Count the nodes, as counting each label in Neo4J would
+     * @return number of nodes by label
+     */
+    public synchronized SortedMap<String,Long> nodeCounts () {
+        SortedMap<String,Long> counts = new TreeMap<>();
+        counts.put("Client", (long) clients.size());
+        counts.put("Filing", (long) filings.size());
+        counts.put("GovernmentEntity", (long) entities.size());
+        counts.put("Issue", (long) issues.size());
+        counts.put("Lobbyist", (long) lobbyists.size());
+        counts.put("Registrant", (long) registrants.size());
+        return counts;
+    }
+
+    /**
+     * Count the relationships, as counting each type in Neo4J would
+     * @return number of relationships by type
+     */
+    public synchronized SortedMap<String,Long> relationshipCounts () {
+        SortedMap<String,Long> counts = new TreeMap<>();
+        counts.put("ABOUT", about);
+        counts.put("EMPLOYS", employs.values().stream().mapToLong(Set::size).sum());
+        counts.put("ENGAGES", engages.values().stream().mapToLong(Set::size).sum());
+        counts.put("FILED", (long) filings.size());
+        counts.put("LOBBYING_FOR", lobbyingFor);
+        counts.put("ON_BEHALF_OF", (long) filings.size());
+        counts.put("TARGETED_AT", targetedAt);
+        return counts;
+    }
+
+    /**
+     * Format the size of the graph
+     * @return single line summary
+     */
+    public String summary () {
+        return "nodes " + nodeCounts() + ", relationships " + relationshipCounts();
+    }
+}
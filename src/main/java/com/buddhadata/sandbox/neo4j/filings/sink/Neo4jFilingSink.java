@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.sink;
+
+import com.buddhadata.sandbox.neo4j.filings.jfr.TransactionCommittedEvent;
+import com.buddhadata.sandbox.neo4j.filings.metrics.Counter;
+import com.buddhadata.sandbox.neo4j.filings.metrics.MetricsRegistry;
+import com.buddhadata.sandbox.neo4j.filings.metrics.Timer;
+import com.buddhadata.sandbox.neo4j.filings.node.Filing;
+import com.buddhadata.sandbox.neo4j.filings.write.BatchFilingWriter;
+import com.buddhadata.sandbox.neo4j.filings.write.LobbiedRelationships;
+import com.buddhadata.sandbox.neo4j.filings.write.TimeTree;
+import org.neo4j.ogm.model.QueryStatistics;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.transaction.Transaction;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Writes filings to Neo4J, either in batches through a <code>BatchFilingWriter</code> or saving each filing through
+ * the OGM in a transaction of its own.  The nodes referenced must already have been saved with the same session,
+ * ideally after <code>begin</code> so they're committed along with the filing.  Either way the filing is added to its
+ * registrant's LOBBIED relationships (see <code>LobbiedRelationships</code>) in the same transaction, and with a time
+ * tree related to the day it was received and the quarter it covers (see <code>TimeTree</code>).
+ *
+ * Not thread-safe, each sink is confined to the thread owning its session.
+ *
+ * @author Scott C Sosna
+ */
+public class Neo4jFilingSink
+    implements FilingSink {
+
+    /**
+     * Sets the received date of a filing just saved, as a native local date-time.
+     */
+    static private final String SET_RECEIVED_ON =
+        "MATCH (f:Filing) WHERE id(f) = $id SET f.receivedOn = localdatetime($receivedOn)";
+
+    /**
+     * Name of the parameter relating the filing to its buckets
+     */
+    static private final String PARAM_PAIRS = "pairs";
+
+    /**
+     * Supplies the session used for writing, the calling thread's current session.  Replaced between transactions
+     * once its MappingContext has grown too large, so never kept across filings.
+     */
+    private final Supplier<Session> session;
+
+    /**
+     * Writes the filings in batches, null when saving each through the OGM
+     */
+    private final BatchFilingWriter batchWriter;
+
+    /**
+     * Buckets each filing saved through the OGM is related to, null when there's no time tree
+     */
+    private final TimeTree timeTree;
+
+    /**
+     * The current filing's transaction when saving through the OGM, null when there's none
+     */
+    private Transaction txn;
+
+    //  Metrics.  Writing a filing through the OGM times its save and every statement after it, up to the commit,
+    //  apart from the single-node saves the loader times as session_save.
+    private final Timer writeTimer;
+    private final Timer commitTimer;
+    private final Counter relationshipsCreated;
+
+    /**
+     * Constructor
+     * @param session supplies the session used for writing, the calling thread's current session
+     * @param batchWriter writes the filings in batches, null to save each filing through the OGM
+     * @param metrics registry recording the time spent writing and committing each filing, and the relationships
+     *                created
+     * @param timeTree buckets each filing saved through the OGM is related to, null for none.  The batch writer
+     *                 relates its own filings.
+     */
+    public Neo4jFilingSink (Supplier<Session> session,
+                            BatchFilingWriter batchWriter,
+                            MetricsRegistry metrics,
+                            TimeTree timeTree) {
+        this.session = session;
+        this.batchWriter = batchWriter;
+        this.timeTree = timeTree;
+        this.writeTimer = metrics.timer("filing_write");
+        this.commitTimer = metrics.timer("commit");
+        this.relationshipsCreated = metrics.counter("relationships_created");
+    }
+
+    /**
+     * Begin the transaction in which the filing's nodes are saved: the filing's own or, when batching, the batch's.
+     */
+    @Override
+    public void begin () {
+        if (batchWriter != null) {
+            batchWriter.begin();
+        } else if (txn == null) {
+            txn = session.get().beginTransaction();
+        }
+    }
+
+    /**
+     * Write a filing, either saving and committing it or handing it off to be written with the batch.
+     * @param filing the resolved filing
+     */
+    @Override
+    public void add (Filing filing) {
+
+        if (batchWriter != null) {
+            batchWriter.add(filing);
+            return;
+        }
+
+        //  Any year's buckets not yet created are created and committed in a transaction of their own.  The filing's
+        //  transaction may already be open, begun by the loader, but hasn't yet locked any buckets.
+        Long day = (timeTree != null) ? timeTree.day(filing) : null;
+        Long period = (timeTree != null) ? timeTree.period(filing) : null;
+
+        //  Upon completion of the filing, resave with the updated info.
+        begin();
+        long start = System.nanoTime();
+        int lobbiedCreated = 0;
+        int bucketsRelated = 0;
+        try {
+            session.get().save(filing);
+
+            //  The OGM only writes temporal values as strings, the received date's written natively alongside.
+            if (filing.getReceivedOn() != null) {
+                Map<String,Object> params = new HashMap<>();
+                params.put("id", filing.getId());
+                params.put("receivedOn", filing.getReceivedOn().toString());
+                session.get().query(SET_RECEIVED_ON, params);
+            }
+
+            //  Once saved, the filing counts towards what its registrant lobbied.
+            QueryStatistics statistics = session.get().query(LobbiedRelationships.ADD,
+                Collections.singletonMap(LobbiedRelationships.PARAM_FILINGS, Collections.singletonList(filing.getId()))).queryStatistics();
+            lobbiedCreated = (statistics != null) ? statistics.getRelationshipsCreated() : 0;
+
+            //  Last of all the buckets, locked as briefly as possible.
+            if (day != null) {
+                session.get().query(TimeTree.RECEIVED_ON_CREATE, Collections.singletonMap(PARAM_PAIRS,
+                    Collections.singletonList(TimeTree.pair(filing.getId(), day))));
+                bucketsRelated++;
+            }
+            if (period != null) {
+                session.get().query(TimeTree.FOR_PERIOD_CREATE, Collections.singletonMap(PARAM_PAIRS,
+                    Collections.singletonList(TimeTree.pair(filing.getId(), period))));
+                bucketsRelated++;
+            }
+        } finally {
+            writeTimer.stop(start);
+        }
+
+        TransactionCommittedEvent committed = new TransactionCommittedEvent();
+        committed.begin();
+        start = System.nanoTime();
+        txn.commit();
+        commitTimer.stop(start);
+        committed.end();
+        txn = null;
+        if (committed.shouldCommit()) {
+            committed.setFilings(1);
+            committed.commit();
+        }
+
+        //  Only the filing's own relationships, including those to its buckets, and any new LOBBIED relationships, those
+        //  between client, registrant and lobbyists are merged by the OGM which doesn't say whether they're new.
+        relationshipsCreated.add(2 + filing.getLobbyists().size() + filing.getEntities().size() + filing.getIssues().size() +
+            bucketsRelated + lobbiedCreated);
+    }
+
+    /**
+     * Filings flushed are committed to Neo4J
+     * @return true
+     */
+    @Override
+    public boolean isDurable () {
+        return true;
+    }
+
+    /**
+     * Write any filings still waiting for their batch to fill.
+     */
+    @Override
+    public void flush () {
+        if (batchWriter != null) {
+            batchWriter.flush();
+        }
+    }
+
+    /**
+     * Throw away the current batch, or the current filing's transaction, rolling back everything saved since begun.
+     */
+    @Override
+    public void discard () {
+        if (batchWriter != null) {
+            batchWriter.discard();
+        } else if (txn != null) {
+            try {
+                txn.rollback();
+            } finally {
+                txn.close();
+                txn = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.sink;
+
+import com.buddhadata.sandbox.neo4j.filings.node.Filing;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the filings received and otherwise throws them away, so that loading measures nothing but reading the source
+ * data and resolving the nodes.
+ *
+ * Thread-safe, a single sink may be shared by all threads.
+ *
+ * @author Scott C Sosna
+ */
+public class NullFilingSink
+    implements FilingSink {
+
+    /**
+     * Filings received
+     */
+    private final LongAdder received = new LongAdder();
+
+    /**
+     * Filings discarded after a failure
+     */
+    private final LongAdder discarded = new LongAdder();
+
+    /**
+     * Filings received on each thread since the last flush
+     */
+    private final ThreadLocal<long[]> pending = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Count a filing
+     * @param filing the resolved filing
+     */
+    @Override
+    public void add (Filing filing) {
+        received.increment();
+        pending.get()[0]++;
+    }
+
+    /**
+     * Nothing to complete, the filings are already gone.
+     */
+    @Override
+    public void flush () {
+        pending.get()[0] = 0;
+    }
+
+    /**
+     * Count the filings received on this thread since the last flush as discarded.
+     */
+    @Override
+    public void discard () {
+        discarded.add(pending.get()[0]);
+        pending.get()[0] = 0;
+    }
+
+    /**
+     * getter
+     * @return number of filings received
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * Format what's been received
+     * @return single line summary
+     */
+    public String summary () {
+        return String.format("%,d filings received, %,d discarded", received.sum(), discarded.sum());
+    }
+}
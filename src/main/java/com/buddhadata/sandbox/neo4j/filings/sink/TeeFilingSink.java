@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.sink;
+
+import com.buddhadata.sandbox.neo4j.filings.node.Filing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Hands every filing to several sinks in turn, e.g., Neo4J and an in-memory graph side by side to compare what each
+ * ends up with.  A sink failing stops the filing from reaching the sinks after it, the loader then discards the
+ * filings from all of them.
+ *
+ * Durable sinks, e.g., Neo4J, are flushed before the others: should one fail to commit, the filings can still be
+ * discarded from a sink not yet flushed, e.g., before the in-memory graph merges them, so the sinks don't diverge.
+ *
+ * Thread-safe if all its sinks are.
+ *
+ * @author Scott C Sosna
+ */
+public class TeeFilingSink
+    implements FilingSink {
+
+    /**
+     * The sinks, in the order each filing is handed to them
+     */
+    private final List<FilingSink> sinks;
+
+    /**
+     * The sinks, in the order they're flushed: durable sinks first, otherwise as configured
+     */
+    private final List<FilingSink> flushOrder;
+
+    /**
+     * Constructor
+     * @param sinks the sinks, in the order each filing is handed to them
+     */
+    public TeeFilingSink (List<FilingSink> sinks) {
+        this.sinks = new ArrayList<>(sinks);
+        this.flushOrder = new ArrayList<>(sinks);
+        this.flushOrder.sort(Comparator.comparing(sink -> !sink.isDurable()));
+    }
+
+    /**
+     * Begin the filing with every sink.
+     */
+    @Override
+    public void begin () {
+        for (FilingSink sink : sinks) {
+            sink.begin();
+        }
+    }
+
+    /**
+     * Hand a filing to every sink.
+     * @param filing the resolved filing
+     */
+    @Override
+    public void add (Filing filing) {
+        for (FilingSink sink : sinks) {
+            sink.add(filing);
+        }
+    }
+
+    /**
+     * Flush every sink, durable sinks first.  A sink failing stops the sinks after it from being flushed, the loader
+     * then discards what they've received.
+     */
+    @Override
+    public void flush () {
+        for (FilingSink sink : flushOrder) {
+            sink.flush();
+        }
+    }
+
+    /**
+     * Discard from every sink, even when one of them fails to.
+     */
+    @Override
+    public void discard () {
+
+        RuntimeException failure = null;
+        for (FilingSink sink : sinks) {
+            try {
+                sink.discard();
+            } catch (RuntimeException e) {
+                failure = (failure == null) ? e : failure;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.source;
+
+import com.buddhadata.sandbox.neo4j.filings.metrics.Counter;
+import com.buddhadata.sandbox.neo4j.filings.metrics.MetricsRegistry;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads zip entries into memory for decoding elsewhere, e.g., on another thread, reusing buffers rather than
+ * allocating an array per entry.  Buffers grow to fit the entries read, in powers of two so entries of similar size
+ * share them, and are returned to the pool when the entry's contents are closed.  An entry larger than the spill
+ * threshold, or whose size isn't known and turns out to be, is written to a temporary file instead, so no buffer is
+ * ever larger than the threshold whatever the size of the entry.  Temporary files are deleted when the contents are
+ * closed, any never closed, e.g., when a pipeline stops part way, by <code>deleteSpilled</code>.
+ *
+ * Heap used for entries is bounded by the threshold times the number of entries held at once, plus the buffers kept
+ * in the pool.
+ *
+ * Thread-safe, entries may be read and released on multiple threads.
+ *
+ * @author Scott C Sosna
+ */
+public class EntryBufferPool {
+
+    /**
+     * Smallest buffer allocated
+     */
+    static private final int MINIMUM_BUFFER = 1 << 16;
+
+    /**
+     * Largest buffer any JVM allocates
+     */
+    static private final int MAXIMUM_BUFFER = Integer.MAX_VALUE - 8;
+
+    /**
+     * Size of the chunks copied into a temporary file
+     */
+    static private final int SPILL_CHUNK = 1 << 16;
+
+    /**
+     * Buffers not currently holding an entry
+     */
+    private final BlockingQueue<byte[]> pool;
+
+    /**
+     * Temporary files holding contents not yet closed
+     */
+    private final Set<Path> spilled = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Entries larger than this are written to a temporary file
+     */
+    private final int spillThreshold;
+
+    /**
+     * Directory for temporary files
+     */
+    private final Path spillDirectory;
+
+    //  Metrics
+    private final Counter buffersAllocated;
+    private final Counter entriesSpilled;
+
+    /**
+     * Constructor
+     * @param maximumPooled maximum number of buffers kept for reuse, any others released are left for collection
+     * @param spillThreshold entries larger than this many bytes are written to a temporary file
+     * @param spillDirectory directory for temporary files, null for the default temporary directory
+     * @param metrics registry recording the buffers allocated and entries spilled
+     */
+    public EntryBufferPool (int maximumPooled,
+                            long spillThreshold,
+                            Path spillDirectory,
+                            MetricsRegistry metrics) {
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, maximumPooled));
+        this.spillThreshold = (int) Math.max(1, Math.min(spillThreshold, MAXIMUM_BUFFER));
+        this.spillDirectory = spillDirectory;
+        this.buffersAllocated = metrics.counter("entry_buffers_allocated");
+        this.entriesSpilled = metrics.counter("entries_spilled");
+    }
+
+    /**
+     * Read an entry's contents, which must be closed once decoded
+     * @param name name of the zip entry
+     * @param in stream of the entry's contents, read to the end but not closed
+     * @param size number of bytes expected from the zip's directory, -1 when not known
+     * @return the contents
+     * @throws IOException unable to read the entry or write a temporary file
+     */
+    public EntryContents read (String name,
+                               InputStream in,
+                               long size)
+        throws IOException {
+
+        if (size > spillThreshold) {
+            return spill(name, in, null, 0, -1);
+        }
+
+        byte[] buffer = acquire(size > 0 ? (int) size : MINIMUM_BUFFER);
+        int length = 0;
+        boolean held = false;
+        try {
+            while (true) {
+
+                //  A full buffer may just be an entry exactly the size expected, read a single byte before growing.
+                if (length == buffer.length) {
+                    int next = in.read();
+                    if (next < 0) {
+                        break;
+                    }
+                    if (length >= spillThreshold) {
+                        return spill(name, in, buffer, length, next);
+                    }
+                    buffer = grow(buffer, length + 1);
+                    buffer[length++] = (byte) next;
+                }
+
+                int read = in.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+            }
+
+            held = true;
+            return new EntryContents(name, buffer, length, this);
+        } finally {
+            if (!held) {
+                release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Return a buffer to the pool, unless the pool's already full
+     * @param buffer the buffer
+     */
+    void release (byte[] buffer) {
+        pool.offer(buffer);
+    }
+
+    /**
+     * Forget a temporary file deleted when its contents were closed
+     * @param file the temporary file
+     */
+    void deleted (Path file) {
+        spilled.remove(file);
+    }
+
+    /**
+     * Delete the temporary files of any contents never closed, once no more entries are being read or decoded
+     * @return number of files deleted
+     */
+    public int deleteSpilled () {
+        int deleted = 0;
+        for (Path file : spilled) {
+            try {
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+                spilled.remove(file);
+            } catch (IOException e) {
+                System.out.println ("Exception deleting " + file + ": " + e);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * getter
+     * @return number of buffers currently pooled
+     */
+    public int getPooled() {
+        return pool.size();
+    }
+
+    /**
+     * Take a buffer from the pool, or allocate one when the pool's empty or the buffer taken is too small.  A buffer
+     * too small is left for collection, the one allocated takes its place in the pool once released.
+     * @param capacity minimum capacity
+     * @return the buffer
+     */
+    private byte[] acquire (int capacity) {
+        byte[] buffer = pool.poll();
+        return (buffer != null && buffer.length >= capacity) ? buffer : allocate(capacity);
+    }
+
+    /**
+     * Replace a buffer with a larger one, the smaller one is returned to the pool
+     * @param buffer the buffer
+     * @param capacity minimum capacity
+     * @return the larger buffer, holding the contents of the smaller one
+     */
+    private byte[] grow (byte[] buffer,
+                         int capacity) {
+        byte[] grown = allocate(capacity);
+        System.arraycopy(buffer, 0, grown, 0, buffer.length);
+        release(buffer);
+        return grown;
+    }
+
+    /**
+     * Allocate a buffer, the next power of two up to the spill threshold
+     * @param capacity minimum capacity
+     * @return the buffer
+     */
+    private byte[] allocate (int capacity) {
+        long size = Math.max(MINIMUM_BUFFER, Long.highestOneBit(Math.max(1, capacity - 1)) << 1);
+        buffersAllocated.increment();
+        return new byte[(int) Math.max(capacity, Math.min(size, spillThreshold))];
+    }
+
+    /**
+     * Write an entry's contents to a temporary file
+     * @param name name of the zip entry
+     * @param in stream of the rest of the entry's contents
+     * @param prefix contents already read, null when none
+     * @param length number of bytes already read
+     * @param next the byte read after the prefix, -1 when none
+     * @return the contents
+     * @throws IOException unable to read the entry or write the temporary file
+     */
+    private EntryContents spill (String name,
+                                 InputStream in,
+                                 byte[] prefix,
+                                 int length,
+                                 int next)
+        throws IOException {
+
+        //  Deleted when the contents are closed, or by deleteSpilled should they never be.
+        Path file = (spillDirectory != null) ? Files.createTempFile(spillDirectory, "entry-", ".xml") : Files.createTempFile("entry-", ".xml");
+        spilled.add(file);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), SPILL_CHUNK)) {
+            long total = length;
+            if (prefix != null) {
+                out.write(prefix, 0, length);
+            }
+            if (next >= 0) {
+                out.write(next);
+                total++;
+            }
+
+            byte[] chunk = new byte[SPILL_CHUNK];
+            int read = 0;
+            while ((read = in.read(chunk)) >= 0) {
+                out.write(chunk, 0, read);
+                total += read;
+            }
+
+            entriesSpilled.increment();
+            return new EntryContents(name, file, total, this);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            spilled.remove(file);
+            throw e;
+        }
+    }
+}
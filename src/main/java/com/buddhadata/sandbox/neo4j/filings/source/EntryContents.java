@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.source;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The contents of a single zip entry read by an <code>EntryBufferPool</code>, held in a pooled buffer or, when too large,
+ * in a temporary file.  Closing releases the buffer back to the pool or deletes the file, the contents can't be read
+ * afterwards.
+ *
+ * Not thread-safe, but may be handed from the thread reading the entry to another decoding it.
+ *
+ * @author Scott C Sosna
+ */
+public class EntryContents
+    implements Closeable {
+
+    /**
+     * Size of the buffer when reading a temporary file
+     */
+    static private final int FILE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Name of the zip entry
+     */
+    private final String name;
+
+    /**
+     * Number of bytes of content
+     */
+    private final long length;
+
+    /**
+     * Pool from which the buffer came, to which it's released, or which created the temporary file
+     */
+    private final EntryBufferPool pool;
+
+    /**
+     * Buffer holding the contents, may be larger than the contents; null when in a file or once closed
+     */
+    private byte[] buffer;
+
+    /**
+     * Temporary file holding the contents, null when in a buffer
+     */
+    private final Path file;
+
+    /**
+     * Constructor, contents held in a pooled buffer
+     * @param name name of the zip entry
+     * @param buffer buffer holding the contents
+     * @param length number of bytes of content in the buffer
+     * @param pool pool from which the buffer came
+     */
+    EntryContents (String name,
+                   byte[] buffer,
+                   int length,
+                   EntryBufferPool pool) {
+        this.name = name;
+        this.buffer = buffer;
+        this.length = length;
+        this.pool = pool;
+        this.file = null;
+    }
+
+    /**
+     * Constructor, contents spilled to a temporary file
+     * @param name name of the zip entry
+     * @param file temporary file holding the contents, deleted when closed
+     * @param length number of bytes of content in the file
+     * @param pool pool which created the temporary file
+     */
+    EntryContents (String name,
+                   Path file,
+                   long length,
+                   EntryBufferPool pool) {
+        this.name = name;
+        this.file = file;
+        this.length = length;
+        this.pool = pool;
+        this.buffer = null;
+    }
+
+    /**
+     * Open the contents for reading, may be opened more than once until closed
+     * @return stream of the contents
+     * @throws IOException unable to read the temporary file
+     */
+    public InputStream open ()
+        throws IOException {
+
+        if (file != null) {
+            return new BufferedInputStream(Files.newInputStream(file), FILE_BUFFER_SIZE);
+        }
+        if (buffer == null) {
+            throw new IllegalStateException("Contents of " + name + " already released");
+        }
+        return new ByteArrayInputStream(buffer, 0, (int) length);
+    }
+
+    /**
+     * getter
+     * @return name of the zip entry
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * getter
+     * @return number of bytes of content
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * getter
+     * @return true if the contents were too large for a buffer and are in a temporary file
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * Release the buffer back to the pool, or delete the temporary file.
+     * @throws IOException unable to delete the temporary file
+     */
+    @Override
+    public void close ()
+        throws IOException {
+
+        if (file != null) {
+            Files.deleteIfExists(file);
+            pool.deleted(file);
+        } else if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+}
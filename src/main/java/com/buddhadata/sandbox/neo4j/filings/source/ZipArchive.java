@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.source;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A quarterly zip file opened for random access.  Unlike reading through a <code>ZipInputStream</code>, every entry
+ * and its size are known from the central directory before anything is inflated, and entries can be read in any
+ * order and by multiple threads at once, each inflating its own entry.
+ *
+ * Thread-safe, entries may be read on multiple threads.
+ *
+ * @author Scott C Sosna
+ */
+public class ZipArchive
+    implements Closeable {
+
+    /**
+     * Characters making a path a glob rather than the path of a single file
+     */
+    static private final String GLOB_CHARACTERS = "*?[{";
+
+    /**
+     * Where the zip file was found
+     */
+    private final Path path;
+
+    /**
+     * The open zip file
+     */
+    private final ZipFile zipFile;
+
+    /**
+     * Every file in the zip, in the order stored
+     */
+    private final List<ZipEntry> entries;
+
+    /**
+     * Constructor, reads the central directory
+     * @param path the zip file
+     * @throws IOException unable to open the zip file
+     */
+    public ZipArchive (Path path)
+        throws IOException {
+        this.path = path;
+        this.zipFile = new ZipFile(path.toFile());
+        this.entries = Collections.unmodifiableList(zipFile.stream().filter(ze -> !ze.isDirectory()).collect(Collectors.toList()));
+    }
+
+    /**
+     * Find the zip files at the paths given, each either the path of a single file or a glob matching any number of
+     * files, e.g., <code>/data/lobbying/2018_*.zip</code> or <code>data/**&#47;*.zip</code>.
+     * @param paths paths or globs, comma-separated
+     * @return the files found, sorted by path
+     * @throws IOException unable to search a directory
+     */
+    public static List<Path> find (String paths)
+        throws IOException {
+
+        SortedSet<Path> found = new TreeSet<>();
+        for (String one : paths.split(",")) {
+            String pattern = one.trim();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+
+            //  Only the directories below the last one named without wildcards need searching, and only its immediate
+            //  contents unless the rest of the glob names subdirectories.
+            int wildcard = indexOfAny(pattern, GLOB_CHARACTERS);
+            if (wildcard < 0) {
+                found.add(Paths.get(pattern));
+                continue;
+            }
+            int separator = pattern.lastIndexOf('/', wildcard);
+            String rest = pattern.substring(separator + 1);
+            int depth = (rest.contains("/") || rest.contains("**")) ? Integer.MAX_VALUE : 1;
+            Path base = Paths.get(separator < 0 ? "." : (separator == 0 ? "/" : pattern.substring(0, separator)));
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + (separator < 0 ? "./" + pattern : pattern));
+            if (Files.isDirectory(base)) {
+                try (Stream<Path> walk = Files.walk(base, depth)) {
+                    walk.filter(p -> Files.isRegularFile(p) && matcher.matches(p)).forEach(p -> found.add(p.normalize()));
+                }
+            }
+        }
+
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * getter
+     * @return where the zip file was found
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * getter
+     * @return the zip file's name, without the directory
+     */
+    public String getName() {
+        return path.getFileName().toString();
+    }
+
+    /**
+     * getter
+     * @return every file in the zip, in the order stored
+     */
+    public List<ZipEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Open an entry for reading, inflating it as it's read
+     * @param entry the entry
+     * @return stream of the entry's contents, which must be closed
+     * @throws IOException unable to read the entry
+     */
+    public InputStream open (ZipEntry entry)
+        throws IOException {
+        return zipFile.getInputStream(entry);
+    }
+
+    /**
+     * Close the zip file, no entry can be read afterwards.
+     * @throws IOException unable to close the zip file
+     */
+    @Override
+    public void close ()
+        throws IOException {
+        zipFile.close();
+    }
+
+    /**
+     * Find the first of any of the characters
+     * @param s string searched
+     * @param characters characters searched for
+     * @return index of the first found, -1 when none are
+     */
+    static private int indexOfAny (String s,
+                                   String characters) {
+        for (int i = 0; i < s.length(); i++) {
+            if (characters.indexOf(s.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
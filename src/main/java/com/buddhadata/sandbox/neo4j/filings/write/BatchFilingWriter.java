@@ -0,0 +1,524 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.write;
+
+import com.buddhadata.sandbox.neo4j.filings.jfr.TransactionCommittedEvent;
+import com.buddhadata.sandbox.neo4j.filings.metrics.Counter;
+import com.buddhadata.sandbox.neo4j.filings.metrics.MetricsRegistry;
+import com.buddhadata.sandbox.neo4j.filings.metrics.Timer;
+import com.buddhadata.sandbox.neo4j.filings.node.*;
+import org.neo4j.driver.v1.exceptions.TransientException;
+import org.neo4j.ogm.exception.CypherException;
+import org.neo4j.ogm.model.QueryStatistics;
+import org.neo4j.ogm.model.Result;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.transaction.Transaction;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Collects resolved filings and writes them in batches, a handful of <code>UNWIND</code> statements and a single
+ * transaction per batch rather than a transaction and several saves per filing.  The client, registrant, lobbyist,
+ * government entity and issue nodes must already have been saved, the filing only references them by their internal
+ * Neo4J id.  Nodes created while resolving a batch's filings should be saved inside the batch's transaction (see
+ * <code>begin</code>), otherwise every new node costs a commit of its own.
+ *
+ * The graph written is the same shape as saving the <code>Filing</code> through the OGM: the filing node, its
+ * ON_BEHALF_OF, FILED, LOBBYING_FOR, TARGETED_AT and ABOUT relationships and the ENGAGES and EMPLOYS relationships
+ * between client, registrant and lobbyists.  Each batch's filings are also added to their registrants' LOBBIED
+ * relationships (see <code>LobbiedRelationships</code>), and when upserting any filings they replace are taken out.
+ * With a time tree each filing is also related to the day it was received and the quarter it covers (see
+ * <code>TimeTree</code>), after everything else so the buckets are locked as briefly as possible.
+ *
+ * Not thread-safe, each writer is confined to the thread owning its session.
+ *
+ * @author Scott C Sosna
+ */
+public class BatchFilingWriter {
+
+    //  Create the filings along with the relationships to the single client and registrant.  Returns the internal id
+    //  of each filing so the remaining relationships don't have to look the filing up again.
+    static private final String FILING_CREATE =
+        "UNWIND $rows AS row " +
+        "MATCH (c:Client) WHERE id(c) = row.client " +
+        "MATCH (r:Registrant) WHERE id(r) = row.registrant " +
+        "CREATE (f:Filing) SET f = row.props, f.receivedOn = localdatetime(row.receivedOn) " +
+        "CREATE (f)-[:ON_BEHALF_OF]->(c) " +
+        "CREATE (r)-[:FILED]->(f) " +
+        "MERGE (c)-[:ENGAGES]->(r) " +
+        "RETURN row.idx AS idx, id(f) AS id";
+
+    //  Upserting instead creates the filing only when there's no filing with the same id, replacing the properties and
+    //  relationships of one that already exists, so writing the same filings again changes nothing.
+    static private final String FILING_UPSERT =
+        "UNWIND $rows AS row " +
+        "MATCH (c:Client) WHERE id(c) = row.client " +
+        "MATCH (r:Registrant) WHERE id(r) = row.registrant " +
+        "MERGE (f:Filing {filingId: row.props.filingId}) SET f = row.props, f.receivedOn = localdatetime(row.receivedOn) " +
+        "WITH row, c, r, f " +
+        "OPTIONAL MATCH (f)-[old:ON_BEHALF_OF|FILED|LOBBYING_FOR|TARGETED_AT|ABOUT|RECEIVED_ON|FOR_PERIOD]-() DELETE old " +
+        "WITH DISTINCT row, c, r, f " +
+        "CREATE (f)-[:ON_BEHALF_OF]->(c) " +
+        "CREATE (r)-[:FILED]->(f) " +
+        "MERGE (c)-[:ENGAGES]->(r) " +
+        "RETURN row.idx AS idx, id(f) AS id";
+
+    //  Relationships between two existing nodes, referenced by internal id.  Filing relationships are always new, so
+    //  CREATE, the registrant's lobbyists may already be related from earlier filings so MERGE.
+    static private final String LOBBYING_FOR_CREATE =
+        "UNWIND $pairs AS p MATCH (l:Lobbyist) WHERE id(l) = p.from MATCH (f:Filing) WHERE id(f) = p.to CREATE (l)-[:LOBBYING_FOR]->(f)";
+    static private final String TARGETED_AT_CREATE =
+        "UNWIND $pairs AS p MATCH (f:Filing) WHERE id(f) = p.from MATCH (g:GovernmentEntity) WHERE id(g) = p.to CREATE (f)-[:TARGETED_AT]->(g)";
+    static private final String ABOUT_CREATE =
+        "UNWIND $pairs AS p MATCH (f:Filing) WHERE id(f) = p.from MATCH (i:Issue) WHERE id(i) = p.to CREATE (f)-[:ABOUT]->(i)";
+    static private final String LOBBYING_FOR_MERGE =
+        "UNWIND $pairs AS p MATCH (l:Lobbyist) WHERE id(l) = p.from MATCH (f:Filing) WHERE id(f) = p.to MERGE (l)-[:LOBBYING_FOR]->(f)";
+    static private final String TARGETED_AT_MERGE =
+        "UNWIND $pairs AS p MATCH (f:Filing) WHERE id(f) = p.from MATCH (g:GovernmentEntity) WHERE id(g) = p.to MERGE (f)-[:TARGETED_AT]->(g)";
+    static private final String ABOUT_MERGE =
+        "UNWIND $pairs AS p MATCH (f:Filing) WHERE id(f) = p.from MATCH (i:Issue) WHERE id(i) = p.to MERGE (f)-[:ABOUT]->(i)";
+    static private final String EMPLOYS_MERGE =
+        "UNWIND $pairs AS p MATCH (r:Registrant) WHERE id(r) = p.from MATCH (l:Lobbyist) WHERE id(l) = p.to MERGE (r)-[:EMPLOYS]->(l)";
+
+    static private final String PARAM_ROWS = "rows";
+    static private final String PARAM_PAIRS = "pairs";
+    static private final String PAIR_FROM = "from";
+    static private final String PAIR_TO = "to";
+
+    //  Retrying batches that failed for transient reasons, e.g., deadlocks between threads
+    static private final String TRANSIENT_ERROR = "Neo.TransientError";
+    static private final int MAX_ATTEMPTS = 5;
+    static private final long RETRY_DELAY_MS = 50;
+
+    /**
+     * Number of filings written per transaction
+     */
+    private final int batchSize;
+
+    /**
+     * Filings waiting to be written
+     */
+    private final List<Filing> pending;
+
+    /**
+     * Supplies the session used for writing, the calling thread's current session.  Replaced between transactions
+     * once its MappingContext has grown too large, so never kept across batches.
+     */
+    private final Supplier<Session> session;
+
+    /**
+     * Are filings upserted by filing id rather than always created?
+     */
+    private final boolean upsert;
+
+    /**
+     * Time spent executing the statements writing each batch, and committing each batch
+     */
+    private final Timer writeTimer;
+    private final Timer commitTimer;
+
+    /**
+     * Filing nodes and relationships created, as reported by Neo4J
+     */
+    private final Counter filingsCreated;
+    private final Counter relationshipsCreated;
+
+    /**
+     * Buckets the filings are related to, null when there's no time tree
+     */
+    private final TimeTree timeTree;
+
+    /**
+     * Transaction for the current batch, null between batches
+     */
+    private Transaction txn;
+
+    /**
+     * Total filings written by this writer
+     */
+    private long written;
+
+    /**
+     * Constructor
+     * @param session supplies the Neo4J session used for writing, the calling thread's current session
+     * @param batchSize number of filings written per transaction
+     * @param upsert true to replace filings already written, by filing id, rather than always creating new filings.
+     *               Slower, the filings and their relationships are merged, and requires an index on the filing id.
+     * @param metrics registry recording the time spent writing and committing batches, and the filings and
+     *                relationships created
+     * @param timeTree buckets the filings are related to, null for none
+     */
+    public BatchFilingWriter (Supplier<Session> session,
+                              int batchSize,
+                              boolean upsert,
+                              MetricsRegistry metrics,
+                              TimeTree timeTree) {
+        this.writeTimer = metrics.timer("batch_write");
+        this.commitTimer = metrics.timer("commit");
+        this.filingsCreated = metrics.counter("nodes_created", "label", "Filing");
+        this.relationshipsCreated = metrics.counter("relationships_created");
+        this.session = session;
+        this.batchSize = Math.max(1, batchSize);
+        this.pending = new ArrayList<>(this.batchSize);
+        this.upsert = upsert;
+        this.timeTree = timeTree;
+    }
+
+    /**
+     * Begin the transaction for the current batch, if not already begun.  Called before resolving a filing so that
+     * any nodes created for it are committed with the batch.
+     */
+    public void begin () {
+        if (txn == null) {
+            txn = session.get().beginTransaction();
+        }
+    }
+
+    /**
+     * Abandon the current batch, rolling back everything saved since it was begun.
+     */
+    public void discard () {
+        pending.clear();
+        rollback();
+    }
+
+    /**
+     * Queue a filing for writing, writing the batch once it's full.  Every node referenced by the filing must already
+     * have been saved.
+     * @param filing the resolved filing
+     */
+    public void add (Filing filing) {
+        pending.add(filing);
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Write all pending filings and commit the batch's transaction.
+     * @return number of filings written
+     */
+    public int flush () {
+
+        if (pending.isEmpty()) {
+            //  Nodes may still have been created, e.g., when the last filings of a file were all skipped.
+            if (txn != null) {
+                commit(0);
+            }
+            return 0;
+        }
+
+        //  Properties are named as the OGM would name them, from the fields of Filing.
+        List<Map<String,Object>> rows = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            Filing filing = pending.get(i);
+            Map<String,Object> props = new HashMap<>();
+            props.put("filingId", filing.getFilingId());
+            props.put("year", filing.getYear());
+            props.put("receivedYear", filing.getReceivedYear());
+            props.put("receivedMonth", filing.getReceivedMonth());
+            props.put("receivedDay", filing.getReceivedDay());
+            props.put("quarter", filing.getQuarter());
+            props.put("amount", filing.getAmount());
+            props.put("type", filing.getType());
+            props.put("period", filing.getPeriod());
+
+            Map<String,Object> row = new HashMap<>();
+            row.put("idx", i);
+            row.put("client", filing.getClient().getId());
+            row.put("registrant", filing.getRegistrant().getId());
+            row.put("props", props);
+            //  The OGM hands parameters to Neo4J as strings, made a native local date-time by the statement itself.
+            row.put("receivedOn", filing.getReceivedOn() != null ? filing.getReceivedOn().toString() : null);
+            rows.add(row);
+        }
+
+        //  When the transaction is begun here it holds nothing but the batch, so the batch can be written again if Neo4J
+        //  reports a transient failure, e.g., a deadlock with another thread's batch relating the same registrant.
+        boolean retryable = (txn == null);
+        for (int attempt = 1; ; attempt++) {
+            begin();
+            try {
+                long start = System.nanoTime();
+                try {
+                    write(rows);
+                } finally {
+                    writeTimer.stop(start);
+                }
+                commit(pending.size());
+                break;
+            } catch (RuntimeException e) {
+                rollback();
+                if (!retryable || attempt >= MAX_ATTEMPTS || !isTransient(e)) {
+                    pending.clear();
+                    throw e;
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY_MS * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    pending.clear();
+                    throw e;
+                }
+            }
+        }
+
+        int count = pending.size();
+        written += count;
+        pending.clear();
+        return count;
+    }
+
+    /**
+     * getter
+     * @return total filings written by this writer
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Execute the statements writing the pending filings within the current transaction.
+     * @param rows the filing node properties and the ids of the client/registrant for each pending filing
+     */
+    private void write (List<Map<String,Object>> rows) {
+
+        //  Filings about to be replaced no longer count towards what their registrants lobbied.
+        Map<List<Object>,long[]> lobbied = new HashMap<>();
+        List<String> replaced = new ArrayList<>();
+        if (upsert) {
+            Set<String> distinct = new LinkedHashSet<>();
+            for (Filing filing : pending) {
+                distinct.add(filing.getFilingId());
+            }
+            replaced.addAll(distinct);
+            lobbiedTotals(replaced, lobbied, -1);
+        }
+
+        //  Any year's buckets not yet created are created now, before this transaction locks any other buckets.
+        Long[] days = new Long[pending.size()];
+        Long[] periods = new Long[pending.size()];
+        if (timeTree != null) {
+            for (int i = 0; i < pending.size(); i++) {
+                days[i] = timeTree.day(pending.get(i));
+                periods[i] = timeTree.period(pending.get(i));
+            }
+        }
+
+        //  Filings first, the remaining relationships need their ids.
+        long[] filingIds = new long[pending.size()];
+        Result filings = session.get().query(upsert ? FILING_UPSERT : FILING_CREATE, Collections.singletonMap(PARAM_ROWS, rows));
+        for (Map<String,Object> result : filings) {
+            filingIds[((Number) result.get("idx")).intValue()] = ((Number) result.get("id")).longValue();
+        }
+        record(filings, filingsCreated);
+
+        List<Map<String,Object>> lobbyingFor = new ArrayList<>();
+        List<Map<String,Object>> targetedAt = new ArrayList<>();
+        List<Map<String,Object>> about = new ArrayList<>();
+        Set<Map<String,Object>> employs = new HashSet<>();
+        for (int i = 0; i < pending.size(); i++) {
+            Filing filing = pending.get(i);
+            Long registrantId = filing.getRegistrant().getId();
+            for (Lobbyist lobbyist : filing.getLobbyists()) {
+                lobbyingFor.add(pair(lobbyist.getId(), filingIds[i]));
+                employs.add(pair(registrantId, lobbyist.getId()));
+            }
+            for (GovernmentEntity entity : filing.getEntities()) {
+                targetedAt.add(pair(filingIds[i], entity.getId()));
+            }
+            for (Issue issue : filing.getIssues()) {
+                about.add(pair(filingIds[i], issue.getId()));
+            }
+        }
+
+        //  When upserting the same filing may appear more than once, even within a batch.
+        execute(upsert ? LOBBYING_FOR_MERGE : LOBBYING_FOR_CREATE, lobbyingFor);
+        execute(upsert ? TARGETED_AT_MERGE : TARGETED_AT_CREATE, targetedAt);
+        execute(upsert ? ABOUT_MERGE : ABOUT_CREATE, about);
+        execute(EMPLOYS_MERGE, new ArrayList<>(employs));
+
+        //  Once related to their registrants and entities, the filings count towards what the registrants lobbied.  When
+        //  upserting the same filing may appear more than once, so what the replacements contribute is read back.
+        if (upsert) {
+            lobbiedTotals(replaced, lobbied, 1);
+        } else {
+            for (Filing filing : pending) {
+                if (filing.getPeriod() != null) {
+                    for (GovernmentEntity entity : filing.getEntities()) {
+                        long[] change = lobbied.computeIfAbsent(Arrays.asList(filing.getRegistrant().getId(), entity.getId(),
+                            filing.getYear(), filing.getPeriod()), k -> new long[2]);
+                        change[0]++;
+                        change[1] += filing.getAmount();
+                    }
+                }
+            }
+        }
+        updateLobbied(lobbied);
+
+        //  Last of all the buckets, each locked in the same order by every writer.
+        if (timeTree != null) {
+            List<Map<String,Object>> receivedOn = new ArrayList<>();
+            List<Map<String,Object>> forPeriod = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                if (days[i] != null) {
+                    receivedOn.add(TimeTree.pair(filingIds[i], days[i]));
+                }
+                if (periods[i] != null) {
+                    forPeriod.add(TimeTree.pair(filingIds[i], periods[i]));
+                }
+            }
+            execute(upsert ? TimeTree.RECEIVED_ON_MERGE : TimeTree.RECEIVED_ON_CREATE, TimeTree.sort(receivedOn));
+            execute(upsert ? TimeTree.FOR_PERIOD_MERGE : TimeTree.FOR_PERIOD_CREATE, TimeTree.sort(forPeriod));
+        }
+    }
+
+    /**
+     * Read what filings already written contribute to their registrants' LOBBIED relationships
+     * @param filingIds ids of the filings, each only once
+     * @param lobbied filing count and amount by registrant id, entity id, year and period, to which the totals are added
+     * @param sign 1 to add the totals, -1 to subtract them
+     */
+    private void lobbiedTotals (List<String> filingIds,
+                                Map<List<Object>,long[]> lobbied,
+                                int sign) {
+
+        Result totals = session.get().query(LobbiedRelationships.TOTALS, Collections.singletonMap(LobbiedRelationships.PARAM_FILINGS, filingIds));
+        for (Map<String,Object> total : totals) {
+            long[] change = lobbied.computeIfAbsent(Arrays.asList(((Number) total.get(LobbiedRelationships.REGISTRANT)).longValue(),
+                ((Number) total.get(LobbiedRelationships.ENTITY)).longValue(), ((Number) total.get(LobbiedRelationships.YEAR)).intValue(),
+                total.get(LobbiedRelationships.PERIOD)), k -> new long[2]);
+            change[0] += sign * ((Number) total.get(LobbiedRelationships.FILING_COUNT)).longValue();
+            change[1] += sign * ((Number) total.get(LobbiedRelationships.FILING_AMOUNT)).longValue();
+        }
+    }
+
+    /**
+     * Change the LOBBIED relationships in a single statement, in order of registrant and entity so that concurrent
+     * writers lock them in the same order.  Relationships left unchanged, e.g., by filings written again as they were,
+     * aren't touched.
+     * @param lobbied filing count and amount by registrant id, entity id, year and period
+     */
+    private void updateLobbied (Map<List<Object>,long[]> lobbied) {
+
+        List<Map<String,Object>> changes = new ArrayList<>(lobbied.size());
+        lobbied.entrySet().stream()
+            .filter(e -> e.getValue()[0] != 0 || e.getValue()[1] != 0)
+            .sorted(Comparator.comparing((Map.Entry<List<Object>,long[]> e) -> (Long) e.getKey().get(0))
+                .thenComparing(e -> (Long) e.getKey().get(1)))
+            .forEach(e -> {
+                Map<String,Object> change = new HashMap<>(8);
+                change.put(LobbiedRelationships.REGISTRANT, e.getKey().get(0));
+                change.put(LobbiedRelationships.ENTITY, e.getKey().get(1));
+                change.put(LobbiedRelationships.YEAR, e.getKey().get(2));
+                change.put(LobbiedRelationships.PERIOD, e.getKey().get(3));
+                change.put(LobbiedRelationships.FILING_COUNT, e.getValue()[0]);
+                change.put(LobbiedRelationships.FILING_AMOUNT, e.getValue()[1]);
+                changes.add(change);
+            });
+
+        if (!changes.isEmpty()) {
+            record(session.get().query(LobbiedRelationships.APPLY, Collections.singletonMap(LobbiedRelationships.PARAM_CHANGES, changes)), null);
+        }
+    }
+
+    /**
+     * Rollback and close the current transaction, if any
+     */
+    private void rollback () {
+        if (txn != null) {
+            try {
+                txn.rollback();
+            } finally {
+                txn.close();
+                txn = null;
+            }
+        }
+    }
+
+    /**
+     * Did the write fail for a reason that may not happen again, e.g., a deadlock or lock timeout?  The OGM wraps the
+     * driver's exceptions, so the causes are checked as well.
+     * @param e the failure
+     * @return true if worth retrying
+     */
+    private boolean isTransient (Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if ((t instanceof CypherException && ((CypherException) t).getCode() != null && ((CypherException) t).getCode().startsWith(TRANSIENT_ERROR))
+                    || t instanceof TransientException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Commit and close the current transaction
+     * @param filings number of filings written by the transaction
+     */
+    private void commit (int filings) {
+        TransactionCommittedEvent event = new TransactionCommittedEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            txn.commit();
+        } finally {
+            commitTimer.stop(start);
+            txn.close();
+            txn = null;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.setFilings(filings);
+            event.setBatched(true);
+            event.commit();
+        }
+    }
+
+    /**
+     * Execute a relationship statement, skipping it entirely when there's nothing to relate.
+     * @param cypher the statement to execute
+     * @param pairs from/to internal ids of the nodes to relate
+     */
+    private void execute (String cypher,
+                          List<Map<String,Object>> pairs) {
+        if (!pairs.isEmpty()) {
+            record(session.get().query(cypher, Collections.singletonMap(PARAM_PAIRS, pairs)), null);
+        }
+    }
+
+    /**
+     * Count the nodes and relationships a statement created.  Counted once executed, so a batch that's rolled back
+     * and retried is counted again.
+     * @param result result of the statement
+     * @param nodesCreated counter of the nodes created, null if the statement creates none
+     */
+    private void record (Result result,
+                         Counter nodesCreated) {
+        QueryStatistics statistics = result.queryStatistics();
+        if (statistics != null) {
+            relationshipsCreated.add(statistics.getRelationshipsCreated());
+            if (nodesCreated != null) {
+                nodesCreated.add(statistics.getNodesCreated());
+            }
+        }
+    }
+
+    /**
+     * Create the parameter map for relating two nodes
+     * @param from internal id of the start node
+     * @param to internal id of the end node
+     * @return parameter map
+     */
+    private Map<String,Object> pair (Long from,
+                                     Long to) {
+        Map<String,Object> pair = new HashMap<>(4);
+        pair.put(PAIR_FROM, from);
+        pair.put(PAIR_TO, to);
+        return pair;
+    }
+}
@@ -0,0 +1,552 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.write;
+
+import com.buddhadata.sandbox.neo4j.filings.jfr.TransactionCommittedEvent;
+import com.buddhadata.sandbox.neo4j.filings.metrics.Counter;
+import com.buddhadata.sandbox.neo4j.filings.metrics.MetricsRegistry;
+import com.buddhadata.sandbox.neo4j.filings.metrics.Timer;
+import com.buddhadata.sandbox.neo4j.filings.node.*;
+import generated.*;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.Transaction;
+import org.neo4j.driver.v1.exceptions.TransientException;
+import org.neo4j.driver.v1.summary.SummaryCounters;
+
+import java.util.*;
+
+/**
+ * Writes filings in batches straight from the source data with the Neo4J Java driver, no OGM and no node objects
+ * kept between filings: the nodes each filing references are merged by their identifying keys, then the filings and
+ * their relationships are created, all as parameterized <code>UNWIND</code> statements in a single transaction per
+ * batch.  Nothing needs to be found or created beforehand, the database resolves every reference itself.
+ *
+ * The graph written is the same as the OGM's or the <code>BatchFilingWriter</code>'s: nodes are created by
+ * <code>NodeFactory</code> just for their normalized properties, and a node's properties are those of the first filing
+ * referencing it.  Each batch's filings are added to their registrants' LOBBIED relationships (see
+ * <code>LobbiedRelationships</code>) and, with a time tree, related to the buckets of <code>TimeTree</code>.  Merging
+ * isn't safe between concurrent transactions without uniqueness constraints, so only a single writer may be writing at
+ * a time.
+ *
+ * Not thread-safe, each writer has its own driver session.
+ *
+ * @author Scott C Sosna
+ */
+public class BoltFilingWriter
+    implements AutoCloseable {
+
+    //  The nodes referenced by the batch's filings, created when they don't already exist.
+    static private final String CLIENT_MERGE =
+        "UNWIND $nodes AS n MERGE (c:Client {name: n.name}) ON CREATE SET c = n";
+    static private final String REGISTRANT_MERGE =
+        "UNWIND $nodes AS n MERGE (r:Registrant {registrantId: n.registrantId}) ON CREATE SET r = n";
+    static private final String LOBBYIST_MERGE =
+        "UNWIND $nodes AS n MERGE (l:Lobbyist {surname: n.surname, firstName: n.firstName}) ON CREATE SET l = n";
+    static private final String ENTITY_MERGE =
+        "UNWIND $nodes AS n MERGE (g:GovernmentEntity {name: n.name}) ON CREATE SET g = n";
+    static private final String ISSUE_MERGE =
+        "UNWIND $nodes AS n MERGE (i:Issue {code: n.code}) ON CREATE SET i = n";
+
+    //  The filings along with the relationships to the single client and registrant.  Returns the internal id of each
+    //  filing so the remaining relationships don't have to look the filing up again.
+    static private final String FILING_CREATE =
+        "UNWIND $rows AS row " +
+        "MATCH (c:Client {name: row.client}) " +
+        "MATCH (r:Registrant {registrantId: row.registrant}) " +
+        "CREATE (f:Filing) SET f = row.props " +
+        "CREATE (f)-[:ON_BEHALF_OF]->(c) " +
+        "CREATE (r)-[:FILED]->(f) " +
+        "MERGE (c)-[:ENGAGES]->(r) " +
+        "RETURN row.idx AS idx, id(f) AS id";
+
+    //  Relationships from each filing, by its internal id, to the nodes it references, by their keys.
+    static private final String LOBBYING_FOR_CREATE =
+        "UNWIND $pairs AS p MATCH (f:Filing) WHERE id(f) = p.filing " +
+        "MATCH (l:Lobbyist {surname: p.surname, firstName: p.firstName}) CREATE (l)-[:LOBBYING_FOR]->(f)";
+    static private final String TARGETED_AT_CREATE =
+        "UNWIND $pairs AS p MATCH (f:Filing) WHERE id(f) = p.filing " +
+        "MATCH (g:GovernmentEntity {name: p.name}) CREATE (f)-[:TARGETED_AT]->(g)";
+    static private final String ABOUT_CREATE =
+        "UNWIND $pairs AS p MATCH (f:Filing) WHERE id(f) = p.filing " +
+        "MATCH (i:Issue {code: p.code}) CREATE (f)-[:ABOUT]->(i)";
+    static private final String EMPLOYS_MERGE =
+        "UNWIND $pairs AS p MATCH (r:Registrant {registrantId: p.registrantId}) " +
+        "MATCH (l:Lobbyist {surname: p.surname, firstName: p.firstName}) MERGE (r)-[:EMPLOYS]->(l)";
+
+    static private final String PARAM_NODES = "nodes";
+    static private final String PARAM_ROWS = "rows";
+    static private final String PARAM_PAIRS = "pairs";
+
+    //  Retrying batches that failed for transient reasons, e.g., deadlocks with another client
+    static private final int MAX_ATTEMPTS = 5;
+    static private final long RETRY_DELAY_MS = 50;
+
+    /**
+     * Number of filings written per transaction
+     */
+    private final int batchSize;
+
+    /**
+     * Filings waiting to be written, only those with an amount
+     */
+    private final List<FilingType> pending;
+
+    /**
+     * Driver session used for writing
+     */
+    private final Session session;
+
+    /**
+     * Time spent executing the statements writing each batch, and committing each batch
+     */
+    private final Timer writeTimer;
+    private final Timer commitTimer;
+
+    /**
+     * Nodes of each label, and relationships, created as reported by Neo4J
+     */
+    private final Counter clientsCreated;
+    private final Counter entitiesCreated;
+    private final Counter filingsCreated;
+    private final Counter issuesCreated;
+    private final Counter lobbyistsCreated;
+    private final Counter registrantsCreated;
+    private final Counter relationshipsCreated;
+
+    /**
+     * Buckets the filings are related to, null when there's no time tree
+     */
+    private final TimeTree timeTree;
+
+    /**
+     * Total filings written by this writer
+     */
+    private long written;
+
+    /**
+     * Constructor
+     * @param driver driver from which the writer's session is opened
+     * @param batchSize number of filings written per transaction
+     * @param metrics registry recording the time spent writing and committing batches, and the nodes and relationships
+     *                created
+     * @param timeTree buckets the filings are related to, null for none
+     */
+    public BoltFilingWriter (Driver driver,
+                             int batchSize,
+                             MetricsRegistry metrics,
+                             TimeTree timeTree) {
+        this.session = driver.session();
+        this.timeTree = timeTree;
+        this.batchSize = Math.max(1, batchSize);
+        this.pending = new ArrayList<>(this.batchSize);
+        this.writeTimer = metrics.timer("batch_write");
+        this.commitTimer = metrics.timer("commit");
+        this.clientsCreated = metrics.counter("nodes_created", "label", "Client");
+        this.entitiesCreated = metrics.counter("nodes_created", "label", "GovernmentEntity");
+        this.filingsCreated = metrics.counter("nodes_created", "label", "Filing");
+        this.issuesCreated = metrics.counter("nodes_created", "label", "Issue");
+        this.lobbyistsCreated = metrics.counter("nodes_created", "label", "Lobbyist");
+        this.registrantsCreated = metrics.counter("nodes_created", "label", "Registrant");
+        this.relationshipsCreated = metrics.counter("relationships_created");
+    }
+
+    /**
+     * Queue a filing for writing, writing the batch once it's full.  Filings without an amount are ignored.
+     * @param one the filing read from the source data
+     */
+    public void add (FilingType one) {
+        if (NodeFactory.hasAmount(one)) {
+            pending.add(one);
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Abandon the filings not yet written
+     */
+    public void discard () {
+        pending.clear();
+    }
+
+    /**
+     * Write all pending filings in a single transaction, retried should it fail for a transient reason.
+     * @return number of filings written
+     */
+    public int flush () {
+
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        Batch batch = new Batch(pending, timeTree);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(batch);
+                break;
+            } catch (TransientException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    pending.clear();
+                    throw e;
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY_MS * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    pending.clear();
+                    throw e;
+                }
+            } catch (RuntimeException e) {
+                pending.clear();
+                throw e;
+            }
+        }
+
+        int count = pending.size();
+        written += count;
+        pending.clear();
+        return count;
+    }
+
+    /**
+     * getter
+     * @return total filings written by this writer
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Close the writer's session, pending filings are not written
+     */
+    @Override
+    public void close () {
+        session.close();
+    }
+
+    /**
+     * Write a batch in its own transaction, counting what was created only once committed.
+     * @param batch the batch's nodes, filings and relationships
+     */
+    private void write (Batch batch) {
+
+        //  Counts of the nodes of each label and the relationships created.
+        int[] created = new int[7];
+
+        //  The transaction's committed when the try block closes it, timed from the end of the statements.
+        TransactionCommittedEvent event = new TransactionCommittedEvent();
+        long commitStart = 0;
+        try (Transaction txn = session.beginTransaction()) {
+
+            long start = System.nanoTime();
+            try {
+                created[0] = execute(txn, CLIENT_MERGE, PARAM_NODES, batch.clients.values(), created);
+                created[1] = execute(txn, REGISTRANT_MERGE, PARAM_NODES, batch.registrants.values(), created);
+                created[2] = execute(txn, LOBBYIST_MERGE, PARAM_NODES, batch.lobbyists.values(), created);
+                created[3] = execute(txn, ENTITY_MERGE, PARAM_NODES, batch.entities.values(), created);
+                created[4] = execute(txn, ISSUE_MERGE, PARAM_NODES, batch.issues.values(), created);
+
+                //  Filings next, the remaining relationships need their ids.
+                StatementResult result = txn.run(FILING_CREATE, Collections.singletonMap(PARAM_ROWS, batch.rows));
+                long[] filingIds = new long[batch.rows.size()];
+                for (Record record : result.list()) {
+                    filingIds[record.get("idx").asInt()] = record.get("id").asLong();
+                }
+                SummaryCounters counters = result.summary().counters();
+                created[5] = counters.nodesCreated();
+                created[6] += counters.relationshipsCreated();
+
+                execute(txn, LOBBYING_FOR_CREATE, PARAM_PAIRS, batch.relate(batch.lobbyingFor, filingIds), created);
+                execute(txn, TARGETED_AT_CREATE, PARAM_PAIRS, batch.relate(batch.targetedAt, filingIds), created);
+                execute(txn, ABOUT_CREATE, PARAM_PAIRS, batch.relate(batch.about, filingIds), created);
+                execute(txn, EMPLOYS_MERGE, PARAM_PAIRS, batch.employs, created);
+
+                //  Once related to their registrants and entities, the filings count towards what the registrants lobbied.
+                List<Long> written = new ArrayList<>(filingIds.length);
+                for (long filingId : filingIds) {
+                    written.add(filingId);
+                }
+                created[6] += txn.run(LobbiedRelationships.ADD, Collections.singletonMap(LobbiedRelationships.PARAM_FILINGS, written))
+                    .consume().counters().relationshipsCreated();
+
+                //  Last of all the buckets, each locked in the same order by every writer.
+                if (timeTree != null) {
+                    execute(txn, TimeTree.RECEIVED_ON_CREATE, PARAM_PAIRS, batch.bucket(batch.days, filingIds), created);
+                    execute(txn, TimeTree.FOR_PERIOD_CREATE, PARAM_PAIRS, batch.bucket(batch.periods, filingIds), created);
+                }
+                txn.success();
+            } catch (RuntimeException e) {
+                txn.failure();
+                throw e;
+            } finally {
+                writeTimer.stop(start);
+            }
+
+            event.begin();
+            commitStart = System.nanoTime();
+        } finally {
+            if (commitStart != 0) {
+                commitTimer.stop(commitStart);
+            }
+        }
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.setFilings(batch.rows.size());
+            event.setBatched(true);
+            event.commit();
+        }
+
+        clientsCreated.add(created[0]);
+        registrantsCreated.add(created[1]);
+        lobbyistsCreated.add(created[2]);
+        entitiesCreated.add(created[3]);
+        issuesCreated.add(created[4]);
+        filingsCreated.add(created[5]);
+        relationshipsCreated.add(created[6]);
+    }
+
+    /**
+     * Execute a statement, skipping it entirely when there's nothing to write.
+     * @param txn the batch's transaction
+     * @param cypher the statement to execute
+     * @param param name of the parameter holding the rows
+     * @param rows the rows to write
+     * @param created counts, the relationships created are added to the last
+     * @return number of nodes created
+     */
+    private int execute (Transaction txn,
+                         String cypher,
+                         String param,
+                         Collection<Map<String,Object>> rows,
+                         int[] created) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        SummaryCounters counters = txn.run(cypher, Collections.singletonMap(param, new ArrayList<>(rows))).consume().counters();
+        created[created.length - 1] += counters.relationshipsCreated();
+        return counters.nodesCreated();
+    }
+
+    /**
+     * The parameters for writing a batch of filings, built straight from the source data: each node referenced, once,
+     * by its identifying key, each filing's properties and the keys of what it references.
+     */
+    static private final class Batch {
+
+        //  Properties of the nodes referenced, by identifying key, in the order first referenced.
+        private final Map<String,Map<String,Object>> clients = new LinkedHashMap<>();
+        private final Map<Long,Map<String,Object>> registrants = new LinkedHashMap<>();
+        private final Map<LobbyistKey,Map<String,Object>> lobbyists = new LinkedHashMap<>();
+        private final Map<String,Map<String,Object>> entities = new LinkedHashMap<>();
+        private final Map<String,Map<String,Object>> issues = new LinkedHashMap<>();
+
+        //  Each filing's properties and the keys of its client and registrant.
+        private final List<Map<String,Object>> rows = new ArrayList<>();
+
+        //  Each filing's relationships by its index in the batch, and the registrants' lobbyists.
+        private final List<Map<String,Object>> lobbyingFor = new ArrayList<>();
+        private final List<Map<String,Object>> targetedAt = new ArrayList<>();
+        private final List<Map<String,Object>> about = new ArrayList<>();
+        private final List<Map<String,Object>> employs = new ArrayList<>();
+
+        //  Internal id of each filing's buckets by its index in the batch, null for none.  Any year's buckets not yet
+        //  created are created along with the batch, before its transaction locks any other buckets.
+        private final List<Long> days = new ArrayList<>();
+        private final List<Long> periods = new ArrayList<>();
+
+        /**
+         * Constructor
+         * @param filings the batch's filings, all with an amount
+         * @param timeTree buckets the filings are related to, null for none
+         */
+        private Batch (List<FilingType> filings,
+                       TimeTree timeTree) {
+
+            Set<Map<String,Object>> employed = new LinkedHashSet<>();
+            for (FilingType one : filings) {
+
+                int idx = rows.size();
+                Map<String,Object> client = clients.computeIfAbsent(NodeFactory.clientKey(one.getClient()), k -> properties(NodeFactory.client(one.getClient())));
+                Map<String,Object> registrant = registrants.computeIfAbsent(NodeFactory.registrantKey(one.getRegistrant()), k -> properties(NodeFactory.registrant(one.getRegistrant())));
+
+                //  Properties are named as the OGM would name them, from the fields of Filing.  The driver writes the
+                //  received date as a native local date-time.
+                Filing filing = NodeFactory.filing(one, null);
+                Map<String,Object> props = new HashMap<>();
+                props.put("filingId", filing.getFilingId());
+                props.put("year", filing.getYear());
+                props.put("receivedOn", filing.getReceivedOn());
+                props.put("receivedYear", filing.getReceivedYear());
+                props.put("receivedMonth", filing.getReceivedMonth());
+                props.put("receivedDay", filing.getReceivedDay());
+                props.put("quarter", filing.getQuarter());
+                props.put("amount", filing.getAmount());
+                props.put("type", filing.getType());
+                props.put("period", filing.getPeriod());
+                days.add((timeTree != null) ? timeTree.day(filing) : null);
+                periods.add((timeTree != null) ? timeTree.period(filing) : null);
+
+                Map<String,Object> row = new HashMap<>();
+                row.put("idx", idx);
+                row.put("client", client.get("name"));
+                row.put("registrant", registrant.get("registrantId"));
+                row.put("props", props);
+                rows.add(row);
+
+                //  A filing references each node at most once, as the OGM's sets would.
+                if (one.getLobbyists() != null && one.getLobbyists().getLobbyist() != null) {
+                    Set<LobbyistKey> seen = new HashSet<>();
+                    for (LobbyistType l : one.getLobbyists().getLobbyist()) {
+                        LobbyistKey key = NodeFactory.lobbyistKey(l);
+                        if (key != null && seen.add(key)) {
+                            Map<String,Object> lobbyist = lobbyists.computeIfAbsent(key, k -> properties(NodeFactory.lobbyist(l, k)));
+                            lobbyingFor.add(pair(idx, "surname", lobbyist.get("surname"), "firstName", lobbyist.get("firstName")));
+
+                            Map<String,Object> employ = new HashMap<>(4);
+                            employ.put("registrantId", registrant.get("registrantId"));
+                            employ.put("surname", lobbyist.get("surname"));
+                            employ.put("firstName", lobbyist.get("firstName"));
+                            employed.add(employ);
+                        }
+                    }
+                }
+
+                if (one.getGovernmentEntities() != null) {
+                    Set<String> seen = new HashSet<>();
+                    for (GovernmentEntityType entity : one.getGovernmentEntities().getGovernmentEntity()) {
+                        String key = NodeFactory.entityKey(entity);
+                        if (seen.add(key)) {
+                            Map<String,Object> node = entities.computeIfAbsent(key, k -> properties(NodeFactory.entity(entity)));
+                            targetedAt.add(pair(idx, "name", node.get("name"), null, null));
+                        }
+                    }
+                }
+
+                if (one.getIssues() != null && one.getIssues().getIssue() != null) {
+                    Set<String> seen = new HashSet<>();
+                    for (IssueType issue : one.getIssues().getIssue()) {
+                        String key = NodeFactory.issueKey(issue);
+                        if (seen.add(key)) {
+                            Map<String,Object> node = issues.computeIfAbsent(key, k -> properties(NodeFactory.issue(k)));
+                            about.add(pair(idx, "code", node.get("code"), null, null));
+                        }
+                    }
+                }
+            }
+            employs.addAll(employed);
+        }
+
+        /**
+         * Replace the index of each relationship's filing with the filing's internal id
+         * @param pairs relationships by filing index
+         * @param filingIds internal id of each filing, by index
+         * @return the relationships by filing id
+         */
+        private List<Map<String,Object>> relate (List<Map<String,Object>> pairs,
+                                                 long[] filingIds) {
+            for (Map<String,Object> pair : pairs) {
+                pair.put("filing", filingIds[(Integer) pair.get("idx")]);
+            }
+            return pairs;
+        }
+
+        /**
+         * Relate each filing, by its internal id, to one of its buckets
+         * @param buckets internal id of each filing's bucket, by index, null for none
+         * @param filingIds internal id of each filing, by index
+         * @return the relationships, in order of bucket
+         */
+        private List<Map<String,Object>> bucket (List<Long> buckets,
+                                                 long[] filingIds) {
+            List<Map<String,Object>> pairs = new ArrayList<>();
+            for (int i = 0; i < buckets.size(); i++) {
+                if (buckets.get(i) != null) {
+                    pairs.add(TimeTree.pair(filingIds[i], buckets.get(i)));
+                }
+            }
+            return TimeTree.sort(pairs);
+        }
+
+        /**
+         * Create the parameter map relating a filing to a node
+         * @param idx index of the filing in the batch
+         * @param name name of the node's first key property
+         * @param value its value
+         * @param name2 name of the node's second key property, null for none
+         * @param value2 its value
+         * @return parameter map
+         */
+        static private Map<String,Object> pair (int idx,
+                                                String name,
+                                                Object value,
+                                                String name2,
+                                                Object value2) {
+            Map<String,Object> pair = new HashMap<>(8);
+            pair.put("idx", idx);
+            pair.put(name, value);
+            if (name2 != null) {
+                pair.put(name2, value2);
+            }
+            return pair;
+        }
+
+        //  Node properties, named as the OGM would name them from the fields of each node.  Null properties aren't
+        //  written, as with the OGM.
+
+        static private Map<String,Object> properties (Client node) {
+            Map<String,Object> props = new HashMap<>();
+            props.put("clientId", node.getClientId());
+            props.put("name", node.getName());
+            props.put("desc", node.getDesc());
+            props.put("contactName", node.getContactName());
+            props.put("country", node.getCountry());
+            props.put("countryPPB", node.getCountryPPB());
+            props.put("state", node.getState());
+            props.put("statePBB", node.getStatePBB());
+            props.put("selfFilerInd", node.isSelfFilerInd());
+            props.put("stateLocalGovtInd", node.isStateLocalGovtInd());
+            return props;
+        }
+
+        static private Map<String,Object> properties (Registrant node) {
+            Map<String,Object> props = new HashMap<>();
+            props.put("registrantId", node.getRegistrantId());
+            props.put("name", node.getName());
+            props.put("description", node.getDescription());
+            props.put("address", node.getAddress());
+            props.put("country", node.getCountry());
+            props.put("countryPBB", node.getCountryPBB());
+            return props;
+        }
+
+        static private Map<String,Object> properties (Lobbyist node) {
+            Map<String,Object> props = new HashMap<>();
+            props.put("firstName", node.getFirstName());
+            props.put("surname", node.getSurname());
+            props.put("govtPositionInd", node.isGovtPositionInd());
+            props.put("govtPositionDesc", node.getGovtPositionDesc());
+            props.put("activityInfo", node.getActivityInfo());
+            return props;
+        }
+
+        static private Map<String,Object> properties (GovernmentEntity node) {
+            Map<String,Object> props = new HashMap<>();
+            props.put("name", node.getName());
+            return props;
+        }
+
+        static private Map<String,Object> properties (Issue node) {
+            Map<String,Object> props = new HashMap<>();
+            props.put("code", node.getCode());
+            return props;
+        }
+    }
+}
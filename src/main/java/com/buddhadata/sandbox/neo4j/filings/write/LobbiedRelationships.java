@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.write;
+
+/**
+ * The LOBBIED relationships from each registrant to the government entities its filings targeted, one for each year
+ * and period filed for, whose <code>filingCnt</code> and <code>filingAmt</code> are the number and total amount of
+ * those filings.  Kept up to date as filings are written rather than summed from every filing each time they're
+ * queried, so whatever writes filings must update them in the same transaction.  Filings without a period aren't
+ * counted.
+ *
+ * Writers on other threads may be updating the same relationship.  MERGE locks the registrant and entity before
+ * creating the relationship so there's only ever one, and each relationship is locked by writing to it before its
+ * running totals are read, so no update is lost.  Relationships are updated in order of registrant and entity, all in
+ * one statement at the end of the transaction, so writers lock them in the same order rather than deadlocking.
+ *
+ * @author Scott C Sosna
+ */
+public final class LobbiedRelationships {
+
+    /**
+     * Name of the parameter listing the filings, by internal id for <code>ADD</code> and filing id for
+     * <code>TOTALS</code>
+     */
+    public static final String PARAM_FILINGS = "filings";
+
+    /**
+     * Name of the parameter listing the changes for <code>APPLY</code>
+     */
+    public static final String PARAM_CHANGES = "changes";
+
+    //  Properties of the changes, also the columns returned by TOTALS
+    public static final String REGISTRANT = "registrant";
+    public static final String ENTITY = "entity";
+    public static final String YEAR = "year";
+    public static final String PERIOD = "period";
+    public static final String FILING_COUNT = "filingCnt";
+    public static final String FILING_AMOUNT = "filingAmt";
+
+    /**
+     * Add the filings just written, by internal id, to their registrants' LOBBIED relationships, created when needed.
+     * Each filing may be listed only once.
+     */
+    public static final String ADD =
+        "UNWIND $filings AS filing " +
+        "MATCH (r:Registrant)-[:FILED]->(f:Filing)-[:TARGETED_AT]->(g:GovernmentEntity) WHERE id(f) = filing AND f.period IS NOT NULL " +
+        "WITH r, g, f.year AS year, f.period AS period, COUNT(f) AS filingCnt, SUM(f.amount) AS filingAmt " +
+        "ORDER BY id(r), id(g) " +
+        "MERGE (r)-[l:LOBBIED {year: year, period: period}]->(g) " +
+        "ON CREATE SET l.filingCnt = 0, l.filingAmt = 0 " +
+        "SET l._lock = true " +
+        "SET l.filingCnt = l.filingCnt + filingCnt, l.filingAmt = l.filingAmt + filingAmt " +
+        "REMOVE l._lock";
+
+    /**
+     * What filings already written, by filing id, contribute to their registrants' LOBBIED relationships, read before
+     * they're replaced and taken out with <code>APPLY</code>.  Reads only, locks nothing.  Each filing may be listed
+     * only once.
+     */
+    public static final String TOTALS =
+        "UNWIND $filings AS filingId " +
+        "MATCH (r:Registrant)-[:FILED]->(f:Filing {filingId: filingId})-[:TARGETED_AT]->(g:GovernmentEntity) WHERE f.period IS NOT NULL " +
+        "RETURN id(r) AS registrant, id(g) AS entity, f.year AS year, f.period AS period, COUNT(f) AS filingCnt, SUM(f.amount) AS filingAmt";
+
+    /**
+     * Change the LOBBIED relationships by the filing counts and amounts given, keyed by the internal ids of the
+     * registrant and entity and the year and period, created when needed.  The changes must be in order of registrant
+     * and entity.  A relationship whose filings have all been taken out is kept with counts of zero: deleting it would
+     * lock the registrant and the entity, which other writers' filings are targeting too.
+     */
+    public static final String APPLY =
+        "UNWIND $changes AS c " +
+        "MATCH (r:Registrant) WHERE id(r) = c.registrant " +
+        "MATCH (g:GovernmentEntity) WHERE id(g) = c.entity " +
+        "MERGE (r)-[l:LOBBIED {year: c.year, period: c.period}]->(g) " +
+        "ON CREATE SET l.filingCnt = 0, l.filingAmt = 0 " +
+        "SET l._lock = true " +
+        "SET l.filingCnt = l.filingCnt + c.filingCnt, l.filingAmt = l.filingAmt + c.filingAmt " +
+        "REMOVE l._lock";
+
+    /**
+     * Constructor, statements only
+     */
+    private LobbiedRelationships () {
+        return;
+    }
+}
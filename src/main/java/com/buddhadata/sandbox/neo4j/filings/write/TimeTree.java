@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.write;
+
+import com.buddhadata.sandbox.neo4j.filings.node.Filing;
+import org.neo4j.ogm.model.Result;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.transaction.Transaction;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The time tree filings are bucketed into: a Year node with its four Quarter nodes, each with its three Month nodes,
+ * each with its Day nodes, and the days of consecutive years chained by NEXT.  Each filing is related to the day it
+ * was received (RECEIVED_ON) and to the quarter its period covers (FOR_PERIOD), or the year when the period isn't a
+ * quarter.  Queries of a window of days then start from a handful of day nodes rather than every filing, e.g.,
+ * <code>MATCH (d:Day {year: 2019, month: 4, day: 1})-[:NEXT*0..1]->(:Day)<-[:RECEIVED_ON]-(f:Filing)</code>.
+ *
+ * A year's buckets are all created at once, in a single statement and transaction of their own on the time tree's
+ * session, the first time a filing needs them; an existing year's are merged rather than created again, as is the NEXT
+ * to either neighbouring year that exists, whichever order the years are created in.  The internal ids of every bucket
+ * are then cached, so relating filings to their buckets needs no lookups.  Relating a filing locks its buckets until
+ * the transaction's committed, so writers should relate them in order of bucket id, after everything else.
+ *
+ * Thread-safe, shared by all writers.
+ *
+ * @author Scott C Sosna
+ */
+public class TimeTree {
+
+    //  Relate filings, by internal id, to their buckets, by internal id.  Upserted filings may appear more than once.
+    public static final String RECEIVED_ON_CREATE =
+        "UNWIND $pairs AS p MATCH (f:Filing) WHERE id(f) = p.from MATCH (d:Day) WHERE id(d) = p.to CREATE (f)-[:RECEIVED_ON]->(d)";
+    public static final String FOR_PERIOD_CREATE =
+        "UNWIND $pairs AS p MATCH (f:Filing) WHERE id(f) = p.from MATCH (b) WHERE id(b) = p.to CREATE (f)-[:FOR_PERIOD]->(b)";
+    public static final String RECEIVED_ON_MERGE =
+        "UNWIND $pairs AS p MATCH (f:Filing) WHERE id(f) = p.from MATCH (d:Day) WHERE id(d) = p.to MERGE (f)-[:RECEIVED_ON]->(d)";
+    public static final String FOR_PERIOD_MERGE =
+        "UNWIND $pairs AS p MATCH (f:Filing) WHERE id(f) = p.from MATCH (b) WHERE id(b) = p.to MERGE (f)-[:FOR_PERIOD]->(b)";
+
+    //  Indices for finding the buckets, and for merging a year's buckets
+    public static final String YEAR_INDEX = "CREATE INDEX ON :Year (year)";
+    public static final String DAY_INDEX = "CREATE INDEX ON :Day (year, month, day)";
+
+    //  Create a year's buckets, or find those already created, returning each day along with the buckets above it.
+    static private final String YEAR_MERGE =
+        "MERGE (y:Year {year: $year}) " +
+        "WITH y UNWIND range(1, 4) AS quarter " +
+        "MERGE (y)-[:HAS_QUARTER]->(q:Quarter {year: $year, quarter: quarter}) " +
+        "WITH y, q, quarter UNWIND range(quarter * 3 - 2, quarter * 3) AS month " +
+        "MERGE (q)-[:HAS_MONTH]->(m:Month {year: $year, month: month}) " +
+        "WITH y, q, quarter, m, month UNWIND range(1, $days[month - 1]) AS day " +
+        "MERGE (m)-[:HAS_DAY]->(d:Day {year: $year, month: month, day: day}) " +
+        "RETURN id(y) AS yearId, quarter, id(q) AS quarterId, month, id(m) AS monthId, day, id(d) AS dayId";
+
+    //  Chain the year's days, and its first and last days to those of the years before and after, when created.
+    static private final String NEXT_MERGE =
+        "UNWIND $pairs AS p MATCH (a:Day) WHERE id(a) = p.from MATCH (b:Day) WHERE id(b) = p.to MERGE (a)-[:NEXT]->(b)";
+    static private final String NEXT_YEAR_MERGE =
+        "UNWIND [[$year - 1, $year], [$year, $year + 1]] AS years " +
+        "MATCH (a:Day {year: years[0], month: 12, day: 31}) MATCH (b:Day {year: years[1], month: 1, day: 1}) " +
+        "MERGE (a)-[:NEXT]->(b)";
+
+    static private final String PARAM_YEAR = "year";
+    static private final String PARAM_DAYS = "days";
+    static private final String PARAM_PAIRS = "pairs";
+    static private final String PAIR_FROM = "from";
+    static private final String PAIR_TO = "to";
+
+    //  Where each bucket's id is kept within a year's ids: the year, its quarters, its months and its days.
+    static private final int QUARTERS = 1;
+    static private final int MONTHS = QUARTERS + 4;
+    static private final int DAYS = MONTHS + 12;
+    static private final int BUCKETS = DAYS + 366;
+
+    /**
+     * Days before the first of each month, in a year that isn't a leap year
+     */
+    static private final int[] DAYS_BEFORE = { 0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334 };
+
+    /**
+     * The session every year's buckets are created with, used by one thread at a time
+     */
+    private final Session session;
+
+    /**
+     * The internal id of every bucket by year, null where there's no such day
+     */
+    private final Map<Integer,long[]> years = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     * @param session the session every year's buckets are created with, independent of the writers' sessions so the
+     *                buckets are committed before any writer relates filings to them, and used for nothing else
+     */
+    public TimeTree (Session session) {
+        this.session = session;
+    }
+
+    /**
+     * The day the filing was received, created along with its year when needed
+     * @param filing the filing
+     * @return internal id of the day, null when the filing has no received date
+     */
+    public Long day (Filing filing) {
+        if (filing.getReceivedYear() == null) {
+            return null;
+        }
+        return buckets(filing.getReceivedYear())[DAYS + dayOfYear(filing.getReceivedYear(), filing.getReceivedMonth(), filing.getReceivedDay())];
+    }
+
+    /**
+     * The quarter the filing's period covers, or its year when the period isn't a quarter, created along with the
+     * year when needed
+     * @param filing the filing
+     * @return internal id of the quarter or year, null when the filing has no year
+     */
+    public Long period (Filing filing) {
+        if (filing.getYear() < 1) {
+            return null;
+        }
+        return buckets(filing.getYear())[(filing.getQuarter() != null) ? QUARTERS + filing.getQuarter() - 1 : 0];
+    }
+
+    /**
+     * Create the parameter map relating a filing to a bucket
+     * @param filing internal id of the filing
+     * @param bucket internal id of the bucket
+     * @return parameter map
+     */
+    public static Map<String,Object> pair (long filing,
+                                           long bucket) {
+        Map<String,Object> pair = new HashMap<>(4);
+        pair.put(PAIR_FROM, filing);
+        pair.put(PAIR_TO, bucket);
+        return pair;
+    }
+
+    /**
+     * Put the pairs relating filings to buckets in order of bucket, the order in which the buckets should be locked
+     * @param pairs pairs created by <code>pair</code>
+     * @return the pairs
+     */
+    public static List<Map<String,Object>> sort (List<Map<String,Object>> pairs) {
+        pairs.sort(Comparator.comparing(p -> (Long) p.get(PAIR_TO)));
+        return pairs;
+    }
+
+    /**
+     * Index of a day within its year
+     * @param year year
+     * @param month month, 1-12
+     * @param day day of the month
+     * @return days since the first of January
+     */
+    public static int dayOfYear (int year,
+                                 int month,
+                                 int day) {
+        return DAYS_BEFORE[month - 1] + day - 1 + ((month > 2 && isLeap(year)) ? 1 : 0);
+    }
+
+    /**
+     * Number of days in each month of a year
+     * @param year year
+     * @return days by month, January first
+     */
+    public static int[] lengthOfMonths (int year) {
+        int[] lengths = new int[12];
+        for (int month = 1; month <= 12; month++) {
+            lengths[month - 1] = ((month < 12) ? DAYS_BEFORE[month] : 365) - DAYS_BEFORE[month - 1];
+        }
+        lengths[1] += isLeap(year) ? 1 : 0;
+        return lengths;
+    }
+
+    /**
+     * The ids of a year's buckets, creating them when not already cached
+     * @param year year
+     * @return internal id of each bucket
+     */
+    private long[] buckets (int year) {
+        long[] buckets = years.get(year);
+        return (buckets != null) ? buckets : create(year);
+    }
+
+    /**
+     * Create a year's buckets, or find those already created, and cache their ids.  One year at a time, so no other
+     * writer merges the same buckets at the same time, and only one thread uses the session.
+     * @param year year
+     * @return internal id of each bucket
+     */
+    private synchronized long[] create (int year) {
+
+        long[] buckets = years.get(year);
+        if (buckets != null) {
+            return buckets;
+        }
+
+        long start = System.currentTimeMillis();
+        List<Integer> days = new ArrayList<>(12);
+        for (int length : lengthOfMonths(year)) {
+            days.add(length);
+        }
+        Map<String,Object> params = new HashMap<>();
+        params.put(PARAM_YEAR, year);
+        params.put(PARAM_DAYS, days);
+
+        buckets = new long[BUCKETS];
+        try (Transaction txn = session.beginTransaction()) {
+            Result result = session.query(YEAR_MERGE, params);
+            for (Map<String,Object> row : result) {
+                int quarter = ((Number) row.get("quarter")).intValue();
+                int month = ((Number) row.get("month")).intValue();
+                int day = ((Number) row.get("day")).intValue();
+                buckets[0] = ((Number) row.get("yearId")).longValue();
+                buckets[QUARTERS + quarter - 1] = ((Number) row.get("quarterId")).longValue();
+                buckets[MONTHS + month - 1] = ((Number) row.get("monthId")).longValue();
+                buckets[DAYS + dayOfYear(year, month, day)] = ((Number) row.get("dayId")).longValue();
+            }
+
+            int length = isLeap(year) ? 366 : 365;
+            List<Map<String,Object>> next = new ArrayList<>(length);
+            for (int i = 1; i < length; i++) {
+                next.add(pair(buckets[DAYS + i - 1], buckets[DAYS + i]));
+            }
+            session.query(NEXT_MERGE, Collections.singletonMap(PARAM_PAIRS, next));
+            session.query(NEXT_YEAR_MERGE, Collections.singletonMap(PARAM_YEAR, year));
+            txn.commit();
+        }
+
+        System.out.println (String.format("Time tree for %d ready in %d ms", year, (System.currentTimeMillis() - start)));
+        years.put(year, buckets);
+        return buckets;
+    }
+
+    /**
+     * Is the year a leap year in the proleptic Gregorian calendar?
+     * @param year year
+     * @return true if it is
+     */
+    static private boolean isLeap (int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+}
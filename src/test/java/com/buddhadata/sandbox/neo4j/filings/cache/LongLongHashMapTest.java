@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of <code>LongLongHashMap</code>
+ *
+ * @author Scott C Sosna
+ */
+public class LongLongHashMapTest {
+
+    /**
+     * Zero marks an empty slot, so its entry is kept apart from the others
+     */
+    @Test
+    public void zeroKey () {
+        LongLongHashMap map = new LongLongHashMap();
+        assertFalse(map.containsKey(0L));
+        assertEquals(-1L, map.get(0L, -1L));
+
+        map.put(0L, 42L);
+        assertTrue(map.containsKey(0L));
+        assertEquals(42L, map.get(0L, -1L));
+        assertEquals(1, map.size());
+
+        map.put(0L, 43L);
+        assertEquals(43L, map.get(0L, -1L));
+        assertEquals(1, map.size());
+
+        //  A value of zero is a value like any other.
+        map.put(7L, 0L);
+        assertTrue(map.containsKey(7L));
+        assertEquals(0L, map.get(7L, -1L));
+        assertEquals(2, map.size());
+
+        map.clear();
+        assertFalse(map.containsKey(0L));
+        assertEquals(0, map.size());
+    }
+
+    /**
+     * Growing well past the expected size keeps every entry, including that for zero
+     */
+    @Test
+    public void growth () {
+        LongLongHashMap map = new LongLongHashMap(1);
+        map.put(0L, -100L);
+        for (long key = 1; key <= 100_000; key++) {
+            map.put(key * 31, key);
+        }
+        map.put(Long.MIN_VALUE, 1L);
+        map.put(Long.MAX_VALUE, 2L);
+
+        assertEquals(100_003, map.size());
+        assertEquals(-100L, map.get(0L, -1L));
+        for (long key = 1; key <= 100_000; key++) {
+            assertEquals(key, map.get(key * 31, -1L));
+        }
+        assertEquals(1L, map.get(Long.MIN_VALUE, -1L));
+        assertEquals(2L, map.get(Long.MAX_VALUE, -1L));
+        assertFalse(map.containsKey(30L));
+        assertEquals(-1L, map.get(32L, -1L));
+    }
+
+    /**
+     * Putting a key again replaces its value without adding an entry
+     */
+    @Test
+    public void overwrite () {
+        LongLongHashMap map = new LongLongHashMap(4);
+        for (long key = 1; key <= 1000; key++) {
+            map.put(key, key);
+        }
+        for (long key = 1; key <= 1000; key++) {
+            map.put(key, -key);
+        }
+
+        assertEquals(1000, map.size());
+        for (long key = 1; key <= 1000; key++) {
+            assertEquals(-key, map.get(key, 0L));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.parse;
+
+import generated.FilingType;
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of <code>FilingsScanner</code>, the character references and normalization of attribute values in particular
+ *
+ * @author Scott C Sosna
+ */
+public class FilingsScannerTest {
+
+    /**
+     * The predefined entities, decimal and hexadecimal references, including one beyond the BMP, are replaced
+     */
+    @Test
+    public void references ()
+        throws IOException, XMLStreamException {
+
+        List<FilingType> filings = read(
+            "<Filing ID=\"A&amp;B-&#49;\" Year=\"2019\" Received=\"2019-04-15T12:34:56\" Amount=\"10&#x30;\" Type=\"Q&lt;1&gt;\" Period=\"&quot;1st&quot;\">" +
+            "<Registrant RegistrantID=\"4&#50;\" RegistrantName=\"O&apos;Brien &amp; Sons\" />" +
+            "<Client ClientName=\"A&#x26;B &#x1F600;\" ClientID=\" 7 \" />" +
+            "<Lobbyists><Lobbyist LobbyistName=\"O&apos;BRIEN, PAT\" /></Lobbyists>" +
+            "<GovernmentEntities><GovernmentEntity GovEntityName=\"SENATE &gt; HOUSE\" /></GovernmentEntities>" +
+            "<Issues><Issue Code=\"T&#65;X\" SpecificIssue=\"&lt;b&gt;\" /></Issues>" +
+            "</Filing>");
+
+        assertEquals(1, filings.size());
+        FilingType filing = filings.get(0);
+        assertEquals("A&B-1", filing.getID());
+        assertEquals(2019, filing.getYear().intValue());
+        assertEquals("100", filing.getAmount());
+        assertEquals("Q<1>", filing.getType());
+        assertEquals("\"1st\"", filing.getPeriod());
+        assertEquals(42L, filing.getRegistrant().getRegistrantID().longValue());
+        assertEquals("O'Brien & Sons", filing.getRegistrant().getRegistrantName());
+        assertEquals("A&B \uD83D\uDE00", filing.getClient().getClientName());
+        assertEquals(7L, filing.getClient().getClientID().longValue());
+        assertEquals("O'BRIEN, PAT", filing.getLobbyists().getLobbyist().get(0).getLobbyistName());
+        assertEquals("SENATE > HOUSE", filing.getGovernmentEntities().getGovernmentEntity().get(0).getGovEntityName());
+        assertEquals("TAX", filing.getIssues().getIssue().get(0).getCode());
+        assertEquals("<b>", filing.getIssues().getIssue().get(0).getSpecificIssue());
+    }
+
+    /**
+     * A received date with references is parsed once they're replaced
+     */
+    @Test
+    public void referencesInDate ()
+        throws IOException, XMLStreamException {
+        ScannedFiling filing = (ScannedFiling) read("<Filing ID=\"1\" Received=\"2019-04-15T12:3&#52;:56.789\" />").get(0);
+        assertEquals(LocalDateTime.of(2019, 4, 15, 12, 34, 56, 789_000_000), filing.getReceivedOn());
+    }
+
+    /**
+     * Line breaks and tabs are spaces, but not when written as references
+     */
+    @Test
+    public void normalization ()
+        throws IOException, XMLStreamException {
+        FilingType filing = read("<Filing ID=\"1\"><Issues><Issue Code=\"TAX\" SpecificIssue=\"a\r\nb\tc\nd&#10;e&#9;f&#13;\" /></Issues></Filing>").get(0);
+        assertEquals("a b c d\ne\tf\r", filing.getIssues().getIssue().get(0).getSpecificIssue());
+    }
+
+    /**
+     * References that are unknown, unterminated or malformed fail the document
+     */
+    @Test
+    public void malformedReferences ()
+        throws IOException {
+        for (String value : new String[] { "&nbsp;", "&amp", "a & b", "&#;", "&#x;", "&#12a;", "&#xZ;", "&#x7FFFFFFF;", "&;" }) {
+            try {
+                read("<Filing ID=\"" + value + "\" />");
+                fail(value);
+            } catch (XMLStreamException e) {
+                //  Expected
+            }
+        }
+    }
+
+    /**
+     * Read a document holding the filings given
+     * @param filings the filings' XML
+     * @return the filings read
+     */
+    static private List<FilingType> read (String filings)
+        throws IOException, XMLStreamException {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-16\"?>\r\n<PublicFilings>" + filings + "</PublicFilings>";
+        List<FilingType> read = new ArrayList<>();
+        new FilingsScanner().read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_16)), read::add);
+        return read;
+    }
+}
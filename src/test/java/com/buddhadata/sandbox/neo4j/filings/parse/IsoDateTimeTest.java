@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.parse;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of <code>IsoDateTime</code>
+ *
+ * @author Scott C Sosna
+ */
+public class IsoDateTimeTest {
+
+    /**
+     * Dates without a zone are the local date and time as written
+     */
+    @Test
+    public void local () {
+        assertEquals(LocalDateTime.of(2019, 4, 15, 12, 34, 56), parse("2019-04-15T12:34:56"));
+        assertEquals(LocalDateTime.of(2019, 4, 15, 12, 34, 56, 789_000_000), parse("2019-04-15T12:34:56.789"));
+        assertEquals(LocalDateTime.of(2019, 4, 15, 12, 34, 56), parse("  2019-04-15T12:34:56\n"));
+        assertEquals(LocalDateTime.of(2020, 2, 29, 0, 0), parse("2020-02-29T00:00:00"));
+        assertEquals(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_000_000), parse("1969-12-31T23:59:59.999"));
+    }
+
+    /**
+     * Fractional seconds are padded to, or truncated at, milliseconds
+     */
+    @Test
+    public void fraction () {
+        assertEquals(LocalDateTime.of(2019, 4, 15, 12, 34, 56, 500_000_000), parse("2019-04-15T12:34:56.5"));
+        assertEquals(LocalDateTime.of(2019, 4, 15, 12, 34, 56, 50_000_000), parse("2019-04-15T12:34:56.05"));
+        assertEquals(LocalDateTime.of(2019, 4, 15, 12, 34, 56, 123_000_000), parse("2019-04-15T12:34:56.1234"));
+        assertEquals(LocalDateTime.of(2019, 4, 15, 12, 34, 56, 999_000_000), parse("2019-04-15T12:34:56.999999999"));
+    }
+
+    /**
+     * Dates with an offset are the same instant in this JVM's time zone
+     */
+    @Test
+    public void offset () {
+        for (String text : new String[] { "2019-04-15T12:34:56Z", "2019-04-15T12:34:56.789+05:30",
+                                          "2019-04-15T12:34:56-04:00", "2019-01-15T23:30:00-14:00",
+                                          "2019-03-10T07:30:00Z", "2019-04-15T12:34:56.12345+00:00" }) {
+            LocalDateTime expected = OffsetDateTime.parse(text).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+            assertEquals(text, expected.withNano(expected.getNano() / 1_000_000 * 1_000_000), parse(text));
+        }
+    }
+
+    /**
+     * Midnight at the end of a day may be hour 24, the first of the next day
+     */
+    @Test
+    public void endOfDay () {
+        assertEquals(LocalDateTime.of(2019, 4, 16, 0, 0), parse("2019-04-15T24:00:00"));
+        assertEquals(LocalDateTime.of(2019, 5, 1, 0, 0), parse("2019-04-30T24:00:00"));
+        assertEquals(LocalDateTime.of(2020, 1, 1, 0, 0), parse("2019-12-31T24:00:00.000"));
+        assertEquals(LocalDateTime.of(2019, 3, 1, 0, 0), parse("2019-02-28T24:00:00"));
+        assertEquals(LocalDateTime.of(2020, 2, 29, 0, 0), parse("2020-02-28T24:00:00"));
+        assertEquals(IsoDateTime.INVALID, IsoDateTime.parse("2019-04-15T24:00:01"));
+        assertEquals(IsoDateTime.INVALID, IsoDateTime.parse("2019-04-15T24:01:00"));
+    }
+
+    /**
+     * Anything that isn't a date and time in range is invalid
+     */
+    @Test
+    public void invalid () {
+        for (String text : new String[] { "", "   ", "2019-04-15", "2019-04-15T12:34", "19-04-15T12:34:56",
+                                          "2019/04/15T12:34:56", "2019-04-15 12:34:56", "2019-4-15T12:34:56",
+                                          "2019-13-15T12:34:56", "2019-00-15T12:34:56", "2019-02-29T12:34:56",
+                                          "2019-04-31T12:34:56", "2019-04-00T12:34:56", "2019-04-15T25:00:00",
+                                          "2019-04-15T12:60:00", "2019-04-15T12:34:60", "2019-04-15T12:34:56.",
+                                          "2019-04-15T12:34:56.12a", "2019-04-15T12:34:56z", "2019-04-15T12:34:56+05",
+                                          "2019-04-15T12:34:56+0530", "2019-04-15T12:34:56+05:60",
+                                          "2019-04-15T12:34:56+14:01", "2019-04-15T12:34:56Z0", "0000-01-01T00:00:00",
+                                          "2019-04-15T12:34:56-", "2019-04-1bT12:34:56", "x2019-04-15T12:34:56" }) {
+            assertEquals(text, IsoDateTime.INVALID, IsoDateTime.parse(text.toCharArray(), 0, text.length()));
+        }
+        assertNull(IsoDateTime.toLocalDateTime(IsoDateTime.INVALID));
+    }
+
+    /**
+     * Only the characters between start and end are parsed
+     */
+    @Test
+    public void range () {
+        char[] chars = "Received=\"2019-04-15T12:34:56.789\"".toCharArray();
+        assertEquals(LocalDateTime.of(2019, 4, 15, 12, 34, 56, 789_000_000),
+            IsoDateTime.toLocalDateTime(IsoDateTime.parse(chars, 10, chars.length - 1)));
+        assertEquals(IsoDateTime.INVALID, IsoDateTime.parse(chars, 9, chars.length));
+    }
+
+    /**
+     * Parse to a local date and time
+     * @param text the date and time
+     * @return local date and time, null when invalid
+     */
+    static private LocalDateTime parse (String text) {
+        return IsoDateTime.toLocalDateTime(IsoDateTime.parse(text));
+    }
+}
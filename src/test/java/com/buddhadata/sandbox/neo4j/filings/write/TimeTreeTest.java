@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2019  Scott C. Sosna  ALL RIGHTS RESERVED
+ */
+
+package com.buddhadata.sandbox.neo4j.filings.write;
+
+import com.buddhadata.sandbox.neo4j.filings.node.Filing;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNoException;
+
+/**
+ * Tests of <code>TimeTree</code>, against the Neo4J database the loader uses (-Dfilings.uri, -Dfilings.username and
+ * -Dfilings.password); skipped when there's none.  Only years long before any filing are created, and deleted again.
+ *
+ * @author Scott C Sosna
+ */
+public class TimeTreeTest {
+
+    //  Years no filing was received in
+    static private final int FIRST_YEAR = 1889;
+    static private final int SECOND_YEAR = 1890;
+
+    //  Remove the years' buckets
+    static private final String DELETE_YEARS =
+        "MATCH (b) WHERE (b:Year OR b:Quarter OR b:Month OR b:Day) AND b.year IN [$first, $second] DETACH DELETE b";
+
+    //  Count the NEXT between the last day of the first year and the first of the second
+    static private final String COUNT_NEXT_YEAR =
+        "MATCH (:Day {year: $first, month: 12, day: 31})-[n:NEXT]->(:Day {year: $second, month: 1, day: 1}) RETURN count(n) AS next";
+
+    /**
+     * Connections to the database
+     */
+    private SessionFactory sessionFactory;
+
+    /**
+     * Session checking what was created
+     */
+    private Session session;
+
+    /**
+     * Connect to the database, skipping the tests when there's none, and remove anything left by an earlier run
+     */
+    @Before
+    public void connect () {
+        Configuration configuration = new Configuration.Builder()
+            .uri(System.getProperty("filings.uri", "bolt://127.0.0.1"))
+            .credentials(System.getProperty("filings.username", "neo4j"), System.getProperty("filings.password", "password"))
+            .build();
+        try {
+            sessionFactory = new SessionFactory(configuration, "com.buddhadata.sandbox.neo4j.filings.node");
+            session = sessionFactory.openSession();
+            session.query(DELETE_YEARS, years());
+        } catch (RuntimeException e) {
+            session = null;
+            assumeNoException(e);
+        }
+    }
+
+    /**
+     * Remove the years created and disconnect
+     */
+    @After
+    public void disconnect () {
+        if (session != null) {
+            session.query(DELETE_YEARS, years());
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    /**
+     * A year created after the year following it is still chained to it by NEXT
+     */
+    @Test
+    public void yearsOutOfOrder () {
+        TimeTree timeTree = new TimeTree(sessionFactory.openSession());
+        Long second = timeTree.day(received(SECOND_YEAR, 1, 1));
+        Long first = timeTree.day(received(FIRST_YEAR, 12, 31));
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotEquals(first, second);
+        assertEquals(1L, nextYear());
+
+        //  Years already created are merged, not chained a second time.
+        TimeTree again = new TimeTree(sessionFactory.openSession());
+        assertEquals(first, again.day(received(FIRST_YEAR, 12, 31)));
+        assertEquals(second, again.day(received(SECOND_YEAR, 1, 1)));
+        assertEquals(1L, nextYear());
+    }
+
+    /**
+     * Create a filing received on a day
+     * @param year year
+     * @param month month, 1-12
+     * @param day day of the month
+     * @return filing
+     */
+    static private Filing received (int year,
+                                    int month,
+                                    int day) {
+        Filing filing = new Filing();
+        filing.setReceivedOn(LocalDateTime.of(year, month, day, 12, 0));
+        return filing;
+    }
+
+    /**
+     * Count the NEXT relationships between the years
+     * @return number of relationships
+     */
+    private long nextYear () {
+        Number next = 0;
+        for (Map<String,Object> row : session.query(COUNT_NEXT_YEAR, years())) {
+            next = (Number) row.get("next");
+        }
+        return next.longValue();
+    }
+
+    /**
+     * Create the parameter map naming the years
+     * @return parameter map
+     */
+    static private Map<String,Object> years () {
+        Map<String,Object> params = new HashMap<>();
+        params.put("first", FIRST_YEAR);
+        params.put("second", SECOND_YEAR);
+        return params;
+    }
+}